@@ -10,6 +10,7 @@ package com.blackrook.db;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.blackrook.commons.AbstractMap;
 import com.blackrook.commons.ObjectPair;
@@ -17,6 +18,9 @@ import com.blackrook.commons.Reflect;
 import com.blackrook.commons.TypeConverter;
 import com.blackrook.commons.TypeProfile;
 import com.blackrook.commons.TypeProfile.MethodSignature;
+import com.blackrook.commons.hash.CaseInsensitiveHashMap;
+import com.blackrook.db.hints.DBIgnore;
+import com.blackrook.db.hints.DBName;
 
 /**
  * A convenience utility class that holds several helpful Reflection
@@ -29,7 +33,8 @@ public final class DBReflect
 {
 	/** Default converter for {@link #createForType(Object, Class)}. */
 	private static final TypeConverter DEFAULT_CONVERTER = new DBTypeConverter();
-
+	/** Column mappings by type, for {@link #getColumnNames(Class)} and {@link #getColumnValues(Object)}. */
+	private static final Map<Class<?>, ColumnMapping> COLUMN_MAPPINGS = new ConcurrentHashMap<Class<?>, ColumnMapping>();
 	
 	// applies a value, converting, to an object.
 	private static <T> void applyMemberToObject(String fieldName, Object value, T targetObject)
@@ -141,4 +146,140 @@ public final class DBReflect
 		return DEFAULT_CONVERTER.createForType(memberName, object, targetType);
 	}
 
+	/**
+	 * Gets the column names for a type, in column order: its public fields first, then its getters.
+	 * A member annotated with {@link DBName} uses that name instead of its own.
+	 * Members annotated with {@link DBIgnore} are skipped.
+	 * The result of the type inspection is cached.
+	 * @param type the class type to inspect.
+	 * @return a new array of column names.
+	 * @since 2.6.0
+	 */
+	public static String[] getColumnNames(Class<?> type)
+	{
+		String[] names = getColumnMapping(type).names;
+		String[] out = new String[names.length];
+		System.arraycopy(names, 0, out, 0, names.length);
+		return out;
+	}
+
+	/**
+	 * Gets the values of all of an object's columns, in the order that {@link #getColumnNames(Class)} returns them.
+	 * @param object the object to read.
+	 * @return a new array of column values.
+	 * @since 2.6.0
+	 */
+	public static Object[] getColumnValues(Object object)
+	{
+		ColumnMapping mapping = getColumnMapping(object.getClass());
+		Object[] out = new Object[mapping.names.length];
+		for (int i = 0; i < out.length; i++)
+			out[i] = mapping.getValue(i, object);
+		return out;
+	}
+
+	/**
+	 * Gets the values of a set of an object's columns, by column name, in the order provided.
+	 * Column names follow the same rules as {@link #getColumnNames(Class)}, and are not case-sensitive.
+	 * @param object the object to read.
+	 * @param columnNames the names of the columns to read.
+	 * @return a new array of column values.
+	 * @throws IllegalArgumentException if a column name does not match a column on the object's type.
+	 * @since 2.6.0
+	 */
+	public static Object[] getColumnValues(Object object, String ... columnNames)
+	{
+		ColumnMapping mapping = getColumnMapping(object.getClass());
+		Object[] out = new Object[columnNames.length];
+		for (int i = 0; i < out.length; i++)
+		{
+			Integer index = mapping.indices.get(columnNames[i]);
+			if (index == null)
+				throw new IllegalArgumentException("No column named \"" + columnNames[i] + "\" on " + object.getClass().getName());
+			out[i] = mapping.getValue(index, object);
+		}
+		return out;
+	}
+
+	// gets or creates a column mapping.
+	private static ColumnMapping getColumnMapping(Class<?> type)
+	{
+		ColumnMapping out;
+		if ((out = COLUMN_MAPPINGS.get(type)) == null)
+		{
+			ColumnMapping created = new ColumnMapping(type);
+			if ((out = COLUMN_MAPPINGS.putIfAbsent(type, created)) == null)
+				out = created;
+		}
+		return out;
+	}
+
+	// gets a column name for a member.
+	private static String getColumnName(String memberName, DBName name)
+	{
+		return name != null && name.value().length() > 0 ? name.value() : memberName;
+	}
+
+	/**
+	 * The readable columns on a type.
+	 */
+	private static class ColumnMapping
+	{
+		/** Column names, in order. */
+		private String[] names;
+		/** Column fields, or null for getter columns. */
+		private Field[] fields;
+		/** Column getters, or null for field columns. */
+		private Method[] getters;
+		/** Column name to index. */
+		private CaseInsensitiveHashMap<Integer> indices;
+		
+		ColumnMapping(Class<?> type)
+		{
+			TypeProfile<?> profile = TypeProfile.getTypeProfile(type);
+			int max = profile.getPublicFields().size() + profile.getGetterMethods().size();
+			String[] names = new String[max];
+			Field[] fields = new Field[max];
+			Method[] getters = new Method[max];
+			int count = 0;
+
+			for (ObjectPair<String, Field> pair : profile.getPublicFields())
+			{
+				Field field = pair.getValue();
+				if (field.isAnnotationPresent(DBIgnore.class))
+					continue;
+				names[count] = getColumnName(pair.getKey(), field.getAnnotation(DBName.class));
+				fields[count] = field;
+				count++;
+			}
+			
+			for (ObjectPair<String, MethodSignature> pair : profile.getGetterMethods())
+			{
+				Method method = pair.getValue().getMethod();
+				if (profile.getPublicFields().containsKey(pair.getKey()) || method.getDeclaringClass() == Object.class || method.isAnnotationPresent(DBIgnore.class))
+					continue;
+				names[count] = getColumnName(pair.getKey(), method.getAnnotation(DBName.class));
+				getters[count] = method;
+				count++;
+			}
+			
+			this.names = new String[count];
+			this.fields = new Field[count];
+			this.getters = new Method[count];
+			this.indices = new CaseInsensitiveHashMap<Integer>();
+			System.arraycopy(names, 0, this.names, 0, count);
+			System.arraycopy(fields, 0, this.fields, 0, count);
+			System.arraycopy(getters, 0, this.getters, 0, count);
+			for (int i = 0; i < count; i++)
+				this.indices.put(this.names[i], i);
+		}
+		
+		// gets a column value.
+		Object getValue(int index, Object object)
+		{
+			return fields[index] != null ? Reflect.getFieldValue(fields[index], object) : Reflect.invokeBlind(getters[index], object);
+		}
+		
+	}
+
 }
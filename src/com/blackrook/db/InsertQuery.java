@@ -0,0 +1,411 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.db;
+
+import java.util.Map;
+
+import com.blackrook.commons.list.List;
+
+/**
+ * An object that represents a multi-row insert or upsert, renderable as one or more
+ * <code>INSERT ... VALUES (...), (...)</code> statements (or a dialect's equivalent),
+ * each under the target dialect's parameter limit.
+ * <p>Rows are held until the query is rendered, so for very large sets, build and execute several of these.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public final class InsertQuery
+{
+	/** Default maximum rows per statement. */
+	public static final int DEFAULT_MAX_ROWS = 1000;
+
+	/** Target table. */
+	private String table;
+	/** Columns to insert. */
+	private String[] columns;
+	/** Row values. */
+	private List<Object[]> rows;
+	/** Conflict key columns. Null for plain insert. */
+	private String[] keyColumns;
+	/** Columns to update on conflict. Null for all non-key columns. */
+	private String[] updateColumns;
+	/** Maximum rows per rendered statement. */
+	private int maxRows;
+
+	/**
+	 * Creates a new InsertQuery with no rows.
+	 */
+	InsertQuery(String table, String[] columns)
+	{
+		this.table = table;
+		this.columns = columns != null && columns.length > 0 ? columns : null;
+		this.rows = new List<Object[]>(16);
+		this.keyColumns = null;
+		this.updateColumns = null;
+		this.maxRows = DEFAULT_MAX_ROWS;
+	}
+
+	/**
+	 * Adds a row of values, in column order.
+	 * @param values the row values.
+	 * @return itself, to chain calls.
+	 * @throws IllegalStateException if no columns were set on this query.
+	 * @throws IllegalArgumentException if the amount of values does not match the amount of columns.
+	 */
+	public InsertQuery values(Object ... values)
+	{
+		if (columns == null)
+			throw new IllegalStateException("No columns set on insert.");
+		if (values.length != columns.length)
+			throw new IllegalArgumentException("Insert needs " + columns.length + " values; found " + values.length);
+		rows.add(values);
+		return this;
+	}
+
+	/**
+	 * Adds a row of values from a map of column name to value.
+	 * If no columns were set on this query, the first map's keys become the columns.
+	 * Columns missing from the map are inserted as null.
+	 * @param row the row values.
+	 * @return itself, to chain calls.
+	 */
+	public InsertQuery values(Map<String, ?> row)
+	{
+		if (columns == null)
+			columns = row.keySet().toArray(new String[row.size()]);
+		Object[] values = new Object[columns.length];
+		for (int i = 0; i < columns.length; i++)
+			values[i] = row.get(columns[i]);
+		rows.add(values);
+		return this;
+	}
+
+	/**
+	 * Adds a row of values for each map of column name to value.
+	 * @param rows the rows to add.
+	 * @return itself, to chain calls.
+	 * @see #values(Map)
+	 */
+	public InsertQuery valuesFromMaps(Iterable<? extends Map<String, ?>> rows)
+	{
+		for (Map<String, ?> row : rows)
+			values(row);
+		return this;
+	}
+
+	/**
+	 * Adds a row of values for each object, read from its public fields and getters
+	 * using the rules in {@link DBReflect#getColumnNames(Class)}.
+	 * If no columns were set on this query, the first object's columns become the columns.
+	 * @param objects the objects to add.
+	 * @return itself, to chain calls.
+	 * @throws IllegalArgumentException if a column is not readable on an object.
+	 */
+	public InsertQuery valuesFrom(Iterable<?> objects)
+	{
+		for (Object object : objects)
+		{
+			if (columns == null)
+				columns = DBReflect.getColumnNames(object.getClass());
+			rows.add(DBReflect.getColumnValues(object, columns));
+		}
+		return this;
+	}
+
+	/**
+	 * Makes this an upsert: rows that conflict on the key columns update all of the other columns.
+	 * @param keyColumns the columns of the unique key or primary key to test.
+	 * @return itself, to chain calls.
+	 */
+	public InsertQuery onConflictUpdate(String ... keyColumns)
+	{
+		this.keyColumns = keyColumns;
+		this.updateColumns = null;
+		return this;
+	}
+
+	/**
+	 * Makes this an upsert: rows that conflict on the key columns update the provided columns.
+	 * @param keyColumns the columns of the unique key or primary key to test.
+	 * @param updateColumns the columns to update on conflict.
+	 * @return itself, to chain calls.
+	 */
+	public InsertQuery onConflictUpdate(String[] keyColumns, String ... updateColumns)
+	{
+		this.keyColumns = keyColumns;
+		this.updateColumns = updateColumns;
+		return this;
+	}
+
+	/**
+	 * Makes this an upsert that leaves existing rows alone: rows that conflict on the key columns are skipped.
+	 * @param keyColumns the columns of the unique key or primary key to test.
+	 * @return itself, to chain calls.
+	 */
+	public InsertQuery onConflictIgnore(String ... keyColumns)
+	{
+		this.keyColumns = keyColumns;
+		this.updateColumns = new String[0];
+		return this;
+	}
+
+	/**
+	 * Sets the maximum amount of rows per rendered statement.
+	 * The dialect's parameter limit may lower this further.
+	 * Default is {@value #DEFAULT_MAX_ROWS}.
+	 * @param maxRows the maximum amount of rows.
+	 * @return itself, to chain calls.
+	 * @throws IllegalArgumentException if maxRows is less than 1.
+	 */
+	public InsertQuery maxRowsPerStatement(int maxRows)
+	{
+		if (maxRows < 1)
+			throw new IllegalArgumentException("Max rows must be 1 or greater.");
+		this.maxRows = maxRows;
+		return this;
+	}
+
+	/**
+	 * Returns the target table.
+	 */
+	public String getTable()
+	{
+		return table;
+	}
+
+	/**
+	 * Returns the columns to insert.
+	 * Can be null, if no columns were set and no rows were added.
+	 */
+	public String[] getColumns()
+	{
+		return columns;
+	}
+
+	/**
+	 * Returns the amount of rows added.
+	 */
+	public int getRowCount()
+	{
+		return rows.size();
+	}
+
+	/**
+	 * Is this an upsert?
+	 * @return true if so, false if not.
+	 */
+	public boolean isUpsert()
+	{
+		return keyColumns != null;
+	}
+
+	/**
+	 * Returns the conflict key columns.
+	 * Can be null, if this is not an upsert.
+	 */
+	public String[] getKeyColumns()
+	{
+		return keyColumns;
+	}
+
+	/**
+	 * Returns the columns updated on conflict.
+	 * Can be null, if this is not an upsert. Can be empty, if conflicting rows are skipped.
+	 */
+	public String[] getUpdateColumns()
+	{
+		if (keyColumns == null)
+			return null;
+		if (updateColumns != null)
+			return updateColumns;
+
+		List<String> out = new List<String>(columns.length);
+		for (String column : columns)
+		{
+			boolean key = false;
+			for (String k : keyColumns)
+				if (key = k.equalsIgnoreCase(column))
+					break;
+			if (!key)
+				out.add(column);
+		}
+		String[] array = new String[out.size()];
+		out.toArray(array);
+		return array;
+	}
+
+	/**
+	 * Returns the maximum amount of rows per statement (before the dialect's parameter limit).
+	 */
+	public int getMaxRowsPerStatement()
+	{
+		return maxRows;
+	}
+
+	/**
+	 * Returns the amount of rows in each rendered statement for a dialect
+	 * (every statement but the last, which may have fewer).
+	 * @param dialect the target dialect.
+	 */
+	public int getRowsPerStatement(QueryDialect dialect)
+	{
+		if (columns == null)
+			return maxRows;
+		return Math.max(1, Math.min(maxRows, dialect.getMaxParameters() / columns.length));
+	}
+
+	/**
+	 * Returns the amount of statements that this renders into for a dialect.
+	 * @param dialect the target dialect.
+	 */
+	public int getStatementCount(QueryDialect dialect)
+	{
+		int per = getRowsPerStatement(dialect);
+		return (rows.size() + per - 1) / per;
+	}
+
+	/**
+	 * Gets the parameters for a statement, in row order, then column order.
+	 * @param startRow the first row.
+	 * @param rowCount the amount of rows.
+	 * @return a new array of parameters.
+	 */
+	public Object[] getParameters(int startRow, int rowCount)
+	{
+		Object[] out = new Object[rowCount * columns.length];
+		for (int i = 0; i < rowCount; i++)
+			System.arraycopy(rows.getByIndex(startRow + i), 0, out, i * columns.length, columns.length);
+		return out;
+	}
+
+	/**
+	 * Renders a parameterized statement for a set amount of rows in the target dialect.
+	 * Statements with the same row count are identical, so they can be prepared once and reused.
+	 * @param dialect the target dialect.
+	 * @param rowCount the amount of rows in the statement.
+	 * @return the statement SQL.
+	 * @throws IllegalStateException if no columns were set on this query.
+	 */
+	public String render(QueryDialect dialect, int rowCount)
+	{
+		if (columns == null)
+			throw new IllegalStateException("No columns set on insert.");
+
+		StringBuilder sb = new StringBuilder(64 + rowCount * (columns.length * 3 + 2));
+		if (isUpsert() && (dialect == QueryDialect.ANSI || dialect == QueryDialect.SQLSERVER))
+			renderMerge(sb, dialect, rowCount);
+		else
+		{
+			sb.append("INSERT INTO ").append(table).append(" (");
+			appendList(sb, null, columns);
+			sb.append(") VALUES ");
+			appendRows(sb, rowCount);
+			if (isUpsert())
+			{
+				String[] update = getUpdateColumns();
+				if (dialect == QueryDialect.MYSQL)
+				{
+					sb.append(" ON DUPLICATE KEY UPDATE ");
+					if (update.length == 0)
+						sb.append(keyColumns[0]).append(" = ").append(keyColumns[0]);
+					for (int i = 0; i < update.length; i++)
+					{
+						if (i > 0) sb.append(", ");
+						sb.append(update[i]).append(" = VALUES(").append(update[i]).append(')');
+					}
+				}
+				else
+				{
+					sb.append(" ON CONFLICT (");
+					appendList(sb, null, keyColumns);
+					sb.append(')');
+					if (update.length == 0)
+						sb.append(" DO NOTHING");
+					else
+					{
+						sb.append(" DO UPDATE SET ");
+						appendAssignments(sb, "EXCLUDED", update);
+					}
+				}
+			}
+		}
+		return sb.toString();
+	}
+
+	// renders a MERGE statement.
+	private void renderMerge(StringBuilder sb, QueryDialect dialect, int rowCount)
+	{
+		sb.append("MERGE INTO ").append(table).append(" AS target USING (VALUES ");
+		appendRows(sb, rowCount);
+		sb.append(") AS source (");
+		appendList(sb, null, columns);
+		sb.append(") ON ");
+		for (int i = 0; i < keyColumns.length; i++)
+		{
+			if (i > 0) sb.append(" AND ");
+			sb.append("target.").append(keyColumns[i]).append(" = source.").append(keyColumns[i]);
+		}
+		String[] update = getUpdateColumns();
+		if (update.length > 0)
+		{
+			sb.append(" WHEN MATCHED THEN UPDATE SET ");
+			appendAssignments(sb, "source", update);
+		}
+		sb.append(" WHEN NOT MATCHED THEN INSERT (");
+		appendList(sb, null, columns);
+		sb.append(") VALUES (");
+		appendList(sb, "source", columns);
+		sb.append(')');
+		if (dialect == QueryDialect.SQLSERVER)
+			sb.append(';');
+	}
+
+	// appends a comma-separated list of names.
+	private static void appendList(StringBuilder sb, String prefix, String[] names)
+	{
+		for (int i = 0; i < names.length; i++)
+		{
+			if (i > 0) sb.append(", ");
+			if (prefix != null) sb.append(prefix).append('.');
+			sb.append(names[i]);
+		}
+	}
+
+	// appends a comma-separated list of "column = source.column".
+	private static void appendAssignments(StringBuilder sb, String source, String[] names)
+	{
+		for (int i = 0; i < names.length; i++)
+		{
+			if (i > 0) sb.append(", ");
+			sb.append(names[i]).append(" = ").append(source).append('.').append(names[i]);
+		}
+	}
+
+	// appends parameterized rows.
+	private void appendRows(StringBuilder sb, int rowCount)
+	{
+		for (int r = 0; r < rowCount; r++)
+		{
+			if (r > 0) sb.append(", ");
+			sb.append('(');
+			for (int i = 0; i < columns.length; i++)
+			{
+				if (i > 0) sb.append(", ");
+				sb.append(Query.PARAMETER);
+			}
+			sb.append(')');
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return "INSERT INTO " + table + " " + rows.size() + " rows" + (isUpsert() ? " ON CONFLICT" : "");
+	}
+
+}
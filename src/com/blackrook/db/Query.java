@@ -27,4 +27,28 @@ public final class Query
 		return new SelectQuery(false, false).addColumns(columns);
 	}
 	
+	/**
+	 * Prepares and creates a new multi-row insert query.
+	 * If no columns are provided, they are taken from the first row added.
+	 * @param table the table to insert into.
+	 * @param columns the columns to insert.
+	 * @since 2.6.0
+	 */
+	public static InsertQuery insert(String table, String ... columns)
+	{
+		return new InsertQuery(table, columns);
+	}
+	
+	/**
+	 * Prepares and creates a new multi-row insert query, using a type's columns.
+	 * @param table the table to insert into.
+	 * @param type the type to read the column names from.
+	 * @see DBReflect#getColumnNames(Class)
+	 * @since 2.6.0
+	 */
+	public static InsertQuery insert(String table, Class<?> type)
+	{
+		return new InsertQuery(table, DBReflect.getColumnNames(type));
+	}
+	
 }
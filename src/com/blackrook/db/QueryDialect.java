@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.db;
+
+/**
+ * Enumeration of SQL dialects that generated queries can target.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public enum QueryDialect
+{
+	/** Standard SQL. Upserts are rendered as <code>MERGE</code>. */
+	ANSI(999),
+	/** PostgreSQL. Upserts are rendered as <code>INSERT ... ON CONFLICT</code>. */
+	POSTGRESQL(32767),
+	/** MySQL/MariaDB. Upserts are rendered as <code>INSERT ... ON DUPLICATE KEY UPDATE</code>. */
+	MYSQL(65535),
+	/** SQLite. Upserts are rendered as <code>INSERT ... ON CONFLICT</code>. */
+	SQLITE(999),
+	/** Microsoft SQL Server. Upserts are rendered as <code>MERGE</code>. */
+	SQLSERVER(2098);
+	
+	final int maxParameters;
+	/** Shared renderer, created on first use. */
+	private SQLQueryRenderer renderer;
+
+	private QueryDialect(int maxParameters)
+	{
+		this.maxParameters = maxParameters; 
+		this.renderer = null;
+	}
+	
+	/** 
+	 * Maximum amount of bound parameters in a single statement 
+	 * (conservatively, if the database's own limit is configurable). 
+	 */
+	public int getMaxParameters()
+	{
+		return maxParameters;
+	}
+	
+	/**
+	 * Returns a shared renderer for this dialect, with the default cache size.
+	 * @since 2.6.0
+	 */
+	public synchronized SQLQueryRenderer getRenderer()
+	{
+		if (renderer == null)
+			renderer = new SQLQueryRenderer(this);
+		return renderer;
+	}
+	
+}
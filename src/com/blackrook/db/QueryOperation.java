@@ -20,8 +20,8 @@ public enum QueryOperation
 	LESSER(2),
 	LESSER_EQUAL(2),
 	BETWEEN(3),
-	IS_NULL,
-	IS_NOT_NULL,
+	IS_NULL(1),
+	IS_NOT_NULL(1),
 	IN_LIST(2),
 	NOT_IN_LIST(2),
 	LIKE(2);
@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.db;
+
+import java.util.Arrays;
+
+/**
+ * A query rendered into parameterized SQL, plus its parameters in binding order.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public final class RenderedQuery
+{
+	/** The rendered SQL. */
+	private String query;
+	/** The parameters, in order. */
+	private Object[] parameters;
+
+	RenderedQuery(String query, Object[] parameters)
+	{
+		this.query = query;
+		this.parameters = parameters;
+	}
+
+	/**
+	 * Returns the rendered SQL.
+	 * Queries of the same shape rendered by the same renderer return the same String instance, while it is cached.
+	 */
+	public String getQuery()
+	{
+		return query;
+	}
+
+	/**
+	 * Returns the parameters to bind to the query, in order.
+	 */
+	public Object[] getParameters()
+	{
+		return parameters;
+	}
+
+	@Override
+	public String toString()
+	{
+		return query + " " + Arrays.toString(parameters);
+	}
+
+}
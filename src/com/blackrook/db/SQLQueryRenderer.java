@@ -0,0 +1,757 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.db;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.blackrook.commons.list.List;
+import com.blackrook.db.SelectQuery.ColumnDescriptor;
+import com.blackrook.db.SelectQuery.CriteriaClause;
+import com.blackrook.db.SelectQuery.GroupDescriptor;
+import com.blackrook.db.SelectQuery.LimitClause;
+import com.blackrook.db.SelectQuery.OrderClause;
+import com.blackrook.db.SelectQuery.TableDescriptor;
+import com.blackrook.db.SelectQuery.UnionClause;
+
+/**
+ * Renders {@link SelectQuery} objects into parameterized SQL for a {@link QueryDialect}.
+ * <p>Every criteria operand, limit, and offset becomes a bound parameter, except for:
+ * <ul>
+ * <li>{@link ColumnDescriptor} operands, which are rendered as column references (for join criteria).</li>
+ * <li>{@link SelectQuery} operands, which are rendered as sub-queries.</li>
+ * <li>{@link Collection} or array operands of IN_LIST/NOT_IN_LIST, which are expanded into a parameter each.</li>
+ * </ul>
+ * Multiple tables are joined in the FROM clause, and joined on whatever criteria is added.
+ * <p>Rendered SQL is cached by query shape (the tables, columns, operations, and operand kinds and counts),
+ * read from the query objects in the same pass that collects the parameters, so a query that only differs
+ * from a previous one in its values skips rendering, and returns the same SQL String instance - useful for
+ * prepared statement caches. The cache is cleared when it fills up.
+ * This class is thread-safe.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public class SQLQueryRenderer implements QueryRenderer
+{
+	/** Default cache size. */
+	public static final int DEFAULT_CACHE_SIZE = 256;
+
+	/** Shape of a bound parameter operand. */
+	private static final Integer SHAPE_PARAMETER = 0;
+	/** Shape of a column operand. */
+	private static final Integer SHAPE_COLUMN = 1;
+	/** Shape of a sub-query operand. */
+	private static final Integer SHAPE_QUERY = 2;
+	/** Shape of a list operand. */
+	private static final Integer SHAPE_LIST = 3;
+	/** Shape of an IN list with nothing in it. */
+	private static final Integer SHAPE_EMPTY = 4;
+
+	/** The target dialect. */
+	private QueryDialect dialect;
+	/** Maximum cached shapes. */
+	private int cacheSize;
+	/** Rendered SQL by shape. */
+	private ConcurrentHashMap<ArrayList<Object>, String> cache;
+	/** Cache hit count. */
+	private LongAdder hits;
+	/** Cache miss count. */
+	private LongAdder misses;
+
+	/**
+	 * Creates a new renderer with the default cache size.
+	 * @param dialect the target dialect.
+	 */
+	public SQLQueryRenderer(QueryDialect dialect)
+	{
+		this(dialect, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * Creates a new renderer.
+	 * @param dialect the target dialect.
+	 * @param cacheSize the maximum amount of query shapes to keep rendered SQL for. 0 or less is no caching.
+	 */
+	public SQLQueryRenderer(QueryDialect dialect, int cacheSize)
+	{
+		this.dialect = dialect;
+		this.cacheSize = cacheSize;
+		this.cache = cacheSize > 0 ? new ConcurrentHashMap<ArrayList<Object>, String>() : null;
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+	}
+
+	/**
+	 * Returns the target dialect.
+	 */
+	public QueryDialect getDialect()
+	{
+		return dialect;
+	}
+
+	/**
+	 * Returns the amount of renders that found their SQL in the cache.
+	 */
+	public long getCacheHitCount()
+	{
+		return hits.sum();
+	}
+
+	/**
+	 * Returns the amount of renders that had to build their SQL.
+	 */
+	public long getCacheMissCount()
+	{
+		return misses.sum();
+	}
+
+	/**
+	 * Clears the rendered SQL cache.
+	 */
+	public void clearCache()
+	{
+		if (cache != null)
+			cache.clear();
+	}
+
+	/**
+	 * Renders a {@link SelectQuery} into parameterized SQL.
+	 * The parameters are not part of the returned string - use {@link #render(SelectQuery)} to get them.
+	 * @param select the query to render.
+	 */
+	@Override
+	public String renderQuery(SelectQuery select)
+	{
+		return render(select).getQuery();
+	}
+
+	/**
+	 * Renders a {@link SelectQuery} into parameterized SQL plus its parameters, in binding order.
+	 * @param select the query to render.
+	 * @return the rendered query.
+	 * @throws IllegalArgumentException if an operand cannot be rendered.
+	 */
+	public RenderedQuery render(SelectQuery select)
+	{
+		return render(select, null, null, 0);
+	}
+
+	/**
+	 * Renders one page of a keyset (or "seek") walk over a {@link SelectQuery}: 
+	 * the rows that come after a set of key values, in key order.
+	 * Unlike an offset, the database can seek straight to the first row of the page through an index on the keys,
+	 * so deep pages cost the same as the first one.
+	 * <p>The query's own ordering and limit are replaced by the keys and the page size, and a seek predicate
+	 * is added to its WHERE clause: <code>(k1, k2) &gt; (?, ?)</code>, or an equivalent expansion with OR 
+	 * if the keys differ in direction or the dialect has no row value comparison.
+	 * The keys should be unique together, and not null, or rows may be skipped.
+	 * @param select the query to render.
+	 * @param keys the key columns to order and seek by.
+	 * @param after the key values of the last row of the previous page, in key order, or null for the first page.
+	 * @param pageSize the maximum amount of rows in the page.
+	 * @return the rendered query.
+	 * @throws IllegalArgumentException if there are no keys, the amount of values does not match the amount of keys,
+	 * 		the query has unions, or an operand cannot be rendered.
+	 * @since 2.6.0
+	 */
+	public RenderedQuery renderPage(SelectQuery select, OrderClause[] keys, Object[] after, int pageSize)
+	{
+		if (keys.length == 0)
+			throw new IllegalArgumentException("Page needs at least one key.");
+		if (after != null && after.length != keys.length)
+			throw new IllegalArgumentException("Page needs " + keys.length + " key values; found " + after.length);
+		if (select.getUnionClauses() != null)
+			throw new IllegalArgumentException("Queries with unions cannot be paged by key.");
+
+		return render(select, keys, after, pageSize);
+	}
+
+	// Finds the SQL for the query's shape, or renders it.
+	private RenderedQuery render(SelectQuery select, OrderClause[] keys, Object[] after, int pageSize)
+	{
+		ArrayList<Object> parameters = new ArrayList<Object>(8);
+		ArrayList<Object> shape = null;
+		if (cache != null)
+		{
+			shape = new ArrayList<Object>(32);
+			addShape(select, keys, after, pageSize, shape, parameters);
+			String query = cache.get(shape);
+			if (query != null)
+			{
+				hits.increment();
+				return new RenderedQuery(query, parameters.toArray());
+			}
+			parameters.clear();
+		}
+
+		misses.increment();
+		ArrayList<String> tokens = new ArrayList<String>(64);
+		appendQuery(select, keys, after, pageSize, tokens, parameters);
+		int len = 0;
+		for (int i = 0; i < tokens.size(); i++)
+			len += tokens.get(i).length();
+		StringBuilder sb = new StringBuilder(len);
+		for (int i = 0; i < tokens.size(); i++)
+			sb.append(tokens.get(i));
+		String query = sb.toString();
+
+		if (cache != null)
+		{
+			if (cache.size() >= cacheSize)
+				cache.clear();
+			String existing = cache.putIfAbsent(shape, query);
+			if (existing != null)
+				query = existing;
+		}
+		return new RenderedQuery(query, parameters.toArray());
+	}
+
+	// Records everything about a query that decides its SQL, and adds its parameters in binding order, without rendering it.
+	// Must add parameters in the same order as appendQuery().
+	private void addShape(SelectQuery select, OrderClause[] keys, Object[] after, int pageSize, ArrayList<Object> shape, ArrayList<Object> parameters)
+	{
+		List<OrderClause> ordering = select.getOrderClauses();
+		LimitClause limit = select.getLimitClause();
+		shape.add((select.isExplained() ? 1 : 0)
+			| (select.isDistinct() ? 2 : 0)
+			| (ordering != null ? 4 : 0)
+			| (limit != null ? 8 : 0)
+			| (limit != null && limit.getOffset() > 0 ? 16 : 0)
+			| (keys != null ? 32 : 0)
+			| (after != null ? 64 : 0)
+		);
+
+		List<ColumnDescriptor> columns = select.getColumnList();
+		int count = columns != null ? columns.size() : 0;
+		shape.add(count);
+		for (int i = 0; i < count; i++)
+		{
+			ColumnDescriptor column = columns.getByIndex(i);
+			shape.add(column.getTable());
+			shape.add(column.getName());
+			shape.add(column.getAlias());
+		}
+
+		List<TableDescriptor> tables = select.getFromTables();
+		count = tables != null ? tables.size() : 0;
+		shape.add(count);
+		for (int i = 0; i < count; i++)
+		{
+			TableDescriptor table = tables.getByIndex(i);
+			shape.add(table.getName());
+			shape.add(table.getAlias());
+		}
+
+		addCriteriaShape(select.getWhereClauses(), shape, parameters);
+		if (after != null)
+			addSeekParameters(keys, after, parameters);
+
+		List<GroupDescriptor> groups = select.getGroupClauses();
+		count = groups != null ? groups.size() : 0;
+		shape.add(count);
+		for (int i = 0; i < count; i++)
+		{
+			GroupDescriptor group = groups.getByIndex(i);
+			shape.add(group.getTable());
+			shape.add(group.getName());
+		}
+
+		addCriteriaShape(select.getHavingClauses(), shape, parameters);
+
+		List<UnionClause> unions = select.getUnionClauses();
+		count = unions != null ? unions.size() : 0;
+		shape.add(count);
+		for (int i = 0; i < count; i++)
+		{
+			UnionClause union = unions.getByIndex(i);
+			shape.add(union.isAll());
+			addShape(union.getQuery(), null, null, 0, shape, parameters);
+		}
+
+		if (keys != null)
+		{
+			shape.add(keys.length);
+			for (int i = 0; i < keys.length; i++)
+				addOrderShape(keys[i], shape);
+			addLimitParameters(pageSize, 0, parameters);
+			return;
+		}
+
+		count = ordering != null ? ordering.size() : 0;
+		shape.add(count);
+		for (int i = 0; i < count; i++)
+			addOrderShape(ordering.getByIndex(i), shape);
+
+		if (limit != null)
+			addLimitParameters(limit.getLimit(), limit.getOffset(), parameters);
+	}
+
+	// Records the shape of an ordering.
+	private static void addOrderShape(OrderClause order, ArrayList<Object> shape)
+	{
+		shape.add(order.getTable());
+		shape.add(order.getName());
+		shape.add(order.isDescending());
+	}
+
+	// Records the shape of a set of criteria, and adds their parameters.
+	private void addCriteriaShape(List<CriteriaClause> criteria, ArrayList<Object> shape, ArrayList<Object> parameters)
+	{
+		int count = criteria != null ? criteria.size() : 0;
+		shape.add(count);
+		for (int i = 0; i < count; i++)
+		{
+			CriteriaClause clause = criteria.getByIndex(i);
+			QueryOperation operation = clause.getOperation();
+			Object[] operands = clause.getOperands();
+			boolean list = operation == QueryOperation.IN_LIST || operation == QueryOperation.NOT_IN_LIST;
+			shape.add(operation);
+			shape.add(clause.getTable());
+			shape.add(clause.getName());
+			shape.add(operands.length);
+			if (list && isEmptyList(operands))
+				shape.add(SHAPE_EMPTY);
+			// operands are rendered in order.
+			else for (Object operand : operands)
+				addOperandShape(operand, list, shape, parameters);
+		}
+	}
+
+	// Records the shape of an operand, and adds its parameters.
+	private void addOperandShape(Object operand, boolean list, ArrayList<Object> shape, ArrayList<Object> parameters)
+	{
+		if (operand instanceof ColumnDescriptor)
+		{
+			ColumnDescriptor column = (ColumnDescriptor)operand;
+			shape.add(SHAPE_COLUMN);
+			shape.add(column.getTable());
+			shape.add(column.getName());
+		}
+		else if (operand instanceof SelectQuery)
+		{
+			shape.add(SHAPE_QUERY);
+			addShape((SelectQuery)operand, null, null, 0, shape, parameters);
+		}
+		else if (list && operand instanceof Collection)
+		{
+			Collection<?> collection = (Collection<?>)operand;
+			shape.add(SHAPE_LIST);
+			shape.add(collection.size());
+			parameters.addAll(collection);
+		}
+		else if (list && operand instanceof Object[])
+		{
+			Object[] array = (Object[])operand;
+			shape.add(SHAPE_LIST);
+			shape.add(array.length);
+			for (Object obj : array)
+				parameters.add(obj);
+		}
+		else if (operand instanceof Collection || operand instanceof Object[])
+		{
+			throw new IllegalArgumentException("Lists are only allowed as IN_LIST or NOT_IN_LIST operands.");
+		}
+		else
+		{
+			shape.add(SHAPE_PARAMETER);
+			parameters.add(operand);
+		}
+	}
+
+	// Appends a full query, or a page of one if keys are provided.
+	private void appendQuery(SelectQuery select, OrderClause[] keys, Object[] after, int pageSize, ArrayList<String> out, ArrayList<Object> parameters)
+	{
+		if (select.isExplained())
+			out.add("EXPLAIN ");
+		out.add(select.isDistinct() ? "SELECT DISTINCT " : "SELECT ");
+
+		List<ColumnDescriptor> columns = select.getColumnList();
+		if (columns == null || columns.isEmpty())
+			out.add("*");
+		else for (int i = 0; i < columns.size(); i++)
+		{
+			ColumnDescriptor column = columns.getByIndex(i);
+			if (i > 0) out.add(", ");
+			appendName(column.getTable(), column.getName(), out);
+			if (column.getAlias() != null)
+			{
+				out.add(" AS ");
+				out.add(column.getAlias());
+			}
+		}
+
+		List<TableDescriptor> tables = select.getFromTables();
+		if (tables != null && !tables.isEmpty())
+		{
+			out.add(" FROM ");
+			for (int i = 0; i < tables.size(); i++)
+			{
+				TableDescriptor table = tables.getByIndex(i);
+				if (i > 0) out.add(", ");
+				out.add(table.getName());
+				if (table.getAlias() != null)
+				{
+					out.add(" ");
+					out.add(table.getAlias());
+				}
+			}
+		}
+
+		appendCriteria(" WHERE ", select.getWhereClauses(), out, parameters);
+		if (after != null)
+		{
+			List<CriteriaClause> where = select.getWhereClauses();
+			out.add(where == null || where.isEmpty() ? " WHERE " : " AND ");
+			appendSeek(keys, after, out, parameters);
+		}
+
+		List<GroupDescriptor> groups = select.getGroupClauses();
+		if (groups != null && !groups.isEmpty())
+		{
+			out.add(" GROUP BY ");
+			for (int i = 0; i < groups.size(); i++)
+			{
+				GroupDescriptor group = groups.getByIndex(i);
+				if (i > 0) out.add(", ");
+				appendName(group.getTable(), group.getName(), out);
+			}
+		}
+
+		appendCriteria(" HAVING ", select.getHavingClauses(), out, parameters);
+
+		List<UnionClause> unions = select.getUnionClauses();
+		if (unions != null) for (int i = 0; i < unions.size(); i++)
+		{
+			UnionClause union = unions.getByIndex(i);
+			SelectQuery query = union.getQuery();
+			out.add(union.isAll() ? " UNION ALL " : " UNION ");
+			boolean wrap = query.getOrderClauses() != null || query.getLimitClause() != null;
+			if (wrap) out.add("(");
+			appendQuery(query, null, null, 0, out, parameters);
+			if (wrap) out.add(")");
+		}
+
+		if (keys != null)
+		{
+			out.add(" ORDER BY ");
+			for (int i = 0; i < keys.length; i++)
+			{
+				if (i > 0) out.add(", ");
+				appendName(keys[i].getTable(), keys[i].getName(), out);
+				out.add(keys[i].isDescending() ? " DESC" : " ASC");
+			}
+			appendLimit(pageSize, 0, true, out, parameters);
+			return;
+		}
+
+		List<OrderClause> ordering = select.getOrderClauses();
+		boolean ordered = ordering != null && !ordering.isEmpty();
+		if (ordered)
+		{
+			out.add(" ORDER BY ");
+			for (int i = 0; i < ordering.size(); i++)
+			{
+				OrderClause order = ordering.getByIndex(i);
+				if (i > 0) out.add(", ");
+				appendName(order.getTable(), order.getName(), out);
+				out.add(order.isDescending() ? " DESC" : " ASC");
+			}
+		}
+
+		LimitClause limit = select.getLimitClause();
+		if (limit != null)
+			appendLimit(limit.getLimit(), limit.getOffset(), ordered, out, parameters);
+	}
+
+	// Appends a limit and offset.
+	private void appendLimit(int limit, int offset, boolean ordered, ArrayList<String> out, ArrayList<Object> parameters)
+	{
+		switch (dialect)
+		{
+			case POSTGRESQL:
+			case MYSQL:
+			case SQLITE:
+				out.add(offset > 0 ? " LIMIT ? OFFSET ?" : " LIMIT ?");
+				break;
+			case SQLSERVER:
+				// SQL Server only takes OFFSET after an ORDER BY.
+				if (!ordered)
+					out.add(" ORDER BY (SELECT NULL)");
+				out.add(" OFFSET ? ROWS FETCH NEXT ? ROWS ONLY");
+				break;
+			default:
+				out.add(" OFFSET ? ROWS FETCH NEXT ? ROWS ONLY");
+				break;
+		}
+		addLimitParameters(limit, offset, parameters);
+	}
+
+	// Adds the parameters of a limit and offset, in binding order.
+	private void addLimitParameters(int limit, int offset, ArrayList<Object> parameters)
+	{
+		switch (dialect)
+		{
+			case POSTGRESQL:
+			case MYSQL:
+			case SQLITE:
+				parameters.add(limit);
+				if (offset > 0)
+					parameters.add(offset);
+				break;
+			default:
+				parameters.add(offset);
+				parameters.add(limit);
+				break;
+		}
+	}
+
+	// Appends a keyset seek predicate.
+	private void appendSeek(OrderClause[] keys, Object[] after, ArrayList<String> out, ArrayList<Object> parameters)
+	{
+		if (keys.length == 1)
+		{
+			appendName(keys[0].getTable(), keys[0].getName(), out);
+			out.add(keys[0].isDescending() ? " < ?" : " > ?");
+		}
+		// row value comparison: (k1, k2) > (?, ?)
+		else if (isRowComparison(keys))
+		{
+			out.add("(");
+			for (int i = 0; i < keys.length; i++)
+			{
+				if (i > 0) out.add(", ");
+				appendName(keys[i].getTable(), keys[i].getName(), out);
+			}
+			out.add(keys[0].isDescending() ? ") < (" : ") > (");
+			for (int i = 0; i < keys.length; i++)
+				out.add(i > 0 ? ", ?" : "?");
+			out.add(")");
+		}
+		// expanded: (k1 > ? OR (k1 = ? AND k2 > ?) OR ...)
+		else
+		{
+			out.add("(");
+			for (int i = 0; i < keys.length; i++)
+			{
+				if (i > 0) out.add(" OR ");
+				out.add("(");
+				for (int j = 0; j < i; j++)
+				{
+					appendName(keys[j].getTable(), keys[j].getName(), out);
+					out.add(" = ? AND ");
+				}
+				appendName(keys[i].getTable(), keys[i].getName(), out);
+				out.add(keys[i].isDescending() ? " < ?" : " > ?");
+				out.add(")");
+			}
+			out.add(")");
+		}
+		addSeekParameters(keys, after, parameters);
+	}
+
+	// Adds the parameters of a keyset seek predicate, in binding order.
+	private void addSeekParameters(OrderClause[] keys, Object[] after, ArrayList<Object> parameters)
+	{
+		if (keys.length == 1 || isRowComparison(keys))
+		{
+			for (int i = 0; i < keys.length; i++)
+				parameters.add(after[i]);
+		}
+		else for (int i = 0; i < keys.length; i++)
+		{
+			for (int j = 0; j < i; j++)
+				parameters.add(after[j]);
+			parameters.add(after[i]);
+		}
+	}
+
+	// Checks if a seek on more than one key can use a row value comparison.
+	private boolean isRowComparison(OrderClause[] keys)
+	{
+		for (int i = 1; i < keys.length; i++)
+			if (keys[i].isDescending() != keys[0].isDescending())
+				return false;
+		return dialect != QueryDialect.SQLSERVER;
+	}
+
+	// Appends a set of criteria, joined with AND.
+	private void appendCriteria(String keyword, List<CriteriaClause> criteria, ArrayList<String> out, ArrayList<Object> parameters)
+	{
+		if (criteria == null || criteria.isEmpty())
+			return;
+
+		out.add(keyword);
+		for (int i = 0; i < criteria.size(); i++)
+		{
+			if (i > 0) out.add(" AND ");
+			appendCriterion(criteria.getByIndex(i), out, parameters);
+		}
+	}
+
+	// Appends a single criterion.
+	private void appendCriterion(CriteriaClause clause, ArrayList<String> out, ArrayList<Object> parameters)
+	{
+		Object[] operands = clause.getOperands();
+		int next = 0;
+
+		// empty lists are not valid SQL.
+		if ((clause.getOperation() == QueryOperation.IN_LIST || clause.getOperation() == QueryOperation.NOT_IN_LIST) && isEmptyList(operands))
+		{
+			out.add(clause.getOperation() == QueryOperation.IN_LIST ? "1 = 0" : "1 = 1");
+			return;
+		}
+
+		if (clause.getName() != null)
+			appendName(clause.getTable(), clause.getName(), out);
+		else
+			appendOperand(operands[next++], out, parameters);
+
+		switch (clause.getOperation())
+		{
+			case EQUALS:
+				out.add(" = ");
+				appendOperand(operands[next], out, parameters);
+				break;
+			case NOT_EQUALS:
+				out.add(" <> ");
+				appendOperand(operands[next], out, parameters);
+				break;
+			case GREATER:
+				out.add(" > ");
+				appendOperand(operands[next], out, parameters);
+				break;
+			case GREATER_EQUAL:
+				out.add(" >= ");
+				appendOperand(operands[next], out, parameters);
+				break;
+			case LESSER:
+				out.add(" < ");
+				appendOperand(operands[next], out, parameters);
+				break;
+			case LESSER_EQUAL:
+				out.add(" <= ");
+				appendOperand(operands[next], out, parameters);
+				break;
+			case LIKE:
+				out.add(" LIKE ");
+				appendOperand(operands[next], out, parameters);
+				break;
+			case BETWEEN:
+				out.add(" BETWEEN ");
+				appendOperand(operands[next], out, parameters);
+				out.add(" AND ");
+				appendOperand(operands[next + 1], out, parameters);
+				break;
+			case IS_NULL:
+				out.add(" IS NULL");
+				break;
+			case IS_NOT_NULL:
+				out.add(" IS NOT NULL");
+				break;
+			case IN_LIST:
+			case NOT_IN_LIST:
+				out.add(clause.getOperation() == QueryOperation.IN_LIST ? " IN (" : " NOT IN (");
+				if (operands.length == 1 && operands[0] instanceof SelectQuery)
+					appendQuery((SelectQuery)operands[0], null, null, 0, out, parameters);
+				else
+					appendList(operands, out, parameters);
+				out.add(")");
+				break;
+		}
+	}
+
+	// Appends an expanded list of operands.
+	private void appendList(Object[] operands, ArrayList<String> out, ArrayList<Object> parameters)
+	{
+		int count = 0;
+		for (Object operand : operands)
+		{
+			if (operand instanceof Collection)
+			{
+				for (Object obj : (Collection<?>)operand)
+				{
+					out.add(count++ > 0 ? ", ?" : "?");
+					parameters.add(obj);
+				}
+			}
+			else if (operand instanceof Object[])
+			{
+				for (Object obj : (Object[])operand)
+				{
+					out.add(count++ > 0 ? ", ?" : "?");
+					parameters.add(obj);
+				}
+			}
+			else
+			{
+				if (count++ > 0) out.add(", ");
+				appendOperand(operand, out, parameters);
+			}
+		}
+	}
+
+	// Checks if a list of operands expands to nothing.
+	private static boolean isEmptyList(Object[] operands)
+	{
+		for (Object operand : operands)
+		{
+			if (operand instanceof Collection)
+			{
+				if (!((Collection<?>)operand).isEmpty())
+					return false;
+			}
+			else if (operand instanceof Object[])
+			{
+				if (((Object[])operand).length > 0)
+					return false;
+			}
+			else
+				return false;
+		}
+		return true;
+	}
+
+	// Appends an operand.
+	private void appendOperand(Object operand, ArrayList<String> out, ArrayList<Object> parameters)
+	{
+		if (operand instanceof ColumnDescriptor)
+		{
+			ColumnDescriptor column = (ColumnDescriptor)operand;
+			appendName(column.getTable(), column.getName(), out);
+		}
+		else if (operand instanceof SelectQuery)
+		{
+			out.add("(");
+			appendQuery((SelectQuery)operand, null, null, 0, out, parameters);
+			out.add(")");
+		}
+		else if (operand instanceof Collection || operand instanceof Object[])
+		{
+			throw new IllegalArgumentException("Lists are only allowed as IN_LIST or NOT_IN_LIST operands.");
+		}
+		else
+		{
+			out.add("?");
+			parameters.add(operand);
+		}
+	}
+
+	// Appends a possibly-qualified name.
+	private static void appendName(String table, String name, ArrayList<String> out)
+	{
+		if (table != null)
+		{
+			out.add(table);
+			out.add(".");
+		}
+		out.add(name);
+	}
+
+}
@@ -0,0 +1,592 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.blackrook.commons.Reflect;
+import com.blackrook.commons.list.List;
+import com.blackrook.db.DBReflect;
+import com.blackrook.nosql.redis.data.RedisObject;
+import com.blackrook.nosql.redis.exception.RedisException;
+
+/**
+ * A cache-aside helper: reads a value from Redis, or loads it with a {@link RedisCacheLoader} and stores it.
+ * <p>
+ * Values are stored as hashes. Objects are mapped field-by-field the same way as 
+ * {@link RedisConnection#hmsetObject(String, Object)} and {@link RedisConnection#hgetallObject(String, Class)},
+ * and Strings, numbers, booleans, and enums are stored in a single field. Nulls are cached as well.
+ * Each value also stores how long it took to load.
+ * <p>
+ * Rebuilds are guarded against stampedes in three ways:
+ * <ul>
+ * <li><b>Lease lock:</b> when a value is missing, only the caller that wins a short SET NX PX lease loads it.
+ * Other callers poll for the value until the lease runs out.</li>
+ * <li><b>Early refresh:</b> before a value expires, each read may decide to refresh it, with a probability that
+ * rises as expiry gets closer and with how long the value took to load ("XFetch"). Refreshes are spread out over time
+ * instead of all happening at expiry.</li>
+ * <li><b>Stale-while-revalidate:</b> if a stale window is set, values are kept that long past their time-to-live, 
+ * and stale values are returned while one caller refreshes them.</li>
+ * </ul>
+ * Refreshes run on the refresh executor if one is set. If not, the caller that wins the lease refreshes
+ * the value itself and gets the new value, and the others get the current one.
+ * <p>
+ * Settings should be changed before the cache is used.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public class RedisCache
+{
+	/** Default lease time in milliseconds. */
+	public static final long DEFAULT_LEASE_MILLIS = 5000L;
+	/** Default early refresh factor. */
+	public static final double DEFAULT_EARLY_REFRESH_BETA = 1.0;
+	
+	/** Field for load time. */
+	private static final String FIELD_DELTA = "_cache_delta";
+	/** Field for simple values. */
+	private static final String FIELD_VALUE = "_cache_value";
+	/** Field for cached nulls. */
+	private static final String FIELD_NULL = "_cache_null";
+	/** Lease key suffix. */
+	private static final String LEASE_SUFFIX = ":lease";
+	/** Time between lease polls. */
+	private static final long LEASE_POLL_MILLIS = 20L;
+
+	/** Replaces a value and releases its lease, if held. */
+	private static final String STORE_SCRIPT = 
+		"redis.call('DEL', KEYS[1]) " +
+		"redis.call('HMSET', KEYS[1], unpack(ARGV, 3)) " +
+		"redis.call('PEXPIRE', KEYS[1], ARGV[1]) " +
+		"if ARGV[2] ~= '' and redis.call('GET', KEYS[2]) == ARGV[2] then redis.call('DEL', KEYS[2]) end " +
+		"return 1";
+	/** Releases a lease, if held. */
+	private static final String RELEASE_SCRIPT = 
+		"if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end " +
+		"return 0";
+	
+	/** Connection pool. */
+	private RedisConnectionPool pool;
+	/** Lease time. */
+	private long leaseMillis;
+	/** Early refresh factor. */
+	private double earlyRefreshBeta;
+	/** Stale window. */
+	private long staleMillis;
+	/** Refresh executor. */
+	private Executor refreshExecutor;
+	
+	/** Store script digest. */
+	private String storeHash;
+	/** Release script digest. */
+	private String releaseHash;
+	
+	/** Fresh hits. */
+	private LongAdder hits;
+	/** Misses. */
+	private LongAdder misses;
+	/** Stale values returned. */
+	private LongAdder staleHits;
+	/** Early refreshes started. */
+	private LongAdder earlyRefreshes;
+	/** Loads made. */
+	private LongAdder loads;
+	/** Polls waiting on another caller's lease. */
+	private LongAdder leaseWaits;
+	/** Last failed refresh. */
+	private volatile Throwable lastRefreshError;
+	
+	/**
+	 * Creates a new cache.
+	 * @param pool the pool to borrow connections from.
+	 */
+	public RedisCache(RedisConnectionPool pool)
+	{
+		this.pool = pool;
+		this.leaseMillis = DEFAULT_LEASE_MILLIS;
+		this.earlyRefreshBeta = DEFAULT_EARLY_REFRESH_BETA;
+		this.staleMillis = 0L;
+		this.refreshExecutor = null;
+		this.storeHash = sha1(STORE_SCRIPT);
+		this.releaseHash = sha1(RELEASE_SCRIPT);
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+		this.staleHits = new LongAdder();
+		this.earlyRefreshes = new LongAdder();
+		this.loads = new LongAdder();
+		this.leaseWaits = new LongAdder();
+		this.lastRefreshError = null;
+	}
+	
+	/**
+	 * Sets how long a rebuild lease lasts. This should be longer than most loads.
+	 * It is also about how long callers wait on a missing value before loading it themselves.
+	 * @param leaseMillis the lease time in milliseconds.
+	 * @throws IllegalArgumentException if leaseMillis is less than 1.
+	 */
+	public void setLeaseMillis(long leaseMillis)
+	{
+		if (leaseMillis < 1)
+			throw new IllegalArgumentException("Lease time must be 1 or greater.");
+		this.leaseMillis = leaseMillis;
+	}
+	
+	/**
+	 * @return the lease time in milliseconds.
+	 */
+	public long getLeaseMillis()
+	{
+		return leaseMillis;
+	}
+	
+	/**
+	 * Sets how eagerly values are refreshed before they expire. 
+	 * 1.0 is the usual amount, larger values refresh earlier, and 0 turns early refresh off.
+	 * @param earlyRefreshBeta the early refresh factor.
+	 * @throws IllegalArgumentException if earlyRefreshBeta is less than 0.
+	 */
+	public void setEarlyRefreshBeta(double earlyRefreshBeta)
+	{
+		if (earlyRefreshBeta < 0.0)
+			throw new IllegalArgumentException("Early refresh factor must be 0 or greater.");
+		this.earlyRefreshBeta = earlyRefreshBeta;
+	}
+	
+	/**
+	 * @return the early refresh factor.
+	 */
+	public double getEarlyRefreshBeta()
+	{
+		return earlyRefreshBeta;
+	}
+	
+	/**
+	 * Sets how long values are kept past their time-to-live, to be returned while they are refreshed.
+	 * @param staleMillis the stale window in milliseconds, or 0 for none.
+	 * @throws IllegalArgumentException if staleMillis is less than 0.
+	 */
+	public void setStaleMillis(long staleMillis)
+	{
+		if (staleMillis < 0)
+			throw new IllegalArgumentException("Stale window must be 0 or greater.");
+		this.staleMillis = staleMillis;
+	}
+	
+	/**
+	 * @return the stale window in milliseconds.
+	 */
+	public long getStaleMillis()
+	{
+		return staleMillis;
+	}
+	
+	/**
+	 * Sets the executor for refreshes of values that are still present (early or stale).
+	 * @param refreshExecutor the executor, or null to refresh on the calling thread.
+	 */
+	public void setRefreshExecutor(Executor refreshExecutor)
+	{
+		this.refreshExecutor = refreshExecutor;
+	}
+	
+	/**
+	 * @return the refresh executor, or null if refreshes are made on the calling thread.
+	 */
+	public Executor getRefreshExecutor()
+	{
+		return refreshExecutor;
+	}
+	
+	/**
+	 * Gets a value, loading and storing it if it is missing or needs a refresh.
+	 * @param key the cache key.
+	 * @param type the value type.
+	 * @param ttlMillis the time-to-live of a loaded value in milliseconds.
+	 * @param loader the loader for the value.
+	 * @return the value, which may be null.
+	 * @throws RedisException if the loader throws a checked exception, or Redis reports an error.
+	 * @throws RuntimeException if the loader throws one.
+	 */
+	public <T> T get(String key, Class<T> type, long ttlMillis, RedisCacheLoader<T> loader)
+	{
+		Entry entry = read(key);
+		if (entry != null)
+		{
+			long freshMillis = entry.pttl < 0 ? Long.MAX_VALUE : entry.pttl - staleMillis;
+			if (freshMillis > 0)
+			{
+				hits.increment();
+				if (shouldRefreshEarly(entry.delta, freshMillis))
+				{
+					earlyRefreshes.increment();
+					Refresh<T> refreshed = refresh(key, type, ttlMillis, loader);
+					if (refreshed != null)
+						return refreshed.value;
+				}
+			}
+			else
+			{
+				staleHits.increment();
+				Refresh<T> refreshed = refresh(key, type, ttlMillis, loader);
+				if (refreshed != null)
+					return refreshed.value;
+			}
+			return entry.toValue(type);
+		}
+		
+		misses.increment();
+		long deadline = System.currentTimeMillis() + leaseMillis;
+		String token = newToken();
+		while (System.currentTimeMillis() < deadline)
+		{
+			if (tryLease(key, token))
+				return loadAndStore(key, ttlMillis, loader, token);
+			
+			leaseWaits.increment();
+			try {
+				Thread.sleep(LEASE_POLL_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RedisException("Interrupted while waiting for a cache value.", e);
+			}
+			
+			entry = read(key);
+			if (entry != null)
+				return entry.toValue(type);
+		}
+		
+		// the lease holder is taking too long.
+		return loadAndStore(key, ttlMillis, loader, null);
+	}
+	
+	/**
+	 * Stores a value.
+	 * @param key the cache key.
+	 * @param value the value, which may be null.
+	 * @param ttlMillis the time-to-live in milliseconds.
+	 * @throws RedisException if Redis reports an error.
+	 */
+	public void put(String key, Object value, long ttlMillis)
+	{
+		store(key, value, ttlMillis, 0L, null);
+	}
+	
+	/**
+	 * Removes a value.
+	 * @param key the cache key.
+	 * @return true if it was removed, false if it was not present.
+	 */
+	public boolean invalidate(String key)
+	{
+		RedisConnection connection = pool.getConnection();
+		try {
+			return connection.del(key) > 0;
+		} finally {
+			pool.releaseConnection(connection);
+		}
+	}
+	
+	/**
+	 * @return the amount of reads that found a fresh value.
+	 */
+	public long getHitCount()
+	{
+		return hits.sum();
+	}
+	
+	/**
+	 * @return the amount of reads that found no value.
+	 */
+	public long getMissCount()
+	{
+		return misses.sum();
+	}
+	
+	/**
+	 * @return the amount of reads that found a stale value.
+	 */
+	public long getStaleHitCount()
+	{
+		return staleHits.sum();
+	}
+	
+	/**
+	 * @return the amount of reads that decided to refresh a fresh value early.
+	 */
+	public long getEarlyRefreshCount()
+	{
+		return earlyRefreshes.sum();
+	}
+	
+	/**
+	 * @return the amount of loads made.
+	 */
+	public long getLoadCount()
+	{
+		return loads.sum();
+	}
+	
+	/**
+	 * @return the amount of polls made while another caller held a lease.
+	 */
+	public long getLeaseWaitCount()
+	{
+		return leaseWaits.sum();
+	}
+	
+	/**
+	 * @return the exception from the last failed refresh of a present value, or null if none failed.
+	 */
+	public Throwable getLastRefreshError()
+	{
+		return lastRefreshError;
+	}
+	
+	// XFetch: refresh if -delta * beta * ln(rand) reaches the time left.
+	private boolean shouldRefreshEarly(long delta, long freshMillis)
+	{
+		if (earlyRefreshBeta <= 0.0 || delta <= 0L)
+			return false;
+		double random = 1.0 - ThreadLocalRandom.current().nextDouble();
+		return -delta * earlyRefreshBeta * Math.log(random) >= freshMillis;
+	}
+	
+	// Refreshes a present value if the lease can be had. Returns the new value if refreshed on this thread.
+	private <T> Refresh<T> refresh(final String key, Class<T> type, final long ttlMillis, final RedisCacheLoader<T> loader)
+	{
+		final String token = newToken();
+		if (!tryLease(key, token))
+			return null;
+		
+		Executor executor = refreshExecutor;
+		if (executor != null)
+		{
+			try {
+				executor.execute(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						try {
+							loadAndStore(key, ttlMillis, loader, token);
+						} catch (RuntimeException e) {
+							lastRefreshError = e;
+						}
+					}
+				});
+				return null;
+			} catch (RejectedExecutionException e) {
+				// refresh here instead.
+			}
+		}
+		
+		try {
+			return new Refresh<T>(loadAndStore(key, ttlMillis, loader, token));
+		} catch (RuntimeException e) {
+			lastRefreshError = e;
+			return null;
+		}
+	}
+	
+	// Loads and stores a value. Releases the lease on failure.
+	private <T> T loadAndStore(String key, long ttlMillis, RedisCacheLoader<T> loader, String token)
+	{
+		T value;
+		long start = System.nanoTime();
+		try {
+			loads.increment();
+			value = loader.load(key);
+		} catch (Exception e) {
+			if (token != null)
+				release(key, token);
+			if (e instanceof RuntimeException)
+				throw (RuntimeException)e;
+			throw new RedisException("Could not load cache value for \"" + key + "\".", e);
+		}
+		long delta = (System.nanoTime() - start) / 1000000L;
+		store(key, value, ttlMillis, delta, token);
+		return value;
+	}
+	
+	private boolean tryLease(String key, String token)
+	{
+		RedisConnection connection = pool.getConnection();
+		try {
+			return connection.setnx(key + LEASE_SUFFIX, token, leaseMillis);
+		} finally {
+			pool.releaseConnection(connection);
+		}
+	}
+	
+	private void release(String key, String token)
+	{
+		RedisConnection connection = pool.getConnection();
+		try {
+			runScript(connection, RELEASE_SCRIPT, releaseHash, new String[]{key + LEASE_SUFFIX}, token);
+		} finally {
+			pool.releaseConnection(connection);
+		}
+	}
+	
+	private void store(String key, Object value, long ttlMillis, long delta, String token)
+	{
+		List<Object> args = new List<Object>(16);
+		args.add(ttlMillis + staleMillis);
+		args.add(token != null ? token : "");
+		args.add(FIELD_DELTA);
+		args.add(delta);
+		if (value == null)
+		{
+			args.add(FIELD_NULL);
+			args.add(1);
+		}
+		else if (isSimpleType(value.getClass()))
+		{
+			args.add(FIELD_VALUE);
+			args.add(value instanceof Enum ? ((Enum<?>)value).name() : String.valueOf(value));
+		}
+		else
+			RedisConnection.addObjectFields(args, value);
+		
+		Object[] argArray = new Object[args.size()];
+		args.toArray(argArray);
+		
+		RedisConnection connection = pool.getConnection();
+		try {
+			runScript(connection, STORE_SCRIPT, storeHash, new String[]{key, key + LEASE_SUFFIX}, argArray);
+		} finally {
+			pool.releaseConnection(connection);
+		}
+	}
+	
+	// Reads a value and its time left, in one round trip.
+	private Entry read(String key)
+	{
+		RedisObject hash;
+		RedisObject pttl;
+		RedisConnection connection = pool.getConnection();
+		try {
+			connection.writer.writeArray("HGETALL", key);
+			connection.writer.writeArray("PTTL", key);
+			// both replies are read before either is checked, so an error leaves nothing unread on the connection.
+			hash = connection.reader.readObject();
+			pttl = connection.reader.readObject();
+		} finally {
+			pool.releaseConnection(connection);
+		}
+		
+		if (hash.isError())
+			throw new RedisException(hash.asString());
+		if (pttl.isError())
+			throw new RedisException(pttl.asString());
+		if (hash.length() <= 0 || pttl.asLong() == -2L)
+			return null;
+		
+		String[] fields = new String[hash.length()];
+		for (int i = 0; i < fields.length; i++)
+			fields[i] = hash.get(i).asString();
+		return new Entry(fields, pttl.asLong());
+	}
+
+	// Runs a script by digest, loading it if the server doesn't have it.
+	private static RedisObject runScript(RedisConnection connection, String script, String hash, String[] keys, Object... args)
+	{
+		RedisObject out = connection.evalsha(hash, keys, args);
+		if (out.isError() && out.asString().startsWith("NOSCRIPT"))
+			out = connection.eval(script, keys, args);
+		if (out.isError())
+			throw new RedisException(out.asString());
+		return out;
+	}
+	
+	private static boolean isSimpleType(Class<?> type)
+	{
+		return type == String.class 
+			|| Number.class.isAssignableFrom(type)
+			|| type == Boolean.class
+			|| type == Character.class
+			|| Enum.class.isAssignableFrom(type);
+	}
+	
+	private static String newToken()
+	{
+		return Long.toHexString(ThreadLocalRandom.current().nextLong()) + "-" + Thread.currentThread().getId();
+	}
+	
+	private static String sha1(String script)
+	{
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest(script.getBytes(StandardCharsets.UTF_8));
+			StringBuilder sb = new StringBuilder(40);
+			for (int i = 0; i < digest.length; i++)
+				sb.append(String.format("%02x", digest[i] & 0x0ff));
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new RedisException("SHA-1 is not available.", e);
+		}
+	}
+	
+	/**
+	 * A read value.
+	 */
+	private static final class Entry
+	{
+		private String[] fields;
+		private long pttl;
+		private long delta;
+		
+		Entry(String[] fields, long pttl)
+		{
+			this.fields = fields;
+			this.pttl = pttl;
+			String d = field(FIELD_DELTA);
+			this.delta = d != null ? Long.parseLong(d) : 0L;
+		}
+		
+		String field(String name)
+		{
+			for (int i = 0; i + 1 < fields.length; i += 2)
+				if (fields[i].equals(name))
+					return fields[i + 1];
+			return null;
+		}
+		
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		<T> T toValue(Class<T> type)
+		{
+			if (field(FIELD_NULL) != null)
+				return null;
+			String value = field(FIELD_VALUE);
+			if (value != null && type.isEnum())
+				return (T)Enum.valueOf((Class<Enum>)type, value);
+			else if (value != null)
+				return DBReflect.createForType(FIELD_VALUE, value, type);
+			return RedisConnection.applyObjectFields(fields, Reflect.create(type));
+		}
+	}
+	
+	/**
+	 * A value refreshed on the calling thread.
+	 */
+	private static final class Refresh<T>
+	{
+		private T value;
+		
+		Refresh(T value)
+		{
+			this.value = value;
+		}
+	}
+	
+}
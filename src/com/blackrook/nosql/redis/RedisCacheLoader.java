@@ -0,0 +1,26 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis;
+
+/**
+ * Loads a value for a {@link RedisCache} when it is missing or needs a refresh.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ * @param <T> the value type.
+ */
+public interface RedisCacheLoader<T>
+{
+	/**
+	 * Loads a value.
+	 * @param key the cache key.
+	 * @return the value, or null if there is none (which is cached, too).
+	 * @throws Exception if the value could not be loaded.
+	 */
+	public T load(String key) throws Exception;
+	
+}
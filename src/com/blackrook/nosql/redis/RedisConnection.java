@@ -25,11 +25,16 @@ import com.blackrook.commons.util.IOUtils;
 import com.blackrook.commons.util.ValueUtils;
 import com.blackrook.db.DBReflect;
 import com.blackrook.db.hints.DBIgnore;
+import com.blackrook.nosql.redis.codec.RedisCodec;
+import com.blackrook.nosql.redis.codec.RedisStringCodec;
 import com.blackrook.nosql.redis.commands.RedisConnectionCommands;
 import com.blackrook.nosql.redis.commands.RedisHyperlogCommands;
 import com.blackrook.nosql.redis.commands.RedisScanCommands;
+import com.blackrook.nosql.redis.commands.RedisStreamCommands;
 import com.blackrook.nosql.redis.data.RedisCursor;
 import com.blackrook.nosql.redis.data.RedisObject;
+import com.blackrook.nosql.redis.data.RedisPendingEntry;
+import com.blackrook.nosql.redis.data.RedisStreamEntry;
 import com.blackrook.nosql.redis.enums.Aggregation;
 import com.blackrook.nosql.redis.enums.BitwiseOperation;
 import com.blackrook.nosql.redis.enums.DataType;
@@ -41,8 +46,11 @@ import com.blackrook.nosql.redis.exception.RedisException;
  * A single connection to a Redis server.
  * @author Matthew Tropiano
  */
-public class RedisConnection extends RedisConnectionAbstract implements RedisConnectionCommands, RedisHyperlogCommands, RedisScanCommands
+public class RedisConnection extends RedisConnectionAbstract implements RedisConnectionCommands, RedisHyperlogCommands, RedisScanCommands, RedisStreamCommands
 {
+	/** Codec for reading hash field names. */
+	private static final RedisStringCodec STRING_CODEC = new RedisStringCodec();
+	
 	/**
 	 * Creates an open connection to localhost, port 6379, the default Redis port.
 	 * @throws IOException if an I/O error occurs when creating the socket.
@@ -435,6 +443,19 @@ public class RedisConnection extends RedisConnectionAbstract implements RedisCon
 		return out != null ? ValueUtils.parseLong(out) : null;
 	}
 
+	/**
+	 * Just like {@link #get(String)}, but the value is decoded using a {@link RedisCodec}.
+	 * @param key the key.
+	 * @param codec the codec to use for decoding the value.
+	 * @return the decoded value, or null if the key does not exist.
+	 * @since 2.6.0
+	 */
+	public <T> T get(String key, RedisCodec<T> codec)
+	{
+		writer.writeArray("GET", key);
+		return decode(codec, ReturnType.BYTES.readFrom(reader));
+	}
+
 	@Override
 	public long getbit(String key, long offset)
 	{
@@ -597,6 +618,20 @@ public class RedisConnection extends RedisConnectionAbstract implements RedisCon
 		return ReturnType.OK.readFrom(reader);
 	}
 
+	/**
+	 * Just like {@link #set(String, String)}, but the value is encoded using a {@link RedisCodec}.
+	 * @param key the key.
+	 * @param value the value to encode and set.
+	 * @param codec the codec to use for encoding the value.
+	 * @return always true.
+	 * @since 2.6.0
+	 */
+	public <T> boolean set(String key, T value, RedisCodec<T> codec)
+	{
+		writer.writeArray("SET", key, codec.encode(value));
+		return ReturnType.OK.readFrom(reader);
+	}
+
 	@Override
 	public long setbit(String key, long offset, long value)
 	{
@@ -611,6 +646,21 @@ public class RedisConnection extends RedisConnectionAbstract implements RedisCon
 		return ReturnType.OK.readFrom(reader);
 	}
 
+	/**
+	 * Just like {@link #setex(String, long, String)}, but the value is encoded using a {@link RedisCodec}.
+	 * @param key the key.
+	 * @param seconds the expiration time in seconds.
+	 * @param value the value to encode and set.
+	 * @param codec the codec to use for encoding the value.
+	 * @return always true.
+	 * @since 2.6.0
+	 */
+	public <T> boolean setex(String key, long seconds, T value, RedisCodec<T> codec)
+	{
+		writer.writeArray("SETEX", key, seconds, codec.encode(value));
+		return ReturnType.OK.readFrom(reader);
+	}
+
 	@Override
 	public boolean setnx(String key, String value)
 	{
@@ -618,6 +668,34 @@ public class RedisConnection extends RedisConnectionAbstract implements RedisCon
 		return ReturnType.BOOLEAN.readFrom(reader);
 	}
 
+	/**
+	 * Just like {@link #setnx(String, String)}, but the value is encoded using a {@link RedisCodec}.
+	 * @param key the key.
+	 * @param value the value to encode and set.
+	 * @param codec the codec to use for encoding the value.
+	 * @return true if the key was set, false if not.
+	 * @since 2.6.0
+	 */
+	public <T> boolean setnx(String key, T value, RedisCodec<T> codec)
+	{
+		writer.writeArray("SETNX", key, codec.encode(value));
+		return ReturnType.BOOLEAN.readFrom(reader);
+	}
+
+	/**
+	 * Just like {@link #setnx(String, String)}, but also sets an expiration time in milliseconds, atomically (SET NX PX).
+	 * @param key the key.
+	 * @param value the value.
+	 * @param milliseconds the expiration time in milliseconds.
+	 * @return true if the key was set, false if not.
+	 * @since 2.6.0
+	 */
+	public boolean setnx(String key, String value, long milliseconds)
+	{
+		writer.writeArray("SET", key, value, "NX", "PX", milliseconds);
+		return ReturnType.STRING.readFrom(reader) != null;
+	}
+
 	@Override
 	public long setrange(String key, long offset, String value)
 	{
@@ -665,6 +743,20 @@ public class RedisConnection extends RedisConnectionAbstract implements RedisCon
 		return out != null ? ValueUtils.parseLong(out) : null;
 	}
 
+	/**
+	 * Just like {@link #hget(String, String)}, but the value is decoded using a {@link RedisCodec}.
+	 * @param key the key.
+	 * @param field the hash field.
+	 * @param codec the codec to use for decoding the value.
+	 * @return the decoded value, or null if the field does not exist.
+	 * @since 2.6.0
+	 */
+	public <T> T hget(String key, String field, RedisCodec<T> codec)
+	{
+		writer.writeArray("HGET", key, field);
+		return decode(codec, ReturnType.BYTES.readFrom(reader));
+	}
+
 	@Override
 	public String[] hgetall(String key)
 	{
@@ -684,6 +776,24 @@ public class RedisConnection extends RedisConnectionAbstract implements RedisCon
 		return out;
 	}
 
+	/**
+	 * Just like {@link #hgetallMap(String)}, except the values are decoded using a {@link RedisCodec}.
+	 * Field names are always read as UTF-8 strings.
+	 * @param key the key.
+	 * @param codec the codec to use for decoding the values.
+	 * @return a map of field to decoded value.
+	 * @since 2.6.0
+	 */
+	public <T> HashMap<String, T> hgetallMap(String key, RedisCodec<T> codec)
+	{
+		writer.writeArray("HGETALL", key);
+		byte[][] keyvals = ReturnType.BYTESARRAY.readFrom(reader);
+		HashMap<String, T> out = new HashMap<String, T>(keyvals.length / 2);
+		for (int i = 0; i < keyvals.length; i += 2)
+			out.put(STRING_CODEC.decode(keyvals[i]), decode(codec, keyvals[i + 1]));
+		return out;
+	}
+
 	/**
 	 * Just like {@link #hgetall(String)}, except the keys and values are set on 
 	 * an existing instance of a Java object via reflection. Fields/Setter Methods annotated with
@@ -706,10 +816,23 @@ public class RedisConnection extends RedisConnectionAbstract implements RedisCon
 	 * @throws ClassCastException if a incoming type cannot be converted to a field value.
 	 */
 	public <T> T hgetallObject(String key, T object)
+	{
+		return applyObjectFields(hgetall(key), object);
+	}
+
+	/**
+	 * Sets an object's public fields and setters from field names and values, alternating.
+	 * Fields/Setter Methods annotated with {@link DBIgnore} and unknown names are skipped.
+	 * @param keyvals the names and values.
+	 * @param object the object to set.
+	 * @return the object.
+	 * @throws ClassCastException if a incoming type cannot be converted to a field value.
+	 * @since 2.6.0
+	 */
+	static <T> T applyObjectFields(String[] keyvals, T object)
 	{
 		TypeProfile<?> profile = TypeProfile.getTypeProfile(object.getClass());
 		
-		String[] keyvals = hgetall(key);
 		for (int i = 0; i < keyvals.length; i += 2)
 		{
 			String k = keyvals[i];
@@ -858,12 +981,28 @@ public class RedisConnection extends RedisConnectionAbstract implements RedisCon
 	 */
 	public boolean hmsetObject(String key, Object object)
 	{
-		Class<?> type = object.getClass();
-		TypeProfile<?> profile = TypeProfile.getTypeProfile(type);
+		TypeProfile<?> profile = TypeProfile.getTypeProfile(object.getClass());
 		
 		List<Object> out = new List<Object>(2 + ((profile.getPublicFields().size() + profile.getSetterMethods().size())*2));
 		out.add("HMSET");
 		out.add(key);
+		addObjectFields(out, object);
+		
+		writer.writeArray(out);
+		return ReturnType.OK.readFrom(reader);
+	}
+
+	/**
+	 * Adds the names and non-null values of an object's public fields and getters to a list, alternating. 
+	 * Fields/Getter Methods annotated with {@link DBIgnore} are skipped.
+	 * @param out the output list.
+	 * @param object the object to read.
+	 * @since 2.6.0
+	 */
+	static void addObjectFields(List<Object> out, Object object)
+	{
+		Class<?> type = object.getClass();
+		TypeProfile<?> profile = TypeProfile.getTypeProfile(type);
 
 		for (ObjectPair<String, Field> pair : profile.getPublicFields())
 		{
@@ -895,8 +1034,6 @@ public class RedisConnection extends RedisConnectionAbstract implements RedisCon
 			
 		}
 		
-		writer.writeArray(out);
-		return ReturnType.OK.readFrom(reader);
 	}
 
 	@Override
@@ -913,6 +1050,21 @@ public class RedisConnection extends RedisConnectionAbstract implements RedisCon
 		return ReturnType.BOOLEAN.readFrom(reader);
 	}
 
+	/**
+	 * Just like {@link #hset(String, String, String)}, but the value is encoded using a {@link RedisCodec}.
+	 * @param key the key.
+	 * @param field the hash field.
+	 * @param value the value to encode and set.
+	 * @param codec the codec to use for encoding the value.
+	 * @return true if the field is new, false if it was updated.
+	 * @since 2.6.0
+	 */
+	public <T> boolean hset(String key, String field, T value, RedisCodec<T> codec)
+	{
+		writer.writeArray("HSET", key, field, codec.encode(value));
+		return ReturnType.BOOLEAN.readFrom(reader);
+	}
+
 	@Override
 	public boolean hsetnx(String key, String field, String value)
 	{
@@ -1081,6 +1233,16 @@ public class RedisConnection extends RedisConnectionAbstract implements RedisCon
 		return out != null ? ValueUtils.parseLong(out) : null;
 	}
 
+	/**
+	 * Like {@link #lindex(String, long)}, except the value is decoded using a {@link RedisCodec}.
+	 * @since 2.6.0
+	 */
+	public <T> T lindex(String key, long index, RedisCodec<T> codec)
+	{
+		writer.writeArray("LINDEX", key, index);
+		return decode(codec, ReturnType.BYTES.readFrom(reader));
+	}
+
 	@Override
 	public long linsert(String key, boolean before, String pivot, String value)
 	{
@@ -1118,6 +1280,16 @@ public class RedisConnection extends RedisConnectionAbstract implements RedisCon
 		return out != null ? ValueUtils.parseLong(out) : null;
 	}
 
+	/**
+	 * Like {@link #lpop(String)}, except the value is decoded using a {@link RedisCodec}.
+	 * @since 2.6.0
+	 */
+	public <T> T lpop(String key, RedisCodec<T> codec)
+	{
+		writer.writeArray("LPOP", key);
+		return decode(codec, ReturnType.BYTES.readFrom(reader));
+	}
+
 	@Override
 	public long lpush(String key, String value, String... values)
 	{
@@ -1128,6 +1300,17 @@ public class RedisConnection extends RedisConnectionAbstract implements RedisCon
 		return ReturnType.INTEGER.readFrom(reader);
 	}
 
+	/**
+	 * Like {@link #lpush(String, String, String...)}, except the values are encoded using a {@link RedisCodec}.
+	 * @since 2.6.0
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> long lpush(String key, RedisCodec<T> codec, T value, T... values)
+	{
+		writer.writeArray(encodeCommand(codec, new Object[]{"LPUSH", key}, value, values));
+		return ReturnType.INTEGER.readFrom(reader);
+	}
+
 	@Override
 	public long lpushx(String key, String value)
 	{
@@ -1138,10 +1321,24 @@ public class RedisConnection extends RedisConnectionAbstract implements RedisCon
 	@Override
 	public String[] lrange(String key, long start, long stop)
 	{
-		writer.writeArray("LPUSHX", key, start, stop);
+		writer.writeArray("LRANGE", key, start, stop);
 		return ReturnType.ARRAY.readFrom(reader);
 	}
 
+	/**
+	 * Like {@link #lrange(String, long, long)}, except the values are decoded using a {@link RedisCodec}.
+	 * @since 2.6.0
+	 */
+	public <T> List<T> lrange(String key, long start, long stop, RedisCodec<T> codec)
+	{
+		writer.writeArray("LRANGE", key, start, stop);
+		byte[][] values = ReturnType.BYTESARRAY.readFrom(reader);
+		List<T> out = new List<T>(values.length);
+		for (byte[] v : values)
+			out.add(decode(codec, v));
+		return out;
+	}
+
 	@Override
 	public long lrem(String key, long count, String value)
 	{
@@ -1178,6 +1375,16 @@ public class RedisConnection extends RedisConnectionAbstract implements RedisCon
 		String out = rpop(key);
 		return out != null ? ValueUtils.parseLong(out) : null;
 	}
+
+	/**
+	 * Like {@link #rpop(String)}, except the value is decoded using a {@link RedisCodec}.
+	 * @since 2.6.0
+	 */
+	public <T> T rpop(String key, RedisCodec<T> codec)
+	{
+		writer.writeArray("RPOP", key);
+		return decode(codec, ReturnType.BYTES.readFrom(reader));
+	}
 	
 	@Override
 	public String rpoplpush(String source, String destination)
@@ -1205,6 +1412,17 @@ public class RedisConnection extends RedisConnectionAbstract implements RedisCon
 		return ReturnType.INTEGER.readFrom(reader);
 	}
 
+	/**
+	 * Like {@link #rpush(String, String, String...)}, except the values are encoded using a {@link RedisCodec}.
+	 * @since 2.6.0
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> long rpush(String key, RedisCodec<T> codec, T value, T... values)
+	{
+		writer.writeArray(encodeCommand(codec, new Object[]{"RPUSH", key}, value, values));
+		return ReturnType.INTEGER.readFrom(reader);
+	}
+
 	@Override
 	public long rpushx(String key, String value)
 	{
@@ -1926,6 +2144,199 @@ public class RedisConnection extends RedisConnectionAbstract implements RedisCon
 		return RedisCursor.create(ReturnType.INTEGER.readFrom(reader), ReturnType.ARRAY.readFrom(reader));
 	}
 
+	@Override
+	public String xadd(String key, String id, String... fieldValues)
+	{
+		checkFieldValues(fieldValues);
+		writer.writeArray(ArrayUtils.joinArrays(new String[]{"XADD", key, id}, fieldValues));
+		return ReturnType.STRING.readFrom(reader);
+	}
+
+	@Override
+	public String xadd(String key, long maxLength, boolean approximate, String id, String... fieldValues)
+	{
+		checkFieldValues(fieldValues);
+		String[] prefix = approximate 
+			? new String[]{"XADD", key, "MAXLEN", "~", String.valueOf(maxLength), id} 
+			: new String[]{"XADD", key, "MAXLEN", String.valueOf(maxLength), id};
+		writer.writeArray(ArrayUtils.joinArrays(prefix, fieldValues));
+		return ReturnType.STRING.readFrom(reader);
+	}
+
+	@Override
+	public long xlen(String key)
+	{
+		writer.writeArray("XLEN", key);
+		return ReturnType.INTEGER.readFrom(reader);
+	}
+
+	@Override
+	public long xdel(String key, String id, String... ids)
+	{
+		if (ids.length > 0)
+			writer.writeArray(ArrayUtils.joinArrays(new String[]{"XDEL", key, id}, ids));
+		else
+			writer.writeArray("XDEL", key, id);
+		return ReturnType.INTEGER.readFrom(reader);
+	}
+
+	@Override
+	public long xtrim(String key, long maxLength, boolean approximate)
+	{
+		if (approximate)
+			writer.writeArray("XTRIM", key, "MAXLEN", "~", maxLength);
+		else
+			writer.writeArray("XTRIM", key, "MAXLEN", maxLength);
+		return ReturnType.INTEGER.readFrom(reader);
+	}
+
+	@Override
+	public RedisStreamEntry[] xrange(String key, String start, String end, long count)
+	{
+		if (count > 0)
+			writer.writeArray("XRANGE", key, start, end, "COUNT", count);
+		else
+			writer.writeArray("XRANGE", key, start, end);
+		return RedisStreamEntry.parseAll(readStreamReply());
+	}
+
+	@Override
+	public boolean xgroupCreate(String key, String group, String id, boolean makeStream)
+	{
+		if (makeStream)
+			writer.writeArray("XGROUP", "CREATE", key, group, id, "MKSTREAM");
+		else
+			writer.writeArray("XGROUP", "CREATE", key, group, id);
+		try {
+			return reader.readOK();
+		} catch (RedisException e) {
+			if (e.getMessage() != null && e.getMessage().startsWith("BUSYGROUP"))
+				return false;
+			throw e;
+		}
+	}
+
+	@Override
+	public boolean xgroupDestroy(String key, String group)
+	{
+		writer.writeArray("XGROUP", "DESTROY", key, group);
+		return ReturnType.BOOLEAN.readFrom(reader);
+	}
+
+	@Override
+	public long xgroupDelconsumer(String key, String group, String consumer)
+	{
+		writer.writeArray("XGROUP", "DELCONSUMER", key, group, consumer);
+		return ReturnType.INTEGER.readFrom(reader);
+	}
+
+	@Override
+	public RedisStreamEntry[] xreadgroup(String group, String consumer, long count, long blockMillis, String key, String id)
+	{
+		writer.writeArray(xreadgroupCommand(group, consumer, count, blockMillis, key, id));
+		return RedisStreamEntry.parseRead(readStreamReply(), key);
+	}
+
+	@Override
+	public long xack(String key, String group, String id, String... ids)
+	{
+		if (ids.length > 0)
+			writer.writeArray(ArrayUtils.joinArrays(new String[]{"XACK", key, group, id}, ids));
+		else
+			writer.writeArray("XACK", key, group, id);
+		return ReturnType.INTEGER.readFrom(reader);
+	}
+
+	@Override
+	public RedisPendingEntry[] xpending(String key, String group, String start, String end, long count)
+	{
+		writer.writeArray("XPENDING", key, group, start, end, count);
+		return RedisPendingEntry.parseAll(readStreamReply());
+	}
+
+	@Override
+	public RedisStreamEntry[] xclaim(String key, String group, String consumer, long minIdleMillis, String id, String... ids)
+	{
+		if (ids.length > 0)
+			writer.writeArray(ArrayUtils.joinArrays(new String[]{"XCLAIM", key, group, consumer, String.valueOf(minIdleMillis), id}, ids));
+		else
+			writer.writeArray("XCLAIM", key, group, consumer, minIdleMillis, id);
+		return RedisStreamEntry.parseAll(readStreamReply());
+	}
+
+	/**
+	 * Writes an XACK for a set of ids and an XREADGROUP right after it, 
+	 * then reads both replies, saving a round trip.
+	 * @param key the stream key.
+	 * @param group the consumer group.
+	 * @param consumer the consumer name.
+	 * @param ackIds the ids to acknowledge. If empty, no XACK is sent.
+	 * @param count the maximum amount of entries to read, or 0 or less for no limit.
+	 * @param blockMillis the amount of milliseconds to block for, 0 to block forever, or less than 0 to not block.
+	 * @param id "&gt;" for new entries, or an id to read pending entries after.
+	 * @return the entries read.
+	 * @throws RedisException if either command fails. The read is still completed if the acknowledgement fails.
+	 * @since 2.6.0
+	 */
+	public RedisStreamEntry[] xackAndReadgroup(String key, String group, String consumer, String[] ackIds, long count, long blockMillis, String id)
+	{
+		if (ackIds.length > 0)
+			writer.writeArray(ArrayUtils.joinArrays(new String[]{"XACK", key, group}, ackIds));
+		writer.writeArray(xreadgroupCommand(group, consumer, count, blockMillis, key, id));
+		
+		RedisException ackError = null;
+		if (ackIds.length > 0)
+		{
+			try {
+				ReturnType.INTEGER.readFrom(reader);
+			} catch (RedisException e) {
+				ackError = e;
+			}
+		}
+		RedisStreamEntry[] out = RedisStreamEntry.parseRead(readStreamReply(), key);
+		if (ackError != null)
+			throw ackError;
+		return out;
+	}
+
+	private List<Object> xreadgroupCommand(String group, String consumer, long count, long blockMillis, String key, String id)
+	{
+		List<Object> command = new List<Object>(12);
+		command.add("XREADGROUP");
+		command.add("GROUP");
+		command.add(group);
+		command.add(consumer);
+		if (count > 0)
+		{
+			command.add("COUNT");
+			command.add(count);
+		}
+		if (blockMillis >= 0)
+		{
+			command.add("BLOCK");
+			command.add(blockMillis);
+		}
+		command.add("STREAMS");
+		command.add(key);
+		command.add(id);
+		return command;
+	}
+
+	// Reads an object reply, throwing on error replies.
+	private RedisObject readStreamReply()
+	{
+		RedisObject out = ReturnType.OBJECT.readFrom(reader);
+		if (out.isError())
+			throw new RedisException(out.asString());
+		return out;
+	}
+
+	private static void checkFieldValues(String[] fieldValues)
+	{
+		if (fieldValues.length == 0 || fieldValues.length % 2 != 0)
+			throw new IllegalArgumentException("Stream entries need a non-zero, even amount of fields and values.");
+	}
+
 	/**
 	 * Converts some of Java's primitive doubles to Redis interval values.
 	 * <ul>
@@ -1945,4 +2356,33 @@ public class RedisConnection extends RedisConnectionAbstract implements RedisCon
 			return String.valueOf(d);
 	}
 
+	/**
+	 * Decodes a value using a codec, passing along nulls.
+	 * @param codec the codec to use.
+	 * @param data the data to decode.
+	 */
+	protected static <T> T decode(RedisCodec<T> codec, byte[] data)
+	{
+		return data != null ? codec.decode(data) : null;
+	}
+
+	/**
+	 * Builds a command whose trailing arguments are values encoded using a codec.
+	 * @param codec the codec to use.
+	 * @param command the command name and leading arguments.
+	 * @param value the first value.
+	 * @param values the additional values.
+	 */
+	@SafeVarargs
+	static <T> Object[] encodeCommand(RedisCodec<T> codec, Object[] command, T value, T... values)
+	{
+		Object[] out = new Object[command.length + 1 + values.length];
+		System.arraycopy(command, 0, out, 0, command.length);
+		int i = command.length;
+		out[i++] = codec.encode(value);
+		for (T v : values)
+			out[i++] = codec.encode(v);
+		return out;
+	}
+
 }
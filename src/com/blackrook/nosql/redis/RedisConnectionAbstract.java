@@ -26,11 +26,13 @@ public class RedisConnectionAbstract implements AutoCloseable
 	private RedisInfo info;
 	
 	/** The socket connection. */
-	private Socket socket;
+	private volatile Socket socket;
 	/** The input wrapper. */
 	protected RESPReader reader;
 	/** The output wrapper. */
 	protected RESPWriter writer;
+	/** Set when this connection is closed on purpose, to stop reconnection. */
+	private volatile boolean shutdown;
 	
 	/**
 	 * Creates an open connection to localhost, port 6379, the default Redis port.
@@ -115,6 +117,74 @@ public class RedisConnectionAbstract implements AutoCloseable
 		reader.readOK();
 	}
 	
+	/**
+	 * Drops the current socket and reconnects, retrying according to a policy.
+	 * Between attempts, this waits for a jittered delay, and returns early if this connection is closed.
+	 * After each successful reconnect, {@link #afterReconnect()} is called while still holding this connection's lock.
+	 * @param policy the reconnect policy to use.
+	 * @return null if reconnected, or the exception from the last attempt if this gave up or the connection was closed.
+	 * @since 2.6.0
+	 */
+	protected Throwable reconnect(RedisReconnectPolicy policy)
+	{
+		Throwable cause = new IOException("Connection closed.");
+		int attempt = 0;
+		while (policy.canAttempt(attempt))
+		{
+			long delay = policy.getDelay(attempt++);
+			synchronized (this)
+			{
+				try {
+					if (!shutdown)
+						wait(delay);
+				} catch (InterruptedException e) {
+					return e;
+				}
+				
+				if (shutdown)
+					return cause;
+				
+				disconnect();
+				try {
+					reconnect();
+					afterReconnect();
+					return null;
+				} catch (IOException e) {
+					cause = e;
+				} catch (RuntimeException e) {
+					cause = e;
+				}
+			}
+		}
+		synchronized (this)
+		{
+			disconnect();
+		}
+		return cause;
+	}
+	
+	/**
+	 * Called after {@link #reconnect(RedisReconnectPolicy)} successfully reconnects.
+	 * Subclasses can use this to restore connection state. Does nothing by default.
+	 * @throws IOException if an I/O error occurs.
+	 * @throws RuntimeException if restoring the state fails. The attempt is considered failed.
+	 * @since 2.6.0
+	 */
+	protected void afterReconnect() throws IOException
+	{
+		// Do nothing.
+	}
+	
+	/**
+	 * Checks if this connection was closed on purpose via {@link #close()}.
+	 * @return true if so, false if not.
+	 * @since 2.6.0
+	 */
+	protected boolean isShutdown()
+	{
+		return shutdown;
+	}
+	
 	protected void disconnect()
 	{
 		if (socket == null)
@@ -132,7 +202,8 @@ public class RedisConnectionAbstract implements AutoCloseable
 	 */
 	public boolean isBound()
 	{
-		return socket.isBound();
+		Socket s = socket;
+		return s != null && s.isBound();
 	}
 	
 	/**
@@ -141,7 +212,8 @@ public class RedisConnectionAbstract implements AutoCloseable
 	 */
 	public boolean isConnected()
 	{
-		return socket.isConnected();
+		Socket s = socket;
+		return s != null && s.isConnected();
 	}
 	
 	/**
@@ -150,13 +222,19 @@ public class RedisConnectionAbstract implements AutoCloseable
 	 */
 	public boolean isClosed()
 	{
-		return socket.isClosed();
+		Socket s = socket;
+		return s == null || s.isClosed();
 	}
 	
 	@Override
 	public void close()
 	{
-		disconnect();
+		shutdown = true;
+		synchronized (this)
+		{
+			notifyAll();
+			disconnect();
+		}
 	}
 	
 }
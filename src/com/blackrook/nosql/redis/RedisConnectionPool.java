@@ -16,6 +16,10 @@ import com.blackrook.commons.linkedlist.Queue;
 /**
  * A connection pool for Redis socket connections.
  * Connections are fair - released connections are added to the end of an "available" queue.
+ * <p>
+ * Blocking commands (like BLPOP or BRPOPLPUSH) hold a pooled connection for their whole wait, which takes it
+ * away from other users of the pool. Long-running blocking consumers should use their own connections,
+ * like {@link RedisQueueConsumer} does.
  * @author Matthew Tropiano
  */
 public class RedisConnectionPool
@@ -0,0 +1,588 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.blackrook.nosql.redis.data.RedisObject;
+import com.blackrook.nosql.redis.exception.RedisException;
+
+/**
+ * A local write-combining buffer for counters.
+ * <p>
+ * Increments are summed per counter in memory, in {@link LongAdder} or {@link DoubleAdder} cells, 
+ * so that many threads can bump the same counter without blocking each other. A flush sends one INCRBY, HINCRBY,
+ * or ZINCRBY per changed counter as pipelined batches on a pooled connection, no matter how many increments 
+ * each counter got. Flushes happen on a schedule, when the amount of changed counters passes a threshold, 
+ * and on {@link #close()}. Counters on the server lag behind by up to the time between flushes.
+ * <p>
+ * Cells keep running totals, and each flush sends the difference from what was last sent, so increments made
+ * during a flush are never lost, and a failed flush is retried in full on the next one. Counters that stay 
+ * unchanged for a flush are dropped from memory, under a lock that increments share and flushes take alone,
+ * so an increment never lands in a dropped cell. If a flush fails partway through its replies, 
+ * increments that the server did apply may be sent again.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public class RedisCounterBuffer implements AutoCloseable
+{
+	/** Default amount of changed counters that triggers a flush. */
+	public static final int DEFAULT_FLUSH_THRESHOLD = 10000;
+	/** Commands per pipeline. */
+	private static final int PIPELINE_SIZE = 1000;
+	
+	/** Key type for INCRBY. */
+	private static final int TYPE_INCRBY = 0;
+	/** Key type for HINCRBY. */
+	private static final int TYPE_HINCRBY = 1;
+	/** Key type for ZINCRBY. */
+	private static final int TYPE_ZINCRBY = 2;
+	
+	/** Connection pool to flush with. */
+	private RedisConnectionPool pool;
+	/** Changed counters that trigger a flush. */
+	private int flushThreshold;
+	
+	/** Integer counters. */
+	private ConcurrentHashMap<CounterKey, LongCell> longCells;
+	/** Floating-point counters. */
+	private ConcurrentHashMap<CounterKey, DoubleCell> doubleCells;
+	/** Shared by increments, held alone while dropping unchanged counters. */
+	private ReentrantReadWriteLock retireLock;
+	/** Changed counters since the last flush. */
+	private AtomicInteger dirtyCount;
+	/** Flush in progress by the threshold. */
+	private AtomicInteger thresholdFlushing;
+	/** Scheduled executor for threshold flushes, if any. */
+	private volatile ScheduledExecutorService executor;
+	
+	/** Increments made. */
+	private LongAdder increments;
+	/** Commands sent. */
+	private long commandsSent;
+	/** Flushes made. */
+	private long flushes;
+	/** Commands that the server reported errors for. */
+	private long commandErrors;
+	/** Flushes that failed. */
+	private long flushErrors;
+	/** Last flush failure. */
+	private volatile RuntimeException lastFlushError;
+	
+	/**
+	 * Creates a new buffer with the default flush threshold.
+	 * @param pool the pool to borrow a connection from for each flush.
+	 */
+	public RedisCounterBuffer(RedisConnectionPool pool)
+	{
+		this(pool, DEFAULT_FLUSH_THRESHOLD);
+	}
+	
+	/**
+	 * Creates a new buffer.
+	 * @param pool the pool to borrow a connection from for each flush.
+	 * @param flushThreshold the amount of changed counters that triggers a flush.
+	 * @throws IllegalArgumentException if flushThreshold is less than 1.
+	 */
+	public RedisCounterBuffer(RedisConnectionPool pool, int flushThreshold)
+	{
+		if (flushThreshold < 1)
+			throw new IllegalArgumentException("Flush threshold must be 1 or greater.");
+		this.pool = pool;
+		this.flushThreshold = flushThreshold;
+		this.longCells = new ConcurrentHashMap<CounterKey, LongCell>();
+		this.doubleCells = new ConcurrentHashMap<CounterKey, DoubleCell>();
+		this.retireLock = new ReentrantReadWriteLock();
+		this.dirtyCount = new AtomicInteger(0);
+		this.thresholdFlushing = new AtomicInteger(0);
+		this.executor = null;
+		this.increments = new LongAdder();
+		this.commandsSent = 0L;
+		this.flushes = 0L;
+		this.commandErrors = 0L;
+		this.flushErrors = 0L;
+		this.lastFlushError = null;
+	}
+	
+	/**
+	 * Adds 1 to a key's value, sent as INCRBY.
+	 * @param key the key.
+	 */
+	public void incr(String key)
+	{
+		incrby(key, 1L);
+	}
+	
+	/**
+	 * Adds to a key's value, sent as INCRBY.
+	 * @param key the key.
+	 * @param increment the amount to add.
+	 */
+	public void incrby(String key, long increment)
+	{
+		addLong(new CounterKey(TYPE_INCRBY, key, null), increment);
+	}
+	
+	/**
+	 * Adds to a hash field's value, sent as HINCRBY.
+	 * @param key the hash key.
+	 * @param field the field.
+	 * @param increment the amount to add.
+	 */
+	public void hincrby(String key, String field, long increment)
+	{
+		addLong(new CounterKey(TYPE_HINCRBY, key, field), increment);
+	}
+	
+	/**
+	 * Adds to a sorted set member's score, sent as ZINCRBY.
+	 * @param key the sorted set key.
+	 * @param increment the amount to add.
+	 * @param member the member.
+	 */
+	public void zincrby(String key, double increment, String member)
+	{
+		CounterKey counterKey = new CounterKey(TYPE_ZINCRBY, key, member);
+		DoubleCell cell;
+		Lock lock = retireLock.readLock();
+		lock.lock();
+		try {
+			cell = doubleCells.get(counterKey);
+			if (cell == null)
+			{
+				DoubleCell created = new DoubleCell(counterKey);
+				cell = doubleCells.putIfAbsent(counterKey, created);
+				if (cell == null)
+					cell = created;
+			}
+			cell.adder.add(increment);
+		} finally {
+			lock.unlock();
+		}
+		changed(cell);
+	}
+	
+	/**
+	 * Sends all counter changes to the server.
+	 * @return the amount of commands sent.
+	 * @throws RedisException if the flush fails. The changes are sent again on the next flush.
+	 */
+	public synchronized int flush()
+	{
+		dirtyCount.set(0);
+		List<Cell> toSend = new ArrayList<Cell>();
+		List<Cell> toRetire = new ArrayList<Cell>();
+		
+		collect(longCells.values().iterator(), toSend, toRetire);
+		collect(doubleCells.values().iterator(), toSend, toRetire);
+		
+		int sent = 0;
+		if (!toSend.isEmpty())
+		{
+			RedisConnection connection = pool.getConnection();
+			try {
+				for (int start = 0; start < toSend.size(); start += PIPELINE_SIZE)
+					sent += send(connection, toSend.subList(start, Math.min(start + PIPELINE_SIZE, toSend.size())));
+			} catch (RuntimeException e) {
+				flushErrors++;
+				lastFlushError = e;
+				throw e;
+			} finally {
+				pool.releaseConnection(connection);
+			}
+		}
+		
+		// no increment is in progress while the write lock is held, so an unchanged cell stays unchanged.
+		Lock lock = retireLock.writeLock();
+		lock.lock();
+		try {
+			for (Cell cell : toRetire)
+			{
+				if (cell.hasChanges())
+					continue;
+				if (cell instanceof LongCell)
+					longCells.remove(cell.key, cell);
+				else
+					doubleCells.remove(cell.key, cell);
+			}
+		} finally {
+			lock.unlock();
+		}
+		
+		flushes++;
+		commandsSent += sent;
+		return sent;
+	}
+	
+	/**
+	 * Schedules flushes at a fixed rate, and lets flushes triggered by the threshold run on the same executor.
+	 * A failed flush does not stop the schedule: see {@link #getFlushErrorCount()} and {@link #getLastFlushError()}.
+	 * @param executor the executor to schedule flushes on.
+	 * @param period the time between flushes.
+	 * @param unit the time unit of the period.
+	 * @return the future for the scheduled flushes, for cancelling them.
+	 */
+	public ScheduledFuture<?> schedule(ScheduledExecutorService executor, long period, TimeUnit unit)
+	{
+		this.executor = executor;
+		return executor.scheduleAtFixedRate(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				flushQuietly();
+			}
+		}, period, period, unit);
+	}
+	
+	/**
+	 * Flushes all remaining changes.
+	 * This does not cancel a schedule - cancel the future returned by {@link #schedule(ScheduledExecutorService, long, TimeUnit)} first.
+	 * @throws RedisException if the flush fails.
+	 */
+	@Override
+	public void close()
+	{
+		executor = null;
+		flush();
+	}
+	
+	/**
+	 * @return the amount of counters changed since the last flush.
+	 */
+	public int getDirtyCount()
+	{
+		return dirtyCount.get();
+	}
+	
+	/**
+	 * @return the amount of counters held in memory.
+	 */
+	public int getCounterCount()
+	{
+		return longCells.size() + doubleCells.size();
+	}
+	
+	/**
+	 * @return the amount of increments made.
+	 */
+	public long getIncrementCount()
+	{
+		return increments.sum();
+	}
+	
+	/**
+	 * @return the amount of commands sent to the server.
+	 */
+	public synchronized long getCommandCount()
+	{
+		return commandsSent;
+	}
+	
+	/**
+	 * @return the amount of flushes made.
+	 */
+	public synchronized long getFlushCount()
+	{
+		return flushes;
+	}
+	
+	/**
+	 * @return the amount of commands that the server replied to with an error. Their changes are dropped.
+	 */
+	public synchronized long getCommandErrorCount()
+	{
+		return commandErrors;
+	}
+	
+	/**
+	 * @return the amount of flushes that failed.
+	 */
+	public synchronized long getFlushErrorCount()
+	{
+		return flushErrors;
+	}
+	
+	/**
+	 * @return the exception from the last failed flush, or null if none failed.
+	 */
+	public RuntimeException getLastFlushError()
+	{
+		return lastFlushError;
+	}
+	
+	private void addLong(CounterKey counterKey, long increment)
+	{
+		LongCell cell;
+		Lock lock = retireLock.readLock();
+		lock.lock();
+		try {
+			cell = longCells.get(counterKey);
+			if (cell == null)
+			{
+				LongCell created = new LongCell(counterKey);
+				cell = longCells.putIfAbsent(counterKey, created);
+				if (cell == null)
+					cell = created;
+			}
+			cell.adder.add(increment);
+		} finally {
+			lock.unlock();
+		}
+		changed(cell);
+	}
+	
+	// Marks a cell as changed, and starts a flush if past the threshold.
+	private void changed(Cell cell)
+	{
+		increments.increment();
+		if (cell.dirty)
+			return;
+		cell.dirty = true;
+		if (dirtyCount.incrementAndGet() < flushThreshold || !thresholdFlushing.compareAndSet(0, 1))
+			return;
+		
+		ScheduledExecutorService exec = executor;
+		if (exec == null)
+		{
+			try {
+				flushQuietly();
+			} finally {
+				thresholdFlushing.set(0);
+			}
+		}
+		else
+		{
+			exec.execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try {
+						flushQuietly();
+					} finally {
+						thresholdFlushing.set(0);
+					}
+				}
+			});
+		}
+	}
+	
+	private void flushQuietly()
+	{
+		try {
+			flush();
+		} catch (RuntimeException e) {
+			// recorded by flush().
+		}
+	}
+	
+	// Sorts cells into changed and idle.
+	private static void collect(Iterator<? extends Cell> it, List<Cell> toSend, List<Cell> toRetire)
+	{
+		while (it.hasNext())
+		{
+			Cell cell = it.next();
+			boolean dirty = cell.dirty;
+			cell.dirty = false;
+			if (cell.hasChanges())
+				toSend.add(cell);
+			else if (!dirty)
+				toRetire.add(cell);
+		}
+	}
+	
+	// Sends one pipeline of changes.
+	private int send(RedisConnection connection, List<Cell> cells)
+	{
+		RedisPipeline pipeline = connection.startPipeline();
+		int count = 0;
+		for (int i = 0; i < cells.size(); i++)
+			if (cells.get(i).queue(pipeline))
+				count++;
+		
+		RedisObject[] results = pipeline.finish();
+		int n = 0;
+		for (int i = 0; i < cells.size(); i++)
+		{
+			Cell cell = cells.get(i);
+			if (!cell.pending)
+				continue;
+			if (results[n++].isError())
+				commandErrors++;
+			cell.sent();
+		}
+		return count;
+	}
+	
+	/**
+	 * A counter identity.
+	 */
+	private static final class CounterKey
+	{
+		private int type;
+		private String key;
+		private String field;
+		private int hash;
+		
+		CounterKey(int type, String key, String field)
+		{
+			this.type = type;
+			this.key = key;
+			this.field = field;
+			this.hash = 31 * (31 * type + key.hashCode()) + (field != null ? field.hashCode() : 0);
+		}
+		
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+				return true;
+			if (!(obj instanceof CounterKey))
+				return false;
+			CounterKey other = (CounterKey)obj;
+			return type == other.type 
+				&& key.equals(other.key) 
+				&& (field == null ? other.field == null : field.equals(other.field));
+		}
+	}
+	
+	/**
+	 * A counter cell. The sent total is only touched while flushing.
+	 */
+	private static abstract class Cell
+	{
+		/** Counter identity. */
+		protected CounterKey key;
+		/** Changed since the last flush. */
+		protected volatile boolean dirty;
+		/** Queued in the current pipeline. */
+		protected boolean pending;
+		
+		Cell(CounterKey key)
+		{
+			this.key = key;
+			this.dirty = false;
+			this.pending = false;
+		}
+		
+		// Checks for unsent changes.
+		abstract boolean hasChanges();
+		
+		// Queues the unsent change. Returns true if queued.
+		abstract boolean queue(RedisPipeline pipeline);
+		
+		// Marks the queued change as sent.
+		abstract void sent();
+	}
+	
+	/**
+	 * An integer counter cell.
+	 */
+	private static final class LongCell extends Cell
+	{
+		private LongAdder adder;
+		private long sentTotal;
+		private long queuedTotal;
+		
+		LongCell(CounterKey key)
+		{
+			super(key);
+			this.adder = new LongAdder();
+			this.sentTotal = 0L;
+		}
+		
+		@Override
+		boolean hasChanges()
+		{
+			return adder.sum() != sentTotal;
+		}
+		
+		@Override
+		boolean queue(RedisPipeline pipeline)
+		{
+			queuedTotal = adder.sum();
+			long delta = queuedTotal - sentTotal;
+			pending = delta != 0L;
+			if (!pending)
+				return false;
+			if (key.type == TYPE_HINCRBY)
+				pipeline.hincrby(key.key, key.field, delta);
+			else
+				pipeline.incrby(key.key, delta);
+			return true;
+		}
+		
+		@Override
+		void sent()
+		{
+			sentTotal = queuedTotal;
+			pending = false;
+		}
+	}
+	
+	/**
+	 * A floating-point counter cell.
+	 */
+	private static final class DoubleCell extends Cell
+	{
+		private DoubleAdder adder;
+		private double sentTotal;
+		private double queuedTotal;
+		
+		DoubleCell(CounterKey key)
+		{
+			super(key);
+			this.adder = new DoubleAdder();
+			this.sentTotal = 0.0;
+		}
+		
+		@Override
+		boolean hasChanges()
+		{
+			return adder.sum() != sentTotal;
+		}
+		
+		@Override
+		boolean queue(RedisPipeline pipeline)
+		{
+			queuedTotal = adder.sum();
+			double delta = queuedTotal - sentTotal;
+			pending = delta != 0.0;
+			if (!pending)
+				return false;
+			pipeline.zincrby(key.key, delta, key.field);
+			return true;
+		}
+		
+		@Override
+		void sent()
+		{
+			sentTotal = queuedTotal;
+			pending = false;
+		}
+	}
+	
+}
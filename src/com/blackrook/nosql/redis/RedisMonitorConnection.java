@@ -9,19 +9,32 @@ package com.blackrook.nosql.redis;
 
 import java.io.IOException;
 import java.net.UnknownHostException;
+import java.util.concurrent.ThreadLocalRandom;
 
 import com.blackrook.commons.Counter;
 import com.blackrook.commons.linkedlist.Queue;
 import com.blackrook.commons.util.ThreadUtils;
 import com.blackrook.nosql.redis.event.RedisMonitorEvent;
 import com.blackrook.nosql.redis.event.RedisMonitorListener;
+import com.blackrook.nosql.redis.event.RedisReconnectListener;
 import com.blackrook.nosql.redis.event.RedisSubscriptionListener;
 import com.blackrook.nosql.redis.exception.RedisException;
+import com.blackrook.nosql.redis.exception.RedisParseException;
+import com.blackrook.nosql.redis.io.RESPLine;
 
 /**
  * A connection to Redis that sends MONITOR to the database
  * and constantly fires events on reception of responses.
  * This connection cannot have any commands issued to it.
+ * <p>
+ * If the socket drops, this connection reconnects according to its {@link RedisReconnectPolicy}
+ * (see {@link #setReconnectPolicy(RedisReconnectPolicy)}) and sends MONITOR again.
+ * Listeners that also implement {@link RedisReconnectListener} are told about the drop and the reconnect.
+ * <p>
+ * On a busy server, MONITOR can produce more lines than listeners can handle. Lines are parsed
+ * straight from bytes, and a sample rate (see {@link #setSampleRate(double)}) can be set to only parse
+ * and fire a fraction of them. Argument decoding can be turned off (see {@link #setDecodeArguments(boolean)}) 
+ * when only the command, client, and sizes are needed, like for {@link com.blackrook.nosql.redis.event.RedisMonitorAggregator}.
  * @author Matthew Tropiano
  */
 public class RedisMonitorConnection extends RedisConnectionAbstract
@@ -33,6 +46,12 @@ public class RedisMonitorConnection extends RedisConnectionAbstract
 	private Counter counter;
 	/** Subscription listener thread. */
 	private MonitorThread monitorThread;
+	/** Reconnect policy, if any. */
+	private volatile RedisReconnectPolicy reconnectPolicy;
+	/** Fraction of events to parse and fire. */
+	private volatile double sampleRate;
+	/** If true, decode event arguments. */
+	private volatile boolean decodeArguments;
 	
 	/**
 	 * Creates an open connection to localhost, port 6379, the default Redis port.
@@ -95,6 +114,9 @@ public class RedisMonitorConnection extends RedisConnectionAbstract
 	{
 		this.listeners = new Queue<RedisMonitorListener>();
 		this.counter = new Counter();
+		this.reconnectPolicy = RedisReconnectPolicy.DEFAULT;
+		this.sampleRate = 1.0;
+		this.decodeArguments = true;
 
 		// start monitor
 		writer.writeArray("MONITOR");
@@ -126,6 +148,82 @@ public class RedisMonitorConnection extends RedisConnectionAbstract
 			this.listeners.remove(listener);
 	}
 
+	/**
+	 * Sets the policy to use for reconnecting if the socket drops.
+	 * By default, this is {@link RedisReconnectPolicy#DEFAULT}.
+	 * @param reconnectPolicy the policy to use, or null to not reconnect (the listening thread ends).
+	 * @since 2.6.0
+	 */
+	public void setReconnectPolicy(RedisReconnectPolicy reconnectPolicy)
+	{
+		this.reconnectPolicy = reconnectPolicy;
+	}
+
+	/**
+	 * Gets the policy to use for reconnecting if the socket drops.
+	 * @return the policy, or null if this does not reconnect.
+	 * @since 2.6.0
+	 */
+	public RedisReconnectPolicy getReconnectPolicy()
+	{
+		return reconnectPolicy;
+	}
+
+	/**
+	 * Sets the fraction of events to parse and fire to listeners.
+	 * Events that are not sampled are still read, but not parsed.
+	 * By default, this is 1.0 (all events).
+	 * @param sampleRate the fraction of events, from 0.0 to 1.0.
+	 * @throws IllegalArgumentException if sampleRate is not between 0.0 and 1.0.
+	 * @since 2.6.0
+	 */
+	public void setSampleRate(double sampleRate)
+	{
+		if (!(sampleRate >= 0.0 && sampleRate <= 1.0))
+			throw new IllegalArgumentException("Sample rate must be between 0.0 and 1.0.");
+		this.sampleRate = sampleRate;
+	}
+
+	/**
+	 * Gets the fraction of events to parse and fire to listeners.
+	 * @return the sample rate, from 0.0 to 1.0.
+	 * @since 2.6.0
+	 */
+	public double getSampleRate()
+	{
+		return sampleRate;
+	}
+
+	/**
+	 * Sets whether event arguments are decoded into Strings.
+	 * If false, {@link RedisMonitorEvent#getArguments()} is empty on fired events,
+	 * but argument counts and lengths are still available.
+	 * By default, this is true.
+	 * @param decodeArguments true to decode arguments, false to not.
+	 * @since 2.6.0
+	 */
+	public void setDecodeArguments(boolean decodeArguments)
+	{
+		this.decodeArguments = decodeArguments;
+	}
+
+	/**
+	 * Gets whether event arguments are decoded into Strings.
+	 * @return true if so, false if not.
+	 * @since 2.6.0
+	 */
+	public boolean getDecodeArguments()
+	{
+		return decodeArguments;
+	}
+
+	@Override
+	protected void afterReconnect() throws IOException
+	{
+		writer.writeArray("MONITOR");
+		reader.readOK();
+	}
+	
 	/**
 	 * Fires an event to listeners when this connection receives a monitor event.
 	 */
@@ -135,6 +233,42 @@ public class RedisMonitorConnection extends RedisConnectionAbstract
 			listener.onMonitorEvent(event);
 	}
 
+	/**
+	 * Fires an event to listeners when this connection loses its socket.
+	 * @param cause the exception that signaled the lost connection.
+	 * @since 2.6.0
+	 */
+	protected void fireOnConnectionLost(Throwable cause)
+	{
+		for (RedisMonitorListener listener : listeners)
+			if (listener instanceof RedisReconnectListener)
+				((RedisReconnectListener)listener).onConnectionLost(cause);
+	}
+
+	/**
+	 * Fires an event to listeners when this connection reconnects and resumes monitoring.
+	 * @param gapMillis the time in milliseconds that the connection was down.
+	 * @since 2.6.0
+	 */
+	protected void fireOnReconnect(long gapMillis)
+	{
+		for (RedisMonitorListener listener : listeners)
+			if (listener instanceof RedisReconnectListener)
+				((RedisReconnectListener)listener).onReconnect(gapMillis);
+	}
+
+	/**
+	 * Fires an event to listeners when this connection gives up reconnecting.
+	 * @param cause the exception from the last attempt.
+	 * @since 2.6.0
+	 */
+	protected void fireOnReconnectFailed(Throwable cause)
+	{
+		for (RedisMonitorListener listener : listeners)
+			if (listener instanceof RedisReconnectListener)
+				((RedisReconnectListener)listener).onReconnectFailed(cause);
+	}
+
 	/**
 	 * A thread spawned for monitor connections.
 	 */
@@ -149,11 +283,52 @@ public class RedisMonitorConnection extends RedisConnectionAbstract
 		@Override
 		public void run()
 		{
-			String response = null;
-			while (isConnected() && (response = reader.readString()) != null)
+			while (!isShutdown())
+			{
+				try {
+					read();
+					return;
+				} catch (RedisParseException e) {
+					if (!recover(e))
+						return;
+				}
+			}
+		}
+		
+		/** Reusable line buffer. */
+		private RESPLine line = new RESPLine(1024);
+		
+		// Reads until the connection ends normally or drops.
+		private void read()
+		{
+			while (isConnected())
+			{
+				int length = reader.readLine(line);
+				double rate = sampleRate;
+				if (rate < 1.0 && ThreadLocalRandom.current().nextDouble() >= rate)
+					continue;
+				fireOnMonitorEvent(RedisMonitorEvent.parse(line.getData(), 0, length, decodeArguments));
+			}
+		}
+		
+		// Reconnects after a drop. Returns true if reading should continue.
+		private boolean recover(Throwable cause)
+		{
+			RedisReconnectPolicy policy = reconnectPolicy;
+			if (policy == null || isShutdown())
+				return false;
+			
+			long lostTime = System.currentTimeMillis();
+			fireOnConnectionLost(cause);
+			Throwable failure = reconnect(policy);
+			if (failure == null)
 			{
-				fireOnMonitorEvent(RedisMonitorEvent.parse(response));
+				fireOnReconnect(System.currentTimeMillis() - lostTime);
+				return true;
 			}
+			else if (!isShutdown())
+				fireOnReconnectFailed(failure);
+			return false;
 		}
 		
 	}
@@ -7,15 +7,16 @@
  ******************************************************************************/
 package com.blackrook.nosql.redis;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringWriter;
 
 import com.blackrook.commons.ObjectPair;
 import com.blackrook.commons.list.List;
 import com.blackrook.commons.util.ArrayUtils;
 import com.blackrook.commons.util.IOUtils;
+import com.blackrook.nosql.redis.codec.RedisCodec;
 import com.blackrook.nosql.redis.commands.RedisDeferredCommands;
 import com.blackrook.nosql.redis.data.RedisObject;
 import com.blackrook.nosql.redis.enums.Aggregation;
@@ -35,7 +36,7 @@ public class RedisPipeline implements RedisDeferredCommands
 	/** The connection to use. */
 	private RedisConnection connection;
 	/** Output buffer. */
-	private StringWriter buffer;
+	private ByteArrayOutputStream buffer;
 	/** Writer to output buffer. */
 	private RESPWriter writer;
 	/** Amount of types to return. */
@@ -44,7 +45,7 @@ public class RedisPipeline implements RedisDeferredCommands
 	private RedisPipeline(RedisConnection connection)
 	{
 		this.connection = connection;
-		this.buffer = new StringWriter();
+		this.buffer = new ByteArrayOutputStream();
 		this.writer = new RESPWriter(buffer);
 		this.queued = 0;
 	}
@@ -65,7 +66,7 @@ public class RedisPipeline implements RedisDeferredCommands
 	 */
 	public RedisObject[] finish()
 	{
-		connection.writer.writeRaw(buffer.toString());
+		connection.writer.writeRaw(buffer.toByteArray());
 		RedisObject[] out = new RedisObject[queued];
 		int i = 0;
 		while (queued > 0)
@@ -73,7 +74,7 @@ public class RedisPipeline implements RedisDeferredCommands
 			out[i++] = connection.reader.readObject();
 			queued--;
 		}
-		buffer.getBuffer().delete(0, buffer.getBuffer().length());
+		buffer.reset();
 		return out;
 	}
 	
@@ -474,6 +475,16 @@ public class RedisPipeline implements RedisDeferredCommands
 		queued++;
 	}
 
+	/**
+	 * Like {@link #set(String, String)}, except the value is encoded using a {@link RedisCodec}.
+	 * @since 2.6.0
+	 */
+	public <T> void set(String key, T value, RedisCodec<T> codec)
+	{
+		writer.writeArray("SET", key, codec.encode(value));
+		queued++;
+	}
+
 	@Override
 	public void setbit(String key, long offset, long value)
 	{
@@ -488,6 +499,16 @@ public class RedisPipeline implements RedisDeferredCommands
 		queued++;
 	}
 
+	/**
+	 * Like {@link #setex(String, long, String)}, except the value is encoded using a {@link RedisCodec}.
+	 * @since 2.6.0
+	 */
+	public <T> void setex(String key, long seconds, T value, RedisCodec<T> codec)
+	{
+		writer.writeArray("SETEX", key, seconds, codec.encode(value));
+		queued++;
+	}
+
 	@Override
 	public void setnx(String key, String value)
 	{
@@ -650,6 +671,16 @@ public class RedisPipeline implements RedisDeferredCommands
 		queued++;
 	}
 
+	/**
+	 * Like {@link #hset(String, String, String)}, except the value is encoded using a {@link RedisCodec}.
+	 * @since 2.6.0
+	 */
+	public <T> void hset(String key, String field, T value, RedisCodec<T> codec)
+	{
+		writer.writeArray("HSET", key, field, codec.encode(value));
+		queued++;
+	}
+
 	@Override
 	public void hsetnx(String key, String field, String value)
 	{
@@ -743,6 +774,17 @@ public class RedisPipeline implements RedisDeferredCommands
 		queued++;
 	}
 
+	/**
+	 * Like {@link #lpush(String, String, String...)}, except the values are encoded using a {@link RedisCodec}.
+	 * @since 2.6.0
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> void lpush(String key, RedisCodec<T> codec, T value, T... values)
+	{
+		writer.writeArray(RedisConnection.encodeCommand(codec, new Object[]{"LPUSH", key}, value, values));
+		queued++;
+	}
+
 	@Override
 	public void lpushx(String key, String value)
 	{
@@ -753,7 +795,7 @@ public class RedisPipeline implements RedisDeferredCommands
 	@Override
 	public void lrange(String key, long start, long stop)
 	{
-		writer.writeArray("LPUSHX", key, start, stop);
+		writer.writeArray("LRANGE", key, start, stop);
 		queued++;
 	}
 
@@ -802,6 +844,17 @@ public class RedisPipeline implements RedisDeferredCommands
 		queued++;
 	}
 
+	/**
+	 * Like {@link #rpush(String, String, String...)}, except the values are encoded using a {@link RedisCodec}.
+	 * @since 2.6.0
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> void rpush(String key, RedisCodec<T> codec, T value, T... values)
+	{
+		writer.writeArray(RedisConnection.encodeCommand(codec, new Object[]{"RPUSH", key}, value, values));
+		queued++;
+	}
+
 	@Override
 	public void rpushx(String key, String value)
 	{
@@ -9,15 +9,22 @@ package com.blackrook.nosql.redis;
 
 import java.io.IOException;
 import java.net.UnknownHostException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import com.blackrook.commons.Counter;
-import com.blackrook.commons.linkedlist.Queue;
 import com.blackrook.commons.util.ArrayUtils;
 import com.blackrook.commons.util.ThreadUtils;
 import com.blackrook.commons.util.ValueUtils;
 import com.blackrook.nosql.redis.commands.RedisPubSubCommands;
+import com.blackrook.nosql.redis.event.RedisEventDispatcher;
+import com.blackrook.nosql.redis.event.RedisReconnectListener;
 import com.blackrook.nosql.redis.event.RedisSubscriptionListener;
 import com.blackrook.nosql.redis.exception.RedisException;
+import com.blackrook.nosql.redis.exception.RedisParseException;
 
 /**
  * A special Redis connection that is essentially a subscription to
@@ -29,6 +36,24 @@ import com.blackrook.nosql.redis.exception.RedisException;
  * been attached to this connection. The thread that is spawned by this
  * connection can be set to either be daemon or not (see {@link Thread#setDaemon(boolean)}) so that
  * its life does or does not affect JVM runtime life.
+ * <p>
+ * By default, listeners are called on the thread that reads from the socket, so a slow
+ * listener delays every message after it. A {@link RedisEventDispatcher} can be set via 
+ * {@link #setDispatcher(RedisEventDispatcher)} to move listener calls onto other threads, 
+ * keeping the reading thread free to decode. Events are keyed by channel, so they stay 
+ * in order within a channel.
+ * <p>
+ * Listeners added via {@link #addListener(RedisSubscriptionListener...)} receive every event.
+ * Listeners can instead be added for a single channel or pattern via {@link #addChannelListener(String, RedisSubscriptionListener...)}
+ * and {@link #addPatternListener(String, RedisSubscriptionListener...)}, and only receive the events for it.
+ * Messages are routed to those listeners by lookup, so the cost of each message depends only on
+ * the listeners that actually want it.
+ * <p>
+ * If the socket drops, this connection reconnects according to its {@link RedisReconnectPolicy}
+ * (see {@link #setReconnectPolicy(RedisReconnectPolicy)}) and subscribes again to every channel 
+ * and pattern that it was subscribed to. Listeners that also implement {@link RedisReconnectListener}
+ * are told about the drop and the reconnect, since messages published in between are lost. These calls
+ * are made on the socket-reading thread, even if a dispatcher is set.
  * @author Matthew Tropiano
  */
 public class RedisPubSubConnection extends RedisConnectionAbstract implements RedisPubSubCommands
@@ -39,13 +64,26 @@ public class RedisPubSubConnection extends RedisConnectionAbstract implements Re
 	private static final String[] COMMAND_PSUBSCRIBE = new String[]{"PSUBSCRIBE"};
 	private static final String[] COMMAND_PUNSUBSCRIBE = new String[]{"PUNSUBSCRIBE"};
 	
-	/** List of subscription listeners. */
-	private Queue<RedisSubscriptionListener> listeners;
+	/** List of subscription listeners for all events. */
+	private CopyOnWriteArrayList<RedisSubscriptionListener> listeners;
+	/** Subscription listeners by channel. */
+	private RedisSubscriptionIndex channelListeners;
+	/** Subscription listeners by pattern. */
+	private RedisSubscriptionIndex patternListeners;
 
 	/** Thread counter for ids. */
 	private Counter counter;
 	/** Subscription listener thread. */
 	private SubcriptionThread subcriptionThread;
+	/** Event dispatcher, if any. */
+	private volatile RedisEventDispatcher dispatcher;
+	/** Reconnect policy, if any. */
+	private volatile RedisReconnectPolicy reconnectPolicy;
+	
+	/** Channels to resubscribe to on reconnect. */
+	private Set<String> subscribedChannels;
+	/** Patterns to resubscribe to on reconnect. */
+	private Set<String> subscribedPatterns;
 	
 	/**
 	 * Creates an open connection to localhost, port 6379, the default Redis port.
@@ -106,7 +144,12 @@ public class RedisPubSubConnection extends RedisConnectionAbstract implements Re
 	// Finishes the constructor.
 	private void construct(RedisSubscriptionListener... listeners)
 	{
-		this.listeners = new Queue<RedisSubscriptionListener>();
+		this.listeners = new CopyOnWriteArrayList<RedisSubscriptionListener>();
+		this.channelListeners = new RedisSubscriptionIndex();
+		this.patternListeners = new RedisSubscriptionIndex();
+		this.reconnectPolicy = RedisReconnectPolicy.DEFAULT;
+		this.subscribedChannels = ConcurrentHashMap.newKeySet();
+		this.subscribedPatterns = ConcurrentHashMap.newKeySet();
 		this.counter = new Counter();
 		addListener(listeners);
 		(this.subcriptionThread = new SubcriptionThread()).start();
@@ -121,7 +164,7 @@ public class RedisPubSubConnection extends RedisConnectionAbstract implements Re
 	public void addListener(RedisSubscriptionListener... listeners)
 	{
 		for (RedisSubscriptionListener listener : listeners)
-			this.listeners.enqueue(listener);
+			this.listeners.add(listener);
 	}
 
 	/**
@@ -134,28 +177,233 @@ public class RedisPubSubConnection extends RedisConnectionAbstract implements Re
 			this.listeners.remove(listener);
 	}
 
+	/**
+	 * Adds {@link RedisSubscriptionListener}s to this connection for a single channel.
+	 * These listeners are only alerted of messages from that channel, and of subscribing to or unsubscribing from it.
+	 * This does not subscribe to the channel.
+	 * @param channel the channel name.
+	 * @param listeners the listeners to add.
+	 * @since 2.6.0
+	 */
+	public void addChannelListener(String channel, RedisSubscriptionListener... listeners)
+	{
+		channelListeners.add(channel, listeners);
+	}
+
+	/**
+	 * Removes {@link RedisSubscriptionListener}s from a single channel on this connection.
+	 * This does not unsubscribe from the channel.
+	 * @param channel the channel name.
+	 * @param listeners the listeners to remove.
+	 * @since 2.6.0
+	 */
+	public void removeChannelListener(String channel, RedisSubscriptionListener... listeners)
+	{
+		channelListeners.remove(channel, listeners);
+	}
+
+	/**
+	 * Adds {@link RedisSubscriptionListener}s to this connection for a single channel pattern.
+	 * These listeners are only alerted of messages matched by that pattern, and of subscribing to or unsubscribing from it.
+	 * This does not subscribe to the pattern.
+	 * @param pattern the channel pattern, exactly as it is passed to {@link #psubscribe(String...)}.
+	 * @param listeners the listeners to add.
+	 * @since 2.6.0
+	 */
+	public void addPatternListener(String pattern, RedisSubscriptionListener... listeners)
+	{
+		patternListeners.add(pattern, listeners);
+	}
+
+	/**
+	 * Removes {@link RedisSubscriptionListener}s from a single channel pattern on this connection.
+	 * This does not unsubscribe from the pattern.
+	 * @param pattern the channel pattern.
+	 * @param listeners the listeners to remove.
+	 * @since 2.6.0
+	 */
+	public void removePatternListener(String pattern, RedisSubscriptionListener... listeners)
+	{
+		patternListeners.remove(pattern, listeners);
+	}
+
+	/**
+	 * Adds a listener for a set of channels and subscribes to them.
+	 * @param listener the listener to add to each channel.
+	 * @param channels the channels.
+	 * @see #addChannelListener(String, RedisSubscriptionListener...)
+	 * @see #subscribe(String...)
+	 * @since 2.6.0
+	 */
+	public void subscribe(RedisSubscriptionListener listener, String... channels)
+	{
+		for (String channel : channels)
+			channelListeners.add(channel, listener);
+		subscribe(channels);
+	}
+
+	/**
+	 * Adds a listener for a set of channel patterns and subscribes to them.
+	 * @param listener the listener to add to each pattern.
+	 * @param patterns the channel patterns.
+	 * @see #addPatternListener(String, RedisSubscriptionListener...)
+	 * @see #psubscribe(String...)
+	 * @since 2.6.0
+	 */
+	public void psubscribe(RedisSubscriptionListener listener, String... patterns)
+	{
+		for (String pattern : patterns)
+			patternListeners.add(pattern, listener);
+		psubscribe(patterns);
+	}
+
+	/**
+	 * Sets the dispatcher to use for delivering events to listeners.
+	 * If null, listeners are called on the socket-reading thread.
+	 * The dispatcher is not closed by this connection.
+	 * @param dispatcher the dispatcher to use, or null for none.
+	 * @since 2.6.0
+	 */
+	public void setDispatcher(RedisEventDispatcher dispatcher)
+	{
+		this.dispatcher = dispatcher;
+	}
+
+	/**
+	 * Gets the dispatcher used for delivering events to listeners.
+	 * @return the dispatcher, or null if listeners are called on the socket-reading thread.
+	 * @since 2.6.0
+	 */
+	public RedisEventDispatcher getDispatcher()
+	{
+		return dispatcher;
+	}
+
+	/**
+	 * Sets the policy to use for reconnecting if the socket drops.
+	 * By default, this is {@link RedisReconnectPolicy#DEFAULT}.
+	 * @param reconnectPolicy the policy to use, or null to not reconnect (the listening thread ends).
+	 * @since 2.6.0
+	 */
+	public void setReconnectPolicy(RedisReconnectPolicy reconnectPolicy)
+	{
+		this.reconnectPolicy = reconnectPolicy;
+	}
+
+	/**
+	 * Gets the policy to use for reconnecting if the socket drops.
+	 * @return the policy, or null if this does not reconnect.
+	 * @since 2.6.0
+	 */
+	public RedisReconnectPolicy getReconnectPolicy()
+	{
+		return reconnectPolicy;
+	}
+
+	/*
+	 * Subscription commands are remembered so that they can be sent again on reconnect.
+	 * If the connection is down, they are only remembered. 
+	 */
+
 	@Override
-	public void subscribe(String... channels)
+	public synchronized void subscribe(String... channels)
 	{
-		writer.writeArray(ArrayUtils.joinArrays(COMMAND_SUBSCRIBE, channels));
+		for (String channel : channels)
+			subscribedChannels.add(channel);
+		if (writer != null)
+			writer.writeArray(ArrayUtils.joinArrays(COMMAND_SUBSCRIBE, channels));
 	}
 
 	@Override
-	public void unsubscribe(String... channels)
+	public synchronized void unsubscribe(String... channels)
 	{
-		writer.writeArray(ArrayUtils.joinArrays(COMMAND_UNSUBSCRIBE, channels));
+		if (channels.length == 0)
+			subscribedChannels.clear();
+		for (String channel : channels)
+			subscribedChannels.remove(channel);
+		if (writer != null)
+			writer.writeArray(ArrayUtils.joinArrays(COMMAND_UNSUBSCRIBE, channels));
 	}
 
 	@Override
-	public void psubscribe(String... patterns)
+	public synchronized void psubscribe(String... patterns)
 	{
-		writer.writeArray(ArrayUtils.joinArrays(COMMAND_PSUBSCRIBE, patterns));
+		for (String pattern : patterns)
+			subscribedPatterns.add(pattern);
+		if (writer != null)
+			writer.writeArray(ArrayUtils.joinArrays(COMMAND_PSUBSCRIBE, patterns));
 	}
 
 	@Override
-	public void punsubscribe(String... patterns) 
+	public synchronized void punsubscribe(String... patterns) 
+	{
+		if (patterns.length == 0)
+			subscribedPatterns.clear();
+		for (String pattern : patterns)
+			subscribedPatterns.remove(pattern);
+		if (writer != null)
+			writer.writeArray(ArrayUtils.joinArrays(COMMAND_PUNSUBSCRIBE, patterns));
+	}
+	
+	@Override
+	protected void afterReconnect() throws IOException
+	{
+		String[] channels = subscribedChannels.toArray(new String[0]);
+		String[] patterns = subscribedPatterns.toArray(new String[0]);
+		if (channels.length > 0)
+			writer.writeArray(ArrayUtils.joinArrays(COMMAND_SUBSCRIBE, channels));
+		if (patterns.length > 0)
+			writer.writeArray(ArrayUtils.joinArrays(COMMAND_PSUBSCRIBE, patterns));
+	}
+	
+	/**
+	 * Gets every distinct listener on this connection that is also a {@link RedisReconnectListener}.
+	 */
+	private Set<RedisReconnectListener> getReconnectListeners()
+	{
+		Map<RedisReconnectListener, Boolean> out = new IdentityHashMap<RedisReconnectListener, Boolean>();
+		for (RedisSubscriptionListener listener : listeners)
+			if (listener instanceof RedisReconnectListener)
+				out.put((RedisReconnectListener)listener, Boolean.TRUE);
+		for (RedisSubscriptionIndex index : new RedisSubscriptionIndex[]{channelListeners, patternListeners})
+			for (String key : index.keys())
+				for (RedisSubscriptionListener listener : index.get(key))
+					if (listener instanceof RedisReconnectListener)
+						out.put((RedisReconnectListener)listener, Boolean.TRUE);
+		return out.keySet();
+	}
+	
+	/**
+	 * Fires an event to listeners when this connection loses its socket.
+	 * @param cause the exception that signaled the lost connection.
+	 * @since 2.6.0
+	 */
+	protected void fireOnConnectionLost(Throwable cause)
+	{
+		for (RedisReconnectListener listener : getReconnectListeners())
+			listener.onConnectionLost(cause);
+	}
+
+	/**
+	 * Fires an event to listeners when this connection reconnects and resubscribes.
+	 * @param gapMillis the time in milliseconds that the connection was down.
+	 * @since 2.6.0
+	 */
+	protected void fireOnReconnect(long gapMillis)
+	{
+		for (RedisReconnectListener listener : getReconnectListeners())
+			listener.onReconnect(gapMillis);
+	}
+
+	/**
+	 * Fires an event to listeners when this connection gives up reconnecting.
+	 * @param cause the exception from the last attempt.
+	 * @since 2.6.0
+	 */
+	protected void fireOnReconnectFailed(Throwable cause)
 	{
-		writer.writeArray(ArrayUtils.joinArrays(COMMAND_PUNSUBSCRIBE, patterns));
+		for (RedisReconnectListener listener : getReconnectListeners())
+			listener.onReconnectFailed(cause);
 	}
 	
 	/**
@@ -167,6 +415,8 @@ public class RedisPubSubConnection extends RedisConnectionAbstract implements Re
 	{
 		for (RedisSubscriptionListener listener : listeners)
 			listener.onSubscribe(channelName, channelTotal);
+		for (RedisSubscriptionListener listener : channelListeners.get(channelName))
+			listener.onSubscribe(channelName, channelTotal);
 	}
 
 	/**
@@ -178,6 +428,8 @@ public class RedisPubSubConnection extends RedisConnectionAbstract implements Re
 	{
 		for (RedisSubscriptionListener listener : listeners)
 			listener.onUnsubscribe(channelName, channelTotal);
+		for (RedisSubscriptionListener listener : channelListeners.get(channelName))
+			listener.onUnsubscribe(channelName, channelTotal);
 	}
 
 	/**
@@ -189,6 +441,8 @@ public class RedisPubSubConnection extends RedisConnectionAbstract implements Re
 	{
 		for (RedisSubscriptionListener listener : listeners)
 			listener.onPatternSubscribe(channelPattern, channelTotal);
+		for (RedisSubscriptionListener listener : patternListeners.get(channelPattern))
+			listener.onPatternSubscribe(channelPattern, channelTotal);
 	}
 
 	/**
@@ -200,6 +454,8 @@ public class RedisPubSubConnection extends RedisConnectionAbstract implements Re
 	{
 		for (RedisSubscriptionListener listener : listeners)
 			listener.onPatternUnsubscribe(channelPattern, channelTotal);
+		for (RedisSubscriptionListener listener : patternListeners.get(channelPattern))
+			listener.onPatternUnsubscribe(channelPattern, channelTotal);
 	}
 
 	/**
@@ -211,6 +467,8 @@ public class RedisPubSubConnection extends RedisConnectionAbstract implements Re
 	{
 		for (RedisSubscriptionListener listener : listeners)
 			listener.onMessageReceive(channel, message);
+		for (RedisSubscriptionListener listener : channelListeners.get(channel))
+			listener.onMessageReceive(channel, message);
 	}
 
 	/**
@@ -223,8 +481,30 @@ public class RedisPubSubConnection extends RedisConnectionAbstract implements Re
 	{
 		for (RedisSubscriptionListener listener : listeners)
 			listener.onPatternMessageReceive(channelPattern, channel, message);
+		for (RedisSubscriptionListener listener : patternListeners.get(channelPattern))
+			listener.onPatternMessageReceive(channelPattern, channel, message);
 	}
 
+	/**
+	 * Fires the appropriate event for a response read from the subscription.
+	 * @param response the response.
+	 */
+	private void fireResponse(String[] response)
+	{
+		if (response[0].equals("subscribe"))
+			fireOnSubscribe(response[1], ValueUtils.parseLong(response[2]));
+		else if (response[0].equals("unsubscribe"))
+			fireOnUnsubscribe(response[1], ValueUtils.parseLong(response[2]));
+		else if (response[0].equals("psubscribe"))
+			fireOnPatternSubscribe(response[1], ValueUtils.parseLong(response[2]));
+		else if (response[0].equals("punsubscribe"))
+			fireOnPatternUnsubscribe(response[1], ValueUtils.parseLong(response[2]));
+		else if (response[0].equals("message"))
+			fireOnMessageReceive(response[1], response[2]);
+		else if (response[0].equals("pmessage"))
+			fireOnPatternMessageReceive(response[1], response[2], response[3]);
+	}
+	
 	/**
 	 * A thread spawned for subscriptions.
 	 */
@@ -238,6 +518,21 @@ public class RedisPubSubConnection extends RedisConnectionAbstract implements Re
 		
 		@Override
 		public void run()
+		{
+			while (!isShutdown())
+			{
+				try {
+					read();
+					return;
+				} catch (RedisParseException e) {
+					if (!recover(e))
+						return;
+				}
+			}
+		}
+		
+		// Reads until the connection ends normally or drops.
+		private void read()
 		{
 			String[] response = null;
 			while (isConnected() && (response = reader.readArray()) != null)
@@ -245,19 +540,44 @@ public class RedisPubSubConnection extends RedisConnectionAbstract implements Re
 				if (response.length == 0)
 					return;
 				
-				if (response[0].equals("subscribe"))
-					fireOnSubscribe(response[1], ValueUtils.parseLong(response[2]));
-				else if (response[0].equals("unsubscribe"))
-					fireOnUnsubscribe(response[1], ValueUtils.parseLong(response[2]));
-				else if (response[0].equals("psubscribe"))
-					fireOnPatternSubscribe(response[1], ValueUtils.parseLong(response[2]));
-				else if (response[0].equals("punsubscribe"))
-					fireOnPatternUnsubscribe(response[1], ValueUtils.parseLong(response[2]));
-				else if (response[0].equals("message"))
-					fireOnMessageReceive(response[1], response[2]);
-				else if (response[0].equals("pmessage"))
-					fireOnPatternMessageReceive(response[1], response[2], response[3]);
+				RedisEventDispatcher d = dispatcher;
+				if (d == null)
+					fireResponse(response);
+				else
+				{
+					final String[] event = response;
+					// pattern messages are ordered by their source channel, not the pattern.
+					String key = response[0].equals("pmessage") ? response[2] : response[1];
+					d.dispatch(key, new Runnable()
+					{
+						@Override
+						public void run()
+						{
+							fireResponse(event);
+						}
+					});
+				}
+			}
+		}
+		
+		// Reconnects after a drop. Returns true if reading should continue.
+		private boolean recover(Throwable cause)
+		{
+			RedisReconnectPolicy policy = reconnectPolicy;
+			if (policy == null || isShutdown())
+				return false;
+			
+			long lostTime = System.currentTimeMillis();
+			fireOnConnectionLost(cause);
+			Throwable failure = reconnect(policy);
+			if (failure == null)
+			{
+				fireOnReconnect(System.currentTimeMillis() - lostTime);
+				return true;
 			}
+			else if (!isShutdown())
+				fireOnReconnectFailed(failure);
+			return false;
 		}
 		
 	}
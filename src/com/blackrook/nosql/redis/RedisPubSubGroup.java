@@ -0,0 +1,306 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis;
+
+import java.io.IOException;
+import java.net.UnknownHostException;
+
+import com.blackrook.commons.linkedlist.Queue;
+import com.blackrook.nosql.redis.commands.RedisPubSubCommands;
+import com.blackrook.nosql.redis.event.RedisEventDispatcher;
+import com.blackrook.nosql.redis.event.RedisSubscriptionListener;
+import com.blackrook.nosql.redis.exception.RedisException;
+
+/**
+ * A group of {@link RedisPubSubConnection}s that acts like one subscriber.
+ * <p>
+ * Each channel and pattern is assigned to one connection in the group by its hash, so every connection 
+ * has its own socket and reading thread, and messages are decoded in parallel across them. Events
+ * from all connections are delivered to the listeners added to the group.
+ * <p>
+ * Since each channel lives on exactly one connection, messages from one channel stay in order.
+ * Messages from different channels have no order between them. Note that the channel totals
+ * reported in subscribe/unsubscribe events are per connection, not for the whole group.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public class RedisPubSubGroup implements RedisPubSubCommands, AutoCloseable
+{
+	/** The connections in this group. */
+	private RedisPubSubConnection[] connections;
+	
+	/**
+	 * Creates a group of open connections.
+	 * @param connections the number of connections to open.
+	 * @param host the server hostname or address.
+	 * @param port the server connection port.
+	 * @param listeners the listeners to add to every connection.
+	 * @throws IOException if an I/O error occurs when creating a socket.
+	 * @throws UnknownHostException if the IP address of the host could not be determined.
+	 * @throws IllegalArgumentException if connections is less than 1.
+	 */
+	public RedisPubSubGroup(int connections, String host, int port, RedisSubscriptionListener... listeners) throws IOException
+	{
+		this(connections, new RedisInfo(host, port), listeners);
+	}
+
+	/**
+	 * Creates a group of open connections.
+	 * @param connections the number of connections to open.
+	 * @param host the server hostname or address.
+	 * @param port the server connection port.
+	 * @param password the server database password.
+	 * @param listeners the listeners to add to every connection.
+	 * @throws IOException if an I/O error occurs when creating a socket.
+	 * @throws UnknownHostException if the IP address of the host could not be determined.
+	 * @throws RedisException if the password in the server information is incorrect. 
+	 * @throws IllegalArgumentException if connections is less than 1.
+	 */
+	public RedisPubSubGroup(int connections, String host, int port, String password, RedisSubscriptionListener... listeners) throws IOException
+	{
+		this(connections, new RedisInfo(host, port, password), listeners);
+	}
+
+	/**
+	 * Creates a group of open connections.
+	 * If any connection cannot be opened, the ones already opened are closed.
+	 * @param connections the number of connections to open.
+	 * @param info the {@link RedisInfo} class detailing a connection.
+	 * @param listeners the listeners to add to every connection.
+	 * @throws IOException if an I/O error occurs when creating a socket.
+	 * @throws UnknownHostException if the IP address of the host could not be determined.
+	 * @throws RedisException if the password in the server information is incorrect. 
+	 * @throws IllegalArgumentException if connections is less than 1.
+	 */
+	public RedisPubSubGroup(int connections, RedisInfo info, RedisSubscriptionListener... listeners) throws IOException
+	{
+		if (connections < 1)
+			throw new IllegalArgumentException("Group must have at least one connection.");
+		
+		this.connections = new RedisPubSubConnection[connections];
+		try {
+			for (int i = 0; i < connections; i++)
+				this.connections[i] = new RedisPubSubConnection(info, listeners);
+		} catch (IOException e) {
+			close();
+			throw e;
+		} catch (RuntimeException e) {
+			close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * @return the amount of connections in this group.
+	 */
+	public int getConnectionCount()
+	{
+		return connections.length;
+	}
+	
+	/**
+	 * Gets the connection that a channel or pattern is assigned to.
+	 * @param name the channel name or pattern.
+	 * @return the connection.
+	 */
+	public RedisPubSubConnection getConnection(String name)
+	{
+		return connections[shardOf(name)];
+	}
+	
+	/**
+	 * Adds {@link RedisSubscriptionListener}s to every connection in this group.
+	 * These listeners are alerted of all events.
+	 * @param listeners the listeners to add.
+	 */
+	public void addListener(RedisSubscriptionListener... listeners)
+	{
+		for (RedisPubSubConnection connection : connections)
+			connection.addListener(listeners);
+	}
+
+	/**
+	 * Removes {@link RedisSubscriptionListener}s from every connection in this group.
+	 * @param listeners to remove.
+	 */
+	public void removeListeners(RedisSubscriptionListener... listeners)
+	{
+		for (RedisPubSubConnection connection : connections)
+			connection.removeListeners(listeners);
+	}
+
+	/**
+	 * Adds {@link RedisSubscriptionListener}s for a single channel.
+	 * @param channel the channel name.
+	 * @param listeners the listeners to add.
+	 * @see RedisPubSubConnection#addChannelListener(String, RedisSubscriptionListener...)
+	 */
+	public void addChannelListener(String channel, RedisSubscriptionListener... listeners)
+	{
+		getConnection(channel).addChannelListener(channel, listeners);
+	}
+
+	/**
+	 * Removes {@link RedisSubscriptionListener}s from a single channel.
+	 * @param channel the channel name.
+	 * @param listeners the listeners to remove.
+	 */
+	public void removeChannelListener(String channel, RedisSubscriptionListener... listeners)
+	{
+		getConnection(channel).removeChannelListener(channel, listeners);
+	}
+
+	/**
+	 * Adds {@link RedisSubscriptionListener}s for a single channel pattern.
+	 * @param pattern the channel pattern.
+	 * @param listeners the listeners to add.
+	 * @see RedisPubSubConnection#addPatternListener(String, RedisSubscriptionListener...)
+	 */
+	public void addPatternListener(String pattern, RedisSubscriptionListener... listeners)
+	{
+		getConnection(pattern).addPatternListener(pattern, listeners);
+	}
+
+	/**
+	 * Removes {@link RedisSubscriptionListener}s from a single channel pattern.
+	 * @param pattern the channel pattern.
+	 * @param listeners the listeners to remove.
+	 */
+	public void removePatternListener(String pattern, RedisSubscriptionListener... listeners)
+	{
+		getConnection(pattern).removePatternListener(pattern, listeners);
+	}
+
+	/**
+	 * Adds a listener for a set of channels and subscribes to them.
+	 * @param listener the listener to add to each channel.
+	 * @param channels the channels.
+	 */
+	public void subscribe(RedisSubscriptionListener listener, String... channels)
+	{
+		for (String channel : channels)
+			addChannelListener(channel, listener);
+		subscribe(channels);
+	}
+
+	/**
+	 * Adds a listener for a set of channel patterns and subscribes to them.
+	 * @param listener the listener to add to each pattern.
+	 * @param patterns the channel patterns.
+	 */
+	public void psubscribe(RedisSubscriptionListener listener, String... patterns)
+	{
+		for (String pattern : patterns)
+			addPatternListener(pattern, listener);
+		psubscribe(patterns);
+	}
+
+	/**
+	 * Sets the dispatcher to use for delivering events to listeners on every connection.
+	 * @param dispatcher the dispatcher to use, or null for none.
+	 * @see RedisPubSubConnection#setDispatcher(RedisEventDispatcher)
+	 */
+	public void setDispatcher(RedisEventDispatcher dispatcher)
+	{
+		for (RedisPubSubConnection connection : connections)
+			connection.setDispatcher(dispatcher);
+	}
+
+	/**
+	 * Sets the reconnect policy on every connection.
+	 * @param reconnectPolicy the policy to use, or null to not reconnect.
+	 * @see RedisPubSubConnection#setReconnectPolicy(RedisReconnectPolicy)
+	 */
+	public void setReconnectPolicy(RedisReconnectPolicy reconnectPolicy)
+	{
+		for (RedisPubSubConnection connection : connections)
+			connection.setReconnectPolicy(reconnectPolicy);
+	}
+
+	@Override
+	public void subscribe(String... channels)
+	{
+		for (int i = 0; i < connections.length; i++)
+		{
+			String[] shard = shard(channels, i);
+			if (shard.length > 0)
+				connections[i].subscribe(shard);
+		}
+	}
+
+	@Override
+	public void unsubscribe(String... channels)
+	{
+		for (int i = 0; i < connections.length; i++)
+		{
+			String[] shard = shard(channels, i);
+			if (channels.length == 0 || shard.length > 0)
+				connections[i].unsubscribe(shard);
+		}
+	}
+
+	@Override
+	public void psubscribe(String... patterns)
+	{
+		for (int i = 0; i < connections.length; i++)
+		{
+			String[] shard = shard(patterns, i);
+			if (shard.length > 0)
+				connections[i].psubscribe(shard);
+		}
+	}
+
+	@Override
+	public void punsubscribe(String... patterns)
+	{
+		for (int i = 0; i < connections.length; i++)
+		{
+			String[] shard = shard(patterns, i);
+			if (patterns.length == 0 || shard.length > 0)
+				connections[i].punsubscribe(shard);
+		}
+	}
+
+	/**
+	 * Closes every connection in this group.
+	 */
+	@Override
+	public void close()
+	{
+		for (RedisPubSubConnection connection : connections)
+			if (connection != null)
+				connection.close();
+	}
+	
+	// Gets the names that belong to a connection.
+	private String[] shard(String[] names, int index)
+	{
+		if (connections.length == 1)
+			return names;
+		
+		Queue<String> out = new Queue<String>();
+		for (String name : names)
+			if (shardOf(name) == index)
+				out.add(name);
+		
+		String[] array = new String[out.size()];
+		out.toArray(array);
+		return array;
+	}
+	
+	// Gets the connection index for a name.
+	private int shardOf(String name)
+	{
+		int h = name.hashCode();
+		h ^= (h >>> 16);
+		h *= 0x85ebca6b;
+		h ^= (h >>> 13);
+		return (h & 0x7fffffff) % connections.length;
+	}
+	
+}
@@ -0,0 +1,523 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.blackrook.nosql.redis.event.RedisQueueHandler;
+import com.blackrook.nosql.redis.exception.RedisException;
+import com.blackrook.nosql.redis.exception.RedisParseException;
+
+/**
+ * A set of workers that take items from a Redis list and handle them.
+ * <p>
+ * Blocking pops hold their connection for the whole wait, so each worker has its own dedicated connection 
+ * and thread, apart from any {@link RedisConnectionPool}: waiting workers never take connections away from request traffic.
+ * <p>
+ * Producers push items with LPUSH. Workers take them with BRPOPLPUSH, which atomically moves each item
+ * onto a processing list. A handled item is removed from the processing list with LREM. A failed item is either 
+ * pushed back onto the queue, or left in the processing list. Items left in the processing list by a crash 
+ * (or by a failure) are moved back onto the queue by {@link #recover()}, which is called on {@link #start()} by default.
+ * Because of that, each consumer should have its own processing list, and delivery is at-least-once.
+ * <p>
+ * Settings must be changed before {@link #start()}.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public class RedisQueueConsumer implements AutoCloseable
+{
+	/** Default block time per pop in seconds. */
+	public static final long DEFAULT_BLOCK_SECONDS = 5L;
+	
+	/** Thread counter for names. */
+	private static final AtomicInteger COUNTER = new AtomicInteger(0);
+	
+	/** Server info. */
+	private RedisInfo info;
+	/** Queue key. */
+	private String queue;
+	/** Processing list key. */
+	private String processing;
+	/** Worker count. */
+	private int workerCount;
+	/** Item handler. */
+	private RedisQueueHandler handler;
+	
+	/** Block time per pop. */
+	private long blockSeconds;
+	/** Push failed items back onto the queue. */
+	private boolean requeueFailed;
+	/** Recover processing items on start. */
+	private boolean recoverOnStart;
+	/** Policy for reconnecting. */
+	private RedisReconnectPolicy reconnectPolicy;
+	
+	/** Workers. */
+	private Worker[] workers;
+	/** Connection for metrics and recovery. */
+	private RedisConnection statsConnection;
+	/** Running flag. */
+	private volatile boolean running;
+	/** Closed flag. */
+	private boolean closed;
+	
+	/** Items handled. */
+	private LongAdder handled;
+	/** Items failed. */
+	private LongAdder failed;
+	/** Last metrics taken. */
+	private Metrics lastMetrics;
+	
+	/**
+	 * Creates a new consumer. It does not connect until {@link #start()} is called.
+	 * @param info the server to connect to. Its timeout, if any, must be longer than the block time.
+	 * @param queue the queue list key.
+	 * @param processing the processing list key. Should be unique to this consumer.
+	 * @param workers the amount of workers.
+	 * @param handler the handler for items.
+	 * @throws IllegalArgumentException if workers is less than 1.
+	 */
+	public RedisQueueConsumer(RedisInfo info, String queue, String processing, int workers, RedisQueueHandler handler)
+	{
+		if (workers < 1)
+			throw new IllegalArgumentException("Worker count must be 1 or greater.");
+		this.info = info;
+		this.queue = queue;
+		this.processing = processing;
+		this.workerCount = workers;
+		this.handler = handler;
+		
+		this.blockSeconds = DEFAULT_BLOCK_SECONDS;
+		this.requeueFailed = true;
+		this.recoverOnStart = true;
+		this.reconnectPolicy = RedisReconnectPolicy.DEFAULT;
+		
+		this.workers = null;
+		this.statsConnection = null;
+		this.running = false;
+		this.closed = false;
+		
+		this.handled = new LongAdder();
+		this.failed = new LongAdder();
+		this.lastMetrics = null;
+	}
+	
+	/**
+	 * Sets how long each pop waits for an item.
+	 * @param blockSeconds the block time in seconds.
+	 * @throws IllegalArgumentException if blockSeconds is less than 1.
+	 * @throws IllegalStateException if the consumer was started.
+	 */
+	public void setBlockSeconds(long blockSeconds)
+	{
+		checkNotStarted();
+		if (blockSeconds < 1)
+			throw new IllegalArgumentException("Block time must be 1 or greater.");
+		this.blockSeconds = blockSeconds;
+	}
+	
+	/**
+	 * @return the block time per pop in seconds.
+	 */
+	public long getBlockSeconds()
+	{
+		return blockSeconds;
+	}
+	
+	/**
+	 * Sets whether failed items are pushed back onto the queue, or left in the processing list.
+	 * @param requeueFailed true to push them back, false to leave them.
+	 * @throws IllegalStateException if the consumer was started.
+	 */
+	public void setRequeueFailed(boolean requeueFailed)
+	{
+		checkNotStarted();
+		this.requeueFailed = requeueFailed;
+	}
+	
+	/**
+	 * @return true if failed items are pushed back onto the queue, false if not.
+	 */
+	public boolean getRequeueFailed()
+	{
+		return requeueFailed;
+	}
+	
+	/**
+	 * Sets whether {@link #start()} calls {@link #recover()} first.
+	 * @param recoverOnStart true to recover, false to not.
+	 * @throws IllegalStateException if the consumer was started.
+	 */
+	public void setRecoverOnStart(boolean recoverOnStart)
+	{
+		checkNotStarted();
+		this.recoverOnStart = recoverOnStart;
+	}
+	
+	/**
+	 * @return true if {@link #start()} recovers the processing list, false if not.
+	 */
+	public boolean getRecoverOnStart()
+	{
+		return recoverOnStart;
+	}
+	
+	/**
+	 * Sets the policy for reconnecting if a worker's connection drops.
+	 * @param reconnectPolicy the policy, or null to stop the worker on a drop.
+	 * @throws IllegalStateException if the consumer was started.
+	 */
+	public void setReconnectPolicy(RedisReconnectPolicy reconnectPolicy)
+	{
+		checkNotStarted();
+		this.reconnectPolicy = reconnectPolicy;
+	}
+	
+	/**
+	 * @return the policy for reconnecting, or null if none.
+	 */
+	public RedisReconnectPolicy getReconnectPolicy()
+	{
+		return reconnectPolicy;
+	}
+	
+	/**
+	 * Connects the workers and starts them.
+	 * @throws IOException if an I/O error occurs when connecting.
+	 * @throws IllegalStateException if the consumer was started, or the connection timeout is not longer than the block time.
+	 */
+	public synchronized void start() throws IOException
+	{
+		checkNotStarted();
+		if (info.getTimeout() > 0 && info.getTimeout() <= blockSeconds * 1000L)
+			throw new IllegalStateException("Connection timeout must be longer than the block time.");
+		
+		this.statsConnection = new RedisConnection(info);
+		Worker[] started = new Worker[workerCount];
+		try {
+			if (recoverOnStart)
+				recover();
+			for (int i = 0; i < started.length; i++)
+				started[i] = new Worker(new RedisConnection(info));
+		} catch (IOException | RuntimeException e) {
+			for (int i = 0; i < started.length; i++)
+				if (started[i] != null)
+					started[i].connection.close();
+			statsConnection.close();
+			throw e;
+		}
+		
+		this.workers = started;
+		this.running = true;
+		for (int i = 0; i < started.length; i++)
+			started[i].start();
+	}
+	
+	/**
+	 * Moves all items in the processing list back onto the queue.
+	 * This should only be called when no workers using the same processing list are running,
+	 * or items that are being handled will be handled again.
+	 * @return the amount of items moved.
+	 * @throws IllegalStateException if the consumer was not started.
+	 */
+	public synchronized long recover()
+	{
+		if (statsConnection == null)
+			throw new IllegalStateException("Consumer was not started.");
+		long out = 0;
+		while (statsConnection.rpoplpush(processing, queue) != null)
+			out++;
+		return out;
+	}
+	
+	/**
+	 * Stops the workers and closes their connections.
+	 * Waiting workers stop right away. Workers that are handling an item finish it first.
+	 */
+	@Override
+	public synchronized void close()
+	{
+		if (statsConnection == null || closed)
+			return;
+		
+		closed = true;
+		running = false;
+		// an item popped as its socket is closed stays in the processing list, and is recovered later.
+		for (int i = 0; i < workers.length; i++)
+			if (workers[i].waiting)
+				workers[i].connection.close();
+		for (int i = 0; i < workers.length; i++)
+		{
+			try {
+				workers[i].join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		for (int i = 0; i < workers.length; i++)
+			workers[i].connection.close();
+		statsConnection.close();
+	}
+	
+	/**
+	 * @return true if this consumer is started and not closed, false if not.
+	 */
+	public boolean isRunning()
+	{
+		return running;
+	}
+	
+	/**
+	 * @return the amount of items handled without an exception.
+	 */
+	public long getHandledCount()
+	{
+		return handled.sum();
+	}
+	
+	/**
+	 * @return the amount of items that failed to be handled.
+	 */
+	public long getFailedCount()
+	{
+		return failed.sum();
+	}
+	
+	/**
+	 * @return the amount of workers that are handling an item right now.
+	 */
+	public int getBusyWorkerCount()
+	{
+		if (workers == null)
+			return 0;
+		int out = 0;
+		for (int i = 0; i < workers.length; i++)
+			if (!workers[i].waiting)
+				out++;
+		return out;
+	}
+	
+	/**
+	 * Takes a metrics snapshot: the queue and processing list lengths from the server, and the 
+	 * item rates since the last snapshot. This uses a separate connection from the workers.
+	 * @return the new snapshot.
+	 * @throws IllegalStateException if the consumer was not started.
+	 * @throws RedisException if the lengths could not be read.
+	 */
+	public synchronized Metrics metrics()
+	{
+		if (statsConnection == null)
+			throw new IllegalStateException("Consumer was not started.");
+		Metrics out = new Metrics(
+			System.currentTimeMillis(),
+			statsConnection.llen(queue),
+			statsConnection.llen(processing),
+			handled.sum(),
+			failed.sum(),
+			getBusyWorkerCount(),
+			lastMetrics
+		);
+		lastMetrics = out;
+		return out;
+	}
+	
+	private void checkNotStarted()
+	{
+		if (statsConnection != null)
+			throw new IllegalStateException("Consumer was already started.");
+	}
+	
+	/**
+	 * A metrics snapshot.
+	 */
+	public static final class Metrics
+	{
+		private long time;
+		private long queueDepth;
+		private long processingDepth;
+		private long handledCount;
+		private long failedCount;
+		private int busyWorkers;
+		private double handledPerSecond;
+		private double failedPerSecond;
+		
+		private Metrics(long time, long queueDepth, long processingDepth, long handledCount, long failedCount, int busyWorkers, Metrics previous)
+		{
+			this.time = time;
+			this.queueDepth = queueDepth;
+			this.processingDepth = processingDepth;
+			this.handledCount = handledCount;
+			this.failedCount = failedCount;
+			this.busyWorkers = busyWorkers;
+			
+			long elapsed = previous != null ? time - previous.time : 0L;
+			if (elapsed > 0)
+			{
+				this.handledPerSecond = (handledCount - previous.handledCount) * 1000.0 / elapsed;
+				this.failedPerSecond = (failedCount - previous.failedCount) * 1000.0 / elapsed;
+			}
+		}
+		
+		/**
+		 * @return the time this was taken in milliseconds since the epoch.
+		 */
+		public long getTime()
+		{
+			return time;
+		}
+
+		/**
+		 * @return the length of the queue.
+		 */
+		public long getQueueDepth()
+		{
+			return queueDepth;
+		}
+
+		/**
+		 * @return the length of the processing list.
+		 */
+		public long getProcessingDepth()
+		{
+			return processingDepth;
+		}
+
+		/**
+		 * @return the total amount of items handled.
+		 */
+		public long getHandledCount()
+		{
+			return handledCount;
+		}
+
+		/**
+		 * @return the total amount of items failed.
+		 */
+		public long getFailedCount()
+		{
+			return failedCount;
+		}
+
+		/**
+		 * @return the amount of workers that were handling an item.
+		 */
+		public int getBusyWorkers()
+		{
+			return busyWorkers;
+		}
+
+		/**
+		 * @return the items handled per second since the previous snapshot, or 0 if this is the first.
+		 */
+		public double getHandledPerSecond()
+		{
+			return handledPerSecond;
+		}
+
+		/**
+		 * @return the items failed per second since the previous snapshot, or 0 if this is the first.
+		 */
+		public double getFailedPerSecond()
+		{
+			return failedPerSecond;
+		}
+		
+		@Override
+		public String toString()
+		{
+			return String.format("queue=%d processing=%d handled=%d (%.1f/s) failed=%d (%.1f/s) busy=%d", 
+				queueDepth, processingDepth, handledCount, handledPerSecond, failedCount, failedPerSecond, busyWorkers);
+		}
+		
+	}
+	
+	/**
+	 * A worker thread with its own connection.
+	 */
+	private class Worker extends Thread
+	{
+		/** Dedicated connection. */
+		private RedisConnection connection;
+		/** True while waiting on a pop. */
+		private volatile boolean waiting;
+		
+		Worker(RedisConnection connection)
+		{
+			setName("RedisQueueConsumer-" + COUNTER.incrementAndGet());
+			setDaemon(true);
+			this.connection = connection;
+			this.waiting = true;
+		}
+		
+		@Override
+		public void run()
+		{
+			while (running)
+			{
+				try {
+					waiting = true;
+					String item = connection.brpoplpush(blockSeconds, queue, processing);
+					waiting = false;
+					if (item != null)
+						handle(item);
+				} catch (RedisParseException e) {
+					waiting = false;
+					if (!running || !recover(e))
+						break;
+				} catch (RuntimeException e) {
+					waiting = false;
+					if (!running)
+						break;
+					handler.onConsumerError(e);
+				}
+			}
+			waiting = false;
+		}
+		
+		private void handle(String item)
+		{
+			try {
+				handler.onItem(queue, item);
+			} catch (Throwable t) {
+				failed.increment();
+				handler.onItemFailed(item, t);
+				if (requeueFailed)
+				{
+					connection.lpush(queue, item);
+					connection.lrem(processing, 1, item);
+				}
+				return;
+			}
+			handled.increment();
+			connection.lrem(processing, 1, item);
+		}
+		
+		// Reconnects after a drop. Returns true if working should continue.
+		private boolean recover(Throwable cause)
+		{
+			handler.onConsumerError(cause);
+			RedisReconnectPolicy policy = reconnectPolicy;
+			if (policy == null)
+				return false;
+			
+			Throwable failure = connection.reconnect(policy);
+			if (failure != null)
+			{
+				if (running)
+					handler.onConsumerError(failure);
+				return false;
+			}
+			return true;
+		}
+		
+	}
+
+}
@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Describes how a long-lived connection (like {@link RedisPubSubConnection} or {@link RedisMonitorConnection})
+ * tries to reconnect after its socket drops.
+ * <p>
+ * Delays grow exponentially from the initial delay up to the maximum delay. Each delay is jittered 
+ * to a random value between half of it and all of it, so that many clients dropped at the same time 
+ * do not all reconnect at the same time.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public class RedisReconnectPolicy
+{
+	/** Default policy: 100 milliseconds to 30 seconds, retrying forever. */
+	public static final RedisReconnectPolicy DEFAULT = new RedisReconnectPolicy(100L, 30000L, 0);
+	
+	/** Initial delay in milliseconds. */
+	private long initialDelay;
+	/** Maximum delay in milliseconds. */
+	private long maxDelay;
+	/** Maximum attempts. 0 or less is unlimited. */
+	private int maxAttempts;
+	
+	/**
+	 * Creates a reconnect policy that retries forever.
+	 * @param initialDelay the delay before the first attempt in milliseconds.
+	 * @param maxDelay the maximum delay between attempts in milliseconds.
+	 * @throws IllegalArgumentException if initialDelay is less than 1 or maxDelay is less than initialDelay.
+	 */
+	public RedisReconnectPolicy(long initialDelay, long maxDelay)
+	{
+		this(initialDelay, maxDelay, 0);
+	}
+	
+	/**
+	 * Creates a reconnect policy.
+	 * @param initialDelay the delay before the first attempt in milliseconds.
+	 * @param maxDelay the maximum delay between attempts in milliseconds.
+	 * @param maxAttempts the maximum amount of attempts before giving up. 0 or less is unlimited.
+	 * @throws IllegalArgumentException if initialDelay is less than 1 or maxDelay is less than initialDelay.
+	 */
+	public RedisReconnectPolicy(long initialDelay, long maxDelay, int maxAttempts)
+	{
+		if (initialDelay < 1)
+			throw new IllegalArgumentException("Initial delay must be 1 or greater.");
+		if (maxDelay < initialDelay)
+			throw new IllegalArgumentException("Maximum delay cannot be less than the initial delay.");
+		this.initialDelay = initialDelay;
+		this.maxDelay = maxDelay;
+		this.maxAttempts = maxAttempts;
+	}
+
+	/**
+	 * Gets the delay before the first attempt in milliseconds.
+	 */
+	public long getInitialDelay()
+	{
+		return initialDelay;
+	}
+
+	/**
+	 * Gets the maximum delay between attempts in milliseconds.
+	 */
+	public long getMaxDelay()
+	{
+		return maxDelay;
+	}
+
+	/**
+	 * Gets the maximum amount of attempts before giving up.
+	 * 0 or less is unlimited.
+	 */
+	public int getMaxAttempts()
+	{
+		return maxAttempts;
+	}
+	
+	/**
+	 * Checks if another attempt is allowed.
+	 * @param attempt the amount of attempts made so far.
+	 * @return true if so, false if not.
+	 */
+	public boolean canAttempt(int attempt)
+	{
+		return maxAttempts <= 0 || attempt < maxAttempts;
+	}
+	
+	/**
+	 * Gets a jittered delay before an attempt.
+	 * @param attempt the amount of attempts made so far.
+	 * @return the delay in milliseconds.
+	 */
+	public long getDelay(int attempt)
+	{
+		long delay = initialDelay;
+		for (int i = 0; i < attempt && delay < maxDelay; i++)
+			delay *= 2;
+		delay = Math.min(delay, maxDelay);
+		long half = delay / 2;
+		return half + ThreadLocalRandom.current().nextLong(delay - half + 1);
+	}
+	
+}
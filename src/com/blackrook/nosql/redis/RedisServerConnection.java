@@ -20,6 +20,8 @@ import com.blackrook.commons.util.ValueUtils;
 import com.blackrook.nosql.redis.commands.RedisConnectionCommands;
 import com.blackrook.nosql.redis.commands.RedisServerCommands;
 import com.blackrook.nosql.redis.data.RedisObject;
+import com.blackrook.nosql.redis.data.RedisServerStats;
+import com.blackrook.nosql.redis.data.RedisSlowlogEntry;
 import com.blackrook.nosql.redis.enums.EncodingType;
 import com.blackrook.nosql.redis.enums.ReturnType;
 import com.blackrook.nosql.redis.exception.RedisException;
@@ -212,6 +214,27 @@ public class RedisServerConnection extends RedisConnectionAbstract implements Re
 		return out;
 	}
 	
+	/**
+	 * Calls INFO for all sections and parses the result into typed statistics.
+	 * @return the parsed statistics.
+	 * @since 2.6.0
+	 */
+	public RedisServerStats stats()
+	{
+		return stats("all");
+	}
+	
+	/**
+	 * Calls INFO and parses the result into typed statistics.
+	 * @param section the section to get, or null for the server's default sections.
+	 * @return the parsed statistics.
+	 * @since 2.6.0
+	 */
+	public RedisServerStats stats(String section)
+	{
+		return RedisServerStats.parse(info(section));
+	}
+	
 	@Override
 	public long lastsave()
 	{
@@ -363,6 +386,18 @@ public class RedisServerConnection extends RedisConnectionAbstract implements Re
 		return slowlog("GET", String.valueOf(recentCount));
 	}
 
+	/**
+	 * Gets recent SLOWLOG entries as typed entries.
+	 * @param recentCount the amount of recent entries to get.
+	 * @return the entries, newest first.
+	 * @see #slowlogGet(long)
+	 * @since 2.6.0
+	 */
+	public RedisSlowlogEntry[] slowlogEntries(long recentCount)
+	{
+		return RedisSlowlogEntry.parseAll(slowlogGet(recentCount));
+	}
+
 	@Override
 	public RedisObject slowlogLen()
 	{
@@ -0,0 +1,310 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.blackrook.commons.util.ArrayUtils;
+import com.blackrook.nosql.redis.enums.ReturnType;
+import com.blackrook.nosql.redis.exception.RedisException;
+
+/**
+ * A request-coalescing layer for read commands on a {@link RedisConnectionPool}.
+ * <p>
+ * When many threads make the same read at the same time (same command, same arguments), only the first one 
+ * borrows a connection and sends it. The others wait for that one command, and get the same result 
+ * (or the same exception). A read that starts after the in-flight one has finished sends a new command, 
+ * so results are never older than a read that was already underway when they were asked for.
+ * <p>
+ * Results are shared between callers, so arrays that are returned must not be modified.
+ * Only use this for reads: writes must not be coalesced.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public class RedisSingleFlight
+{
+	/** Connection pool. */
+	private RedisConnectionPool pool;
+	/** In-flight reads. */
+	private ConcurrentHashMap<FlightKey, Flight<?>> flights;
+	
+	/** Commands sent. */
+	private LongAdder sent;
+	/** Reads that shared another read's command. */
+	private LongAdder shared;
+	
+	/**
+	 * Creates a new coalescing layer.
+	 * @param pool the pool to borrow connections from.
+	 */
+	public RedisSingleFlight(RedisConnectionPool pool)
+	{
+		this.pool = pool;
+		this.flights = new ConcurrentHashMap<FlightKey, Flight<?>>();
+		this.sent = new LongAdder();
+		this.shared = new LongAdder();
+	}
+	
+	/**
+	 * Sends a read command, or waits for an identical one that is in flight.
+	 * @param returnType the reply type. Reads with different reply types are never shared.
+	 * @param command the command name and its arguments.
+	 * @return the reply.
+	 * @throws RedisException if the command fails, or waiting on it is interrupted.
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T execute(ReturnType<T> returnType, Object... command)
+	{
+		FlightKey key = new FlightKey(returnType, command);
+		Flight<T> created = new Flight<T>();
+		Flight<T> flight = (Flight<T>)flights.putIfAbsent(key, created);
+		if (flight != null)
+		{
+			shared.increment();
+			return flight.await();
+		}
+		
+		try {
+			RedisConnection connection = pool.getConnection();
+			try {
+				sent.increment();
+				connection.writer.writeArray(command);
+				created.result = returnType.readFrom(connection.reader);
+			} finally {
+				pool.releaseConnection(connection);
+			}
+		} catch (RuntimeException e) {
+			created.error = e;
+		} finally {
+			// later reads send a new command.
+			flights.remove(key, created);
+			created.latch.countDown();
+		}
+		
+		if (created.error != null)
+			throw created.error;
+		return created.result;
+	}
+	
+	/**
+	 * Coalesced GET.
+	 * @param key the key.
+	 * @return the value, or null if the key does not exist.
+	 * @see RedisConnection#get(String)
+	 */
+	public String get(String key)
+	{
+		return execute(ReturnType.STRING, "GET", key);
+	}
+	
+	/**
+	 * Coalesced MGET.
+	 * @param key the first key.
+	 * @param keys the other keys.
+	 * @return the values, in key order. Must not be modified.
+	 * @see RedisConnection#mget(String, String...)
+	 */
+	public String[] mget(String key, String... keys)
+	{
+		return execute(ReturnType.ARRAY, ArrayUtils.joinArrays(new Object[]{"MGET", key}, keys));
+	}
+	
+	/**
+	 * Coalesced EXISTS.
+	 * @param key the key.
+	 * @return true if the key exists, false if not.
+	 * @see RedisConnection#exists(String)
+	 */
+	public boolean exists(String key)
+	{
+		return execute(ReturnType.BOOLEAN, "EXISTS", key);
+	}
+	
+	/**
+	 * Coalesced HGET.
+	 * @param key the hash key.
+	 * @param field the field.
+	 * @return the value, or null if the field or key does not exist.
+	 * @see RedisConnection#hget(String, String)
+	 */
+	public String hget(String key, String field)
+	{
+		return execute(ReturnType.STRING, "HGET", key, field);
+	}
+	
+	/**
+	 * Coalesced HGETALL.
+	 * @param key the hash key.
+	 * @return the fields and values, alternating. Must not be modified.
+	 * @see RedisConnection#hgetall(String)
+	 */
+	public String[] hgetall(String key)
+	{
+		return execute(ReturnType.ARRAY, "HGETALL", key);
+	}
+	
+	/**
+	 * Coalesced HMGET.
+	 * @param key the hash key.
+	 * @param field the first field.
+	 * @param fields the other fields.
+	 * @return the values, in field order. Must not be modified.
+	 * @see RedisConnection#hmget(String, String, String...)
+	 */
+	public String[] hmget(String key, String field, String... fields)
+	{
+		return execute(ReturnType.ARRAY, ArrayUtils.joinArrays(new Object[]{"HMGET", key, field}, fields));
+	}
+	
+	/**
+	 * Coalesced LRANGE.
+	 * @param key the list key.
+	 * @param start the starting index.
+	 * @param stop the ending index, inclusive.
+	 * @return the elements. Must not be modified.
+	 * @see RedisConnection#lrange(String, long, long)
+	 */
+	public String[] lrange(String key, long start, long stop)
+	{
+		return execute(ReturnType.ARRAY, "LRANGE", key, start, stop);
+	}
+	
+	/**
+	 * Coalesced SMEMBERS.
+	 * @param key the set key.
+	 * @return the members. Must not be modified.
+	 * @see RedisConnection#smembers(String)
+	 */
+	public String[] smembers(String key)
+	{
+		return execute(ReturnType.ARRAY, "SMEMBERS", key);
+	}
+	
+	/**
+	 * Coalesced ZRANGE.
+	 * @param key the sorted set key.
+	 * @param start the starting index.
+	 * @param stop the ending index, inclusive.
+	 * @param withScores if true, scores are returned after each member.
+	 * @return the members (and scores). Must not be modified.
+	 * @see RedisConnection#zrange(String, long, long, boolean)
+	 */
+	public String[] zrange(String key, long start, long stop, boolean withScores)
+	{
+		if (withScores)
+			return execute(ReturnType.ARRAY, "ZRANGE", key, start, stop, "WITHSCORES");
+		else
+			return execute(ReturnType.ARRAY, "ZRANGE", key, start, stop);
+	}
+	
+	/**
+	 * Coalesced ZSCORE.
+	 * @param key the sorted set key.
+	 * @param member the member.
+	 * @return the score, or null if the member or key does not exist.
+	 * @see RedisConnection#zscore(String, String)
+	 */
+	public Double zscore(String key, String member)
+	{
+		return execute(ReturnType.DOUBLE, "ZSCORE", key, member);
+	}
+	
+	/**
+	 * @return the amount of reads that are in flight.
+	 */
+	public int getInFlightCount()
+	{
+		return flights.size();
+	}
+	
+	/**
+	 * @return the amount of commands sent to the server.
+	 */
+	public long getSentCount()
+	{
+		return sent.sum();
+	}
+	
+	/**
+	 * @return the amount of reads that shared an in-flight command instead of sending one.
+	 */
+	public long getSharedCount()
+	{
+		return shared.sum();
+	}
+	
+	/**
+	 * A read identity: reply type plus command.
+	 */
+	private static final class FlightKey
+	{
+		private ReturnType<?> returnType;
+		private String[] command;
+		private int hash;
+		
+		FlightKey(ReturnType<?> returnType, Object[] command)
+		{
+			this.returnType = returnType;
+			this.command = new String[command.length];
+			for (int i = 0; i < command.length; i++)
+				this.command[i] = String.valueOf(command[i]);
+			this.hash = 31 * System.identityHashCode(returnType) + Arrays.hashCode(this.command);
+		}
+		
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+				return true;
+			if (!(obj instanceof FlightKey))
+				return false;
+			FlightKey other = (FlightKey)obj;
+			return returnType == other.returnType && Arrays.equals(command, other.command);
+		}
+	}
+	
+	/**
+	 * An in-flight read. Result fields are published by the latch.
+	 */
+	private static final class Flight<T>
+	{
+		private CountDownLatch latch;
+		private T result;
+		private RuntimeException error;
+		
+		Flight()
+		{
+			this.latch = new CountDownLatch(1);
+			this.result = null;
+			this.error = null;
+		}
+		
+		T await()
+		{
+			try {
+				latch.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RedisException("Interrupted while waiting for a shared read.", e);
+			}
+			if (error != null)
+				throw error;
+			return result;
+		}
+	}
+
+}
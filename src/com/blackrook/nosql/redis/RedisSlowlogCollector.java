@@ -0,0 +1,257 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.blackrook.nosql.redis.data.RedisSlowlogEntry;
+import com.blackrook.nosql.redis.exception.RedisException;
+
+/**
+ * Collects new SLOWLOG entries from a server, and keeps statistics for them per command.
+ * <p>
+ * Each collection remembers the newest entry id it has seen, and only fetches as many entries as it 
+ * needs to reach it: it starts with a small fetch, and asks for more only if every fetched entry was new.
+ * Entries that fell off the end of the server's slowlog between collections are counted as missed.
+ * <p>
+ * The connection should not be used by anything else while this is collecting on a schedule.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public class RedisSlowlogCollector
+{
+	/** Default amount of entries per fetch. */
+	public static final int DEFAULT_FETCH_SIZE = 32;
+	/** Largest fetch. */
+	private static final int MAX_FETCH_SIZE = 65536;
+	
+	/** Connection to collect with. */
+	private RedisServerConnection connection;
+	/** Entries per first fetch. */
+	private int fetchSize;
+	/** Newest seen id. */
+	private long lastId;
+	/** Entries collected. */
+	private long collected;
+	/** Entries missed. */
+	private long missed;
+	/** Stats per command. */
+	private HashMap<String, CommandStats> commands;
+	
+	/**
+	 * Creates a new collector with the default fetch size.
+	 * @param connection the connection to collect with.
+	 */
+	public RedisSlowlogCollector(RedisServerConnection connection)
+	{
+		this(connection, DEFAULT_FETCH_SIZE);
+	}
+	
+	/**
+	 * Creates a new collector.
+	 * @param connection the connection to collect with.
+	 * @param fetchSize the amount of entries to ask for on the first fetch of each collection.
+	 * @throws IllegalArgumentException if fetchSize is less than 1.
+	 */
+	public RedisSlowlogCollector(RedisServerConnection connection, int fetchSize)
+	{
+		if (fetchSize < 1)
+			throw new IllegalArgumentException("Fetch size must be 1 or greater.");
+		this.connection = connection;
+		this.fetchSize = fetchSize;
+		this.lastId = -1L;
+		this.collected = 0L;
+		this.missed = 0L;
+		this.commands = new HashMap<String, CommandStats>();
+	}
+	
+	/**
+	 * Fetches the entries added since the last collection and adds them to the statistics.
+	 * The first collection gets all entries in the slowlog.
+	 * @return the new entries, oldest first.
+	 * @throws RedisException if the server returns an error.
+	 */
+	public synchronized List<RedisSlowlogEntry> collect()
+	{
+		int size = fetchSize;
+		RedisSlowlogEntry[] entries;
+		while (true)
+		{
+			entries = RedisSlowlogEntry.parseAll(connection.slowlogGet(size));
+			// ids going backwards means the server restarted: everything is new.
+			if (entries.length > 0 && entries[0].getId() < lastId)
+				lastId = -1L;
+			// fewer than asked for means this is the whole log.
+			if (entries.length < size || size >= MAX_FETCH_SIZE)
+				break;
+			// oldest fetched entry already seen means this has everything new.
+			if (lastId >= 0 && entries[entries.length - 1].getId() <= lastId)
+				break;
+			size *= 2;
+		}
+
+		List<RedisSlowlogEntry> out = new ArrayList<RedisSlowlogEntry>();
+		for (int i = entries.length - 1; i >= 0; i--)
+		{
+			RedisSlowlogEntry entry = entries[i];
+			if (entry.getId() <= lastId)
+				continue;
+			if (out.isEmpty() && lastId >= 0 && entry.getId() > lastId + 1)
+				missed += entry.getId() - lastId - 1;
+			out.add(entry);
+			add(entry);
+		}
+		
+		if (!out.isEmpty())
+			lastId = out.get(out.size() - 1).getId();
+		collected += out.size();
+		return out;
+	}
+	
+	/**
+	 * Schedules collection at a fixed rate.
+	 * Collection stops if a collection throws an exception.
+	 * @param executor the executor to schedule collections on.
+	 * @param period the time between collections.
+	 * @param unit the time unit of the period.
+	 * @return the future for the scheduled collections, for cancelling them.
+	 */
+	public ScheduledFuture<?> schedule(ScheduledExecutorService executor, long period, TimeUnit unit)
+	{
+		return executor.scheduleAtFixedRate(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				collect();
+			}
+		}, 0L, period, unit);
+	}
+	
+	/**
+	 * @return the amount of entries collected.
+	 */
+	public synchronized long getCollected()
+	{
+		return collected;
+	}
+
+	/**
+	 * @return the amount of entries that were dropped from the server's slowlog before they could be collected.
+	 */
+	public synchronized long getMissed()
+	{
+		return missed;
+	}
+	
+	/**
+	 * Gets statistics per command.
+	 * @return a sorted map of command name (lowercase) to a copy of its statistics.
+	 */
+	public synchronized Map<String, CommandStats> getCommandStats()
+	{
+		Map<String, CommandStats> out = new TreeMap<String, CommandStats>();
+		for (Map.Entry<String, CommandStats> entry : commands.entrySet())
+			out.put(entry.getKey(), entry.getValue().copy());
+		return Collections.unmodifiableMap(out);
+	}
+	
+	/**
+	 * Clears the per-command statistics and counts. The last seen id is kept.
+	 */
+	public synchronized void reset()
+	{
+		commands.clear();
+		collected = 0L;
+		missed = 0L;
+	}
+	
+	private void add(RedisSlowlogEntry entry)
+	{
+		String name = entry.getCommand().toLowerCase(Locale.ENGLISH);
+		CommandStats stats = commands.get(name);
+		if (stats == null)
+			commands.put(name, stats = new CommandStats());
+		stats.count++;
+		stats.totalMicros += entry.getDurationMicros();
+		stats.maxMicros = Math.max(stats.maxMicros, entry.getDurationMicros());
+		stats.lastSeconds = Math.max(stats.lastSeconds, entry.getTimeSeconds());
+	}
+	
+	/**
+	 * Slow command statistics for one command.
+	 */
+	public static class CommandStats
+	{
+		private long count;
+		private long totalMicros;
+		private long maxMicros;
+		private long lastSeconds;
+		
+		private CommandStats copy()
+		{
+			CommandStats out = new CommandStats();
+			out.count = count;
+			out.totalMicros = totalMicros;
+			out.maxMicros = maxMicros;
+			out.lastSeconds = lastSeconds;
+			return out;
+		}
+		
+		/**
+		 * @return the amount of slow calls.
+		 */
+		public long getCount()
+		{
+			return count;
+		}
+		
+		/**
+		 * @return the total time of slow calls in microseconds.
+		 */
+		public long getTotalMicros()
+		{
+			return totalMicros;
+		}
+		
+		/**
+		 * @return the average time of slow calls in microseconds.
+		 */
+		public double getAverageMicros()
+		{
+			return count > 0 ? (double)totalMicros / count : 0.0;
+		}
+		
+		/**
+		 * @return the longest slow call in microseconds.
+		 */
+		public long getMaxMicros()
+		{
+			return maxMicros;
+		}
+		
+		/**
+		 * @return the time of the most recent slow call, in seconds since the Epoch.
+		 */
+		public long getLastSeconds()
+		{
+			return lastSeconds;
+		}
+		
+	}
+	
+}
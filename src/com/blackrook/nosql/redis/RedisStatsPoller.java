@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.blackrook.nosql.redis.data.RedisServerStats;
+import com.blackrook.nosql.redis.data.RedisStatsSample;
+import com.blackrook.nosql.redis.event.RedisStatsListener;
+import com.blackrook.nosql.redis.exception.RedisException;
+
+/**
+ * Polls a server's INFO statistics, computing changes and rates between polls,
+ * and keeps a bounded history of recent samples.
+ * <p>
+ * Polls can be made directly via {@link #poll()}, or on a schedule via {@link #schedule(ScheduledExecutorService, long, TimeUnit)}.
+ * The connection should not be used by anything else while this is polling on a schedule.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public class RedisStatsPoller
+{
+	/** Connection to poll. */
+	private RedisServerConnection connection;
+	/** INFO section to poll. */
+	private String section;
+	/** Ring buffer of samples. */
+	private RedisStatsSample[] history;
+	/** Next history index. */
+	private int next;
+	/** Samples in the history. */
+	private int size;
+	/** Previous snapshot. */
+	private RedisServerStats previous;
+	/** Listeners. */
+	private CopyOnWriteArrayList<RedisStatsListener> listeners;
+	
+	/**
+	 * Creates a poller that polls all sections (including command statistics).
+	 * @param connection the connection to poll with.
+	 * @param historySize the amount of recent samples to keep.
+	 * @throws IllegalArgumentException if historySize is less than 1.
+	 */
+	public RedisStatsPoller(RedisServerConnection connection, int historySize)
+	{
+		this(connection, "all", historySize);
+	}
+	
+	/**
+	 * Creates a poller.
+	 * @param connection the connection to poll with.
+	 * @param section the INFO section to poll, or null for the server's default sections. 
+	 * 		Command statistics need "commandstats" or "all".
+	 * @param historySize the amount of recent samples to keep.
+	 * @throws IllegalArgumentException if historySize is less than 1.
+	 */
+	public RedisStatsPoller(RedisServerConnection connection, String section, int historySize)
+	{
+		if (historySize < 1)
+			throw new IllegalArgumentException("History size must be 1 or greater.");
+		this.connection = connection;
+		this.section = section;
+		this.history = new RedisStatsSample[historySize];
+		this.next = 0;
+		this.size = 0;
+		this.previous = null;
+		this.listeners = new CopyOnWriteArrayList<RedisStatsListener>();
+	}
+	
+	/**
+	 * Adds listeners that are called after each poll.
+	 * @param listeners the listeners to add.
+	 */
+	public void addListener(RedisStatsListener... listeners)
+	{
+		for (RedisStatsListener listener : listeners)
+			this.listeners.add(listener);
+	}
+	
+	/**
+	 * Removes listeners.
+	 * @param listeners the listeners to remove.
+	 */
+	public void removeListeners(RedisStatsListener... listeners)
+	{
+		for (RedisStatsListener listener : listeners)
+			this.listeners.remove(listener);
+	}
+	
+	/**
+	 * Polls the server, adds the sample to the history, and alerts listeners.
+	 * @return the new sample.
+	 * @throws RedisException if the server returns an error.
+	 */
+	public RedisStatsSample poll()
+	{
+		RedisStatsSample sample;
+		synchronized (this)
+		{
+			RedisServerStats stats = connection.stats(section);
+			sample = RedisStatsSample.create(previous, stats);
+			previous = stats;
+			history[next] = sample;
+			next = (next + 1) % history.length;
+			size = Math.min(size + 1, history.length);
+		}
+		for (RedisStatsListener listener : listeners)
+			listener.onSample(sample);
+		return sample;
+	}
+	
+	/**
+	 * Schedules polling at a fixed rate.
+	 * Polling stops if a poll throws an exception.
+	 * @param executor the executor to schedule polls on.
+	 * @param period the time between polls.
+	 * @param unit the time unit of the period.
+	 * @return the future for the scheduled polls, for cancelling them.
+	 */
+	public ScheduledFuture<?> schedule(ScheduledExecutorService executor, long period, TimeUnit unit)
+	{
+		return executor.scheduleAtFixedRate(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				poll();
+			}
+		}, 0L, period, unit);
+	}
+	
+	/**
+	 * @return the most recent sample, or null if none have been taken.
+	 */
+	public synchronized RedisStatsSample getLatest()
+	{
+		return size > 0 ? history[(next - 1 + history.length) % history.length] : null;
+	}
+	
+	/**
+	 * @return the samples in the history, oldest first.
+	 */
+	public synchronized List<RedisStatsSample> getHistory()
+	{
+		List<RedisStatsSample> out = new ArrayList<RedisStatsSample>(size);
+		int start = (next - size + history.length) % history.length;
+		for (int i = 0; i < size; i++)
+			out.add(history[(start + i) % history.length]);
+		return out;
+	}
+	
+}
@@ -0,0 +1,649 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.blackrook.nosql.redis.data.RedisPendingEntry;
+import com.blackrook.nosql.redis.data.RedisStreamEntry;
+import com.blackrook.nosql.redis.event.RedisStreamHandler;
+import com.blackrook.nosql.redis.exception.RedisException;
+import com.blackrook.nosql.redis.exception.RedisParseException;
+
+/**
+ * A consumer in a Redis Stream consumer group.
+ * <p>
+ * The consumer owns a connection and a reader thread. The thread reads entries in batches with
+ * XREADGROUP (COUNT plus BLOCK), and hands each entry to a {@link RedisStreamHandler} on an {@link Executor}.
+ * Entries that are handled without an exception are acknowledged: acknowledgements are gathered into 
+ * one multi-id XACK that is written right before the next XREADGROUP, so acking never costs its own round trip.
+ * An idle consumer may hold acknowledgements for up to the block time.
+ * <p>
+ * The amount of entries handed off but not yet handled is bounded, so a slow handler slows reading 
+ * instead of filling the executor's queue.
+ * <p>
+ * On start, the consumer creates the group if it doesn't exist, and handles its own pending entries left
+ * from a previous run before reading new ones. Every so often, it also claims entries in the group that have 
+ * been pending longer than the reclaim idle time (from consumers that died or failed to handle them), and handles them again.
+ * Delivery is at-least-once: handlers should tolerate seeing an entry more than once.
+ * <p>
+ * Settings must be changed before {@link #start()}.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public class RedisStreamConsumer implements AutoCloseable
+{
+	/** Default entries per read. */
+	public static final int DEFAULT_BATCH_SIZE = 128;
+	/** Default block time per read in milliseconds. */
+	public static final long DEFAULT_BLOCK_MILLIS = 1000L;
+	/** Default maximum entries in flight. */
+	public static final int DEFAULT_MAX_IN_FLIGHT = 1024;
+	/** Default idle time before pending entries are reclaimed in milliseconds. */
+	public static final long DEFAULT_RECLAIM_IDLE_MILLIS = 60000L;
+	/** Default time between reclaims in milliseconds. */
+	public static final long DEFAULT_RECLAIM_INTERVAL_MILLIS = 30000L;
+	
+	/** Thread counter for names. */
+	private static final AtomicInteger COUNTER = new AtomicInteger(0);
+	/** Id for new entries. */
+	private static final String NEW_ENTRIES = ">";
+	/** Id for this consumer's pending entries. */
+	private static final String PENDING_ENTRIES = "0";
+	
+	/** Server info. */
+	private RedisInfo info;
+	/** Stream key. */
+	private String key;
+	/** Consumer group. */
+	private String group;
+	/** Consumer name. */
+	private String consumer;
+	/** Entry handler. */
+	private RedisStreamHandler handler;
+	/** Executor for handling. */
+	private Executor executor;
+	
+	/** Entries per read. */
+	private int batchSize;
+	/** Block time per read. */
+	private long blockMillis;
+	/** Maximum entries in flight. */
+	private int maxInFlight;
+	/** Pending idle time to reclaim after. */
+	private long reclaimIdleMillis;
+	/** Time between reclaims. */
+	private long reclaimIntervalMillis;
+	/** Policy for reconnecting. */
+	private RedisReconnectPolicy reconnectPolicy;
+
+	/** Connection. */
+	private volatile RedisConnection connection;
+	/** Reader thread. */
+	private ReaderThread readerThread;
+	/** Running flag. */
+	private volatile boolean running;
+	/** Closed flag. */
+	private boolean closed;
+	
+	/** Permits for entries in flight. */
+	private Semaphore inFlight;
+	/** Entries handed off and not yet handled. */
+	private AtomicInteger handing;
+	/** Ids handed off and not yet acknowledged or failed. */
+	private Set<String> inFlightIds;
+	/** Ids to acknowledge. */
+	private ConcurrentLinkedQueue<String> ackQueue;
+	
+	/** Entries handled. */
+	private LongAdder handled;
+	/** Entries failed. */
+	private LongAdder failed;
+	/** Entries acknowledged. */
+	private LongAdder acknowledged;
+	/** Entries reclaimed. */
+	private LongAdder reclaimed;
+	
+	/**
+	 * Creates a new consumer. It does not connect until {@link #start()} is called.
+	 * @param info the server to connect to. Its timeout, if any, must be longer than the block time.
+	 * @param key the stream key.
+	 * @param group the consumer group name.
+	 * @param consumer the name of this consumer in the group.
+	 * @param handler the handler for entries.
+	 * @param executor the executor to handle entries on.
+	 */
+	public RedisStreamConsumer(RedisInfo info, String key, String group, String consumer, RedisStreamHandler handler, Executor executor)
+	{
+		this.info = info;
+		this.key = key;
+		this.group = group;
+		this.consumer = consumer;
+		this.handler = handler;
+		this.executor = executor;
+		
+		this.batchSize = DEFAULT_BATCH_SIZE;
+		this.blockMillis = DEFAULT_BLOCK_MILLIS;
+		this.maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+		this.reclaimIdleMillis = DEFAULT_RECLAIM_IDLE_MILLIS;
+		this.reclaimIntervalMillis = DEFAULT_RECLAIM_INTERVAL_MILLIS;
+		this.reconnectPolicy = RedisReconnectPolicy.DEFAULT;
+		
+		this.connection = null;
+		this.readerThread = null;
+		this.running = false;
+		this.closed = false;
+		
+		this.handing = new AtomicInteger(0);
+		this.inFlightIds = ConcurrentHashMap.newKeySet();
+		this.ackQueue = new ConcurrentLinkedQueue<String>();
+		
+		this.handled = new LongAdder();
+		this.failed = new LongAdder();
+		this.acknowledged = new LongAdder();
+		this.reclaimed = new LongAdder();
+	}
+	
+	/**
+	 * Sets the maximum amount of entries per read.
+	 * @param batchSize the amount of entries.
+	 * @throws IllegalArgumentException if batchSize is less than 1.
+	 * @throws IllegalStateException if the consumer was started.
+	 */
+	public void setBatchSize(int batchSize)
+	{
+		checkNotStarted();
+		if (batchSize < 1)
+			throw new IllegalArgumentException("Batch size must be 1 or greater.");
+		this.batchSize = batchSize;
+	}
+	
+	/**
+	 * @return the maximum amount of entries per read.
+	 */
+	public int getBatchSize()
+	{
+		return batchSize;
+	}
+
+	/**
+	 * Sets how long each read waits for new entries. 
+	 * This is also the longest that acknowledgements wait when the stream is idle.
+	 * @param blockMillis the block time in milliseconds.
+	 * @throws IllegalArgumentException if blockMillis is less than 1.
+	 * @throws IllegalStateException if the consumer was started.
+	 */
+	public void setBlockMillis(long blockMillis)
+	{
+		checkNotStarted();
+		if (blockMillis < 1)
+			throw new IllegalArgumentException("Block time must be 1 or greater.");
+		this.blockMillis = blockMillis;
+	}
+	
+	/**
+	 * @return the block time per read in milliseconds.
+	 */
+	public long getBlockMillis()
+	{
+		return blockMillis;
+	}
+
+	/**
+	 * Sets the maximum amount of entries handed to the executor but not yet handled.
+	 * @param maxInFlight the amount of entries.
+	 * @throws IllegalArgumentException if maxInFlight is less than 1.
+	 * @throws IllegalStateException if the consumer was started.
+	 */
+	public void setMaxInFlight(int maxInFlight)
+	{
+		checkNotStarted();
+		if (maxInFlight < 1)
+			throw new IllegalArgumentException("Max in flight must be 1 or greater.");
+		this.maxInFlight = maxInFlight;
+	}
+	
+	/**
+	 * @return the maximum amount of entries in flight.
+	 */
+	public int getMaxInFlight()
+	{
+		return maxInFlight;
+	}
+
+	/**
+	 * Sets how pending entries in the group are reclaimed.
+	 * @param idleMillis the time that an entry must be pending before it is claimed by this consumer.
+	 * @param intervalMillis the time between reclaims, or 0 to not reclaim.
+	 * @throws IllegalArgumentException if idleMillis is less than 1 or intervalMillis is less than 0.
+	 * @throws IllegalStateException if the consumer was started.
+	 */
+	public void setReclaim(long idleMillis, long intervalMillis)
+	{
+		checkNotStarted();
+		if (idleMillis < 1)
+			throw new IllegalArgumentException("Reclaim idle time must be 1 or greater.");
+		if (intervalMillis < 0)
+			throw new IllegalArgumentException("Reclaim interval must be 0 or greater.");
+		this.reclaimIdleMillis = idleMillis;
+		this.reclaimIntervalMillis = intervalMillis;
+	}
+	
+	/**
+	 * @return the time that an entry must be pending before it is reclaimed, in milliseconds.
+	 */
+	public long getReclaimIdleMillis()
+	{
+		return reclaimIdleMillis;
+	}
+	
+	/**
+	 * @return the time between reclaims in milliseconds, or 0 if not reclaiming.
+	 */
+	public long getReclaimIntervalMillis()
+	{
+		return reclaimIntervalMillis;
+	}
+	
+	/**
+	 * Sets the policy for reconnecting if the connection drops.
+	 * @param reconnectPolicy the policy, or null to stop the consumer on a drop.
+	 * @throws IllegalStateException if the consumer was started.
+	 */
+	public void setReconnectPolicy(RedisReconnectPolicy reconnectPolicy)
+	{
+		checkNotStarted();
+		this.reconnectPolicy = reconnectPolicy;
+	}
+	
+	/**
+	 * @return the policy for reconnecting, or null if none.
+	 */
+	public RedisReconnectPolicy getReconnectPolicy()
+	{
+		return reconnectPolicy;
+	}
+
+	/**
+	 * Connects, creates the group if it doesn't exist, and starts reading.
+	 * @throws IOException if an I/O error occurs when connecting.
+	 * @throws IllegalStateException if the consumer was started, or the connection timeout is not longer than the block time.
+	 * @throws RedisException if the group could not be created.
+	 */
+	public synchronized void start() throws IOException
+	{
+		checkNotStarted();
+		if (info.getTimeout() > 0 && info.getTimeout() <= blockMillis)
+			throw new IllegalStateException("Connection timeout must be longer than the block time.");
+		
+		this.connection = new RedisConnection(info);
+		try {
+			connection.xgroupCreate(key, group, PENDING_ENTRIES, true);
+		} catch (RedisException e) {
+			connection.close();
+			this.connection = null;
+			throw e;
+		}
+		this.inFlight = new Semaphore(maxInFlight);
+		this.running = true;
+		(this.readerThread = new ReaderThread()).start();
+	}
+	
+	/**
+	 * Stops reading, waits for the reader thread to end, sends any remaining acknowledgements, and closes the connection.
+	 * Entries still being handled after this are not acknowledged, and are reclaimed later.
+	 */
+	@Override
+	public synchronized void close()
+	{
+		if (connection == null || closed)
+			return;
+		
+		closed = true;
+		running = false;
+		// wakes up a wait for permits or a reconnect wait. A blocked read ends within the block time.
+		readerThread.interrupt();
+		try {
+			readerThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		
+		String[] acks = drainAcks();
+		if (acks.length > 0 && connection.isConnected())
+		{
+			try {
+				connection.xack(key, group, acks[0], Arrays.copyOfRange(acks, 1, acks.length));
+				acknowledged.add(acks.length);
+			} catch (RuntimeException e) {
+				handler.onConsumerError(e);
+			}
+		}
+		connection.close();
+	}
+	
+	/**
+	 * @return true if this consumer is started and not closed, false if not.
+	 */
+	public boolean isRunning()
+	{
+		return running;
+	}
+	
+	/**
+	 * @return the amount of entries handled without an exception.
+	 */
+	public long getHandledCount()
+	{
+		return handled.sum();
+	}
+	
+	/**
+	 * @return the amount of entries that failed to be handled.
+	 */
+	public long getFailedCount()
+	{
+		return failed.sum();
+	}
+	
+	/**
+	 * @return the amount of entries acknowledged.
+	 */
+	public long getAcknowledgedCount()
+	{
+		return acknowledged.sum();
+	}
+	
+	/**
+	 * @return the amount of entries claimed from other consumers or past attempts.
+	 */
+	public long getReclaimedCount()
+	{
+		return reclaimed.sum();
+	}
+	
+	/**
+	 * @return the amount of entries handed to the executor but not yet handled.
+	 */
+	public int getInFlightCount()
+	{
+		return handing.get();
+	}
+	
+	private void checkNotStarted()
+	{
+		if (connection != null)
+			throw new IllegalStateException("Consumer was already started.");
+	}
+	
+	// Takes all queued acknowledgements.
+	private String[] drainAcks()
+	{
+		List<String> out = new ArrayList<String>();
+		String id;
+		while ((id = ackQueue.poll()) != null)
+			out.add(id);
+		return out.toArray(new String[out.size()]);
+	}
+	
+	// Hands an entry off. The entry's permit must already be taken.
+	private void dispatch(final RedisStreamEntry entry)
+	{
+		if (!inFlightIds.add(entry.getId()))
+		{
+			// already being handled.
+			inFlight.release();
+			return;
+		}
+		
+		// deleted from the stream: nothing to handle.
+		if (entry.isDeleted())
+		{
+			ackQueue.add(entry.getId());
+			inFlight.release();
+			return;
+		}
+
+		handing.incrementAndGet();
+		try {
+			executor.execute(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try {
+						handler.onEntry(key, entry);
+						handled.increment();
+						ackQueue.add(entry.getId());
+					} catch (Throwable t) {
+						failed.increment();
+						inFlightIds.remove(entry.getId());
+						handler.onEntryFailed(entry, t);
+					} finally {
+						handing.decrementAndGet();
+						inFlight.release();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			handing.decrementAndGet();
+			failed.increment();
+			inFlightIds.remove(entry.getId());
+			inFlight.release();
+			handler.onEntryFailed(entry, e);
+		}
+	}
+
+	// Gets the id right after another.
+	private static String nextId(String id)
+	{
+		int dash = id.indexOf('-');
+		if (dash < 0)
+			return id + "-1";
+		long sequence = Long.parseLong(id.substring(dash + 1));
+		if (sequence == Long.MAX_VALUE)
+			return (Long.parseLong(id.substring(0, dash)) + 1) + "-0";
+		return id.substring(0, dash + 1) + (sequence + 1);
+	}
+	
+	/**
+	 * The thread that reads entries.
+	 */
+	private class ReaderThread extends Thread
+	{
+		/** Next read id. */
+		private String readId;
+		/** Time of next reclaim. */
+		private long nextReclaim;
+		
+		ReaderThread()
+		{
+			setName("RedisStreamConsumer-" + COUNTER.incrementAndGet());
+			setDaemon(true);
+			this.readId = PENDING_ENTRIES;
+			this.nextReclaim = System.currentTimeMillis() + reclaimIntervalMillis;
+		}
+		
+		@Override
+		public void run()
+		{
+			while (running)
+			{
+				String[] acks = null;
+				try {
+					int permits = acquire();
+					acks = drainAcks();
+					read(acks, permits);
+					acks = null;
+					if (reclaimIntervalMillis > 0 && System.currentTimeMillis() >= nextReclaim)
+					{
+						reclaim();
+						nextReclaim = System.currentTimeMillis() + reclaimIntervalMillis;
+					}
+				} catch (InterruptedException e) {
+					break;
+				} catch (RedisParseException e) {
+					requeue(acks);
+					if (!running || !recover(e))
+						break;
+				} catch (RedisException e) {
+					requeue(acks);
+					if (!running)
+						break;
+					handler.onConsumerError(e);
+					readId = PENDING_ENTRIES;
+					try {
+						// the group or stream may have been removed.
+						if (e.getMessage() != null && e.getMessage().startsWith("NOGROUP"))
+							connection.xgroupCreate(key, group, PENDING_ENTRIES, true);
+						// don't spin on an error that keeps happening.
+						Thread.sleep(Math.min(blockMillis, 1000L));
+					} catch (InterruptedException ie) {
+						break;
+					} catch (RedisParseException pe) {
+						if (!running || !recover(pe))
+							break;
+					} catch (RedisException re) {
+						handler.onConsumerError(re);
+					}
+				}
+			}
+			running = false;
+		}
+		
+		// Takes at least one permit, and up to a batch.
+		private int acquire() throws InterruptedException
+		{
+			inFlight.acquire();
+			int extra = Math.min(batchSize - 1, inFlight.availablePermits());
+			if (extra > 0 && inFlight.tryAcquire(extra))
+				return extra + 1;
+			return 1;
+		}
+		
+		private void read(String[] acks, int permits)
+		{
+			RedisStreamEntry[] entries;
+			boolean pending = !NEW_ENTRIES.equals(readId);
+			try {
+				entries = connection.xackAndReadgroup(key, group, consumer, acks, permits, pending ? -1L : blockMillis, readId);
+			} catch (RuntimeException e) {
+				inFlight.release(permits);
+				throw e;
+			}
+			
+			if (acks.length > 0)
+			{
+				acknowledged.add(acks.length);
+				for (int i = 0; i < acks.length; i++)
+					inFlightIds.remove(acks[i]);
+			}
+			
+			// closing: leave the entries pending for the next start.
+			if (!running)
+			{
+				inFlight.release(permits);
+				return;
+			}
+			
+			if (entries.length < permits)
+				inFlight.release(permits - entries.length);
+			
+			if (pending)
+				readId = entries.length > 0 ? entries[entries.length - 1].getId() : NEW_ENTRIES;
+
+			for (int i = 0; i < entries.length; i++)
+				dispatch(entries[i]);
+		}
+		
+		// Claims entries idle for too long, one page at a time.
+		private void reclaim()
+		{
+			String start = "-";
+			RedisPendingEntry[] page;
+			do {
+				page = connection.xpending(key, group, start, "+", batchSize);
+				List<String> ids = new ArrayList<String>(page.length);
+				for (int i = 0; i < page.length; i++)
+					if (page[i].getIdleMillis() >= reclaimIdleMillis && !inFlightIds.contains(page[i].getId()))
+						ids.add(page[i].getId());
+
+				if (!ids.isEmpty())
+				{
+					int permits = inFlight.drainPermits();
+					if (permits == 0)
+						return;
+					int count = Math.min(permits, ids.size());
+					String[] rest = ids.subList(1, count).toArray(new String[count - 1]);
+					RedisStreamEntry[] claimed;
+					try {
+						claimed = connection.xclaim(key, group, consumer, reclaimIdleMillis, ids.get(0), rest);
+					} catch (RuntimeException e) {
+						inFlight.release(permits);
+						throw e;
+					}
+					inFlight.release(permits - claimed.length);
+					reclaimed.add(claimed.length);
+					for (int i = 0; i < claimed.length; i++)
+						dispatch(claimed[i]);
+					if (count < ids.size())
+						return;
+				}
+				
+				if (page.length > 0)
+					start = nextId(page[page.length - 1].getId());
+				
+			} while (running && page.length == batchSize);
+		}
+		
+		private void requeue(String[] acks)
+		{
+			if (acks != null)
+				for (int i = 0; i < acks.length; i++)
+					ackQueue.add(acks[i]);
+		}
+		
+		// Reconnects after a drop. Returns true if reading should continue.
+		private boolean recover(Throwable cause)
+		{
+			handler.onConsumerError(cause);
+			RedisReconnectPolicy policy = reconnectPolicy;
+			if (policy == null)
+				return false;
+			
+			Throwable failure = connection.reconnect(policy);
+			if (failure != null)
+			{
+				if (running)
+					handler.onConsumerError(failure);
+				return false;
+			}
+			
+			try {
+				connection.xgroupCreate(key, group, PENDING_ENTRIES, true);
+			} catch (RedisException e) {
+				handler.onConsumerError(e);
+			}
+			readId = PENDING_ENTRIES;
+			return true;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.blackrook.nosql.redis.event.RedisSubscriptionListener;
+
+/**
+ * An index of subscription listeners by channel name or pattern.
+ * Lookups are lock-free and return a snapshot array. Changes copy the array under a lock,
+ * which is fine, since listeners change far less often than messages arrive.
+ * @author Matthew Tropiano
+ */
+class RedisSubscriptionIndex
+{
+	/** Empty listener array. */
+	static final RedisSubscriptionListener[] NO_LISTENERS = new RedisSubscriptionListener[0];
+	
+	/** Listeners by key. */
+	private ConcurrentHashMap<String, RedisSubscriptionListener[]> index;
+	
+	RedisSubscriptionIndex()
+	{
+		this.index = new ConcurrentHashMap<String, RedisSubscriptionListener[]>();
+	}
+	
+	/**
+	 * Adds listeners to a key.
+	 * Listeners already on the key are not added twice.
+	 * @param key the channel name or pattern.
+	 * @param listeners the listeners to add.
+	 */
+	synchronized void add(String key, RedisSubscriptionListener... listeners)
+	{
+		RedisSubscriptionListener[] current = get(key);
+		RedisSubscriptionListener[] next = new RedisSubscriptionListener[current.length + listeners.length];
+		System.arraycopy(current, 0, next, 0, current.length);
+		int n = current.length;
+		for (RedisSubscriptionListener listener : listeners)
+		{
+			if (indexOf(next, n, listener) < 0)
+				next[n++] = listener;
+		}
+		
+		if (n == current.length)
+			return;
+		if (n < next.length)
+		{
+			RedisSubscriptionListener[] trimmed = new RedisSubscriptionListener[n];
+			System.arraycopy(next, 0, trimmed, 0, n);
+			next = trimmed;
+		}
+		index.put(key, next);
+	}
+	
+	/**
+	 * Removes listeners from a key.
+	 * @param key the channel name or pattern.
+	 * @param listeners the listeners to remove.
+	 * @return true if the key has no more listeners after this, false otherwise.
+	 */
+	synchronized boolean remove(String key, RedisSubscriptionListener... listeners)
+	{
+		RedisSubscriptionListener[] current = get(key);
+		RedisSubscriptionListener[] next = new RedisSubscriptionListener[current.length];
+		int n = 0;
+		for (RedisSubscriptionListener listener : current)
+		{
+			if (indexOf(listeners, listeners.length, listener) < 0)
+				next[n++] = listener;
+		}
+		
+		if (n == 0)
+		{
+			index.remove(key);
+			return true;
+		}
+		else if (n < current.length)
+		{
+			RedisSubscriptionListener[] trimmed = new RedisSubscriptionListener[n];
+			System.arraycopy(next, 0, trimmed, 0, n);
+			index.put(key, trimmed);
+		}
+		return false;
+	}
+	
+	/**
+	 * Gets the listeners on a key.
+	 * @param key the channel name or pattern.
+	 * @return the listeners. Never null. Do not modify.
+	 */
+	RedisSubscriptionListener[] get(String key)
+	{
+		RedisSubscriptionListener[] out = index.get(key);
+		return out != null ? out : NO_LISTENERS;
+	}
+	
+	/**
+	 * @return the set of keys that have listeners.
+	 */
+	Set<String> keys()
+	{
+		return index.keySet();
+	}
+	
+	// Identity search.
+	private static int indexOf(RedisSubscriptionListener[] array, int length, RedisSubscriptionListener listener)
+	{
+		for (int i = 0; i < length; i++)
+			if (array[i] == listener)
+				return i;
+		return -1;
+	}
+	
+}
@@ -0,0 +1,213 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+
+import com.blackrook.nosql.redis.exception.RedisException;
+
+/**
+ * A compact, type-tagged binary codec.
+ * <p>
+ * Each value is stored as a single type byte followed by its payload.
+ * Integral types are stored as variable-length zig-zag integers, so small numbers take few bytes,
+ * floating-point types are stored as their raw IEEE bits, Strings are stored as UTF-8,
+ * and byte arrays are stored as-is. Anything else that is {@link Serializable} is stored
+ * using Java serialization.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public class RedisBinaryCodec implements RedisCodec<Object>
+{
+	/** UTF-8 charset. */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/* Type tags. */
+	private static final byte TYPE_STRING = 0x01;
+	private static final byte TYPE_BYTES = 0x02;
+	private static final byte TYPE_BOOLEAN_FALSE = 0x03;
+	private static final byte TYPE_BOOLEAN_TRUE = 0x04;
+	private static final byte TYPE_BYTE = 0x05;
+	private static final byte TYPE_SHORT = 0x06;
+	private static final byte TYPE_CHAR = 0x07;
+	private static final byte TYPE_INT = 0x08;
+	private static final byte TYPE_LONG = 0x09;
+	private static final byte TYPE_FLOAT = 0x0a;
+	private static final byte TYPE_DOUBLE = 0x0b;
+	private static final byte TYPE_SERIALIZED = 0x0c;
+	
+	@Override
+	public byte[] encode(Object value)
+	{
+		if (value instanceof String)
+			return tagged(TYPE_STRING, ((String)value).getBytes(UTF_8));
+		else if (value instanceof byte[])
+			return tagged(TYPE_BYTES, (byte[])value);
+		else if (value instanceof Boolean)
+			return new byte[]{((Boolean)value) ? TYPE_BOOLEAN_TRUE : TYPE_BOOLEAN_FALSE};
+		else if (value instanceof Byte)
+			return new byte[]{TYPE_BYTE, (Byte)value};
+		else if (value instanceof Short)
+			return varLong(TYPE_SHORT, (Short)value);
+		else if (value instanceof Character)
+			return varLong(TYPE_CHAR, (Character)value);
+		else if (value instanceof Integer)
+			return varLong(TYPE_INT, (Integer)value);
+		else if (value instanceof Long)
+			return varLong(TYPE_LONG, (Long)value);
+		else if (value instanceof Float)
+			return fixed(TYPE_FLOAT, Float.floatToIntBits((Float)value) & 0x0ffffffffL, 4);
+		else if (value instanceof Double)
+			return fixed(TYPE_DOUBLE, Double.doubleToLongBits((Double)value), 8);
+		else if (value instanceof Serializable)
+			return serialize((Serializable)value);
+		else
+			throw new RedisException("Cannot encode object of type " + value.getClass().getName() + ": not Serializable.");
+	}
+
+	@Override
+	public Object decode(byte[] data)
+	{
+		if (data.length == 0)
+			throw new RedisException("Cannot decode empty value.");
+		
+		switch (data[0])
+		{
+			case TYPE_STRING:
+				return new String(data, 1, data.length - 1, UTF_8);
+			case TYPE_BYTES:
+			{
+				byte[] out = new byte[data.length - 1];
+				System.arraycopy(data, 1, out, 0, out.length);
+				return out;
+			}
+			case TYPE_BOOLEAN_FALSE:
+				return Boolean.FALSE;
+			case TYPE_BOOLEAN_TRUE:
+				return Boolean.TRUE;
+			case TYPE_BYTE:
+				return (byte)readFixed(data, 1);
+			case TYPE_SHORT:
+				return (short)readVarLong(data);
+			case TYPE_CHAR:
+				return (char)readVarLong(data);
+			case TYPE_INT:
+				return (int)readVarLong(data);
+			case TYPE_LONG:
+				return readVarLong(data);
+			case TYPE_FLOAT:
+				return Float.intBitsToFloat((int)readFixed(data, 4));
+			case TYPE_DOUBLE:
+				return Double.longBitsToDouble(readFixed(data, 8));
+			case TYPE_SERIALIZED:
+				return deserialize(data);
+			default:
+				throw new RedisException("Cannot decode value: unknown type tag " + data[0] + ".");
+		}
+	}
+
+	// Prepends a type tag.
+	private static byte[] tagged(byte type, byte[] payload)
+	{
+		byte[] out = new byte[payload.length + 1];
+		out[0] = type;
+		System.arraycopy(payload, 0, out, 1, payload.length);
+		return out;
+	}
+
+	// Writes a zig-zag encoded variable-length integer after a type tag.
+	private static byte[] varLong(byte type, long value)
+	{
+		long v = (value << 1) ^ (value >> 63);
+		byte[] buf = new byte[11];
+		int n = 0;
+		buf[n++] = type;
+		while ((v & ~0x7fL) != 0)
+		{
+			buf[n++] = (byte)((v & 0x7f) | 0x80);
+			v >>>= 7;
+		}
+		buf[n++] = (byte)v;
+		
+		byte[] out = new byte[n];
+		System.arraycopy(buf, 0, out, 0, n);
+		return out;
+	}
+
+	// Reads a zig-zag encoded variable-length integer after a type tag.
+	private static long readVarLong(byte[] data)
+	{
+		long v = 0L;
+		int shift = 0;
+		for (int i = 1; i < data.length; i++)
+		{
+			byte b = data[i];
+			v |= (long)(b & 0x7f) << shift;
+			if ((b & 0x80) == 0)
+				return (v >>> 1) ^ -(v & 1);
+			shift += 7;
+		}
+		throw new RedisException("Cannot decode value: truncated integer.");
+	}
+
+	// Writes a fixed-width big-endian integer after a type tag.
+	private static byte[] fixed(byte type, long value, int width)
+	{
+		byte[] out = new byte[width + 1];
+		out[0] = type;
+		for (int i = width; i > 0; i--)
+		{
+			out[i] = (byte)(value & 0x0ff);
+			value >>>= 8;
+		}
+		return out;
+	}
+
+	// Reads a fixed-width big-endian integer after a type tag.
+	private static long readFixed(byte[] data, int width)
+	{
+		if (data.length != width + 1)
+			throw new RedisException("Cannot decode value: expected " + width + " bytes, got " + (data.length - 1) + ".");
+		long out = 0L;
+		for (int i = 1; i <= width; i++)
+			out = (out << 8) | (data[i] & 0x0ff);
+		return out;
+	}
+
+	// Serializes an object using Java serialization.
+	private static byte[] serialize(Serializable value)
+	{
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		bos.write(TYPE_SERIALIZED);
+		try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+			oos.writeObject(value);
+		} catch (IOException e) {
+			throw new RedisException("Cannot encode object of type " + value.getClass().getName() + ".", e);
+		}
+		return bos.toByteArray();
+	}
+
+	// Deserializes an object using Java serialization.
+	private static Object deserialize(byte[] data)
+	{
+		try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data, 1, data.length - 1))) {
+			return ois.readObject();
+		} catch (IOException e) {
+			throw new RedisException("Cannot decode serialized value.", e);
+		} catch (ClassNotFoundException e) {
+			throw new RedisException("Cannot decode serialized value.", e);
+		}
+	}
+
+}
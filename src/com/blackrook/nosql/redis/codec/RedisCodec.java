@@ -0,0 +1,37 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis.codec;
+
+import com.blackrook.nosql.redis.exception.RedisException;
+
+/**
+ * A codec that converts values to and from the bytes stored in Redis.
+ * Implementations should be thread-safe, as a single codec may be shared among many connections.
+ * @author Matthew Tropiano
+ * @param <T> the value type that this encodes and decodes.
+ * @since 2.6.0
+ */
+public interface RedisCodec<T>
+{
+	/**
+	 * Encodes a value into bytes for storage in Redis.
+	 * @param value the value to encode. Never null.
+	 * @return the encoded bytes.
+	 * @throws RedisException if the value could not be encoded.
+	 */
+	public byte[] encode(T value);
+	
+	/**
+	 * Decodes bytes read from Redis into a value.
+	 * @param data the data to decode. Never null.
+	 * @return the decoded value.
+	 * @throws RedisException if the value could not be decoded.
+	 */
+	public T decode(byte[] data);
+	
+}
@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis.codec;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.blackrook.nosql.redis.exception.RedisException;
+
+/**
+ * A codec that wraps another codec and compresses its output with {@link Deflater}
+ * once the encoded value reaches a size threshold.
+ * <p>
+ * Compressed values start with a small header: the bytes <code>0xBF 'Z'</code>, a format version byte,
+ * and the uncompressed length as a 4-byte big-endian integer. Values under the threshold, or values
+ * that would not get smaller, are stored exactly as the wrapped codec encodes them. On decode, anything 
+ * without the header is passed straight to the wrapped codec, so values written before compression
+ * was turned on stay readable. A UTF-8 string can never start with <code>0xBF</code>, so plain text
+ * values are never mistaken for compressed ones.
+ * @author Matthew Tropiano
+ * @param <T> the value type that this encodes and decodes.
+ * @since 2.6.0
+ */
+public class RedisCompressingCodec<T> implements RedisCodec<T>
+{
+	/** Default size threshold in bytes. */
+	public static final int DEFAULT_THRESHOLD = 1024;
+	
+	/* Header bytes. */
+	private static final byte MAGIC_0 = (byte)0xBF;
+	private static final byte MAGIC_1 = (byte)'Z';
+	private static final byte VERSION = 0x01;
+	private static final int HEADER_LENGTH = 7;
+	
+	/** The wrapped codec. */
+	private RedisCodec<T> codec;
+	/** Size threshold in bytes, at or above which values are compressed. */
+	private int threshold;
+	/** Compression level. */
+	private int level;
+	
+	/**
+	 * Creates a compressing codec with the default threshold and compression level.
+	 * @param codec the codec to wrap.
+	 * @see #DEFAULT_THRESHOLD
+	 */
+	public RedisCompressingCodec(RedisCodec<T> codec)
+	{
+		this(codec, DEFAULT_THRESHOLD, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * Creates a compressing codec with the default compression level.
+	 * @param codec the codec to wrap.
+	 * @param threshold the encoded size, in bytes, at or above which values are compressed.
+	 */
+	public RedisCompressingCodec(RedisCodec<T> codec, int threshold)
+	{
+		this(codec, threshold, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * Creates a compressing codec.
+	 * @param codec the codec to wrap.
+	 * @param threshold the encoded size, in bytes, at or above which values are compressed.
+	 * @param level the {@link Deflater} compression level (0-9, or {@link Deflater#DEFAULT_COMPRESSION}).
+	 * @throws IllegalArgumentException if threshold is negative or level is out of range.
+	 */
+	public RedisCompressingCodec(RedisCodec<T> codec, int threshold, int level)
+	{
+		if (threshold < 0)
+			throw new IllegalArgumentException("Threshold cannot be negative.");
+		if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION))
+			throw new IllegalArgumentException("Compression level must be between 0 and 9.");
+		this.codec = codec;
+		this.threshold = threshold;
+		this.level = level;
+	}
+
+	@Override
+	public byte[] encode(T value)
+	{
+		byte[] data = codec.encode(value);
+		if (data.length < threshold)
+			return data;
+		
+		Deflater deflater = new Deflater(level);
+		try {
+			deflater.setInput(data);
+			deflater.finish();
+			
+			// Anything that does not fit here is not worth compressing.
+			byte[] out = new byte[data.length];
+			int len = HEADER_LENGTH;
+			while (!deflater.finished() && len < out.length)
+				len += deflater.deflate(out, len, out.length - len);
+			
+			if (!deflater.finished())
+				return data;
+
+			out[0] = MAGIC_0;
+			out[1] = MAGIC_1;
+			out[2] = VERSION;
+			out[3] = (byte)(data.length >>> 24);
+			out[4] = (byte)(data.length >>> 16);
+			out[5] = (byte)(data.length >>> 8);
+			out[6] = (byte)data.length;
+			
+			byte[] trimmed = new byte[len];
+			System.arraycopy(out, 0, trimmed, 0, len);
+			return trimmed;
+		} finally {
+			deflater.end();
+		}
+	}
+
+	@Override
+	public T decode(byte[] data)
+	{
+		if (!isCompressed(data))
+			return codec.decode(data);
+		
+		int length = 
+			((data[3] & 0x0ff) << 24) | 
+			((data[4] & 0x0ff) << 16) | 
+			((data[5] & 0x0ff) << 8) | 
+			(data[6] & 0x0ff);
+		if (length < 0)
+			throw new RedisException("Cannot decode compressed value: bad length.");
+		
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(data, HEADER_LENGTH, data.length - HEADER_LENGTH);
+			byte[] out = new byte[length];
+			int len = 0;
+			while (len < length && !inflater.finished())
+			{
+				int n = inflater.inflate(out, len, length - len);
+				if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+					break;
+				len += n;
+			}
+			if (len != length)
+				throw new RedisException("Cannot decode compressed value: expected " + length + " bytes, got " + len + ".");
+			return codec.decode(out);
+		} catch (DataFormatException e) {
+			throw new RedisException("Cannot decode compressed value.", e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Checks if a set of bytes starts with this codec's compression header.
+	 * @param data the data to inspect.
+	 * @return true if so, false if not.
+	 */
+	public static boolean isCompressed(byte[] data)
+	{
+		return data.length >= HEADER_LENGTH 
+			&& data[0] == MAGIC_0 
+			&& data[1] == MAGIC_1 
+			&& data[2] == VERSION;
+	}
+
+}
@@ -0,0 +1,35 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis.codec;
+
+import java.nio.charset.Charset;
+
+/**
+ * A codec that stores Strings as UTF-8 bytes.
+ * This is how the plain String methods on connections store their values.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public class RedisStringCodec implements RedisCodec<String>
+{
+	/** UTF-8 charset. */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	@Override
+	public byte[] encode(String value)
+	{
+		return value.getBytes(UTF_8);
+	}
+
+	@Override
+	public String decode(byte[] data)
+	{
+		return new String(data, UTF_8);
+	}
+
+}
@@ -0,0 +1,11 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+/**
+ * Contains codecs for converting values to and from the bytes stored in Redis. 
+ */
+package com.blackrook.nosql.redis.codec;
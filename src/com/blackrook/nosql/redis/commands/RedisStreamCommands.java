@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis.commands;
+
+import com.blackrook.nosql.redis.data.RedisPendingEntry;
+import com.blackrook.nosql.redis.data.RedisStreamEntry;
+
+/**
+ * Interface for Redis Stream commands.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public interface RedisStreamCommands
+{
+	/**
+	 * <p>From <a href="http://redis.io/commands/xadd">http://redis.io/commands/xadd</a>:</p>
+	 * <p><strong>Available since 5.0.0.</strong></p>
+	 * <p><strong>Time complexity:</strong> O(1)</p>
+	 * <p>Appends the specified stream entry to the stream at the specified key. 
+	 * If the key does not exist, as a side effect of running this command the key is created with a stream value.</p>
+	 * @param key the stream key.
+	 * @param id the entry id, or "*" to have the server make one.
+	 * @param fieldValues the entry's fields and values, alternating. Must be a non-zero, even amount.
+	 * @return the id of the added entry.
+	 * @throws IllegalArgumentException if fieldValues is empty or not an even amount.
+	 */
+	public String xadd(String key, String id, String... fieldValues);
+
+	/**
+	 * <p>From <a href="http://redis.io/commands/xadd">http://redis.io/commands/xadd</a>:</p>
+	 * <p><strong>Available since 5.0.0.</strong></p>
+	 * <p><strong>Time complexity:</strong> O(1), plus O(N) for the evicted entries.</p>
+	 * <p>Appends the specified stream entry to the stream at the specified key, 
+	 * and trims the stream to a maximum length.</p>
+	 * @param key the stream key.
+	 * @param maxLength the maximum length of the stream.
+	 * @param approximate if true, trim with "~", which is much faster, but may leave a few more entries than the maximum.
+	 * @param id the entry id, or "*" to have the server make one.
+	 * @param fieldValues the entry's fields and values, alternating. Must be a non-zero, even amount.
+	 * @return the id of the added entry.
+	 * @throws IllegalArgumentException if fieldValues is empty or not an even amount.
+	 */
+	public String xadd(String key, long maxLength, boolean approximate, String id, String... fieldValues);
+
+	/**
+	 * <p>From <a href="http://redis.io/commands/xlen">http://redis.io/commands/xlen</a>:</p>
+	 * <p><strong>Available since 5.0.0.</strong></p>
+	 * <p><strong>Time complexity:</strong> O(1)</p>
+	 * <p>Returns the number of entries inside a stream.</p>
+	 * @return the number of entries, or 0 if the key does not exist.
+	 */
+	public long xlen(String key);
+
+	/**
+	 * <p>From <a href="http://redis.io/commands/xdel">http://redis.io/commands/xdel</a>:</p>
+	 * <p><strong>Available since 5.0.0.</strong></p>
+	 * <p><strong>Time complexity:</strong> O(1) for each single item to delete in the stream.</p>
+	 * <p>Removes the specified entries from a stream.</p>
+	 * @return the number of entries actually deleted.
+	 */
+	public long xdel(String key, String id, String... ids);
+
+	/**
+	 * <p>From <a href="http://redis.io/commands/xtrim">http://redis.io/commands/xtrim</a>:</p>
+	 * <p><strong>Available since 5.0.0.</strong></p>
+	 * <p><strong>Time complexity:</strong> O(N), with N being the number of evicted entries.</p>
+	 * <p>Trims the stream to a given number of items, evicting older items (items with lower IDs) if needed.</p>
+	 * @return the number of entries deleted from the stream.
+	 */
+	public long xtrim(String key, long maxLength, boolean approximate);
+
+	/**
+	 * <p>From <a href="http://redis.io/commands/xrange">http://redis.io/commands/xrange</a>:</p>
+	 * <p><strong>Available since 5.0.0.</strong></p>
+	 * <p><strong>Time complexity:</strong> O(N) with N being the number of elements being returned.</p>
+	 * <p>Returns the stream entries matching a given range of IDs.
+	 * The special IDs "-" and "+" mean the lowest and highest IDs possible.</p>
+	 * @param count the maximum amount of entries to return, or 0 or less for no limit.
+	 * @return the entries in the range.
+	 */
+	public RedisStreamEntry[] xrange(String key, String start, String end, long count);
+
+	/**
+	 * <p>From <a href="http://redis.io/commands/xgroup">http://redis.io/commands/xgroup</a>:</p>
+	 * <p><strong>Available since 5.0.0.</strong></p>
+	 * <p><strong>Time complexity:</strong> O(1)</p>
+	 * <p>Creates a new consumer group associated with a stream.</p>
+	 * @param id the id of the last entry considered already delivered: "$" for only new entries, "0" for the whole stream.
+	 * @param makeStream if true, create the stream if it does not exist.
+	 * @return true if created, false if the group already exists.
+	 */
+	public boolean xgroupCreate(String key, String group, String id, boolean makeStream);
+
+	/**
+	 * <p>From <a href="http://redis.io/commands/xgroup">http://redis.io/commands/xgroup</a>:</p>
+	 * <p><strong>Available since 5.0.0.</strong></p>
+	 * <p><strong>Time complexity:</strong> O(N) where N is the number of entries in the group's pending list.</p>
+	 * <p>Destroys a consumer group, even if there are active consumers and pending messages.</p>
+	 * @return true if destroyed, false if it did not exist.
+	 */
+	public boolean xgroupDestroy(String key, String group);
+
+	/**
+	 * <p>From <a href="http://redis.io/commands/xgroup">http://redis.io/commands/xgroup</a>:</p>
+	 * <p><strong>Available since 5.0.0.</strong></p>
+	 * <p><strong>Time complexity:</strong> O(1)</p>
+	 * <p>Removes a consumer from a consumer group.</p>
+	 * @return the number of pending messages that the consumer had before it was deleted.
+	 */
+	public long xgroupDelconsumer(String key, String group, String consumer);
+
+	/**
+	 * <p>From <a href="http://redis.io/commands/xreadgroup">http://redis.io/commands/xreadgroup</a>:</p>
+	 * <p><strong>Available since 5.0.0.</strong></p>
+	 * <p><strong>Time complexity:</strong> For each stream mentioned: O(M) with M being the number of elements returned.</p>
+	 * <p>Reads entries from a stream as a consumer in a consumer group. Entries read with the id "&gt;" are new
+	 * entries that are added to the consumer's pending list until acknowledged with {@link #xack(String, String, String, String...)}.
+	 * Any other id reads the consumer's own pending entries after that id.</p>
+	 * <p>If blocking, the connection's socket timeout must be longer than the block time.</p>
+	 * @param count the maximum amount of entries to read, or 0 or less for no limit.
+	 * @param blockMillis the amount of milliseconds to block for if there are no entries, 0 to block forever, or less than 0 to not block.
+	 * @param id "&gt;" for new entries, or an id to read pending entries after.
+	 * @return the entries read. Empty if none before the block time ran out.
+	 */
+	public RedisStreamEntry[] xreadgroup(String group, String consumer, long count, long blockMillis, String key, String id);
+
+	/**
+	 * <p>From <a href="http://redis.io/commands/xack">http://redis.io/commands/xack</a>:</p>
+	 * <p><strong>Available since 5.0.0.</strong></p>
+	 * <p><strong>Time complexity:</strong> O(1) for each message ID processed.</p>
+	 * <p>Removes one or multiple messages from the pending entries list of a stream consumer group.</p>
+	 * @return the number of messages successfully acknowledged.
+	 */
+	public long xack(String key, String group, String id, String... ids);
+
+	/**
+	 * <p>From <a href="http://redis.io/commands/xpending">http://redis.io/commands/xpending</a>:</p>
+	 * <p><strong>Available since 5.0.0.</strong></p>
+	 * <p><strong>Time complexity:</strong> O(N) with N being the number of elements returned.</p>
+	 * <p>Gets entries from the pending entries list of a consumer group: entries read by a consumer but not yet acknowledged.
+	 * The special IDs "-" and "+" mean the lowest and highest IDs possible.</p>
+	 * @return the pending entries.
+	 */
+	public RedisPendingEntry[] xpending(String key, String group, String start, String end, long count);
+
+	/**
+	 * <p>From <a href="http://redis.io/commands/xclaim">http://redis.io/commands/xclaim</a>:</p>
+	 * <p><strong>Available since 5.0.0.</strong></p>
+	 * <p><strong>Time complexity:</strong> O(log N) with N being the number of messages in the PEL of the consumer group.</p>
+	 * <p>Changes the ownership of pending messages to a consumer, if they have been idle for at least a minimum time.</p>
+	 * @return the claimed entries.
+	 */
+	public RedisStreamEntry[] xclaim(String key, String group, String consumer, long minIdleMillis, String id, String... ids);
+
+}
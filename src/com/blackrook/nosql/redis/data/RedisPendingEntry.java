@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis.data;
+
+import com.blackrook.nosql.redis.exception.RedisParseException;
+
+/**
+ * A single entry from the pending entries list of a stream consumer group.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public final class RedisPendingEntry
+{
+	/** Entry id. */
+	private String id;
+	/** Owning consumer. */
+	private String consumer;
+	/** Milliseconds since last delivery. */
+	private long idleMillis;
+	/** Times delivered. */
+	private long deliveries;
+	
+	private RedisPendingEntry() {}
+	
+	/**
+	 * Parses the extended-form reply of XPENDING.
+	 * @param object the reply object.
+	 * @return the pending entries.
+	 * @throws RedisParseException if the object is not an extended XPENDING reply.
+	 */
+	public static RedisPendingEntry[] parseAll(RedisObject object)
+	{
+		if (object.isNull())
+			return new RedisPendingEntry[0];
+		if (!object.isArray())
+			throw new RedisParseException("Object is not an XPENDING reply.");
+		
+		RedisPendingEntry[] out = new RedisPendingEntry[object.length()];
+		for (int i = 0; i < out.length; i++)
+		{
+			RedisObject entry = object.get(i);
+			if (!entry.isArray() || entry.length() < 4)
+				throw new RedisParseException("Object is not a pending entry.");
+			RedisPendingEntry pending = new RedisPendingEntry();
+			pending.id = entry.get(0).asString();
+			pending.consumer = entry.get(1).asString();
+			pending.idleMillis = entry.get(2).asLong();
+			pending.deliveries = entry.get(3).asLong();
+			out[i] = pending;
+		}
+		return out;
+	}
+
+	/**
+	 * @return the entry id.
+	 */
+	public String getId()
+	{
+		return id;
+	}
+
+	/**
+	 * @return the consumer that the entry was delivered to.
+	 */
+	public String getConsumer()
+	{
+		return consumer;
+	}
+
+	/**
+	 * @return the milliseconds since the entry was last delivered.
+	 */
+	public long getIdleMillis()
+	{
+		return idleMillis;
+	}
+
+	/**
+	 * @return the amount of times the entry was delivered.
+	 */
+	public long getDeliveries()
+	{
+		return deliveries;
+	}
+	
+}
@@ -0,0 +1,476 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis.data;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A typed snapshot of the output of a Redis INFO call.
+ * <p>
+ * The most used fields are parsed into typed values. Fields that are missing from the INFO output
+ * (for example, from an older server, or a section that was not asked for) are -1, or empty.
+ * Every field is also available by its INFO name via {@link #getValue(String)}.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public final class RedisServerStats
+{
+	/** Time that this was parsed, in milliseconds since the Epoch. */
+	private long time;
+	/** All values by name. */
+	private Map<String, String> values;
+	/** Keyspace by database id. */
+	private Map<Integer, Keyspace> keyspace;
+	/** Command stats by command name. */
+	private Map<String, CommandStats> commandStats;
+	
+	private RedisServerStats(long time)
+	{
+		this.time = time;
+		this.values = new HashMap<String, String>(256);
+		this.keyspace = new TreeMap<Integer, Keyspace>();
+		this.commandStats = new TreeMap<String, CommandStats>();
+	}
+	
+	/**
+	 * Parses the output of an INFO call.
+	 * @param info the INFO output.
+	 * @return a new snapshot, timestamped with the current time.
+	 */
+	public static RedisServerStats parse(String info)
+	{
+		RedisServerStats out = new RedisServerStats(System.currentTimeMillis());
+		int start = 0;
+		int len = info.length();
+		while (start < len)
+		{
+			int end = info.indexOf('\n', start);
+			if (end < 0)
+				end = len;
+			String line = info.substring(start, end).trim();
+			start = end + 1;
+			
+			if (line.length() == 0 || line.charAt(0) == '#')
+				continue;
+			int colon = line.indexOf(':');
+			if (colon < 0)
+				continue;
+			
+			String name = line.substring(0, colon);
+			String value = line.substring(colon + 1);
+			out.values.put(name, value);
+			
+			if (name.startsWith("db") && isNumber(name, 2))
+			{
+				Map<String, String> fields = parseFields(value);
+				out.keyspace.put(Integer.parseInt(name.substring(2)), new Keyspace(
+					parseLong(fields.get("keys"), 0L), 
+					parseLong(fields.get("expires"), 0L), 
+					parseLong(fields.get("avg_ttl"), 0L)
+				));
+			}
+			else if (name.startsWith("cmdstat_"))
+			{
+				Map<String, String> fields = parseFields(value);
+				out.commandStats.put(name.substring(8), new CommandStats(
+					parseLong(fields.get("calls"), 0L), 
+					parseLong(fields.get("usec"), 0L), 
+					parseDouble(fields.get("usec_per_call"), 0.0)
+				));
+			}
+		}
+		return out;
+	}
+	
+	/**
+	 * @return the time that this was parsed, in milliseconds since the Epoch.
+	 */
+	public long getTime()
+	{
+		return time;
+	}
+	
+	/**
+	 * Gets a raw value by its INFO name.
+	 * @param name the field name.
+	 * @return the value, or null if it was not present.
+	 */
+	public String getValue(String name)
+	{
+		return values.get(name);
+	}
+	
+	/**
+	 * Gets a value by its INFO name as a long integer.
+	 * @param name the field name.
+	 * @param def the value to return if the field is missing or not a number.
+	 * @return the value.
+	 */
+	public long getLong(String name, long def)
+	{
+		return parseLong(values.get(name), def);
+	}
+	
+	/**
+	 * Gets a value by its INFO name as a double.
+	 * @param name the field name.
+	 * @param def the value to return if the field is missing or not a number.
+	 * @return the value.
+	 */
+	public double getDouble(String name, double def)
+	{
+		return parseDouble(values.get(name), def);
+	}
+	
+	/**
+	 * @return the server version, or null if not present.
+	 */
+	public String getVersion()
+	{
+		return values.get("redis_version");
+	}
+	
+	/**
+	 * @return the server uptime in seconds.
+	 */
+	public long getUptimeSeconds()
+	{
+		return getLong("uptime_in_seconds", -1L);
+	}
+	
+	/**
+	 * @return the amount of connected clients.
+	 */
+	public long getConnectedClients()
+	{
+		return getLong("connected_clients", -1L);
+	}
+	
+	/**
+	 * @return the amount of clients blocked on a blocking call.
+	 */
+	public long getBlockedClients()
+	{
+		return getLong("blocked_clients", -1L);
+	}
+
+	/**
+	 * @return the memory allocated by Redis, in bytes.
+	 */
+	public long getUsedMemory()
+	{
+		return getLong("used_memory", -1L);
+	}
+
+	/**
+	 * @return the memory allocated to Redis as seen by the operating system, in bytes.
+	 */
+	public long getUsedMemoryRss()
+	{
+		return getLong("used_memory_rss", -1L);
+	}
+
+	/**
+	 * @return the peak memory allocated by Redis, in bytes.
+	 */
+	public long getUsedMemoryPeak()
+	{
+		return getLong("used_memory_peak", -1L);
+	}
+
+	/**
+	 * @return the configured maximum memory in bytes, 0 for no limit.
+	 */
+	public long getMaxMemory()
+	{
+		return getLong("maxmemory", -1L);
+	}
+
+	/**
+	 * @return the memory fragmentation ratio.
+	 */
+	public double getMemoryFragmentationRatio()
+	{
+		return getDouble("mem_fragmentation_ratio", -1.0);
+	}
+
+	/**
+	 * @return the total amount of connections accepted by the server.
+	 */
+	public long getTotalConnectionsReceived()
+	{
+		return getLong("total_connections_received", -1L);
+	}
+
+	/**
+	 * @return the total amount of commands processed by the server.
+	 */
+	public long getTotalCommandsProcessed()
+	{
+		return getLong("total_commands_processed", -1L);
+	}
+
+	/**
+	 * @return the amount of commands processed per second, as measured by the server.
+	 */
+	public long getInstantaneousOpsPerSec()
+	{
+		return getLong("instantaneous_ops_per_sec", -1L);
+	}
+
+	/**
+	 * @return the total bytes read from the network.
+	 */
+	public long getTotalNetInputBytes()
+	{
+		return getLong("total_net_input_bytes", -1L);
+	}
+
+	/**
+	 * @return the total bytes written to the network.
+	 */
+	public long getTotalNetOutputBytes()
+	{
+		return getLong("total_net_output_bytes", -1L);
+	}
+
+	/**
+	 * @return the amount of connections rejected because of the client limit.
+	 */
+	public long getRejectedConnections()
+	{
+		return getLong("rejected_connections", -1L);
+	}
+
+	/**
+	 * @return the total amount of keys expired.
+	 */
+	public long getExpiredKeys()
+	{
+		return getLong("expired_keys", -1L);
+	}
+
+	/**
+	 * @return the total amount of keys evicted because of the memory limit.
+	 */
+	public long getEvictedKeys()
+	{
+		return getLong("evicted_keys", -1L);
+	}
+
+	/**
+	 * @return the total amount of successful key lookups.
+	 */
+	public long getKeyspaceHits()
+	{
+		return getLong("keyspace_hits", -1L);
+	}
+
+	/**
+	 * @return the total amount of failed key lookups.
+	 */
+	public long getKeyspaceMisses()
+	{
+		return getLong("keyspace_misses", -1L);
+	}
+
+	/**
+	 * Gets the ratio of key lookup hits to all key lookups since the server started.
+	 * @return the ratio from 0.0 to 1.0, or -1.0 if there were no lookups.
+	 */
+	public double getHitRatio()
+	{
+		long hits = getKeyspaceHits();
+		long misses = getKeyspaceMisses();
+		return hits >= 0 && misses >= 0 && hits + misses > 0 ? (double)hits / (hits + misses) : -1.0;
+	}
+
+	/**
+	 * @return the replication role ("master" or "slave"), or null if not present.
+	 */
+	public String getRole()
+	{
+		return values.get("role");
+	}
+
+	/**
+	 * @return the replication offset of the master.
+	 */
+	public long getMasterReplicationOffset()
+	{
+		return getLong("master_repl_offset", -1L);
+	}
+
+	/**
+	 * @return the replication offset processed by this server, if it is a replica.
+	 */
+	public long getSlaveReplicationOffset()
+	{
+		return getLong("slave_repl_offset", -1L);
+	}
+
+	/**
+	 * @return the amount of connected replicas.
+	 */
+	public long getConnectedSlaves()
+	{
+		return getLong("connected_slaves", -1L);
+	}
+
+	/**
+	 * Gets keyspace information by database id.
+	 * @return an unmodifiable, sorted map of database id to keyspace information.
+	 */
+	public Map<Integer, Keyspace> getKeyspace()
+	{
+		return Collections.unmodifiableMap(keyspace);
+	}
+	
+	/**
+	 * Gets command statistics by command name.
+	 * These are only present if INFO was called for "commandstats" or "all".
+	 * @return an unmodifiable, sorted map of command name to statistics.
+	 */
+	public Map<String, CommandStats> getCommandStats()
+	{
+		return Collections.unmodifiableMap(commandStats);
+	}
+	
+	// Parses "a=1,b=2".
+	private static Map<String, String> parseFields(String value)
+	{
+		Map<String, String> out = new HashMap<String, String>(8);
+		for (String pair : value.split(","))
+		{
+			int eq = pair.indexOf('=');
+			if (eq > 0)
+				out.put(pair.substring(0, eq), pair.substring(eq + 1));
+		}
+		return out;
+	}
+	
+	private static boolean isNumber(String s, int start)
+	{
+		if (start >= s.length())
+			return false;
+		for (int i = start; i < s.length(); i++)
+			if (!Character.isDigit(s.charAt(i)))
+				return false;
+		return true;
+	}
+	
+	private static long parseLong(String s, long def)
+	{
+		if (s == null)
+			return def;
+		try {
+			return Long.parseLong(s.trim());
+		} catch (NumberFormatException e) {
+			return def;
+		}
+	}
+	
+	private static double parseDouble(String s, double def)
+	{
+		if (s == null)
+			return def;
+		try {
+			return Double.parseDouble(s.trim());
+		} catch (NumberFormatException e) {
+			return def;
+		}
+	}
+	
+	/**
+	 * Keyspace information for one database.
+	 */
+	public static final class Keyspace
+	{
+		private long keys;
+		private long expires;
+		private long averageTTL;
+		
+		private Keyspace(long keys, long expires, long averageTTL)
+		{
+			this.keys = keys;
+			this.expires = expires;
+			this.averageTTL = averageTTL;
+		}
+		
+		/**
+		 * @return the amount of keys.
+		 */
+		public long getKeys()
+		{
+			return keys;
+		}
+		
+		/**
+		 * @return the amount of keys with an expiration.
+		 */
+		public long getExpires()
+		{
+			return expires;
+		}
+		
+		/**
+		 * @return the average time to live of keys with an expiration, in milliseconds.
+		 */
+		public long getAverageTTL()
+		{
+			return averageTTL;
+		}
+		
+	}
+	
+	/**
+	 * Statistics for one command.
+	 */
+	public static final class CommandStats
+	{
+		private long calls;
+		private long usec;
+		private double usecPerCall;
+		
+		private CommandStats(long calls, long usec, double usecPerCall)
+		{
+			this.calls = calls;
+			this.usec = usec;
+			this.usecPerCall = usecPerCall;
+		}
+		
+		/**
+		 * @return the total amount of calls.
+		 */
+		public long getCalls()
+		{
+			return calls;
+		}
+		
+		/**
+		 * @return the total time spent in the command, in microseconds.
+		 */
+		public long getMicros()
+		{
+			return usec;
+		}
+		
+		/**
+		 * @return the average time per call, in microseconds.
+		 */
+		public double getMicrosPerCall()
+		{
+			return usecPerCall;
+		}
+		
+	}
+	
+}
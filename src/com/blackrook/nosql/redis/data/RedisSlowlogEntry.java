@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis.data;
+
+import com.blackrook.nosql.redis.exception.RedisParseException;
+
+/**
+ * A single entry from the Redis SLOWLOG.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public final class RedisSlowlogEntry
+{
+	private static final String[] NO_ARGUMENTS = new String[0];
+	
+	/** Entry id. */
+	private long id;
+	/** Time in seconds since the Epoch. */
+	private long timeSeconds;
+	/** Execution time in microseconds. */
+	private long durationMicros;
+	/** Command and arguments. */
+	private String[] arguments;
+	/** Client address, if known. */
+	private String clientAddress;
+	/** Client name, if known. */
+	private String clientName;
+	
+	private RedisSlowlogEntry() {}
+	
+	/**
+	 * Parses an entry returned by SLOWLOG GET.
+	 * @param object the entry object.
+	 * @return a new entry.
+	 * @throws RedisParseException if the object is not a slowlog entry.
+	 */
+	public static RedisSlowlogEntry parse(RedisObject object)
+	{
+		if (!object.isArray() || object.length() < 4 || !object.get(3).isArray())
+			throw new RedisParseException("Object is not a SLOWLOG entry.");
+		
+		RedisSlowlogEntry out = new RedisSlowlogEntry();
+		out.id = object.get(0).asLong();
+		out.timeSeconds = object.get(1).asLong();
+		out.durationMicros = object.get(2).asLong();
+		
+		RedisObject args = object.get(3);
+		out.arguments = args.length() > 0 ? new String[args.length()] : NO_ARGUMENTS;
+		for (int i = 0; i < out.arguments.length; i++)
+			out.arguments[i] = args.get(i).asString();
+		
+		// Redis 4.0 and later.
+		if (object.length() >= 6)
+		{
+			out.clientAddress = object.get(4).asString();
+			out.clientName = object.get(5).asString();
+		}
+		return out;
+	}
+	
+	/**
+	 * Parses the reply of SLOWLOG GET.
+	 * @param object the reply object.
+	 * @return the entries, newest first.
+	 * @throws RedisParseException if the object is not a list of slowlog entries.
+	 */
+	public static RedisSlowlogEntry[] parseAll(RedisObject object)
+	{
+		if (!object.isArray())
+			throw new RedisParseException("Object is not a SLOWLOG reply.");
+		if (object.isNull())
+			return new RedisSlowlogEntry[0];
+		RedisSlowlogEntry[] out = new RedisSlowlogEntry[object.length()];
+		for (int i = 0; i < out.length; i++)
+			out[i] = parse(object.get(i));
+		return out;
+	}
+
+	/**
+	 * @return the entry id. Ids increase with each entry, and are reset only when the server restarts.
+	 */
+	public long getId()
+	{
+		return id;
+	}
+
+	/**
+	 * @return the time that the command was run, in seconds since the Epoch.
+	 */
+	public long getTimeSeconds()
+	{
+		return timeSeconds;
+	}
+
+	/**
+	 * @return the time taken by the command, in microseconds.
+	 */
+	public long getDurationMicros()
+	{
+		return durationMicros;
+	}
+
+	/**
+	 * @return the command name, or an empty string if unknown.
+	 */
+	public String getCommand()
+	{
+		return arguments.length > 0 ? arguments[0] : "";
+	}
+
+	/**
+	 * Gets the command and its arguments. Redis may shorten long arguments and argument lists.
+	 * @return the command and arguments.
+	 */
+	public String[] getArguments()
+	{
+		return arguments;
+	}
+
+	/**
+	 * @return the client address and port, or null if not reported (before Redis 4.0).
+	 */
+	public String getClientAddress()
+	{
+		return clientAddress;
+	}
+
+	/**
+	 * @return the client name, or null if not reported (before Redis 4.0). May be empty.
+	 */
+	public String getClientName()
+	{
+		return clientName;
+	}
+	
+}
@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis.data;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A single poll of server statistics, with the changes since the poll before it.
+ * Rates are per second over the interval between the two polls.
+ * If there was no poll before this one, or the server restarted between them, deltas and rates are 0.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public final class RedisStatsSample
+{
+	/** Current stats. */
+	private RedisServerStats stats;
+	/** Interval since the last sample in milliseconds. */
+	private long intervalMillis;
+	/** Commands processed in the interval. */
+	private long commands;
+	/** Keyspace hits in the interval. */
+	private long hits;
+	/** Keyspace misses in the interval. */
+	private long misses;
+	/** Evictions in the interval. */
+	private long evictions;
+	/** Expirations in the interval. */
+	private long expirations;
+	/** Network input bytes in the interval. */
+	private long netInputBytes;
+	/** Network output bytes in the interval. */
+	private long netOutputBytes;
+	/** Memory change in the interval. */
+	private long memoryDelta;
+	/** Replication offset change in the interval. */
+	private long replicationDelta;
+	/** Command calls in the interval by command. */
+	private Map<String, Long> commandCalls;
+	
+	/**
+	 * Creates a sample from two snapshots.
+	 * @param previous the previous snapshot, or null if none.
+	 * @param stats the current snapshot.
+	 * @return a new sample.
+	 */
+	public static RedisStatsSample create(RedisServerStats previous, RedisServerStats stats)
+	{
+		RedisStatsSample out = new RedisStatsSample();
+		out.stats = stats;
+		out.commandCalls = new TreeMap<String, Long>();
+		
+		// no previous, or a restart: counters were reset, so no deltas.
+		if (previous == null || stats.getUptimeSeconds() < previous.getUptimeSeconds())
+			return out;
+		
+		out.intervalMillis = stats.getTime() - previous.getTime();
+		out.commands = delta(previous.getTotalCommandsProcessed(), stats.getTotalCommandsProcessed());
+		out.hits = delta(previous.getKeyspaceHits(), stats.getKeyspaceHits());
+		out.misses = delta(previous.getKeyspaceMisses(), stats.getKeyspaceMisses());
+		out.evictions = delta(previous.getEvictedKeys(), stats.getEvictedKeys());
+		out.expirations = delta(previous.getExpiredKeys(), stats.getExpiredKeys());
+		out.netInputBytes = delta(previous.getTotalNetInputBytes(), stats.getTotalNetInputBytes());
+		out.netOutputBytes = delta(previous.getTotalNetOutputBytes(), stats.getTotalNetOutputBytes());
+		out.memoryDelta = previous.getUsedMemory() >= 0 && stats.getUsedMemory() >= 0 ? stats.getUsedMemory() - previous.getUsedMemory() : 0L;
+		out.replicationDelta = delta(previous.getMasterReplicationOffset(), stats.getMasterReplicationOffset());
+		
+		Map<String, RedisServerStats.CommandStats> before = previous.getCommandStats();
+		for (Map.Entry<String, RedisServerStats.CommandStats> entry : stats.getCommandStats().entrySet())
+		{
+			RedisServerStats.CommandStats b = before.get(entry.getKey());
+			long calls = delta(b != null ? b.getCalls() : 0L, entry.getValue().getCalls());
+			if (calls > 0)
+				out.commandCalls.put(entry.getKey(), calls);
+		}
+		return out;
+	}
+	
+	private RedisStatsSample() {}
+	
+	// Counter delta, 0 if either is missing or the counter went backwards (CONFIG RESETSTAT).
+	private static long delta(long before, long after)
+	{
+		return before >= 0 && after >= before ? after - before : 0L;
+	}
+	
+	private double rate(long count)
+	{
+		return intervalMillis > 0 ? count * 1000.0 / intervalMillis : 0.0;
+	}
+	
+	/**
+	 * @return the full statistics snapshot for this sample.
+	 */
+	public RedisServerStats getStats()
+	{
+		return stats;
+	}
+
+	/**
+	 * @return the time since the previous sample in milliseconds, or 0 if none.
+	 */
+	public long getIntervalMillis()
+	{
+		return intervalMillis;
+	}
+
+	/**
+	 * @return the amount of commands processed in the interval.
+	 */
+	public long getCommands()
+	{
+		return commands;
+	}
+	
+	/**
+	 * @return the commands processed per second over the interval.
+	 */
+	public double getCommandRate()
+	{
+		return rate(commands);
+	}
+
+	/**
+	 * @return the keyspace hits in the interval.
+	 */
+	public long getHits()
+	{
+		return hits;
+	}
+
+	/**
+	 * @return the keyspace misses in the interval.
+	 */
+	public long getMisses()
+	{
+		return misses;
+	}
+
+	/**
+	 * Gets the ratio of key lookup hits to all key lookups in the interval.
+	 * @return the ratio from 0.0 to 1.0, or -1.0 if there were no lookups.
+	 */
+	public double getHitRatio()
+	{
+		return hits + misses > 0 ? (double)hits / (hits + misses) : -1.0;
+	}
+
+	/**
+	 * @return the keys evicted in the interval.
+	 */
+	public long getEvictions()
+	{
+		return evictions;
+	}
+
+	/**
+	 * @return the keys evicted per second over the interval.
+	 */
+	public double getEvictionRate()
+	{
+		return rate(evictions);
+	}
+
+	/**
+	 * @return the keys expired in the interval.
+	 */
+	public long getExpirations()
+	{
+		return expirations;
+	}
+
+	/**
+	 * @return the network bytes read per second over the interval.
+	 */
+	public double getNetInputRate()
+	{
+		return rate(netInputBytes);
+	}
+
+	/**
+	 * @return the network bytes written per second over the interval.
+	 */
+	public double getNetOutputRate()
+	{
+		return rate(netOutputBytes);
+	}
+
+	/**
+	 * @return the change in used memory over the interval, in bytes. May be negative.
+	 */
+	public long getMemoryDelta()
+	{
+		return memoryDelta;
+	}
+
+	/**
+	 * @return the change in used memory per second over the interval, in bytes.
+	 */
+	public double getMemoryGrowthRate()
+	{
+		return rate(memoryDelta);
+	}
+
+	/**
+	 * @return the change in master replication offset over the interval, in bytes.
+	 */
+	public long getReplicationDelta()
+	{
+		return replicationDelta;
+	}
+
+	/**
+	 * Gets command calls in the interval by command.
+	 * Only present if command statistics were polled.
+	 * @return an unmodifiable, sorted map of command name to calls, for commands called in the interval.
+	 */
+	public Map<String, Long> getCommandCalls()
+	{
+		return Collections.unmodifiableMap(commandCalls);
+	}
+
+}
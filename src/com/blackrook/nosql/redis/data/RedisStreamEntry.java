@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis.data;
+
+import com.blackrook.commons.hash.HashMap;
+import com.blackrook.nosql.redis.exception.RedisParseException;
+
+/**
+ * A single entry from a Redis Stream.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public final class RedisStreamEntry
+{
+	private static final String[] NO_FIELDS = new String[0];
+	private static final RedisStreamEntry[] NO_ENTRIES = new RedisStreamEntry[0];
+	
+	/** Entry id. */
+	private String id;
+	/** Fields and values, alternating. */
+	private String[] fieldValues;
+	/** Whether the entry was deleted. */
+	private boolean deleted;
+	
+	private RedisStreamEntry(String id, String[] fieldValues, boolean deleted)
+	{
+		this.id = id;
+		this.fieldValues = fieldValues;
+		this.deleted = deleted;
+	}
+	
+	/**
+	 * Creates a stream entry.
+	 * @param id the entry id.
+	 * @param fieldValues the fields and values, alternating.
+	 * @return a new entry.
+	 */
+	public static RedisStreamEntry create(String id, String... fieldValues)
+	{
+		return new RedisStreamEntry(id, fieldValues, false);
+	}
+	
+	/**
+	 * Parses a single stream entry: an array of an id and an array of fields and values.
+	 * @param object the entry object.
+	 * @return a new entry.
+	 * @throws RedisParseException if the object is not a stream entry.
+	 */
+	public static RedisStreamEntry parse(RedisObject object)
+	{
+		if (!object.isArray() || object.length() < 2)
+			throw new RedisParseException("Object is not a stream entry.");
+		
+		String id = object.get(0).asString();
+		RedisObject fields = object.get(1);
+		// pending entries that were deleted from the stream have no fields.
+		if (fields.isNull())
+			return new RedisStreamEntry(id, NO_FIELDS, true);
+		
+		String[] fieldValues = fields.length() > 0 ? new String[fields.length()] : NO_FIELDS;
+		for (int i = 0; i < fieldValues.length; i++)
+			fieldValues[i] = fields.get(i).asString();
+		return new RedisStreamEntry(id, fieldValues, false);
+	}
+	
+	/**
+	 * Parses an array of stream entries.
+	 * Null elements (claimed entries that were deleted) are skipped.
+	 * @param object the array object.
+	 * @return the entries.
+	 * @throws RedisParseException if the object is not an array of stream entries.
+	 */
+	public static RedisStreamEntry[] parseAll(RedisObject object)
+	{
+		if (object.isNull())
+			return NO_ENTRIES;
+		if (!object.isArray())
+			throw new RedisParseException("Object is not an array of stream entries.");
+		
+		int count = 0;
+		for (int i = 0; i < object.length(); i++)
+			if (!object.get(i).isNull())
+				count++;
+		
+		RedisStreamEntry[] out = new RedisStreamEntry[count];
+		int n = 0;
+		for (int i = 0; i < object.length(); i++)
+			if (!object.get(i).isNull())
+				out[n++] = parse(object.get(i));
+		return out;
+	}
+	
+	/**
+	 * Parses the entries for one stream from an XREAD or XREADGROUP reply.
+	 * @param object the reply object: an array of stream names and entry arrays, or null.
+	 * @param key the stream key.
+	 * @return the entries for the stream, or an empty array if none (or the reply was null).
+	 * @throws RedisParseException if the object is not a read reply.
+	 */
+	public static RedisStreamEntry[] parseRead(RedisObject object, String key)
+	{
+		if (object.isNull())
+			return NO_ENTRIES;
+		if (!object.isArray())
+			throw new RedisParseException("Object is not a stream read reply.");
+		for (int i = 0; i < object.length(); i++)
+		{
+			RedisObject stream = object.get(i);
+			if (stream.isArray() && stream.length() >= 2 && key.equals(stream.get(0).asString()))
+				return parseAll(stream.get(1));
+		}
+		return NO_ENTRIES;
+	}
+
+	/**
+	 * @return the entry id.
+	 */
+	public String getId()
+	{
+		return id;
+	}
+
+	/**
+	 * @return the fields and values, alternating.
+	 */
+	public String[] getFieldValues()
+	{
+		return fieldValues;
+	}
+	
+	/**
+	 * Gets the value of a field.
+	 * @param field the field name.
+	 * @return the value, or null if there is no such field.
+	 */
+	public String getField(String field)
+	{
+		for (int i = 0; i + 1 < fieldValues.length; i += 2)
+			if (fieldValues[i].equals(field))
+				return fieldValues[i + 1];
+		return null;
+	}
+	
+	/**
+	 * @return a new map of fields to values.
+	 */
+	public HashMap<String, String> getFields()
+	{
+		HashMap<String, String> out = new HashMap<String, String>();
+		for (int i = 0; i + 1 < fieldValues.length; i += 2)
+			out.put(fieldValues[i], fieldValues[i + 1]);
+		return out;
+	}
+	
+	/**
+	 * Checks if this entry was deleted from the stream while it was pending.
+	 * Deleted entries have no fields.
+	 * @return true if so, false if not.
+	 */
+	public boolean isDeleted()
+	{
+		return deleted;
+	}
+	
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder(id).append(" {");
+		for (int i = 0; i + 1 < fieldValues.length; i += 2)
+		{
+			if (i > 0)
+				sb.append(", ");
+			sb.append(fieldValues[i]).append('=').append(fieldValues[i + 1]);
+		}
+		return sb.append('}').toString();
+	}
+	
+}
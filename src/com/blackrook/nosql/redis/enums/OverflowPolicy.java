@@ -0,0 +1,23 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis.enums;
+
+/**
+ * What to do when a bounded event queue is full.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public enum OverflowPolicy
+{
+	/** Wait until there is room in the queue. */
+	BLOCK,
+	/** Discard the oldest queued event to make room for the new one. */
+	DROP_OLDEST,
+	/** Discard the new event. */
+	DROP_NEWEST;
+}
@@ -99,6 +99,24 @@ public class ReturnType<C extends Object>
 		}
 	};
 	
+	/** BYTES return type. */
+	public static final ReturnType<byte[]> BYTES = new ReturnType<byte[]>()
+	{
+		public byte[] readFrom(RESPReader reader)
+		{
+			return reader.readBytes();
+		}
+	};
+	
+	/** BYTESARRAY return type. */
+	public static final ReturnType<byte[][]> BYTESARRAY = new ReturnType<byte[][]>()
+	{
+		public byte[][] readFrom(RESPReader reader)
+		{
+			return reader.readBytesArray();
+		}
+	};
+	
 	/** DATATYPE return type. */
 	public static final ReturnType<DataType> DATATYPE = new ReturnType<DataType>()
 	{
@@ -0,0 +1,299 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis.event;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.blackrook.commons.Counter;
+import com.blackrook.nosql.redis.enums.OverflowPolicy;
+
+/**
+ * Dispatches events off of a connection's reading thread and onto an {@link Executor}.
+ * <p>
+ * Each event is filed under a key (usually a channel name). Every key gets its own bounded queue, 
+ * and at most one task drains a given queue at a time, so events under the same key are 
+ * delivered in the order they were received, while events under different keys can be 
+ * delivered in parallel. When a queue is full, the {@link OverflowPolicy} decides what happens.
+ * <p>
+ * Any {@link Executor} can be used, including one that runs each task on its own lightweight thread.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public class RedisEventDispatcher implements AutoCloseable
+{
+	/** Default queue capacity per key. */
+	public static final int DEFAULT_CAPACITY = 1024;
+	/** Maximum amount of events drained from a queue before yielding the thread to other queues. */
+	private static final int DRAIN_BATCH = 64;
+
+	/** Thread counter for ids. */
+	private static final Counter THREAD_COUNTER = new Counter();
+
+	/** The executor to run tasks on. */
+	private Executor executor;
+	/** If true, this dispatcher shuts down the executor on close. */
+	private boolean ownsExecutor;
+	/** Queue capacity per key. */
+	private int capacity;
+	/** Overflow policy. */
+	private OverflowPolicy policy;
+	/** Queues by key. */
+	private ConcurrentHashMap<String, Lane> lanes;
+	/** Dropped event count. */
+	private AtomicLong dropped;
+	/** Closed flag. */
+	private volatile boolean closed;
+
+	/**
+	 * Creates a new dispatcher that runs on its own pool of daemon threads.
+	 * The pool is shut down when this dispatcher is closed.
+	 * @param threads the amount of threads.
+	 * @param capacity the queue capacity per key.
+	 * @param policy the policy for full queues.
+	 * @throws IllegalArgumentException if threads or capacity is less than 1.
+	 */
+	public RedisEventDispatcher(int threads, int capacity, OverflowPolicy policy)
+	{
+		this(Executors.newFixedThreadPool(threads, new DispatchThreadFactory()), capacity, policy);
+		this.ownsExecutor = true;
+	}
+
+	/**
+	 * Creates a new dispatcher that runs on an existing {@link Executor}.
+	 * The executor is not shut down when this dispatcher is closed.
+	 * @param executor the executor to run event delivery on.
+	 * @param capacity the queue capacity per key.
+	 * @param policy the policy for full queues.
+	 * @throws IllegalArgumentException if capacity is less than 1.
+	 */
+	public RedisEventDispatcher(Executor executor, int capacity, OverflowPolicy policy)
+	{
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be 1 or greater.");
+		this.executor = executor;
+		this.ownsExecutor = false;
+		this.capacity = capacity;
+		this.policy = policy;
+		this.lanes = new ConcurrentHashMap<String, Lane>();
+		this.dropped = new AtomicLong(0L);
+		this.closed = false;
+	}
+
+	/**
+	 * Queues an event for delivery.
+	 * Depending on the {@link OverflowPolicy}, this may block if the queue for the key is full.
+	 * @param key the ordering key (events with the same key are delivered in order).
+	 * @param event the event delivery task.
+	 * @return true if the event was queued, false if it was dropped.
+	 */
+	public boolean dispatch(String key, Runnable event)
+	{
+		if (closed)
+		{
+			dropped.incrementAndGet();
+			return false;
+		}
+		
+		while (true)
+		{
+			Lane lane = lanes.get(key);
+			if (lane == null)
+			{
+				Lane created = new Lane(key);
+				lane = lanes.putIfAbsent(key, created);
+				if (lane == null)
+					lane = created;
+			}
+			
+			synchronized (lane)
+			{
+				// lane was emptied and removed while we looked it up.
+				if (lane.retired)
+					continue;
+				
+				if (lane.queue.size() >= capacity)
+				{
+					switch (policy)
+					{
+						case DROP_NEWEST:
+							dropped.incrementAndGet();
+							return false;
+						case DROP_OLDEST:
+							lane.queue.pollFirst();
+							dropped.incrementAndGet();
+							break;
+						case BLOCK:
+						default:
+							while (lane.queue.size() >= capacity && !closed)
+							{
+								try {
+									lane.wait();
+								} catch (InterruptedException e) {
+									Thread.currentThread().interrupt();
+									dropped.incrementAndGet();
+									return false;
+								}
+							}
+							if (closed)
+							{
+								dropped.incrementAndGet();
+								return false;
+							}
+							break;
+					}
+					
+					// lane was drained and removed while we waited.
+					if (lane.retired)
+						continue;
+				}
+				
+				lane.queue.addLast(event);
+				if (!lane.scheduled)
+				{
+					lane.scheduled = true;
+					schedule(lane);
+				}
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Returns the amount of events dropped so far, either from full queues or from dispatching after close.
+	 */
+	public long getDroppedCount()
+	{
+		return dropped.get();
+	}
+
+	/**
+	 * Returns the amount of events waiting to be delivered across all keys.
+	 */
+	public int getPendingCount()
+	{
+		int out = 0;
+		for (Lane lane : lanes.values())
+		{
+			synchronized (lane)
+			{
+				out += lane.queue.size();
+			}
+		}
+		return out;
+	}
+
+	/**
+	 * Stops accepting events.
+	 * Events that are already queued may still be delivered.
+	 * If this dispatcher created its own threads, they are shut down.
+	 */
+	@Override
+	public void close()
+	{
+		closed = true;
+		for (Lane lane : lanes.values())
+		{
+			synchronized (lane)
+			{
+				lane.notifyAll();
+			}
+		}
+		if (ownsExecutor)
+			((ExecutorService)executor).shutdown();
+	}
+
+	// Submits a lane for draining. Must be called while holding the lane's lock.
+	private void schedule(Lane lane)
+	{
+		try {
+			executor.execute(lane);
+		} catch (RejectedExecutionException e) {
+			dropped.addAndGet(lane.queue.size());
+			lane.queue.clear();
+			lane.scheduled = false;
+			lane.notifyAll();
+		}
+	}
+	
+	/**
+	 * A queue of events for a single key.
+	 */
+	private class Lane implements Runnable
+	{
+		private String key;
+		private ArrayDeque<Runnable> queue;
+		private boolean scheduled;
+		private boolean retired;
+		
+		Lane(String key)
+		{
+			this.key = key;
+			this.queue = new ArrayDeque<Runnable>(Math.min(capacity, 16));
+			this.scheduled = false;
+			this.retired = false;
+		}
+		
+		@Override
+		public void run()
+		{
+			for (int i = 0; i < DRAIN_BATCH; i++)
+			{
+				Runnable event;
+				synchronized (this)
+				{
+					event = queue.pollFirst();
+					if (event == null)
+					{
+						scheduled = false;
+						retired = true;
+						lanes.remove(key, this);
+						return;
+					}
+					if (policy == OverflowPolicy.BLOCK)
+						notifyAll();
+				}
+				
+				try {
+					event.run();
+				} catch (Throwable t) {
+					Thread thread = Thread.currentThread();
+					thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+				}
+			}
+			
+			// yield to other lanes.
+			synchronized (this)
+			{
+				schedule(this);
+			}
+		}
+	}
+	
+	/**
+	 * Thread factory for dispatcher-owned threads.
+	 */
+	private static class DispatchThreadFactory implements ThreadFactory
+	{
+		@Override
+		public Thread newThread(Runnable r)
+		{
+			Thread out = new Thread(r);
+			out.setName("RedisDispatch-" + THREAD_COUNTER.incr());
+			out.setDaemon(true);
+			return out;
+		}
+	}
+	
+}
@@ -0,0 +1,414 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis.event;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.blackrook.nosql.redis.RedisMonitorConnection;
+
+/**
+ * A {@link RedisMonitorListener} that finds the hottest keys and commands over a sliding time window.
+ * <p>
+ * Key hits are counted in a count-min sketch per time slot, plus a running sketch of the whole window,
+ * so memory is fixed no matter how many distinct keys are seen: <code>(slots + 1) * depth * width</code> longs.
+ * The window slides one slot at a time: when a slot expires, its counts are subtracted from the window.
+ * The hottest keys are kept in a heap of bounded size. Sketch counts can be overestimated by collisions, 
+ * never underestimated, and the chance and size of overestimates shrink as depth and width grow.
+ * <p>
+ * Keys are taken from the arguments of events, so the {@link RedisMonitorConnection} must decode arguments
+ * (the default). Commands without keys are counted as commands only.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public class RedisHotKeyAnalyzer implements RedisMonitorListener
+{
+	/** Default window length: one minute. */
+	public static final long DEFAULT_WINDOW_MILLIS = 60000L;
+	/** Default amount of slots per window. */
+	public static final int DEFAULT_SLOTS = 6;
+	/** Default sketch depth (hash functions). */
+	public static final int DEFAULT_DEPTH = 4;
+	/** Default sketch width (counters per hash function). */
+	public static final int DEFAULT_WIDTH = 2048;
+	
+	/** Key spec: no keys. */
+	private static final int[] KEYS_NONE = {-1, 0, 0};
+	/** Key spec: first argument. */
+	private static final int[] KEYS_FIRST = {0, 0, 0};
+	/** Key spec: all arguments. */
+	private static final int[] KEYS_ALL = {0, 1, 0};
+	/** Key spec: every other argument (keys and values). */
+	private static final int[] KEYS_PAIRS = {0, 2, 0};
+	/** Key spec: all arguments but the last (blocking pops with timeouts). */
+	private static final int[] KEYS_ALL_BUT_LAST = {0, 1, 1};
+	/** Key specs by command: {first index, step (0 = only first), amount to leave off the end}. */
+	private static final Map<String, int[]> KEY_SPECS = new HashMap<String, int[]>();
+	
+	static
+	{
+		for (String c : new String[]{"auth", "bgrewriteaof", "bgsave", "client", "cluster", "command", "config", 
+			"dbsize", "debug", "discard", "echo", "eval", "evalsha", "exec", "flushall", "flushdb", "hello", "info", 
+			"keys", "lastsave", "latency", "memory", "monitor", "multi", "object", "ping", "psubscribe", "publish", 
+			"punsubscribe", "quit", "randomkey", "readonly", "readwrite", "role", "save", "scan", "script", "select", 
+			"shutdown", "slaveof", "replicaof", "slowlog", "subscribe", "swapdb", "sync", "time", "unsubscribe", 
+			"unwatch", "wait"})
+			KEY_SPECS.put(c, KEYS_NONE);
+		for (String c : new String[]{"del", "exists", "mget", "pfcount", "pfmerge", "rename", "renamenx", 
+			"rpoplpush", "sdiff", "sdiffstore", "sinter", "sinterstore", "smove", "sunion", "sunionstore", "touch", 
+			"unlink", "watch"})
+			KEY_SPECS.put(c, KEYS_ALL);
+		for (String c : new String[]{"mset", "msetnx"})
+			KEY_SPECS.put(c, KEYS_PAIRS);
+		for (String c : new String[]{"blpop", "brpop", "bzpopmin", "bzpopmax"})
+			KEY_SPECS.put(c, KEYS_ALL_BUT_LAST);
+	}
+	
+	/** Amount of top keys/commands to keep. */
+	private int topK;
+	/** Sketch depth. */
+	private int depth;
+	/** Sketch width. */
+	private int width;
+	/** Slot length in milliseconds. */
+	private long slotMillis;
+	
+	/** Sketch per slot, each depth * width. */
+	private long[][] slotSketches;
+	/** Sketch of the whole window (sum of all slots). */
+	private long[] windowSketch;
+	/** Key hits per slot. */
+	private long[] slotTotals;
+	/** Command counts per slot. */
+	private HashMap<String, long[]> commandCounts;
+	/** Current slot. */
+	private int slot;
+	/** End time of the current slot. */
+	private long slotEnd;
+	
+	/** Top key candidates by key. */
+	private HashMap<String, Candidate> candidates;
+	/** Top key candidates, smallest first. */
+	private PriorityQueue<Candidate> heap;
+	
+	/**
+	 * Creates a new analyzer with a one-minute window in six slots, using the default sketch size.
+	 * @param topK the amount of top keys and commands to report.
+	 */
+	public RedisHotKeyAnalyzer(int topK)
+	{
+		this(topK, DEFAULT_WINDOW_MILLIS, DEFAULT_SLOTS, DEFAULT_DEPTH, DEFAULT_WIDTH);
+	}
+	
+	/**
+	 * Creates a new analyzer.
+	 * @param topK the amount of top keys and commands to report.
+	 * @param windowMillis the window length in milliseconds.
+	 * @param slots the amount of slots to split the window into. The window slides by one slot at a time.
+	 * @param depth the sketch depth (number of hash functions).
+	 * @param width the sketch width (counters per hash function).
+	 * @throws IllegalArgumentException if any value is less than 1, or the window is shorter than the amount of slots.
+	 */
+	public RedisHotKeyAnalyzer(int topK, long windowMillis, int slots, int depth, int width)
+	{
+		if (topK < 1 || slots < 1 || depth < 1 || width < 1)
+			throw new IllegalArgumentException("Top-K, slots, depth, and width must be 1 or greater.");
+		if (windowMillis < slots)
+			throw new IllegalArgumentException("Window must be at least one millisecond per slot.");
+		
+		this.topK = topK;
+		this.depth = depth;
+		this.width = width;
+		this.slotMillis = windowMillis / slots;
+		this.slotSketches = new long[slots][depth * width];
+		this.windowSketch = new long[depth * width];
+		this.slotTotals = new long[slots];
+		this.commandCounts = new HashMap<String, long[]>();
+		this.slot = 0;
+		this.slotEnd = System.currentTimeMillis() + slotMillis;
+		this.candidates = new HashMap<String, Candidate>();
+		this.heap = new PriorityQueue<Candidate>(topK, CANDIDATE_ORDER);
+	}
+	
+	@Override
+	public synchronized void onMonitorEvent(RedisMonitorEvent event)
+	{
+		advance(System.currentTimeMillis());
+		
+		String command = event.getCommand().toLowerCase(Locale.ENGLISH);
+		long[] counts = commandCounts.get(command);
+		if (counts == null)
+			commandCounts.put(command, counts = new long[slotSketches.length]);
+		counts[slot]++;
+		
+		int[] spec = KEY_SPECS.get(command);
+		if (spec == null)
+			spec = KEYS_FIRST;
+		String[] args = event.getArguments();
+		if (spec[0] < 0 || args.length <= spec[0])
+			return;
+		if (spec[1] == 0)
+			add(args[spec[0]]);
+		else for (int i = spec[0]; i < args.length - spec[2]; i += spec[1])
+			add(args[i]);
+	}
+	
+	/**
+	 * Counts a hit on a key.
+	 * This is called for each key in monitored events, but can be called directly.
+	 * @param key the key.
+	 */
+	public synchronized void add(String key)
+	{
+		advance(System.currentTimeMillis());
+		
+		long[] sketch = slotSketches[slot];
+		long hash = hash(key);
+		long estimate = Long.MAX_VALUE;
+		for (int row = 0; row < depth; row++)
+		{
+			int index = index(hash, row);
+			sketch[index]++;
+			estimate = Math.min(estimate, ++windowSketch[index]);
+		}
+		slotTotals[slot]++;
+		
+		Candidate candidate = candidates.get(key);
+		if (candidate != null)
+		{
+			heap.remove(candidate);
+			candidate.count = estimate;
+			heap.add(candidate);
+		}
+		else if (heap.size() < topK)
+		{
+			candidate = new Candidate(key, estimate);
+			candidates.put(key, candidate);
+			heap.add(candidate);
+		}
+		else if (estimate > heap.peek().count)
+		{
+			candidates.remove(heap.poll().key);
+			candidate = new Candidate(key, estimate);
+			candidates.put(key, candidate);
+			heap.add(candidate);
+		}
+	}
+	
+	/**
+	 * Gets the estimated count of a key in the current window.
+	 * @param key the key.
+	 * @return the estimated count, which may be higher than the true count, but never lower.
+	 */
+	public synchronized long estimate(String key)
+	{
+		advance(System.currentTimeMillis());
+		return estimate(hash(key));
+	}
+	
+	/**
+	 * Makes a report of the hottest keys and commands in the current window.
+	 * @return a new report.
+	 */
+	public synchronized RedisHotKeyReport report()
+	{
+		long now = System.currentTimeMillis();
+		advance(now);
+		
+		List<RedisHotKeyReport.Entry> keys = new ArrayList<RedisHotKeyReport.Entry>(heap.size());
+		for (Candidate candidate : heap)
+			keys.add(new RedisHotKeyReport.Entry(candidate.key, candidate.count));
+		Collections.sort(keys, ENTRY_ORDER);
+		
+		List<RedisHotKeyReport.Entry> commands = new ArrayList<RedisHotKeyReport.Entry>(commandCounts.size());
+		for (Map.Entry<String, long[]> entry : commandCounts.entrySet())
+		{
+			long sum = 0;
+			for (long n : entry.getValue())
+				sum += n;
+			if (sum > 0)
+				commands.add(new RedisHotKeyReport.Entry(entry.getKey(), sum));
+		}
+		Collections.sort(commands, ENTRY_ORDER);
+		if (commands.size() > topK)
+			commands = new ArrayList<RedisHotKeyReport.Entry>(commands.subList(0, topK));
+		
+		long total = 0;
+		for (long n : slotTotals)
+			total += n;
+		
+		return new RedisHotKeyReport(now, slotMillis * slotSketches.length, total, keys, commands);
+	}
+	
+	/**
+	 * Schedules periodic reports.
+	 * @param executor the executor to schedule reports on.
+	 * @param period the time between reports.
+	 * @param unit the time unit of the period.
+	 * @param listener the listener to send reports to.
+	 * @return the future for the scheduled reports, for cancelling them.
+	 */
+	public ScheduledFuture<?> scheduleReports(ScheduledExecutorService executor, long period, TimeUnit unit, final RedisHotKeyReportListener listener)
+	{
+		return executor.scheduleAtFixedRate(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				listener.onReport(report());
+			}
+		}, period, period, unit);
+	}
+	
+	/**
+	 * Clears all counts.
+	 */
+	public synchronized void reset()
+	{
+		for (long[] sketch : slotSketches)
+			clear(sketch);
+		clear(windowSketch);
+		clear(slotTotals);
+		commandCounts.clear();
+		candidates.clear();
+		heap.clear();
+		slotEnd = System.currentTimeMillis() + slotMillis;
+	}
+	
+	// Slides the window up to a time.
+	private void advance(long now)
+	{
+		if (now < slotEnd)
+			return;
+		
+		int slots = slotSketches.length;
+		long expired = (now - slotEnd) / slotMillis + 1;
+		if (expired >= slots)
+		{
+			// everything expired.
+			for (long[] sketch : slotSketches)
+				clear(sketch);
+			clear(windowSketch);
+			clear(slotTotals);
+			for (long[] counts : commandCounts.values())
+				clear(counts);
+			slot = (int)((slot + expired) % slots);
+		}
+		else for (int i = 0; i < expired; i++)
+		{
+			slot = (slot + 1) % slots;
+			long[] sketch = slotSketches[slot];
+			for (int j = 0; j < sketch.length; j++)
+				windowSketch[j] -= sketch[j];
+			clear(sketch);
+			slotTotals[slot] = 0;
+			for (long[] counts : commandCounts.values())
+				counts[slot] = 0;
+		}
+		slotEnd += expired * slotMillis;
+		
+		// candidates' counts have dropped: re-estimate and rebuild.
+		Candidate[] current = heap.toArray(new Candidate[heap.size()]);
+		heap.clear();
+		candidates.clear();
+		for (Candidate candidate : current)
+		{
+			candidate.count = estimate(hash(candidate.key));
+			if (candidate.count > 0)
+			{
+				candidates.put(candidate.key, candidate);
+				heap.add(candidate);
+			}
+		}
+	}
+	
+	// Window estimate for a key hash.
+	private long estimate(long hash)
+	{
+		long out = Long.MAX_VALUE;
+		for (int row = 0; row < depth; row++)
+			out = Math.min(out, windowSketch[index(hash, row)]);
+		return out;
+	}
+	
+	// Sketch index of a key hash in a row, from the two halves of the hash.
+	private int index(long hash, int row)
+	{
+		int h1 = (int)hash;
+		int h2 = (int)(hash >>> 32) | 1;
+		return row * width + ((h1 + row * h2) & 0x7fffffff) % width;
+	}
+	
+	private static void clear(long[] array)
+	{
+		for (int i = 0; i < array.length; i++)
+			array[i] = 0;
+	}
+	
+	// 64-bit key hash: FNV-1a over the characters, then the murmur3 finalizer so that similar keys spread out.
+	// Keys with the same String.hashCode() still land apart.
+	private static long hash(String key)
+	{
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < key.length(); i++)
+		{
+			h ^= key.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+	
+	private static final Comparator<Candidate> CANDIDATE_ORDER = new Comparator<Candidate>()
+	{
+		@Override
+		public int compare(Candidate a, Candidate b)
+		{
+			return Long.compare(a.count, b.count);
+		}
+	};
+	
+	private static final Comparator<RedisHotKeyReport.Entry> ENTRY_ORDER = new Comparator<RedisHotKeyReport.Entry>()
+	{
+		@Override
+		public int compare(RedisHotKeyReport.Entry a, RedisHotKeyReport.Entry b)
+		{
+			int c = Long.compare(b.getCount(), a.getCount());
+			return c != 0 ? c : a.getName().compareTo(b.getName());
+		}
+	};
+	
+	/**
+	 * A top key candidate.
+	 */
+	private static class Candidate
+	{
+		private String key;
+		private long count;
+		
+		Candidate(String key, long count)
+		{
+			this.key = key;
+			this.count = count;
+		}
+	}
+	
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis.event;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A report of the hottest keys and commands from a {@link RedisHotKeyAnalyzer}
+ * over its sliding window.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public class RedisHotKeyReport
+{
+	/** Report time in milliseconds since the Epoch. */
+	private long time;
+	/** Window length in milliseconds. */
+	private long windowMillis;
+	/** Total key hits in the window. */
+	private long totalKeys;
+	/** Top keys. */
+	private List<Entry> keys;
+	/** Top commands. */
+	private List<Entry> commands;
+	
+	RedisHotKeyReport(long time, long windowMillis, long totalKeys, List<Entry> keys, List<Entry> commands)
+	{
+		this.time = time;
+		this.windowMillis = windowMillis;
+		this.totalKeys = totalKeys;
+		this.keys = Collections.unmodifiableList(keys);
+		this.commands = Collections.unmodifiableList(commands);
+	}
+
+	/**
+	 * @return the time of this report in milliseconds since the Epoch.
+	 */
+	public long getTime()
+	{
+		return time;
+	}
+
+	/**
+	 * @return the length of the window that this report covers, in milliseconds.
+	 */
+	public long getWindowMillis()
+	{
+		return windowMillis;
+	}
+
+	/**
+	 * @return the total amount of key hits in the window.
+	 */
+	public long getTotalKeys()
+	{
+		return totalKeys;
+	}
+
+	/**
+	 * Gets the hottest keys, hottest first.
+	 * Counts are estimates: they may be higher than the true count, but never lower.
+	 * @return an unmodifiable list of keys and estimated counts.
+	 */
+	public List<Entry> getKeys()
+	{
+		return keys;
+	}
+
+	/**
+	 * Gets the most used commands, most used first.
+	 * @return an unmodifiable list of commands (lowercase) and exact counts.
+	 */
+	public List<Entry> getCommands()
+	{
+		return commands;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "Hot keys " + keys + ", commands " + commands + " over " + windowMillis + "ms";
+	}
+	
+	/**
+	 * A single name and count in a report.
+	 */
+	public static class Entry
+	{
+		private String name;
+		private long count;
+		
+		Entry(String name, long count)
+		{
+			this.name = name;
+			this.count = count;
+		}
+		
+		/**
+		 * @return the key or command name.
+		 */
+		public String getName()
+		{
+			return name;
+		}
+		
+		/**
+		 * @return the count.
+		 */
+		public long getCount()
+		{
+			return count;
+		}
+		
+		@Override
+		public String toString()
+		{
+			return name + "=" + count;
+		}
+		
+	}
+	
+}
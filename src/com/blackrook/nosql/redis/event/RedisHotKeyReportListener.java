@@ -0,0 +1,23 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis.event;
+
+/**
+ * A listener for periodic reports from a {@link RedisHotKeyAnalyzer}.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public interface RedisHotKeyReportListener
+{
+	/**
+	 * Called when a report is made.
+	 * @param report the report.
+	 */
+	public void onReport(RedisHotKeyReport report);
+	
+}
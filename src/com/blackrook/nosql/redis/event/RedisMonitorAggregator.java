@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis.event;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.blackrook.nosql.redis.RedisMonitorConnection;
+
+/**
+ * A {@link RedisMonitorListener} that keeps running statistics of monitored commands:
+ * counts per command, argument size distributions per command, and counts per client and per database.
+ * All counters are primitive adders, created once per command, client, and database, and are
+ * safe to update from several connections at once.
+ * <p>
+ * Argument sizes are kept in power-of-two buckets: bucket 0 counts commands with no argument bytes,
+ * and bucket <i>n</i> counts commands with at least 2<sup><i>n</i>-1</sup> and less than 2<sup><i>n</i></sup>
+ * argument bytes.
+ * <p>
+ * If the {@link RedisMonitorConnection} is sampling, these are counts of sampled events only.
+ * Argument decoding can be turned off on the connection, since this only needs argument lengths.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public class RedisMonitorAggregator implements RedisMonitorListener
+{
+	/** Number of argument size buckets. */
+	public static final int SIZE_BUCKETS = 32;
+	/** Default maximum amount of clients to track separately. */
+	public static final int DEFAULT_MAX_CLIENTS = 10000;
+	/** Client name for events from clients past the maximum amount tracked. */
+	public static final String OTHER_CLIENTS = "(other)";
+
+	/** Command statistics by command name (lowercase). */
+	private ConcurrentHashMap<String, CommandStats> commands;
+	/** Event counts by client address and port. */
+	private ConcurrentHashMap<String, LongAdder> clients;
+	/** Event counts by database id. */
+	private ConcurrentHashMap<Integer, LongAdder> databases;
+	/** Total events. */
+	private LongAdder total;
+	/** Maximum amount of clients to track separately. */
+	private int maxClients;
+	/** Time of start or last reset, in nanoseconds. */
+	private volatile long startNanos;
+	
+	/**
+	 * Creates a new aggregator that tracks up to {@value #DEFAULT_MAX_CLIENTS} clients.
+	 */
+	public RedisMonitorAggregator()
+	{
+		this(DEFAULT_MAX_CLIENTS);
+	}
+	
+	/**
+	 * Creates a new aggregator.
+	 * @param maxClients the maximum amount of clients to track separately. Events from other clients 
+	 * are counted under {@link #OTHER_CLIENTS}.
+	 */
+	public RedisMonitorAggregator(int maxClients)
+	{
+		this.commands = new ConcurrentHashMap<String, CommandStats>();
+		this.clients = new ConcurrentHashMap<String, LongAdder>();
+		this.databases = new ConcurrentHashMap<Integer, LongAdder>();
+		this.total = new LongAdder();
+		this.maxClients = maxClients;
+		this.startNanos = System.nanoTime();
+	}
+
+	@Override
+	public void onMonitorEvent(RedisMonitorEvent event)
+	{
+		total.increment();
+		
+		String name = event.getCommand();
+		CommandStats stats = commands.get(name);
+		if (stats == null)
+		{
+			// commands can be sent in any case; keep one entry per command.
+			String lower = name.toLowerCase(Locale.ENGLISH);
+			stats = commands.get(lower);
+			if (stats == null)
+			{
+				CommandStats created = new CommandStats();
+				stats = commands.putIfAbsent(lower, created);
+				if (stats == null)
+					stats = created;
+			}
+			if (!lower.equals(name))
+				commands.putIfAbsent(name, stats);
+		}
+		stats.count.increment();
+		stats.argumentBytes.add(event.getArgumentLength());
+		stats.sizes.incrementAndGet(bucketOf(event.getArgumentLength()));
+		
+		String client = event.getPort() > 0 ? event.getAddress() + ':' + event.getPort() : event.getAddress();
+		LongAdder clientCount = clients.get(client);
+		if (clientCount == null)
+		{
+			if (clients.size() >= maxClients)
+				client = OTHER_CLIENTS;
+			clientCount = counter(clients, client);
+		}
+		clientCount.increment();
+		
+		LongAdder dbCount = databases.get(event.getDBId());
+		if (dbCount == null)
+			dbCount = counter(databases, event.getDBId());
+		dbCount.increment();
+	}
+	
+	/**
+	 * Clears all statistics and restarts the elapsed time.
+	 */
+	public void reset()
+	{
+		commands.clear();
+		clients.clear();
+		databases.clear();
+		total.reset();
+		startNanos = System.nanoTime();
+	}
+	
+	/**
+	 * Takes a snapshot of the current statistics.
+	 * Counters are read one at a time while events may still be counted, so a snapshot
+	 * taken during heavy traffic can be off by a few events between its parts.
+	 * @return a new snapshot.
+	 */
+	public RedisMonitorStats snapshot()
+	{
+		RedisMonitorStats out = new RedisMonitorStats(System.nanoTime() - startNanos, total.sum());
+		for (Map.Entry<String, CommandStats> entry : commands.entrySet())
+		{
+			String name = entry.getKey();
+			// skip aliases of other cases.
+			if (!name.equals(name.toLowerCase(Locale.ENGLISH)))
+				continue;
+			CommandStats stats = entry.getValue();
+			long[] sizes = new long[SIZE_BUCKETS];
+			for (int i = 0; i < SIZE_BUCKETS; i++)
+				sizes[i] = stats.sizes.get(i);
+			out.putCommand(name, stats.count.sum(), stats.argumentBytes.sum(), sizes);
+		}
+		for (Map.Entry<String, LongAdder> entry : clients.entrySet())
+			out.putClient(entry.getKey(), entry.getValue().sum());
+		for (Map.Entry<Integer, LongAdder> entry : databases.entrySet())
+			out.putDatabase(entry.getKey(), entry.getValue().sum());
+		return out;
+	}
+	
+	/**
+	 * Gets the size bucket for an argument length.
+	 * @param length the length in bytes.
+	 * @return the bucket index.
+	 */
+	public static int bucketOf(long length)
+	{
+		if (length <= 0)
+			return 0;
+		return Math.min(64 - Long.numberOfLeadingZeros(length), SIZE_BUCKETS - 1);
+	}
+	
+	// Gets or creates a counter.
+	private static <K> LongAdder counter(ConcurrentHashMap<K, LongAdder> map, K key)
+	{
+		LongAdder out = map.get(key);
+		if (out == null)
+		{
+			LongAdder created = new LongAdder();
+			out = map.putIfAbsent(key, created);
+			if (out == null)
+				out = created;
+		}
+		return out;
+	}
+	
+	/**
+	 * Counters for a single command.
+	 */
+	private static class CommandStats
+	{
+		private LongAdder count = new LongAdder();
+		private LongAdder argumentBytes = new LongAdder();
+		private AtomicLongArray sizes = new AtomicLongArray(SIZE_BUCKETS);
+	}
+	
+}
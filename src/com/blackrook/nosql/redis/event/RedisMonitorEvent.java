@@ -7,9 +7,9 @@
  ******************************************************************************/
 package com.blackrook.nosql.redis.event;
 
+import java.nio.charset.Charset;
 import java.util.Date;
 
-import com.blackrook.commons.linkedlist.Queue;
 import com.blackrook.nosql.redis.RedisMonitorConnection;
 import com.blackrook.nosql.redis.exception.RedisParseException;
 
@@ -21,6 +21,7 @@ import com.blackrook.nosql.redis.exception.RedisParseException;
 public final class RedisMonitorEvent
 {
 	private static final String[] EMPTY_ARGS = new String[0];
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
 	
 	/** Server time in seconds. */
 	private long serverTimeSeconds;
@@ -38,6 +39,10 @@ public final class RedisMonitorEvent
 	private String command;
 	/** Arguments. */
 	private String[] arguments;
+	/** Argument count. */
+	private int argumentCount;
+	/** Argument length in bytes. */
+	private long argumentLength;
 	
 	private RedisMonitorEvent()
 	{
@@ -51,201 +56,166 @@ public final class RedisMonitorEvent
 	 */
 	public static RedisMonitorEvent parse(String monitorString)
 	{
-		final int STATE_SECS = 0;
-		final int STATE_MICROS = 1;
-		final int STATE_AFTERMICROS = 2;
-		final int STATE_DBID = 3;
-		final int STATE_ADDRESS = 4;
-		final int STATE_PORT = 5;
-		final int STATE_BEFORECOMMAND = 6;
-		final int STATE_COMMAND = 7;
-		final int STATE_BEFOREARGUMENT = 8;
-		final int STATE_ARGUMENT = 9;
-		
 		if (monitorString == null)
 			return null;
-		
-		StringBuilder sb = new StringBuilder();
+		byte[] data = monitorString.getBytes(UTF_8);
+		return parse(data, 0, data.length, true);
+	}
+
+	/**
+	 * Parses the bytes of a line read by a MONITORed connection and
+	 * turns it into an event, without decoding the whole line to a string first.
+	 * <p>
+	 * If arguments are not decoded, {@link #getArguments()} returns an empty array, but
+	 * {@link #getArgumentCount()} and {@link #getArgumentLength()} are still set. This
+	 * saves a String per argument, which is most of the cost on a busy server.
+	 * @param data the line data.
+	 * @param offset the offset into the data of the start of the line.
+	 * @param length the length of the line in bytes.
+	 * @param decodeArguments if true, decode the command arguments into Strings.
+	 * @return the parsed event.
+	 * @throws RedisParseException if the monitor line is malformed.
+	 * @since 2.6.0
+	 */
+	public static RedisMonitorEvent parse(byte[] data, int offset, int length, boolean decodeArguments)
+	{
 		RedisMonitorEvent out = new RedisMonitorEvent();
-		boolean escape = false;
+		int end = offset + length;
+		int i = offset;
+		
+		// seconds
+		long n = 0;
+		if (i >= end || !isDigit(data[i]))
+			throw new RedisParseException("Malformed MONITOR response. Seconds: Expected digit");
+		while (i < end && isDigit(data[i]))
+			n = (n * 10) + (data[i++] - '0');
+		if (i >= end || data[i++] != '.')
+			throw new RedisParseException("Malformed MONITOR response. Seconds: Expected digit or '.'");
+		out.serverTimeSeconds = n;
+
+		// micros
+		n = 0;
+		while (i < end && isDigit(data[i]))
+			n = (n * 10) + (data[i++] - '0');
+		if (i >= end || data[i++] != ' ')
+			throw new RedisParseException("Malformed MONITOR response. Micros: Expected digit or space");
+		out.serverTimeMicros = n;
 		
-		int i = 0;
-		int state = STATE_SECS;
-		Queue<String> args = new Queue<String>();
+		if (i >= end || data[i++] != '[')
+			throw new RedisParseException("Malformed MONITOR response. Expected '['");
 		
-		while (i < monitorString.length())
+		// database
+		n = 0;
+		while (i < end && isDigit(data[i]))
+			n = (n * 10) + (data[i++] - '0');
+		if (i >= end || data[i++] != ' ')
+			throw new RedisParseException("Malformed MONITOR response. DB: Expected digit or space");
+		out.dbId = (int)n;
+		
+		// address and port - the port is after the last colon, if any (unix sockets and Lua have none).
+		int addressStart = i;
+		int colon = -1;
+		while (i < end && data[i] != ']')
 		{
-			char c = monitorString.charAt(i);
-			
-			switch(state)
+			if (data[i] == ':')
+				colon = i;
+			i++;
+		}
+		if (i >= end)
+			throw new RedisParseException("Malformed MONITOR response. Address: Expected ']'");
+		int addressEnd = i++;
+		int port = 0;
+		if (colon >= 0)
+		{
+			for (int p = colon + 1; p < addressEnd; p++)
 			{
-			
-				case STATE_SECS:
-				{
-					if (Character.isDigit(c))
-						sb.append(c);
-					else if (c == '.')
-					{
-						out.serverTimeSeconds = Long.parseLong(sb.toString());
-						sb.delete(0, sb.length());
-						state = STATE_MICROS;
-					}
-					else throw new RedisParseException("Malformed MONITOR response. Seconds: Expected digit or '.'");
-				}
-				break;
-				
-				case STATE_MICROS:
-				{
-					if (Character.isDigit(c))
-						sb.append(c);
-					else if (c == ' ')
-					{
-						out.serverTimeMicros = Long.parseLong(sb.toString());
-						sb.delete(0, sb.length());
-						out.serverTime = new Date((out.serverTimeSeconds * 1000) + (out.serverTimeMicros / 1000));
-						state = STATE_AFTERMICROS;
-					}
-					else throw new RedisParseException("Malformed MONITOR response. Micros: Expected digit or space");
-				}
-				break;
-				
-				case STATE_AFTERMICROS:
+				if (!isDigit(data[p]))
 				{
-					if (c == '[')
-					{
-						state = STATE_DBID;
-					}
-					else throw new RedisParseException("Malformed MONITOR response. Expected '['");
-				}
-				break;
-				
-				case STATE_DBID:
-				{
-					if (Character.isDigit(c))
-						sb.append(c);
-					else if (c == ' ')
-					{
-						out.dbId = Integer.parseInt(sb.toString());
-						sb.delete(0, sb.length());
-						state = STATE_ADDRESS;
-					}
-					else throw new RedisParseException("Malformed MONITOR response. DB: Expected digit or space");
+					port = -1;
+					break;
 				}
-				break;
-
-				case STATE_ADDRESS:
-				{
-					if (Character.isDigit(c) || c == '.' || Character.isLetter(c))
-						sb.append(c);
-					else if (c == ':')
-					{
-						out.address = sb.toString();
-						sb.delete(0, sb.length());
-						state = STATE_PORT;
-					}
-					else throw new RedisParseException("Malformed MONITOR response. Address: Expected digit, letter, '.' or ':'");
-				}
-				break;
+				port = (port * 10) + (data[p] - '0');
+			}
+		}
+		if (colon >= 0 && port >= 0)
+		{
+			out.address = new String(data, addressStart, colon - addressStart, UTF_8);
+			out.port = port;
+		}
+		else
+			out.address = new String(data, addressStart, addressEnd - addressStart, UTF_8);
+		
+		// command and arguments
+		String[] args = decodeArguments ? new String[4] : null;
+		int argCount = 0;
+		long argLength = 0;
+		boolean command = true;
+		while (i < end)
+		{
+			if (data[i] == ' ')
+			{
+				i++;
+				continue;
+			}
+			else if (data[i] != '"')
+				throw new RedisParseException("Malformed MONITOR response. Expected start of " + (command ? "command" : "argument") + " token");
+			
+			int tokenStart = ++i;
+			int tokenLength = 0;
+			while (i < end && data[i] != '"')
+			{
+				// escapes are kept as-is, but count as one byte.
+				if (data[i] == '\\')
+					i += (i + 1 < end && data[i + 1] == 'x') ? 4 : 2;
+				else
+					i++;
+				tokenLength++;
+			}
+			if (i >= end)
+				throw new RedisParseException("Malformed MONITOR response. Message is incomplete.");
+			int tokenEnd = i++;
 
-				case STATE_PORT:
-				{
-					if (Character.isDigit(c))
-						sb.append(c);
-					else if (c == ']')
-					{
-						out.port = Integer.parseInt(sb.toString());
-						sb.delete(0, sb.length());
-						state = STATE_BEFORECOMMAND;
-					}
-					else throw new RedisParseException("Malformed MONITOR response. Port: Expected digit or ']'");
-				}
-				break;
-				
-				case STATE_BEFORECOMMAND:
-				{
-					if (c == ' ')
-					{
-						// Do nothing
-					}
-					else if (c == '"')
-					{
-						state = STATE_COMMAND;
-					}
-					else throw new RedisParseException("Malformed MONITOR response. Expected start of command token");
-				}
-				break;
-				
-				case STATE_COMMAND:
-				{
-					if (c == '"')
-					{
-						out.command = sb.toString();
-						sb.delete(0, sb.length());
-						state = STATE_BEFOREARGUMENT;
-					}
-					else
-					{
-						sb.append(c);
-					}
-				}
-				break;
-				
-				case STATE_BEFOREARGUMENT:
-				{
-					if (c == ' ')
-					{
-						// Do nothing
-					}
-					else if (c == '"')
-					{
-						state = STATE_ARGUMENT;
-					}
-					else throw new RedisParseException("Malformed MONITOR response. Expected start of argument token");
-				}
-				break;
-				
-				case STATE_ARGUMENT:
+			if (command)
+			{
+				out.command = new String(data, tokenStart, tokenEnd - tokenStart, UTF_8);
+				command = false;
+			}
+			else
+			{
+				if (decodeArguments)
 				{
-					if (escape)
-					{
-						escape = false;
-						sb.append(c);
-					}
-					else if (c == '\\')
+					if (argCount == args.length)
 					{
-						sb.append(c);
-						escape = true;
-					}
-					else if (c == '"')
-					{
-						args.add(sb.toString());
-						sb.delete(0, sb.length());
-						state = STATE_BEFOREARGUMENT;
-					}
-					else
-					{
-						sb.append(c);
+						String[] next = new String[args.length * 2];
+						System.arraycopy(args, 0, next, 0, argCount);
+						args = next;
 					}
+					args[argCount] = new String(data, tokenStart, tokenEnd - tokenStart, UTF_8);
 				}
-				break;
-				
+				argCount++;
+				argLength += tokenLength;
 			}
-			
-			i++;
 		}
 		
-		if (state != STATE_BEFOREARGUMENT)
+		if (command)
 			throw new RedisParseException("Malformed MONITOR response. Message is incomplete.");
 		
-		if (args.size() > 0)
+		out.argumentCount = argCount;
+		out.argumentLength = argLength;
+		if (decodeArguments && argCount > 0)
 		{
-			out.arguments = new String[args.size()];
-			args.toArray(out.arguments);
+			out.arguments = new String[argCount];
+			System.arraycopy(args, 0, out.arguments, 0, argCount);
 		}
 		
 		return out;
 	}
 
+	private static boolean isDigit(byte b)
+	{
+		return b >= '0' && b <= '9';
+	}
+	
 	/**
 	 * Returns the server time of the event in seconds since the Epoch.
 	 */
@@ -267,6 +237,8 @@ public final class RedisMonitorEvent
 	 */
 	public Date getServerTime()
 	{
+		if (serverTime == null)
+			serverTime = new Date((serverTimeSeconds * 1000) + (serverTimeMicros / 1000));
 		return serverTime;
 	}
 
@@ -304,10 +276,30 @@ public final class RedisMonitorEvent
 
 	/**
 	 * Returns the commands arguments.
+	 * This is empty if the arguments were not decoded.
 	 */
 	public String[] getArguments()
 	{
 		return arguments;
 	}
 	
+	/**
+	 * Returns the amount of command arguments, even if they were not decoded.
+	 * @since 2.6.0
+	 */
+	public int getArgumentCount()
+	{
+		return argumentCount;
+	}
+	
+	/**
+	 * Returns the total length of the command arguments in bytes, even if they were not decoded.
+	 * Escaped characters count as one byte.
+	 * @since 2.6.0
+	 */
+	public long getArgumentLength()
+	{
+		return argumentLength;
+	}
+	
 }
@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis.event;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A snapshot of statistics from a {@link RedisMonitorAggregator}.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public class RedisMonitorStats
+{
+	/** Elapsed time covered by this snapshot in nanoseconds. */
+	private long elapsedNanos;
+	/** Total events. */
+	private long total;
+	/** Command counts. */
+	private Map<String, Long> commandCounts;
+	/** Command argument bytes. */
+	private Map<String, Long> commandArgumentBytes;
+	/** Command argument size buckets. */
+	private Map<String, long[]> commandSizes;
+	/** Client counts. */
+	private Map<String, Long> clientCounts;
+	/** Database counts. */
+	private Map<Integer, Long> databaseCounts;
+	
+	RedisMonitorStats(long elapsedNanos, long total)
+	{
+		this.elapsedNanos = elapsedNanos;
+		this.total = total;
+		this.commandCounts = new TreeMap<String, Long>();
+		this.commandArgumentBytes = new TreeMap<String, Long>();
+		this.commandSizes = new TreeMap<String, long[]>();
+		this.clientCounts = new TreeMap<String, Long>();
+		this.databaseCounts = new TreeMap<Integer, Long>();
+	}
+	
+	void putCommand(String command, long count, long argumentBytes, long[] sizes)
+	{
+		commandCounts.put(command, count);
+		commandArgumentBytes.put(command, argumentBytes);
+		commandSizes.put(command, sizes);
+	}
+	
+	void putClient(String client, long count)
+	{
+		clientCounts.put(client, count);
+	}
+
+	void putDatabase(int db, long count)
+	{
+		databaseCounts.put(db, count);
+	}
+
+	/**
+	 * Gets the time covered by this snapshot, from the aggregator's creation or last reset.
+	 * @return the elapsed time in nanoseconds.
+	 */
+	public long getElapsedNanos()
+	{
+		return elapsedNanos;
+	}
+
+	/**
+	 * @return the total amount of events counted.
+	 */
+	public long getTotal()
+	{
+		return total;
+	}
+	
+	/**
+	 * @return the average events per second over the elapsed time.
+	 */
+	public double getRate()
+	{
+		return rate(total);
+	}
+	
+	/**
+	 * Gets event counts by command name (lowercase).
+	 * @return an unmodifiable, sorted map of command to count.
+	 */
+	public Map<String, Long> getCommandCounts()
+	{
+		return Collections.unmodifiableMap(commandCounts);
+	}
+	
+	/**
+	 * Gets the total argument bytes sent by a command.
+	 * @param command the command name (lowercase).
+	 * @return the total bytes, or 0 if the command was not seen.
+	 */
+	public long getCommandArgumentBytes(String command)
+	{
+		Long out = commandArgumentBytes.get(command);
+		return out != null ? out : 0L;
+	}
+	
+	/**
+	 * Gets the argument size distribution of a command.
+	 * @param command the command name (lowercase).
+	 * @return a copy of the size buckets (see {@link RedisMonitorAggregator#bucketOf(long)}), 
+	 * or null if the command was not seen.
+	 */
+	public long[] getCommandSizes(String command)
+	{
+		long[] out = commandSizes.get(command);
+		return out != null ? out.clone() : null;
+	}
+	
+	/**
+	 * Gets the average events per second of a command over the elapsed time.
+	 * @param command the command name (lowercase).
+	 * @return the rate.
+	 */
+	public double getCommandRate(String command)
+	{
+		Long out = commandCounts.get(command);
+		return rate(out != null ? out : 0L);
+	}
+	
+	/**
+	 * Gets event counts by client ("address:port", or just the address for clients without a port).
+	 * @return an unmodifiable, sorted map of client to count.
+	 */
+	public Map<String, Long> getClientCounts()
+	{
+		return Collections.unmodifiableMap(clientCounts);
+	}
+	
+	/**
+	 * Gets the average events per second of a client over the elapsed time.
+	 * @param client the client.
+	 * @return the rate.
+	 */
+	public double getClientRate(String client)
+	{
+		Long out = clientCounts.get(client);
+		return rate(out != null ? out : 0L);
+	}
+	
+	/**
+	 * Gets event counts by database id.
+	 * @return an unmodifiable, sorted map of database id to count.
+	 */
+	public Map<Integer, Long> getDatabaseCounts()
+	{
+		return Collections.unmodifiableMap(databaseCounts);
+	}
+	
+	/**
+	 * Gets the average events per second on a database over the elapsed time.
+	 * @param db the database id.
+	 * @return the rate.
+	 */
+	public double getDatabaseRate(int db)
+	{
+		Long out = databaseCounts.get(db);
+		return rate(out != null ? out : 0L);
+	}
+	
+	private double rate(long count)
+	{
+		return elapsedNanos > 0 ? count / (elapsedNanos / 1000000000.0) : 0.0;
+	}
+	
+}
@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis.event;
+
+import com.blackrook.nosql.redis.RedisQueueConsumer;
+
+/**
+ * A handler for items taken from a list by a {@link RedisQueueConsumer}.
+ * Items are handled on the consumer's worker threads, so implementations should be thread-safe.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public interface RedisQueueHandler
+{
+	/**
+	 * Called to handle an item.
+	 * If this returns normally, the item is removed from the processing list.
+	 * If it throws an exception, the item is handled as a failure.
+	 * @param queue the queue key.
+	 * @param item the item.
+	 * @throws Exception if the item could not be handled.
+	 */
+	public void onItem(String queue, String item) throws Exception;
+	
+	/**
+	 * Called when handling an item fails.
+	 * @param item the item.
+	 * @param cause the exception thrown while handling it.
+	 */
+	public void onItemFailed(String item, Throwable cause);
+
+	/**
+	 * Called when a worker's connection reports an error or drops.
+	 * @param cause the error.
+	 */
+	public void onConsumerError(Throwable cause);
+	
+}
@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis.event;
+
+import com.blackrook.nosql.redis.RedisMonitorConnection;
+import com.blackrook.nosql.redis.RedisPubSubConnection;
+import com.blackrook.nosql.redis.RedisReconnectPolicy;
+
+/**
+ * A listener that is told when a long-lived connection loses its socket and when it comes back.
+ * Any {@link RedisSubscriptionListener} or {@link RedisMonitorListener} added to a 
+ * {@link RedisPubSubConnection} or {@link RedisMonitorConnection} that also implements this 
+ * interface receives these calls.
+ * <p>
+ * Events published while the connection was down are not recovered - Redis does not keep them.
+ * The time between {@link #onConnectionLost(Throwable)} and {@link #onReconnect(long)} is the gap
+ * in which events may have been missed.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ * @see RedisReconnectPolicy
+ */
+public interface RedisReconnectListener
+{
+	/**
+	 * Called when the connection is lost, before any attempt to reconnect.
+	 * @param cause the exception that signaled the lost connection.
+	 */
+	public void onConnectionLost(Throwable cause);
+	
+	/**
+	 * Called when the connection is reestablished and its subscriptions (or MONITOR) have been resent.
+	 * @param gapMillis the time in milliseconds that the connection was down.
+	 */
+	public void onReconnect(long gapMillis);
+	
+	/**
+	 * Called when the connection gives up trying to reconnect.
+	 * The connection is closed after this.
+	 * @param cause the exception from the last attempt.
+	 */
+	public void onReconnectFailed(Throwable cause);
+	
+}
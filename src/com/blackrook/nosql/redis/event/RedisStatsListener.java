@@ -0,0 +1,26 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis.event;
+
+import com.blackrook.nosql.redis.RedisStatsPoller;
+import com.blackrook.nosql.redis.data.RedisStatsSample;
+
+/**
+ * A listener for samples taken by a {@link RedisStatsPoller}.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public interface RedisStatsListener
+{
+	/**
+	 * Called when a sample is taken.
+	 * @param sample the new sample.
+	 */
+	public void onSample(RedisStatsSample sample);
+	
+}
@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis.event;
+
+import com.blackrook.nosql.redis.RedisStreamConsumer;
+import com.blackrook.nosql.redis.data.RedisStreamEntry;
+
+/**
+ * A handler for entries read by a {@link RedisStreamConsumer}.
+ * Entries are handled on the consumer's executor, so implementations should be thread-safe.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public interface RedisStreamHandler
+{
+	/**
+	 * Called to handle a stream entry. 
+	 * If this returns normally, the entry is acknowledged. If it throws an exception,
+	 * the entry stays pending, and is reclaimed and handled again later.
+	 * @param key the stream key.
+	 * @param entry the entry.
+	 * @throws Exception if the entry could not be handled.
+	 */
+	public void onEntry(String key, RedisStreamEntry entry) throws Exception;
+	
+	/**
+	 * Called when handling an entry fails.
+	 * @param entry the entry.
+	 * @param cause the exception thrown while handling it, or why it could not be handed off.
+	 */
+	public void onEntryFailed(RedisStreamEntry entry, Throwable cause);
+
+	/**
+	 * Called when the consumer's connection reports an error or drops.
+	 * @param cause the error.
+	 */
+	public void onConsumerError(Throwable cause);
+	
+}
@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis.io;
+
+import java.nio.charset.Charset;
+
+/**
+ * A reusable buffer for a single undecoded reply line.
+ * Filled by {@link RESPReader#readLine(RESPLine)}, it grows as needed and is never shrunk,
+ * so reading many lines into one buffer does not allocate once it is large enough.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public final class RESPLine
+{
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	/** Line data. */
+	private byte[] data;
+	/** Line length. */
+	private int length;
+	
+	/**
+	 * Creates a line buffer with a starting capacity of 256 bytes.
+	 */
+	public RESPLine()
+	{
+		this(256);
+	}
+	
+	/**
+	 * Creates a line buffer.
+	 * @param capacity the starting capacity in bytes.
+	 */
+	public RESPLine(int capacity)
+	{
+		this.data = new byte[Math.max(capacity, 16)];
+		this.length = 0;
+	}
+	
+	/**
+	 * Gets the backing array. Only the first {@link #getLength()} bytes are the line.
+	 * The array may change after the next read.
+	 */
+	public byte[] getData()
+	{
+		return data;
+	}
+
+	/**
+	 * Gets the length of the line in bytes.
+	 */
+	public int getLength()
+	{
+		return length;
+	}
+
+	// Clears the line.
+	void clear()
+	{
+		length = 0;
+	}
+	
+	// Appends a byte.
+	void append(byte b)
+	{
+		if (length == data.length)
+		{
+			byte[] next = new byte[data.length * 2];
+			System.arraycopy(data, 0, next, 0, length);
+			data = next;
+		}
+		data[length++] = b;
+	}
+	
+	/**
+	 * @return the line, decoded as UTF-8.
+	 */
+	@Override
+	public String toString()
+	{
+		return new String(data, 0, length, UTF_8);
+	}
+	
+}
@@ -7,6 +7,8 @@
  ******************************************************************************/
 package com.blackrook.nosql.redis.io;
 
+import java.io.BufferedInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -34,11 +36,12 @@ public class RESPReader
 	
 	/**
 	 * Creates a RedisReader attached to an input stream.
+	 * The stream is buffered by this reader, since replies are parsed a byte at a time.
 	 * @param in the {@link InputStream} to wrap.
 	 */
 	public RESPReader(InputStream in)
 	{
-		this.in = in;
+		this.in = in instanceof BufferedInputStream ? in : new BufferedInputStream(in, 8192);
 		this.buffer = new DataList(1024);
 	}
 	
@@ -166,6 +169,7 @@ public class RESPReader
 	 * Reads and expects a String Reply from Redis, bulk or otherwise.
 	 * Will block until something is read from the stream.
 	 * Should be used if AND ONLY IF a non-array or Null is expected. Integers are cast to Strings.
+	 * A null array (a blocking pop that timed out) is returned as null.
 	 * @return a long or null reply.
 	 * @throws RedisException if the server reports an error.
 	 * @throws RedisParseException if an error occurs during the read.
@@ -214,6 +218,9 @@ public class RESPReader
 				resp = new String(buffer.toByteArray(), "UTF-8");
 				return resp;
 			}
+			// is null array (blocking pop timeout)
+			else if (resp.equals("*-1"))
+				return null;
 			else
 				throw new RedisException("Expected string reply.");
 				
@@ -223,6 +230,114 @@ public class RESPReader
 		
 	}
 	
+	/**
+	 * Reads and expects a String Reply from Redis, bulk or otherwise, as raw bytes.
+	 * Will block until something is read from the stream.
+	 * Should be used if AND ONLY IF a non-array or Null is expected. Integers and simple strings are returned as their UTF-8 bytes.
+	 * A null array (a blocking pop that timed out) is returned as null.
+	 * @return a byte array or null reply.
+	 * @throws RedisException if the server reports an error.
+	 * @throws RedisParseException if an error occurs during the read.
+	 * @since 2.6.0
+	 */
+	public byte[] readBytes()
+	{
+		try {
+
+			int buf = readLine(buffer);
+			String resp = new String(buffer.toByteArray(), "UTF-8");
+
+			// is error?
+			if (resp.startsWith("-"))
+				throw new RedisException(resp.substring(1));
+			// is integer or simple string
+			else if (resp.startsWith(":") || resp.startsWith("+"))
+				return resp.substring(1).getBytes("UTF-8");
+			// is bulk string
+			else if (resp.startsWith("$"))
+			{
+				int len = ValueUtils.parseInt(resp.substring(1));
+
+				if (len == -1)
+					return null;
+				else if (len == 0)
+				{
+					buf = readLine(buffer);
+					if (buf != 0)
+						throw new RedisParseException("Expected blank string.");
+					return new byte[0];
+				}
+				else if (len > BULK_STRING_LIMIT)
+					throw new RedisParseException("Server attempted to return bulk reply over MAX allowed.");
+
+				byte[] out = new byte[len];
+				int n = 0;
+				while (n < len)
+				{
+					int r = in.read(out, n, len - n);
+					if (r < 0)
+						throw new RedisParseException("Malformed response; expected "+len+"-byte string, got "+n);
+					n += r;
+				}
+
+				if (in.read() != '\r' || in.read() != '\n')
+					throw new RedisParseException("Expected \\r\\n at string end.");
+
+				return out;
+			}
+			// is null array (blocking pop timeout)
+			else if (resp.equals("*-1"))
+				return null;
+			else
+				throw new RedisException("Expected string reply.");
+
+		} catch (IOException e) {
+			throw new RedisParseException("Could not read from stream.", e);
+		}
+
+	}
+
+	/**
+	 * Reads and expects an Array Reply from Redis, with each element as raw bytes.
+	 * Will block until something is read from the stream.
+	 * Should be used if AND ONLY IF an array or Null is expected.
+	 * @return an array or null reply. Arrays may contain null elements!
+	 * @throws RedisException if the server reports an error.
+	 * @throws RedisParseException if an error occurs during the read.
+	 * @since 2.6.0
+	 */
+	public byte[][] readBytesArray()
+	{
+		try {
+
+			readLine(buffer);
+			String resp = new String(buffer.toByteArray(), "UTF-8");
+
+			// is error?
+			if (resp.startsWith("-"))
+				throw new RedisException(resp.substring(1));
+			// is array
+			else if (resp.startsWith("*"))
+			{
+				int len = ValueUtils.parseInt(resp.substring(1));
+				if (len == -1)
+					return null;
+
+				byte[][] out = new byte[len][];
+				for (int i = 0; i < len; i++)
+					out[i] = readBytes();
+
+				return out;
+			}
+			else
+				throw new RedisException("Expected array reply.");
+
+		} catch (IOException e) {
+			throw new RedisParseException("Could not read from stream.", e);
+		}
+
+	}
+
 	/**
 	 * Reads and expects an Array Reply from Redis.
 	 * Will block until something is read from the stream.
@@ -390,6 +505,51 @@ public class RESPReader
 		
 	}
 	
+	/**
+	 * Reads a Simple String reply into a reusable line buffer without decoding it.
+	 * The leading '+' is not included.
+	 * Will block until something is read from the stream.
+	 * Should be used if AND ONLY IF a Simple String reply is expected, like from a MONITOR connection.
+	 * @param line the line buffer to fill.
+	 * @return the length of the line in bytes.
+	 * @throws RedisException if the server reports an error, or the reply is not a Simple String.
+	 * @throws RedisParseException if an error occurs during the read.
+	 * @since 2.6.0
+	 */
+	public int readLine(RESPLine line)
+	{
+		try {
+			
+			int type = in.read();
+			if (type < 0)
+				throw new EOFException("Stream closed by server.");
+			
+			line.clear();
+			int prev = -1;
+			while (true)
+			{
+				int r = in.read();
+				if (r < 0)
+					throw new EOFException("Stream closed by server.");
+				if (prev == '\r' && r == '\n')
+					break;
+				if (prev >= 0)
+					line.append((byte)prev);
+				prev = r;
+			}
+			
+			if (type == '-')
+				throw new RedisException(line.toString());
+			else if (type != '+')
+				throw new RedisException("Expected simple string reply.");
+			
+			return line.getLength();
+				
+		} catch (IOException e) {
+			throw new RedisParseException("Could not read from stream.", e);
+		}
+	}
+	
 	/**
 	 * Reads bytes until CRLF and returns how many bytes in the "string" (before CRLF). 
 	 */
@@ -406,7 +566,10 @@ public class RESPReader
 		
 		while (state != STATE_LF)
 		{
-			b = (byte)(in.read() & 0x0ff);
+			int r = in.read();
+			if (r < 0)
+				throw new EOFException("Stream closed by server.");
+			b = (byte)r;
 			
 			switch (state)
 			{
@@ -458,7 +621,10 @@ public class RESPReader
 		
 		while (state != STATE_END)
 		{
-			b = (byte)(in.read() & 0x0ff);
+			int r = in.read();
+			if (r < 0)
+				throw new EOFException("Stream closed by server.");
+			b = (byte)r;
 			
 			switch (state)
 			{
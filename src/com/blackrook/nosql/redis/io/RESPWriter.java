@@ -7,13 +7,13 @@
  ******************************************************************************/
 package com.blackrook.nosql.redis.io;
 
+import java.io.BufferedOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
-import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.math.BigDecimal;
 import java.util.Iterator;
 
@@ -23,15 +23,24 @@ import com.blackrook.nosql.redis.data.RedisObject;
 
 /**
  * Writer class for writing requests to a Redis Socket. 
+ * <p>When attached to an {@link OutputStream}, all parts of a request (text and binary) 
+ * are collected in one buffer and sent with a single flush when the request is complete.
  * @author Matthew Tropiano
  */
 public class RESPWriter implements Closeable
 {
 	/** Endline. */
 	private static final String CRLF = "\r\n";
+	/** Endline bytes. */
+	private static final byte[] CRLF_BYTES = {'\r', '\n'};
 	
-	/** The wrapped writer. */
+	/** Stream buffer size. */
+	private static final int BUFFER_SIZE = 8192;
+	
+	/** The wrapped writer, if attached to a writer. */
 	private PrintWriter out;
+	/** The buffered stream, if attached to a stream. */
+	private OutputStream stream;
 	
 	/**
 	 * Opens a RedisWriter attached to an output stream. 
@@ -39,11 +48,8 @@ public class RESPWriter implements Closeable
 	 */
 	public RESPWriter(OutputStream out)
 	{
-		try {
-			this.out = new PrintWriter(new OutputStreamWriter(out, "UTF-8"), false);
-		} catch (UnsupportedEncodingException e) {
-			throw new RuntimeException(e);
-		}
+		this.out = null;
+		this.stream = new BufferedOutputStream(out, BUFFER_SIZE);
 	}
 
 	/**
@@ -53,12 +59,16 @@ public class RESPWriter implements Closeable
 	public RESPWriter(Writer out)
 	{
 		this.out = new PrintWriter(out, false);
+		this.stream = null;
 	}
 
 	@Override
 	public void close() throws IOException
 	{
-		out.close();
+		if (stream != null)
+			stream.close();
+		else
+			out.close();
 	}
 	
 	/**
@@ -74,8 +84,8 @@ public class RESPWriter implements Closeable
 	 */
 	public void writeNullArray()
 	{
-		out.write("*-1" + CRLF);
-		out.flush();
+		write("*-1" + CRLF);
+		flush();
 	}
 
 	/**
@@ -105,44 +115,51 @@ public class RESPWriter implements Closeable
 		writeBulkString(s, true);
 	}
 
+	/**
+	 * Writes a binary-safe bulk string to output.
+	 * This writer must be attached to an {@link OutputStream}.
+	 * @param b the bytes to write.
+	 * @throws IllegalStateException if this writer is not attached to an {@link OutputStream}.
+	 * @since 2.6.0
+	 */
+	public void writeBulkBytes(byte[] b)
+	{
+		writeBulkBytes(b, true);
+	}
+
 	/**
 	 * Writes a bulk string array.
+	 * Elements that are <code>byte[]</code> are written as binary-safe bulk strings.
 	 * @param iterable the objects to write.
 	 */
 	public void writeArray(Iterable<Object> iterable)
 	{
 		int len = 0;
-		StringBuilder sb = new StringBuilder();
 		Iterator<Object> it = iterable.iterator();
 		while (it.hasNext())
 		{
-			Object obj = it.next();
-			String s = obj != null ? String.valueOf(obj) : null;
-			if (s == null)
-				sb.append("$-1").append(CRLF);
-			else
-			{
-				sb.append("$").append(s.length()).append(CRLF);
-				sb.append(s).append(CRLF);
-			}
+			it.next();
 			len++;
 		}
 			
-		out.write("*" + len + CRLF);
-		out.write(sb.toString());
-		out.flush();
+		write("*" + len + CRLF);
+		it = iterable.iterator();
+		while (it.hasNext())
+			writeBulkObject(it.next(), false);
+		flush();
 	}
 
 	/**
 	 * Writes a bulk string array.
+	 * Elements that are <code>byte[]</code> are written as binary-safe bulk strings.
 	 * @param objects the objects to write.
 	 */
 	public void writeArray(Object ...objects)
 	{
-		out.write("*" + objects.length + CRLF);
+		write("*" + objects.length + CRLF);
 		for (Object obj : objects)
-			writeBulkString(obj != null ? String.valueOf(obj) : null, true);
-		out.flush();
+			writeBulkObject(obj, false);
+		flush();
 	}
 
 	/**
@@ -151,10 +168,10 @@ public class RESPWriter implements Closeable
 	 */
 	public void writeArray(String ...strings)
 	{
-		out.write("*" + strings.length + CRLF);
+		write("*" + strings.length + CRLF);
 		for (String s : strings)
-			writeBulkString(s, true);
-		out.flush();
+			writeBulkString(s, false);
+		flush();
 	}
 	
 	/**
@@ -163,8 +180,8 @@ public class RESPWriter implements Closeable
 	 */
 	public void writeObject(RedisObject object)
 	{
-		out.write(object.asRaw(true));
-		out.flush();
+		write(object.asRaw(true));
+		flush();
 	}
 	
 	/**
@@ -182,8 +199,8 @@ public class RESPWriter implements Closeable
 	 */
 	public void writeError(String s)
 	{
-		out.write("-" + s + CRLF);
-		out.flush();
+		write("-" + s + CRLF);
+		flush();
 	}
 
 	/**
@@ -205,8 +222,23 @@ public class RESPWriter implements Closeable
 	 */
 	public void writeRaw(String rawcontent)
 	{
-		out.write(rawcontent);
-		out.flush();
+		write(rawcontent);
+		flush();
+	}
+	
+	/**
+	 * Writes raw bytes into this writer and flushes it.
+	 * This writer must be attached to an {@link OutputStream}.
+	 * @param rawcontent the content to send.
+	 * @throws IllegalStateException if this writer is not attached to an {@link OutputStream}.
+	 * @since 2.6.0
+	 */
+	public void writeRaw(byte[] rawcontent)
+	{
+		if (stream == null)
+			throw new IllegalStateException("Raw bytes can only be written to an OutputStream.");
+		write(rawcontent);
+		flush();
 	}
 	
 	/**
@@ -214,9 +246,9 @@ public class RESPWriter implements Closeable
 	 */
 	protected void writeNull(boolean flush)
 	{
-		out.write("$-1" + CRLF);
+		write("$-1" + CRLF);
 		if (flush) 
-			out.flush();
+			flush();
 	}
 
 	/**
@@ -233,10 +265,10 @@ public class RESPWriter implements Closeable
 			writeSimpleString(String.valueOf(n), flush);
 		else
 		{
-			out.write(":" + String.valueOf(n) + CRLF);
+			write(":" + String.valueOf(n) + CRLF);
 		}
 		if (flush) 
-			out.flush();
+			flush();
 	}
 
 	/**
@@ -245,25 +277,108 @@ public class RESPWriter implements Closeable
 	 */
 	protected void writeSimpleString(String s, boolean flush)
 	{
-		out.write("+" + s + CRLF);
+		write("+" + s + CRLF);
 		if (flush) 
-			out.flush();
+			flush();
 	}
 
 	/**
 	 * Writes a bulk string.
+	 * The string is encoded as UTF-8 once, and the length written is the length of those bytes.
 	 * @param s the string to write.
 	 */
 	protected void writeBulkString(String s, boolean flush)
 	{
 		if (s == null)
-			out.write("$-1" + CRLF);
+		{
+			writeNull(flush);
+			return;
+		}
+		
+		byte[] b = s.getBytes(StandardCharsets.UTF_8);
+		if (stream != null)
+			writeBulkBytes(b, flush);
 		else
 		{
-			out.write("$" + s.length() + CRLF);
-			out.write(s + CRLF);
+			write("$" + b.length + CRLF);
+			write(s + CRLF);
+			if (flush) 
+				flush();
 		}
-		if (flush) 
+	}
+	
+	/**
+	 * Writes a binary-safe bulk string.
+	 * @param b the bytes to write.
+	 */
+	protected void writeBulkBytes(byte[] b, boolean flush)
+	{
+		if (b == null)
+		{
+			writeNull(flush);
+			return;
+		}
+		
+		if (stream == null)
+			throw new IllegalStateException("Binary bulk strings can only be written to an OutputStream.");
+		
+		write("$" + b.length + CRLF);
+		write(b);
+		write(CRLF_BYTES);
+		if (flush)
+			flush();
+	}
+	
+	/**
+	 * Writes an object as a bulk string.
+	 * Byte arrays are written as-is, and everything else is converted via {@link String#valueOf(Object)}.
+	 * @param obj the object to write.
+	 */
+	protected void writeBulkObject(Object obj, boolean flush)
+	{
+		if (obj instanceof byte[])
+			writeBulkBytes((byte[])obj, flush);
+		else
+			writeBulkString(obj != null ? String.valueOf(obj) : null, flush);
+	}
+	
+	/**
+	 * Writes a string to the stream (as UTF-8) or the writer.
+	 */
+	private void write(String s)
+	{
+		if (stream != null)
+			write(s.getBytes(StandardCharsets.UTF_8));
+		else
+			out.write(s);
+	}
+	
+	/**
+	 * Writes bytes to the stream, without flushing.
+	 */
+	private void write(byte[] b)
+	{
+		try {
+			stream.write(b);
+		} catch (IOException e) {
+			throw new RuntimeException("Could not write to stream.", e);
+		}
+	}
+	
+	/**
+	 * Sends everything written so far.
+	 */
+	private void flush()
+	{
+		if (stream != null)
+		{
+			try {
+				stream.flush();
+			} catch (IOException e) {
+				throw new RuntimeException("Could not write to stream.", e);
+			}
+		}
+		else
 			out.flush();
 	}
 	
@@ -0,0 +1,84 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis.replay;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Capture file format details.
+ * <p>
+ * A capture file starts with the bytes <code>BRCP</code> and a version byte. Each record after that is:
+ * the time since the previous record in microseconds (zig-zag varint), the database id (varint), 
+ * the amount of request parts (varint), and each part as a length (varint) and raw bytes. 
+ * The first part is the command name.
+ * @author Matthew Tropiano
+ */
+final class RedisCaptureFormat
+{
+	/** File magic. */
+	static final byte[] MAGIC = {'B', 'R', 'C', 'P'};
+	/** Format version. */
+	static final int VERSION = 1;
+	/** Largest allowed part, for sanity. */
+	static final int MAX_PART_LENGTH = 1024 * 1024 * 512;
+
+	private RedisCaptureFormat() {}
+	
+	static void writeVarLong(OutputStream out, long value) throws IOException
+	{
+		while ((value & ~0x7fL) != 0)
+		{
+			out.write((int)((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int)value);
+	}
+
+	/**
+	 * Reads a varint.
+	 * @param in the input stream.
+	 * @param first the first byte, already read.
+	 */
+	static long readVarLong(InputStream in, int first) throws IOException
+	{
+		long out = 0;
+		int shift = 0;
+		int b = first;
+		while (true)
+		{
+			if (b < 0)
+				throw new EOFException("Capture record is incomplete.");
+			if (shift > 63)
+				throw new IOException("Malformed varint in capture.");
+			out |= (long)(b & 0x7f) << shift;
+			if ((b & 0x80) == 0)
+				return out;
+			shift += 7;
+			b = in.read();
+		}
+	}
+
+	static long readVarLong(InputStream in) throws IOException
+	{
+		return readVarLong(in, in.read());
+	}
+
+	static long zigZag(long value)
+	{
+		return (value << 1) ^ (value >> 63);
+	}
+	
+	static long unZigZag(long value)
+	{
+		return (value >>> 1) ^ -(value & 1);
+	}
+	
+}
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis.replay;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Reads records from a capture file written by a {@link RedisCaptureWriter}.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public class RedisCaptureReader implements Closeable
+{
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final byte[][] NO_ARGUMENTS = new byte[0][];
+
+	/** Input stream. */
+	private InputStream in;
+	/** Time of last record in microseconds. */
+	private long lastTimeMicros;
+	
+	/**
+	 * Opens a capture file.
+	 * @param file the file to read.
+	 * @throws IOException if the file could not be opened, or is not a capture file.
+	 */
+	public RedisCaptureReader(File file) throws IOException
+	{
+		this(new FileInputStream(file));
+	}
+
+	/**
+	 * Opens a capture stream.
+	 * The stream is buffered by this reader, and closed when this is closed.
+	 * @param in the stream to read.
+	 * @throws IOException if the stream could not be read, or is not a capture.
+	 */
+	public RedisCaptureReader(InputStream in) throws IOException
+	{
+		this.in = new BufferedInputStream(in, 65536);
+		this.lastTimeMicros = 0L;
+		
+		for (byte b : RedisCaptureFormat.MAGIC)
+			if (this.in.read() != b)
+				throw new IOException("Not a capture file.");
+		int version = this.in.read();
+		if (version != RedisCaptureFormat.VERSION)
+			throw new IOException("Unsupported capture version: " + version);
+	}
+	
+	/**
+	 * Reads the next record.
+	 * @return the next record, or null if there are no more.
+	 * @throws IOException if a read error occurs, or the capture is malformed.
+	 */
+	public RedisCaptureRecord next() throws IOException
+	{
+		int first = in.read();
+		if (first < 0)
+			return null;
+		
+		long timeMicros = lastTimeMicros + RedisCaptureFormat.unZigZag(RedisCaptureFormat.readVarLong(in, first));
+		int db = (int)RedisCaptureFormat.readVarLong(in);
+		int parts = (int)RedisCaptureFormat.readVarLong(in);
+		if (parts < 1)
+			throw new IOException("Malformed capture record: no command.");
+		
+		String command = new String(readPart(), UTF_8);
+		byte[][] arguments = parts > 1 ? new byte[parts - 1][] : NO_ARGUMENTS;
+		for (int i = 0; i < arguments.length; i++)
+			arguments[i] = readPart();
+		
+		lastTimeMicros = timeMicros;
+		return new RedisCaptureRecord(timeMicros, db, command, arguments);
+	}
+	
+	@Override
+	public void close() throws IOException
+	{
+		in.close();
+	}
+
+	private byte[] readPart() throws IOException
+	{
+		long length = RedisCaptureFormat.readVarLong(in);
+		if (length < 0 || length > RedisCaptureFormat.MAX_PART_LENGTH)
+			throw new IOException("Malformed capture record: bad length " + length);
+		byte[] out = new byte[(int)length];
+		int n = 0;
+		while (n < out.length)
+		{
+			int r = in.read(out, n, out.length - n);
+			if (r < 0)
+				throw new EOFException("Capture record is incomplete.");
+			n += r;
+		}
+		return out;
+	}
+	
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis.replay;
+
+import java.nio.charset.Charset;
+
+/**
+ * A single captured command.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public class RedisCaptureRecord
+{
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	
+	/** Server time in microseconds since the Epoch. */
+	private long timeMicros;
+	/** Database id. */
+	private int db;
+	/** Command. */
+	private String command;
+	/** Raw arguments. */
+	private byte[][] arguments;
+	
+	/**
+	 * Creates a new record.
+	 * @param timeMicros the server time of the command in microseconds since the Epoch.
+	 * @param db the database id.
+	 * @param command the command name.
+	 * @param arguments the raw command arguments.
+	 */
+	public RedisCaptureRecord(long timeMicros, int db, String command, byte[][] arguments)
+	{
+		this.timeMicros = timeMicros;
+		this.db = db;
+		this.command = command;
+		this.arguments = arguments;
+	}
+
+	/**
+	 * @return the server time of the command in microseconds since the Epoch.
+	 */
+	public long getTimeMicros()
+	{
+		return timeMicros;
+	}
+
+	/**
+	 * @return the database id.
+	 */
+	public int getDB()
+	{
+		return db;
+	}
+
+	/**
+	 * @return the command name.
+	 */
+	public String getCommand()
+	{
+		return command;
+	}
+
+	/**
+	 * @return the raw command arguments.
+	 */
+	public byte[][] getArguments()
+	{
+		return arguments;
+	}
+	
+	/**
+	 * Gets the full request: the command followed by its arguments.
+	 * @return a new array of request parts.
+	 */
+	public Object[] toRequest()
+	{
+		Object[] out = new Object[arguments.length + 1];
+		out[0] = command;
+		System.arraycopy(arguments, 0, out, 1, arguments.length);
+		return out;
+	}
+	
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append(timeMicros).append(" [").append(db).append("] ").append(command);
+		for (byte[] arg : arguments)
+			sb.append(" \"").append(new String(arg, UTF_8)).append('"');
+		return sb.toString();
+	}
+	
+}
@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis.replay;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import com.blackrook.nosql.redis.RedisMonitorConnection;
+import com.blackrook.nosql.redis.event.RedisMonitorEvent;
+import com.blackrook.nosql.redis.event.RedisMonitorListener;
+
+/**
+ * A {@link RedisMonitorListener} that writes monitored commands to a compact capture file,
+ * for replaying later with a {@link RedisReplayer}.
+ * <p>
+ * MONITOR prints arguments with escapes for special and non-printable bytes; these are
+ * turned back into the original bytes before writing, so binary values replay correctly.
+ * The {@link RedisMonitorConnection} must decode arguments (the default).
+ * <p>
+ * A listener cannot throw I/O errors, so if a write fails, this stops writing, and the error is
+ * thrown from {@link #close()}.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public class RedisCaptureWriter implements RedisMonitorListener, Closeable
+{
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/** Output stream. */
+	private OutputStream out;
+	/** Time of last record in microseconds. */
+	private long lastTimeMicros;
+	/** Records written. */
+	private long count;
+	/** First write error, if any. */
+	private IOException error;
+	/** Scratch buffer for unescaping. */
+	private ByteArrayOutputStream scratch;
+
+	/**
+	 * Creates a capture writer to a new file.
+	 * @param file the file to write to. It is overwritten if it exists.
+	 * @throws IOException if the file could not be opened, or the header could not be written.
+	 */
+	public RedisCaptureWriter(File file) throws IOException
+	{
+		this(new FileOutputStream(file));
+	}
+
+	/**
+	 * Creates a capture writer to an output stream.
+	 * The stream is buffered by this writer, and closed when this is closed.
+	 * @param out the stream to write to.
+	 * @throws IOException if the header could not be written.
+	 */
+	public RedisCaptureWriter(OutputStream out) throws IOException
+	{
+		this.out = new BufferedOutputStream(out, 65536);
+		this.lastTimeMicros = 0L;
+		this.count = 0L;
+		this.error = null;
+		this.scratch = new ByteArrayOutputStream(256);
+		this.out.write(RedisCaptureFormat.MAGIC);
+		this.out.write(RedisCaptureFormat.VERSION);
+	}
+	
+	@Override
+	public synchronized void onMonitorEvent(RedisMonitorEvent event)
+	{
+		if (error != null || out == null)
+			return;
+		
+		try {
+			write(event);
+		} catch (IOException e) {
+			error = e;
+		}
+	}
+	
+	/**
+	 * Writes a single event.
+	 * @param event the event to write.
+	 * @throws IOException if a write error occurs.
+	 */
+	public synchronized void write(RedisMonitorEvent event) throws IOException
+	{
+		long timeMicros = event.getServerTimeSeconds() * 1000000L + event.getServerTimeMicros();
+		String[] args = event.getArguments();
+		
+		RedisCaptureFormat.writeVarLong(out, RedisCaptureFormat.zigZag(timeMicros - lastTimeMicros));
+		RedisCaptureFormat.writeVarLong(out, event.getDBId());
+		RedisCaptureFormat.writeVarLong(out, args.length + 1);
+		writePart(event.getCommand().getBytes(UTF_8));
+		for (String arg : args)
+		{
+			scratch.reset();
+			unescape(arg, scratch);
+			RedisCaptureFormat.writeVarLong(out, scratch.size());
+			scratch.writeTo(out);
+		}
+		lastTimeMicros = timeMicros;
+		count++;
+	}
+
+	/**
+	 * @return the amount of records written.
+	 */
+	public synchronized long getCount()
+	{
+		return count;
+	}
+	
+	/**
+	 * Flushes written records to the underlying stream.
+	 * @throws IOException if a write error occurs.
+	 */
+	public synchronized void flush() throws IOException
+	{
+		if (out != null)
+			out.flush();
+	}
+	
+	/**
+	 * Closes this writer and its stream.
+	 * @throws IOException if closing fails, or if an earlier write from a monitor event failed.
+	 */
+	@Override
+	public synchronized void close() throws IOException
+	{
+		if (out == null)
+			return;
+		try {
+			out.close();
+		} finally {
+			out = null;
+		}
+		if (error != null)
+			throw error;
+	}
+	
+	private void writePart(byte[] data) throws IOException
+	{
+		RedisCaptureFormat.writeVarLong(out, data.length);
+		out.write(data);
+	}
+	
+	/**
+	 * Turns an argument as printed by MONITOR back into its bytes.
+	 * @param arg the argument as printed by MONITOR.
+	 * @param out the stream to write the bytes to.
+	 */
+	static void unescape(String arg, ByteArrayOutputStream out)
+	{
+		int i = 0;
+		int len = arg.length();
+		while (i < len)
+		{
+			char c = arg.charAt(i);
+			if (c == '\\' && i + 1 < len)
+			{
+				char e = arg.charAt(i + 1);
+				switch (e)
+				{
+					case 'n': out.write('\n'); i += 2; break;
+					case 'r': out.write('\r'); i += 2; break;
+					case 't': out.write('\t'); i += 2; break;
+					case 'a': out.write(0x07); i += 2; break;
+					case 'b': out.write('\b'); i += 2; break;
+					case 'x':
+					{
+						if (i + 3 < len)
+						{
+							int hi = Character.digit(arg.charAt(i + 2), 16);
+							int lo = Character.digit(arg.charAt(i + 3), 16);
+							if (hi >= 0 && lo >= 0)
+							{
+								out.write((hi << 4) | lo);
+								i += 4;
+								break;
+							}
+						}
+						out.write('\\');
+						i++;
+					}
+					break;
+					default: out.write(e); i += 2; break;
+				}
+			}
+			else if (c < 0x80)
+			{
+				out.write(c);
+				i++;
+			}
+			else
+			{
+				// printable non-ASCII text passes through MONITOR as-is.
+				int end = i + 1;
+				while (end < len && arg.charAt(end) >= 0x80)
+					end++;
+				byte[] b = arg.substring(i, end).getBytes(UTF_8);
+				out.write(b, 0, b.length);
+				i = end;
+			}
+		}
+	}
+	
+}
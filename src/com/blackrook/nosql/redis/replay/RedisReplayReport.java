@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis.replay;
+
+/**
+ * The results of a replay by a {@link RedisReplayer}.
+ * <p>
+ * Latencies are kept in power-of-two buckets of microseconds: bucket 0 counts replies under
+ * 1 microsecond, and bucket <i>n</i> counts replies of at least 2<sup><i>n</i>-1</sup> and less 
+ * than 2<sup><i>n</i></sup> microseconds.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public class RedisReplayReport
+{
+	/** Number of latency buckets. */
+	public static final int LATENCY_BUCKETS = 40;
+	
+	/** Commands sent. */
+	private long sent;
+	/** Commands that got an error reply or failed. */
+	private long errors;
+	/** Commands skipped. */
+	private long skipped;
+	/** Elapsed time in nanoseconds. */
+	private long elapsedNanos;
+	/** Latency buckets. */
+	private long[] latencies;
+	
+	RedisReplayReport(long sent, long errors, long skipped, long elapsedNanos, long[] latencies)
+	{
+		this.sent = sent;
+		this.errors = errors;
+		this.skipped = skipped;
+		this.elapsedNanos = elapsedNanos;
+		this.latencies = latencies;
+	}
+
+	/**
+	 * @return the amount of commands sent.
+	 */
+	public long getSent()
+	{
+		return sent;
+	}
+
+	/**
+	 * @return the amount of commands that got an error reply, or could not be sent.
+	 */
+	public long getErrors()
+	{
+		return errors;
+	}
+
+	/**
+	 * @return the amount of captured commands that were not replayed (connection and server commands).
+	 */
+	public long getSkipped()
+	{
+		return skipped;
+	}
+
+	/**
+	 * @return the time taken by the replay in nanoseconds.
+	 */
+	public long getElapsedNanos()
+	{
+		return elapsedNanos;
+	}
+
+	/**
+	 * @return the achieved throughput in commands per second.
+	 */
+	public double getThroughput()
+	{
+		return elapsedNanos > 0 ? sent / (elapsedNanos / 1000000000.0) : 0.0;
+	}
+	
+	/**
+	 * @return a copy of the latency buckets.
+	 */
+	public long[] getLatencies()
+	{
+		return latencies.clone();
+	}
+	
+	/**
+	 * Gets an approximate latency percentile.
+	 * @param percentile the percentile, from 0.0 to 100.0.
+	 * @return the upper bound of the bucket that holds the percentile, in microseconds, or 0 if nothing was sent.
+	 */
+	public long getLatencyPercentile(double percentile)
+	{
+		long total = 0;
+		for (long n : latencies)
+			total += n;
+		if (total == 0)
+			return 0L;
+		
+		long target = (long)Math.ceil(total * Math.max(0.0, Math.min(percentile, 100.0)) / 100.0);
+		long seen = 0;
+		for (int i = 0; i < latencies.length; i++)
+		{
+			seen += latencies[i];
+			if (seen >= target && seen > 0)
+				return 1L << i;
+		}
+		return 1L << (latencies.length - 1);
+	}
+	
+	/**
+	 * Gets the latency bucket for a time.
+	 * @param micros the time in microseconds.
+	 * @return the bucket index.
+	 */
+	public static int bucketOf(long micros)
+	{
+		if (micros <= 0)
+			return 0;
+		return Math.min(64 - Long.numberOfLeadingZeros(micros), LATENCY_BUCKETS - 1);
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("Sent %d (%d errors, %d skipped) in %.3fs: %.1f/s, p50 <%dus, p99 <%dus, p99.9 <%dus", 
+			sent, errors, skipped, elapsedNanos / 1000000000.0, getThroughput(), 
+			getLatencyPercentile(50.0), getLatencyPercentile(99.0), getLatencyPercentile(99.9)
+		);
+	}
+	
+}
@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.nosql.redis.replay;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.LockSupport;
+
+import com.blackrook.nosql.redis.RedisInfo;
+import com.blackrook.nosql.redis.RedisUserConnection;
+import com.blackrook.nosql.redis.data.RedisObject;
+
+/**
+ * Replays captured commands against a Redis server.
+ * <p>
+ * Commands are sent over several connections, each on its own thread. Each command goes to a connection
+ * picked by its first argument (usually its key), so commands on one key are replayed in their captured order.
+ * Each connection waits for a reply before sending its next command, so latencies are per command.
+ * <p>
+ * Commands can be replayed at their captured timing, scaled by a speed multiplier, or as fast as possible.
+ * Connection, transaction, Pub/Sub and server commands are skipped, since they can't be
+ * replayed meaningfully out of their original connection. Databases are switched as needed.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public class RedisReplayer
+{
+	/** Commands that are not replayed. */
+	private static final Set<String> SKIPPED_COMMANDS = new HashSet<String>(Arrays.asList(
+		"auth", "client", "debug", "discard", "exec", "hello", "monitor", "multi", "psubscribe", "psync", 
+		"punsubscribe", "quit", "readonly", "readwrite", "replconf", "replicaof", "select", "shutdown", 
+		"slaveof", "subscribe", "sync", "unsubscribe", "unwatch", "watch"
+	));
+	
+	/** Records queued per connection. */
+	private static final int QUEUE_SIZE = 1024;
+	
+	/** Target server info. */
+	private RedisInfo info;
+	/** Amount of connections. */
+	private int connections;
+	/** Speed multiplier. */
+	private double speed;
+	
+	/**
+	 * Creates a replayer that replays as fast as possible.
+	 * @param info the target server.
+	 * @param connections the amount of connections to replay over.
+	 */
+	public RedisReplayer(RedisInfo info, int connections)
+	{
+		this(info, connections, 0.0);
+	}
+	
+	/**
+	 * Creates a replayer.
+	 * @param info the target server.
+	 * @param connections the amount of connections to replay over.
+	 * @param speed the speed multiplier over captured timing: 1.0 is original speed, 2.0 is twice as fast.
+	 * 		0 or less is as fast as possible.
+	 * @throws IllegalArgumentException if connections is less than 1.
+	 */
+	public RedisReplayer(RedisInfo info, int connections, double speed)
+	{
+		if (connections < 1)
+			throw new IllegalArgumentException("Replayer must have at least one connection.");
+		this.info = info;
+		this.connections = connections;
+		this.speed = speed;
+	}
+	
+	/**
+	 * Replays all of the records from a capture.
+	 * Blocks until every command is replayed. The reader is not closed.
+	 * @param capture the capture to replay.
+	 * @return the results of the replay.
+	 * @throws IOException if the capture could not be read, or a connection could not be opened.
+	 * @throws InterruptedException if the calling thread is interrupted.
+	 */
+	public RedisReplayReport replay(RedisCaptureReader capture) throws IOException, InterruptedException
+	{
+		Worker[] workers = new Worker[connections];
+		try {
+			for (int i = 0; i < connections; i++)
+				workers[i] = new Worker(i, new RedisUserConnection(info));
+		} catch (IOException e) {
+			for (Worker worker : workers)
+				if (worker != null)
+					worker.connection.close();
+			throw e;
+		}
+		
+		for (Worker worker : workers)
+			worker.start();
+		
+		long skipped = 0;
+		long startNanos = System.nanoTime();
+		long firstMicros = -1L;
+		try {
+			RedisCaptureRecord record;
+			while ((record = capture.next()) != null)
+			{
+				if (SKIPPED_COMMANDS.contains(record.getCommand().toLowerCase(Locale.ENGLISH)))
+				{
+					skipped++;
+					continue;
+				}
+				
+				if (speed > 0.0)
+				{
+					if (firstMicros < 0)
+						firstMicros = record.getTimeMicros();
+					long target = startNanos + (long)((record.getTimeMicros() - firstMicros) * 1000L / speed);
+					long wait;
+					while ((wait = target - System.nanoTime()) > 0)
+					{
+						LockSupport.parkNanos(wait);
+						if (Thread.interrupted())
+							throw new InterruptedException();
+					}
+				}
+				
+				workers[workerOf(record, connections)].queue.put(record);
+			}
+		} finally {
+			for (Worker worker : workers)
+				worker.queue.put(Worker.END);
+			for (Worker worker : workers)
+				worker.join();
+		}
+		long elapsed = System.nanoTime() - startNanos;
+		
+		long sent = 0;
+		long errors = 0;
+		long[] latencies = new long[RedisReplayReport.LATENCY_BUCKETS];
+		for (Worker worker : workers)
+		{
+			sent += worker.sent;
+			errors += worker.errors;
+			for (int i = 0; i < latencies.length; i++)
+				latencies[i] += worker.latencies[i];
+		}
+		return new RedisReplayReport(sent, errors, skipped, elapsed, latencies);
+	}
+	
+	// Picks a worker by key, or by command for commands without arguments.
+	private static int workerOf(RedisCaptureRecord record, int workers)
+	{
+		byte[][] args = record.getArguments();
+		int h = args.length > 0 ? Arrays.hashCode(args[0]) : record.getCommand().hashCode();
+		h ^= (h >>> 16);
+		return (h & 0x7fffffff) % workers;
+	}
+	
+	/**
+	 * A thread that replays commands on one connection.
+	 */
+	private static class Worker extends Thread
+	{
+		/** End-of-replay marker. */
+		private static final RedisCaptureRecord END = new RedisCaptureRecord(0L, 0, "", new byte[0][]);
+		
+		private RedisUserConnection connection;
+		private BlockingQueue<RedisCaptureRecord> queue;
+		private int db;
+		private long sent;
+		private long errors;
+		private long[] latencies;
+		
+		Worker(int id, RedisUserConnection connection)
+		{
+			setName("RedisReplay-" + id);
+			setDaemon(true);
+			this.connection = connection;
+			this.queue = new ArrayBlockingQueue<RedisCaptureRecord>(QUEUE_SIZE);
+			this.db = -1;
+			this.sent = 0L;
+			this.errors = 0L;
+			this.latencies = new long[RedisReplayReport.LATENCY_BUCKETS];
+		}
+		
+		@Override
+		public void run()
+		{
+			try {
+				RedisCaptureRecord record;
+				while ((record = queue.take()) != END)
+				{
+					try {
+						if (record.getDB() != db)
+						{
+							connection.sendRequest("SELECT", String.valueOf(record.getDB()));
+							db = record.getDB();
+						}
+						long start = System.nanoTime();
+						RedisObject reply = connection.sendRequest(record.toRequest());
+						latencies[RedisReplayReport.bucketOf((System.nanoTime() - start) / 1000L)]++;
+						if (reply.isError())
+							errors++;
+					} catch (RuntimeException e) {
+						errors++;
+					}
+					sent++;
+				}
+			} catch (InterruptedException e) {
+				// Stop.
+			} finally {
+				connection.close();
+			}
+		}
+		
+	}
+	
+}
@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.sql;
+
+import java.sql.Statement;
+
+/**
+ * The result of a batch of update queries.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public class SQLBatchResult
+{
+	/** Update counts, one per parameter set. */
+	private int[] updateCounts;
+	/** Generated ids, if requested. */
+	private long[] ids;
+	/** The amount of batches executed. */
+	private int batchCount;
+	
+	/**
+	 * Creates a new batch result.
+	 */
+	SQLBatchResult(int[] updateCounts, long[] ids, int batchCount)
+	{
+		this.updateCounts = updateCounts;
+		this.ids = ids;
+		this.batchCount = batchCount;
+	}
+	
+	/**
+	 * Gets the update counts of each query in the batch, in the order that the parameters were given.
+	 * A driver may give {@link Statement#SUCCESS_NO_INFO} for queries that succeeded without a count.
+	 */
+	public int[] getUpdateCounts()
+	{
+		return updateCounts;
+	}
+	
+	/**
+	 * Gets the total amount of affected rows (the sum of all known update counts).
+	 */
+	public int getRowCount()
+	{
+		int out = 0;
+		for (int i = 0; i < updateCounts.length; i++)
+			if (updateCounts[i] > 0)
+				out += updateCounts[i];
+		return out;
+	}
+	
+	/**
+	 * Gets the amount of batches sent to the database.
+	 */
+	public int getBatchCount()
+	{
+		return batchCount;
+	}
+	
+	/**
+	 * Returns the first generated id, if any, or 0L if none.
+	 */
+	public long getId()
+	{
+		return ids.length > 0 ? ids[0] : 0L;
+	}
+	
+	/**
+	 * Returns the list of generated ids, in the order that the driver returned them,
+	 * or an empty array if they were not requested.
+	 */
+	public long[] getIds()
+	{
+		return ids;
+	}
+	
+}
@@ -0,0 +1,617 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.sql;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * A bulk loader that runs one update query for many rows of parameters, in parallel 
+ * over several connections from a {@link SQLConnectionPool}.
+ * <p>
+ * The calling thread reads the rows and groups them into chunks of up to the batch size, 
+ * which go into a bounded queue shared by the worker threads. If the workers fall behind, 
+ * the queue fills and the reader waits for room, so memory use stays bounded no matter how many rows there are.
+ * <p>
+ * Each worker holds one pooled connection with auto-commit off for the whole load,
+ * and runs each chunk as one JDBC batch in its own transaction: committed if it succeeds, 
+ * rolled back and reported as a {@link FailedChunk} if it does not. Other chunks are unaffected.
+ * The connections are given back to the pool when the load finishes. 
+ * <p>
+ * Progress is reported to an optional {@link Listener} from the calling thread at a set interval,
+ * and failed chunks as they happen, from the worker threads.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public class SQLBulkLoader
+{
+	/** Default batch size. */
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+	/** Default progress report interval in milliseconds. */
+	public static final long DEFAULT_PROGRESS_INTERVAL = 1000L;
+	
+	/** End-of-input marker. */
+	private static final Object[][] END = new Object[0][];
+	
+	/** The connection pool. */
+	private SQLConnectionPool pool;
+	/** The update query. */
+	private String query;
+	/** Worker count. */
+	private int workerCount;
+	/** Rows per chunk. */
+	private int batchSize;
+	/** Queue capacity in chunks. */
+	private int queueCapacity;
+	/** Progress report interval in milliseconds. */
+	private long progressInterval;
+	/** Listener, or null for none. */
+	private Listener listener;
+	
+	/**
+	 * Creates a new bulk loader with the default batch size.
+	 * @param pool the connection pool to get connections from.
+	 * @param workerCount the amount of worker threads (and connections) to load with.
+	 * @param query the update query to run for each row.
+	 * @throws IllegalArgumentException if workerCount is less than 1.
+	 */
+	public SQLBulkLoader(SQLConnectionPool pool, int workerCount, String query)
+	{
+		this(pool, workerCount, DEFAULT_BATCH_SIZE, query);
+	}
+	
+	/**
+	 * Creates a new bulk loader.
+	 * The chunk queue holds two chunks per worker.
+	 * @param pool the connection pool to get connections from.
+	 * @param workerCount the amount of worker threads (and connections) to load with.
+	 * @param batchSize the amount of rows per chunk (and batch).
+	 * @param query the update query to run for each row.
+	 * @throws IllegalArgumentException if workerCount or batchSize is less than 1.
+	 */
+	public SQLBulkLoader(SQLConnectionPool pool, int workerCount, int batchSize, String query)
+	{
+		if (workerCount < 1)
+			throw new IllegalArgumentException("Worker count must be at least 1.");
+		if (batchSize < 1)
+			throw new IllegalArgumentException("Batch size must be at least 1.");
+		this.pool = pool;
+		this.query = query;
+		this.workerCount = workerCount;
+		this.batchSize = batchSize;
+		this.queueCapacity = workerCount * 2;
+		this.progressInterval = DEFAULT_PROGRESS_INTERVAL;
+		this.listener = null;
+	}
+	
+	/**
+	 * Sets how many chunks can wait in the queue for a worker before the reader waits for room.
+	 * @param queueCapacity the queue capacity, in chunks.
+	 * @throws IllegalArgumentException if queueCapacity is less than 1.
+	 */
+	public void setQueueCapacity(int queueCapacity)
+	{
+		if (queueCapacity < 1)
+			throw new IllegalArgumentException("Queue capacity must be at least 1.");
+		this.queueCapacity = queueCapacity;
+	}
+	
+	/**
+	 * Sets how often progress is reported to the listener.
+	 * @param progressInterval the interval in milliseconds.
+	 */
+	public void setProgressInterval(long progressInterval)
+	{
+		this.progressInterval = progressInterval;
+	}
+	
+	/**
+	 * Sets the listener for progress and failed chunks.
+	 * @param listener the listener, or null for none.
+	 */
+	public void setListener(Listener listener)
+	{
+		this.listener = listener;
+	}
+	
+	/**
+	 * Loads all of the rows in a stream, and closes it.
+	 * @param rows the stream of parameter sets, one for each execution of the query.
+	 * @return the result of the load.
+	 * @throws InterruptedException if the calling thread is interrupted. Workers are stopped, and chunks already committed are kept.
+	 * @see #load(Iterator)
+	 */
+	public Result load(Stream<Object[]> rows) throws InterruptedException
+	{
+		try {
+			return load(rows.iterator());
+		} finally {
+			rows.close();
+		}
+	}
+
+	/**
+	 * Loads all of the rows in an iterable.
+	 * @param rows the parameter sets, one for each execution of the query.
+	 * @return the result of the load.
+	 * @throws InterruptedException if the calling thread is interrupted. Workers are stopped, and chunks already committed are kept.
+	 * @see #load(Iterator)
+	 */
+	public Result load(Iterable<Object[]> rows) throws InterruptedException
+	{
+		return load(rows.iterator());
+	}
+
+	/**
+	 * Loads all of the rows from an iterator, and waits for the workers to finish.
+	 * @param rows the parameter sets, one for each execution of the query.
+	 * @return the result of the load.
+	 * @throws InterruptedException if the calling thread is interrupted. Workers are stopped, and chunks already committed are kept.
+	 * @throws IllegalStateException if all of the workers stopped before the rows were all read (like if they could not get connections).
+	 */
+	public Result load(Iterator<Object[]> rows) throws InterruptedException
+	{
+		Job job = new Job();
+		job.start();
+		
+		boolean finished = false;
+		try {
+			Object[][] chunk = new Object[batchSize][];
+			int count = 0;
+			while (rows.hasNext())
+			{
+				chunk[count++] = rows.next();
+				if (count == batchSize)
+				{
+					job.put(chunk);
+					chunk = new Object[batchSize][];
+					count = 0;
+				}
+			}
+			if (count > 0)
+				job.put(Arrays.copyOf(chunk, count));
+			
+			job.finish();
+			finished = true;
+		} finally {
+			if (!finished)
+				job.abort();
+		}
+		
+		Result out = new Result(job.getProgress(), job.getFailedChunks(), job.getWorkerErrors());
+		if (listener != null)
+			listener.onProgress(out.getProgress());
+		return out;
+	}
+	
+	/**
+	 * One running load.
+	 */
+	private class Job
+	{
+		/** Chunk queue. */
+		private BlockingQueue<Object[][]> queue;
+		/** Workers. */
+		private Worker[] workers;
+		/** Live worker count. */
+		private AtomicInteger liveWorkers;
+		/** Stop flag. */
+		private volatile boolean aborted;
+
+		/** Start time in nanos. */
+		private long startNanos;
+		/** Last progress report time in millis. */
+		private long lastReportMillis;
+		/** Rows read. */
+		private long rowsRead;
+		/** Rows loaded. */
+		private LongAdder rowsLoaded;
+		/** Rows in failed chunks. */
+		private LongAdder rowsFailed;
+		/** Chunks loaded. */
+		private LongAdder chunksLoaded;
+		/** Failed chunks. */
+		private ConcurrentLinkedQueue<FailedChunk> failedChunks;
+		/** Errors that stopped workers. */
+		private ConcurrentLinkedQueue<Throwable> workerErrors;
+
+		private Job()
+		{
+			this.queue = new ArrayBlockingQueue<Object[][]>(queueCapacity);
+			this.workers = new Worker[workerCount];
+			this.liveWorkers = new AtomicInteger(0);
+			this.aborted = false;
+			this.rowsRead = 0L;
+			this.rowsLoaded = new LongAdder();
+			this.rowsFailed = new LongAdder();
+			this.chunksLoaded = new LongAdder();
+			this.failedChunks = new ConcurrentLinkedQueue<FailedChunk>();
+			this.workerErrors = new ConcurrentLinkedQueue<Throwable>();
+		}
+		
+		// Starts the workers.
+		private void start()
+		{
+			startNanos = System.nanoTime();
+			lastReportMillis = System.currentTimeMillis();
+			for (int i = 0; i < workers.length; i++)
+			{
+				workers[i] = new Worker(this, i);
+				liveWorkers.incrementAndGet();
+				workers[i].start();
+			}
+		}
+		
+		// Puts a chunk on the queue, waiting for room and reporting progress.
+		private void put(Object[][] chunk) throws InterruptedException
+		{
+			while (!queue.offer(chunk, 100L, TimeUnit.MILLISECONDS))
+			{
+				checkWorkers();
+				reportProgress();
+			}
+			rowsRead += chunk.length;
+			reportProgress();
+		}
+		
+		// Signals the end of the rows and waits for the workers.
+		private void finish() throws InterruptedException
+		{
+			for (int i = 0; i < workers.length; i++)
+			{
+				while (liveWorkers.get() > 0 && !queue.offer(END, 100L, TimeUnit.MILLISECONDS))
+					reportProgress();
+			}
+			for (int i = 0; i < workers.length; i++)
+				workers[i].join();
+			
+			// chunks left behind by stopped workers. End markers left for workers that stopped early do not count.
+			boolean leftover = false;
+			Object[][] chunk;
+			while ((chunk = queue.poll()) != null)
+				leftover = leftover || chunk != END;
+			if (leftover)
+				checkWorkers();
+		}
+		
+		// Stops the workers.
+		private void abort()
+		{
+			aborted = true;
+			queue.clear();
+			for (int i = 0; i < workers.length; i++)
+				workers[i].interrupt();
+			boolean interrupted = false;
+			for (int i = 0; i < workers.length; i++)
+			{
+				while (workers[i].isAlive())
+				{
+					try {
+						workers[i].join();
+					} catch (InterruptedException e) {
+						interrupted = true;
+					}
+				}
+			}
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+		
+		// Throws an exception if all workers are stopped.
+		private void checkWorkers()
+		{
+			if (liveWorkers.get() == 0)
+			{
+				IllegalStateException e = new IllegalStateException("All bulk loader workers have stopped.");
+				for (Throwable t : workerErrors)
+					e.addSuppressed(t);
+				throw e;
+			}
+		}
+		
+		// Reports progress, if it is time to.
+		private void reportProgress()
+		{
+			if (listener == null)
+				return;
+			long now = System.currentTimeMillis();
+			if (now - lastReportMillis >= progressInterval)
+			{
+				lastReportMillis = now;
+				listener.onProgress(getProgress());
+			}
+		}
+		
+		private Progress getProgress()
+		{
+			return new Progress(
+				rowsRead, 
+				rowsLoaded.sum(), 
+				rowsFailed.sum(), 
+				chunksLoaded.sum(), 
+				failedChunks.size(), 
+				System.nanoTime() - startNanos
+			);
+		}
+		
+		private FailedChunk[] getFailedChunks()
+		{
+			return failedChunks.toArray(new FailedChunk[failedChunks.size()]);
+		}
+		
+		private Throwable[] getWorkerErrors()
+		{
+			return workerErrors.toArray(new Throwable[workerErrors.size()]);
+		}
+		
+	}
+	
+	/**
+	 * Worker thread.
+	 */
+	private class Worker extends Thread
+	{
+		private Job job;
+		
+		private Worker(Job job, int index)
+		{
+			super("SQLBulkLoader-Worker-" + index);
+			setDaemon(true);
+			this.job = job;
+		}
+		
+		@Override
+		public void run()
+		{
+			Connection connection = null;
+			boolean previousAutoCommit = true;
+			try {
+				connection = pool.getAvailableConnection();
+				previousAutoCommit = connection.getAutoCommit();
+				connection.setAutoCommit(false);
+				
+				Object[][] chunk;
+				while (!job.aborted && (chunk = job.queue.take()) != END)
+					loadChunk(connection, chunk);
+			} catch (InterruptedException e) {
+				// Stopped.
+			} catch (Throwable t) {
+				job.workerErrors.add(t);
+			} finally {
+				job.liveWorkers.decrementAndGet();
+				if (connection != null)
+				{
+					try {
+						connection.setAutoCommit(previousAutoCommit);
+					} catch (SQLException e) {
+						// Released anyway.
+					}
+					pool.releaseConnection(connection);
+				}
+			}
+		}
+		
+		// Loads one chunk in one transaction.
+		private void loadChunk(Connection connection, Object[][] chunk)
+		{
+			try {
+				SQLUtil.doUpdateBatch(connection, 0, query, Arrays.asList(chunk));
+				connection.commit();
+				job.rowsLoaded.add(chunk.length);
+				job.chunksLoaded.increment();
+			} catch (SQLException | RuntimeException e) {
+				try {
+					connection.rollback();
+				} catch (SQLException e1) {
+					e.addSuppressed(e1);
+				}
+				FailedChunk failed = new FailedChunk(chunk, e);
+				job.rowsFailed.add(chunk.length);
+				job.failedChunks.add(failed);
+				if (listener != null)
+					listener.onChunkFailed(failed);
+			}
+		}
+	}
+
+	/**
+	 * A listener for bulk load progress. 
+	 */
+	public interface Listener
+	{
+		/**
+		 * Called on the loading thread at each progress interval, and once when the load finishes.
+		 * @param progress the progress so far.
+		 */
+		void onProgress(Progress progress);
+		
+		/**
+		 * Called on a worker thread when a chunk fails and is rolled back.
+		 * @param chunk the failed chunk.
+		 */
+		void onChunkFailed(FailedChunk chunk);
+	}
+	
+	/**
+	 * A snapshot of a load's progress.
+	 */
+	public static class Progress
+	{
+		private long rowsRead;
+		private long rowsLoaded;
+		private long rowsFailed;
+		private long chunksLoaded;
+		private long chunksFailed;
+		private long elapsedNanos;
+		
+		private Progress(long rowsRead, long rowsLoaded, long rowsFailed, long chunksLoaded, long chunksFailed, long elapsedNanos)
+		{
+			this.rowsRead = rowsRead;
+			this.rowsLoaded = rowsLoaded;
+			this.rowsFailed = rowsFailed;
+			this.chunksLoaded = chunksLoaded;
+			this.chunksFailed = chunksFailed;
+			this.elapsedNanos = elapsedNanos;
+		}
+		
+		/**
+		 * Gets the amount of rows read and queued so far.
+		 */
+		public long getRowsRead()
+		{
+			return rowsRead;
+		}
+		
+		/**
+		 * Gets the amount of rows committed so far.
+		 */
+		public long getRowsLoaded()
+		{
+			return rowsLoaded;
+		}
+		
+		/**
+		 * Gets the amount of rows in failed chunks so far.
+		 */
+		public long getRowsFailed()
+		{
+			return rowsFailed;
+		}
+		
+		/**
+		 * Gets the amount of chunks committed so far.
+		 */
+		public long getChunksLoaded()
+		{
+			return chunksLoaded;
+		}
+		
+		/**
+		 * Gets the amount of failed chunks so far.
+		 */
+		public long getChunksFailed()
+		{
+			return chunksFailed;
+		}
+		
+		/**
+		 * Gets the time since the load started, in nanoseconds.
+		 */
+		public long getElapsedNanos()
+		{
+			return elapsedNanos;
+		}
+		
+		/**
+		 * Gets the average amount of rows committed per second since the load started.
+		 */
+		public double getRowsPerSecond()
+		{
+			return elapsedNanos > 0L ? rowsLoaded * 1000000000.0 / elapsedNanos : 0.0;
+		}
+		
+		@Override
+		public String toString()
+		{
+			return String.format("read %d, loaded %d, failed %d (%d chunks), %.1f rows/s", 
+				rowsRead, rowsLoaded, rowsFailed, chunksFailed, getRowsPerSecond());
+		}
+	}
+	
+	/**
+	 * A chunk of rows that failed to load and was rolled back.
+	 */
+	public static class FailedChunk
+	{
+		private Object[][] rows;
+		private Exception cause;
+		
+		private FailedChunk(Object[][] rows, Exception cause)
+		{
+			this.rows = rows;
+			this.cause = cause;
+		}
+		
+		/**
+		 * Gets the rows in this chunk, none of which were loaded.
+		 */
+		public Object[][] getRows()
+		{
+			return rows;
+		}
+		
+		/**
+		 * Gets the exception that failed this chunk 
+		 * (usually a {@link java.sql.BatchUpdateException}).
+		 */
+		public Exception getCause()
+		{
+			return cause;
+		}
+	}
+	
+	/**
+	 * The result of a load.
+	 */
+	public static class Result
+	{
+		private Progress progress;
+		private FailedChunk[] failedChunks;
+		private Throwable[] workerErrors;
+		
+		private Result(Progress progress, FailedChunk[] failedChunks, Throwable[] workerErrors)
+		{
+			this.progress = progress;
+			this.failedChunks = failedChunks;
+			this.workerErrors = workerErrors;
+		}
+		
+		/**
+		 * Gets the final progress of the load.
+		 */
+		public Progress getProgress()
+		{
+			return progress;
+		}
+		
+		/**
+		 * Gets the chunks that failed to load.
+		 */
+		public FailedChunk[] getFailedChunks()
+		{
+			return failedChunks;
+		}
+		
+		/**
+		 * Gets the errors that stopped workers, if any 
+		 * (like failing to get or reset a connection).
+		 */
+		public Throwable[] getWorkerErrors()
+		{
+			return workerErrors;
+		}
+		
+		/**
+		 * Returns true if every row was loaded.
+		 */
+		public boolean isComplete()
+		{
+			return failedChunks.length == 0 && progress.getRowsLoaded() == progress.getRowsRead();
+		}
+	}
+	
+}
@@ -0,0 +1,349 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.sql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.blackrook.commons.util.IOUtils;
+
+/**
+ * A connection that keeps a bounded, least-recently-used cache of its prepared statements,
+ * keyed by SQL text and generated-keys mode.
+ * <p>
+ * {@link #prepareStatement(String)} and {@link #prepareStatement(String, int)} return a cached
+ * statement for the same query if one is not in use, or prepare and cache a new one if not. 
+ * Closing a cached statement clears its parameters and batch, puts its max rows, query timeout, and fetch size
+ * back to what they were when it was prepared, and returns it to the cache instead of closing it, 
+ * so code that prepares and closes a statement per query (like {@link SQLUtil}) reuses it transparently.
+ * A statement that cannot be reset, or was set to close on completion, is closed and evicted instead.
+ * Statements are really closed when they are evicted from the cache, and when this connection is closed.
+ * <p>
+ * If a query's cached statement is still in use when it is prepared again (like when a cursor is open on it), 
+ * the new one is a plain, uncached statement. Statements made with other methods are never cached.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public class SQLCachingConnection extends SQLConnectionAdapter
+{
+	/** Maximum amount of cached statements. */
+	private int capacity;
+	/** The statement cache, in access order. */
+	private LinkedHashMap<StatementKey, CachedStatement> cache;
+	
+	/** Cache hit count. */
+	private LongAdder hits;
+	/** Cache miss count. */
+	private LongAdder misses;
+	/** Cache eviction count. */
+	private LongAdder evictions;
+	
+	/**
+	 * Creates a new caching connection.
+	 * @param conn the connection to encapsulate.
+	 * @param capacity the maximum amount of prepared statements to keep.
+	 * @throws IllegalArgumentException if capacity is less than 1.
+	 */
+	public SQLCachingConnection(Connection conn, int capacity)
+	{
+		super(conn);
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be at least 1.");
+		
+		this.capacity = capacity;
+		this.cache = new LinkedHashMap<StatementKey, CachedStatement>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 3214961622185335372L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<StatementKey, CachedStatement> eldest)
+			{
+				if (size() <= SQLCachingConnection.this.capacity)
+					return false;
+				evict(eldest.getValue());
+				return true;
+			}
+		};
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+		this.evictions = new LongAdder();
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql) throws SQLException
+	{
+		return prepareCached(sql, Statement.NO_GENERATED_KEYS);
+	}
+
+	@Override
+	public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException
+	{
+		return prepareCached(sql, autoGeneratedKeys);
+	}
+
+	@Override
+	public void close() throws SQLException
+	{
+		clearStatementCache();
+		super.close();
+	}
+
+	/**
+	 * Closes and removes all statements in the cache that are not in use.
+	 * Statements in use are closed when they are next closed.
+	 */
+	public void clearStatementCache()
+	{
+		synchronized (cache)
+		{
+			Iterator<CachedStatement> it = cache.values().iterator();
+			while (it.hasNext())
+			{
+				evict(it.next());
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Gets the amount of statements in the cache.
+	 */
+	public int getStatementCacheSize()
+	{
+		synchronized (cache)
+		{
+			return cache.size();
+		}
+	}
+
+	/**
+	 * Gets the maximum amount of statements in the cache.
+	 */
+	public int getStatementCacheCapacity()
+	{
+		return capacity;
+	}
+
+	/**
+	 * Gets the amount of statement requests that were served from the cache.
+	 */
+	public long getStatementCacheHitCount()
+	{
+		return hits.sum();
+	}
+
+	/**
+	 * Gets the amount of statement requests that had to prepare a new statement.
+	 */
+	public long getStatementCacheMissCount()
+	{
+		return misses.sum();
+	}
+
+	/**
+	 * Gets the amount of statements closed to make room in the cache.
+	 */
+	public long getStatementCacheEvictionCount()
+	{
+		return evictions.sum();
+	}
+
+	// Gets a cached statement or prepares a new one.
+	private PreparedStatement prepareCached(String sql, int autoGeneratedKeys) throws SQLException
+	{
+		StatementKey key = new StatementKey(sql, autoGeneratedKeys);
+		synchronized (cache)
+		{
+			CachedStatement cached = cache.get(key);
+			if (cached != null)
+			{
+				if (cached.isStatementClosed())
+				{
+					cached.evicted = true;
+					cache.remove(key);
+				}
+				else if (cached.inUse)
+				{
+					misses.increment();
+					return prepareUncached(sql, autoGeneratedKeys);
+				}
+				else
+				{
+					cached.inUse = true;
+					hits.increment();
+					return cached;
+				}
+			}
+			
+			misses.increment();
+			PreparedStatement statement = prepareUncached(sql, autoGeneratedKeys);
+			CachedStatement out;
+			try {
+				out = new CachedStatement(key, statement);
+			} catch (SQLException e) {
+				IOUtils.close(statement);
+				throw e;
+			}
+			out.inUse = true;
+			cache.put(key, out);
+			return out;
+		}
+	}
+
+	// Prepares a new statement on the encapsulated connection.
+	private PreparedStatement prepareUncached(String sql, int autoGeneratedKeys) throws SQLException
+	{
+		if (autoGeneratedKeys == Statement.NO_GENERATED_KEYS)
+			return super.prepareStatement(sql);
+		else
+			return super.prepareStatement(sql, autoGeneratedKeys);
+	}
+
+	// Takes a statement out of the cache - closed now if not in use, or when it is closed if so.
+	private void evict(CachedStatement statement)
+	{
+		statement.evicted = true;
+		evictions.increment();
+		if (!statement.inUse)
+			IOUtils.close(statement.statement);
+	}
+
+	/**
+	 * Cache key.
+	 */
+	private static class StatementKey
+	{
+		private String sql;
+		private int autoGeneratedKeys;
+		
+		private StatementKey(String sql, int autoGeneratedKeys)
+		{
+			this.sql = sql;
+			this.autoGeneratedKeys = autoGeneratedKeys;
+		}
+		
+		@Override
+		public int hashCode()
+		{
+			return sql.hashCode() * 31 + autoGeneratedKeys;
+		}
+		
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof StatementKey))
+				return false;
+			StatementKey key = (StatementKey)obj;
+			return autoGeneratedKeys == key.autoGeneratedKeys && sql.equals(key.sql);
+		}
+	}
+
+	/**
+	 * A cached statement, returned to the cache on close.
+	 */
+	private class CachedStatement extends SQLPreparedStatementAdapter
+	{
+		/** The real statement. */
+		private PreparedStatement statement;
+		/** Cache key. */
+		private StatementKey key;
+		/** Handed out and not yet closed? */
+		private boolean inUse;
+		/** No longer in the cache? */
+		private boolean evicted;
+		/** Max rows when prepared. */
+		private int maxRows;
+		/** Query timeout when prepared. */
+		private int queryTimeout;
+		/** Fetch size when prepared. */
+		private int fetchSize;
+		
+		private CachedStatement(StatementKey key, PreparedStatement statement) throws SQLException
+		{
+			super(statement);
+			this.statement = statement;
+			this.key = key;
+			this.inUse = false;
+			this.evicted = false;
+			this.maxRows = statement.getMaxRows();
+			this.queryTimeout = statement.getQueryTimeout();
+			this.fetchSize = statement.getFetchSize();
+		}
+		
+		// Puts the statement back the way it was when prepared, for the next caller. Returns false if it cannot be.
+		private boolean reset()
+		{
+			try {
+				if (statement.isClosed() || statement.isCloseOnCompletion())
+					return false;
+				statement.clearParameters();
+				statement.clearBatch();
+				if (statement.getMaxRows() != maxRows)
+					statement.setMaxRows(maxRows);
+				if (statement.getQueryTimeout() != queryTimeout)
+					statement.setQueryTimeout(queryTimeout);
+				if (statement.getFetchSize() != fetchSize)
+					statement.setFetchSize(fetchSize);
+				return true;
+			} catch (SQLException e) {
+				return false;
+			}
+		}
+		
+		// Returns true if the real statement is closed.
+		private boolean isStatementClosed()
+		{
+			try {
+				return statement.isClosed();
+			} catch (SQLException e) {
+				return true;
+			}
+		}
+		
+		@Override
+		public boolean isClosed() throws SQLException
+		{
+			synchronized (cache)
+			{
+				return !inUse || statement.isClosed();
+			}
+		}
+		
+		@Override
+		public void close() throws SQLException
+		{
+			synchronized (cache)
+			{
+				if (!inUse)
+					return;
+				
+				if (!evicted && reset())
+				{
+					inUse = false;
+					return;
+				}
+				
+				// not reusable - close it.
+				inUse = false;
+				if (!evicted)
+				{
+					evicted = true;
+					cache.remove(key);
+				}
+			}
+			statement.close();
+		}
+	}
+	
+}
@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.sql;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import com.blackrook.commons.hash.CaseInsensitiveHashMap;
+
+/**
+ * A case-insensitive mapping of column names to column ordinals,
+ * created once per result and shared by all of its {@link SQLRow}s.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+final class SQLColumnIndex
+{
+	/** Column names, by ordinal. */
+	private String[] columnNames;
+	/** Column name to ordinal. */
+	private CaseInsensitiveHashMap<Integer> ordinalMap;
+	
+	/**
+	 * Creates a new column index.
+	 * If a column name repeats, the last column by that name is the one found by name.
+	 * @param columnNames the column names, in ordinal order.
+	 */
+	SQLColumnIndex(String[] columnNames)
+	{
+		this.columnNames = columnNames;
+		this.ordinalMap = new CaseInsensitiveHashMap<Integer>(columnNames.length);
+		for (int i = 0; i < columnNames.length; i++)
+			ordinalMap.put(columnNames[i], i);
+	}
+	
+	/**
+	 * Creates a new column index from a result set's columns.
+	 * @param resultSet the result set.
+	 * @throws SQLException if the result set's metadata could not be read.
+	 */
+	SQLColumnIndex(ResultSet resultSet) throws SQLException
+	{
+		this(SQLUtil.getAllColumnNamesFromResultSet(resultSet));
+	}
+	
+	/**
+	 * Gets the names of the columns.
+	 */
+	String[] getColumnNames()
+	{
+		return columnNames;
+	}
+	
+	/**
+	 * Gets the amount of columns.
+	 */
+	int size()
+	{
+		return columnNames.length;
+	}
+	
+	/**
+	 * Gets the ordinal of a column by name, case-insensitively.
+	 * @param columnName the column name.
+	 * @return the zero-based ordinal, or -1 if there is no such column.
+	 */
+	int getOrdinal(String columnName)
+	{
+		Integer out = ordinalMap.get(columnName);
+		return out != null ? out : -1;
+	}
+	
+}
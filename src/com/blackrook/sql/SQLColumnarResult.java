@@ -0,0 +1,480 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.sql;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The data encapsulation of the result of a query {@link java.sql.ResultSet}, stored by column.
+ * <p>
+ * Each column is read into one array according to its SQL type from the result's metadata:
+ * <ul>
+ * <li><code>TINYINT</code>, <code>SMALLINT</code>, and <code>INTEGER</code> columns are read into an <code>int[]</code>.</li>
+ * <li><code>BIGINT</code> columns are read into a <code>long[]</code>.</li>
+ * <li><code>REAL</code>, <code>FLOAT</code>, and <code>DOUBLE</code> columns are read into a <code>double[]</code>.</li>
+ * <li>Everything else is read into an <code>Object[]</code>.</li>
+ * </ul>
+ * Nulls in primitive columns are stored as 0 and flagged in the column's null set.
+ * Numeric results take a fraction of the memory of a {@link SQLResult}, and the column arrays 
+ * can be aggregated directly. 
+ * <p>
+ * The arrays and null sets returned by this object are the ones it stores, not copies, 
+ * unless they are converted from another column type.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+public class SQLColumnarResult
+{
+	/** Initial column capacity. */
+	private static final int DEFAULT_CAPACITY = 64;
+	
+	/**
+	 * Column storage types.
+	 */
+	public enum ColumnType
+	{
+		/** Stored as an <code>int[]</code>. */
+		INTEGER,
+		/** Stored as a <code>long[]</code>. */
+		LONG,
+		/** Stored as a <code>double[]</code>. */
+		DOUBLE,
+		/** Stored as an <code>Object[]</code>. */
+		OBJECT;
+	}
+
+	/** Column index. */
+	private SQLColumnIndex columnIndex;
+	/** Column storage types, by ordinal. */
+	private ColumnType[] columnTypes;
+	/** Column arrays, by ordinal. */
+	private Object[] columns;
+	/** Null flags, by ordinal. */
+	private BitSet[] nulls;
+	/** Rows returned in the query. */
+	private int rowCount;
+	
+	/**
+	 * Creates a new columnar result from a result set, reading all of its rows.
+	 * The result set is assumed to be at the beginning of the set.
+	 */
+	SQLColumnarResult(ResultSet rs) throws SQLException
+	{
+		columnIndex = new SQLColumnIndex(rs);
+		int columnCount = columnIndex.size();
+		
+		ResultSetMetaData md = rs.getMetaData();
+		columnTypes = new ColumnType[columnCount];
+		columns = new Object[columnCount];
+		nulls = new BitSet[columnCount];
+		
+		int capacity = Math.max(DEFAULT_CAPACITY, rs.getFetchSize());
+		for (int c = 0; c < columnCount; c++)
+		{
+			columnTypes[c] = getStorageType(md.getColumnType(c + 1));
+			columns[c] = createArray(columnTypes[c], capacity);
+			nulls[c] = new BitSet();
+		}
+
+		rowCount = 0;
+		while (rs.next())
+		{
+			if (rowCount == capacity)
+			{
+				capacity = capacity * 2;
+				for (int c = 0; c < columnCount; c++)
+					columns[c] = resizeArray(columns[c], capacity);
+			}
+
+			for (int c = 0; c < columnCount; c++)
+				readValue(rs, c, rowCount);
+			rowCount++;
+		}
+		
+		if (rowCount < capacity)
+		{
+			for (int c = 0; c < columnCount; c++)
+				columns[c] = resizeArray(columns[c], rowCount);
+		}
+	}
+	
+	// Gets the storage type for an SQL type.
+	private static ColumnType getStorageType(int sqlType)
+	{
+		switch (sqlType)
+		{
+			case Types.TINYINT:
+			case Types.SMALLINT:
+			case Types.INTEGER:
+				return ColumnType.INTEGER;
+			case Types.BIGINT:
+				return ColumnType.LONG;
+			case Types.REAL:
+			case Types.FLOAT:
+			case Types.DOUBLE:
+				return ColumnType.DOUBLE;
+			default:
+				return ColumnType.OBJECT;
+		}
+	}
+	
+	// Creates a column array.
+	private static Object createArray(ColumnType type, int capacity)
+	{
+		switch (type)
+		{
+			case INTEGER:
+				return new int[capacity];
+			case LONG:
+				return new long[capacity];
+			case DOUBLE:
+				return new double[capacity];
+			default:
+				return new Object[capacity];
+		}
+	}
+
+	// Resizes a column array.
+	private static Object resizeArray(Object array, int capacity)
+	{
+		if (array instanceof int[])
+			return Arrays.copyOf((int[])array, capacity);
+		else if (array instanceof long[])
+			return Arrays.copyOf((long[])array, capacity);
+		else if (array instanceof double[])
+			return Arrays.copyOf((double[])array, capacity);
+		else
+			return Arrays.copyOf((Object[])array, capacity);
+	}
+
+	// Reads the value of one column in the current row.
+	private void readValue(ResultSet rs, int column, int row) throws SQLException
+	{
+		switch (columnTypes[column])
+		{
+			case INTEGER:
+				((int[])columns[column])[row] = rs.getInt(column + 1);
+				break;
+			case LONG:
+				((long[])columns[column])[row] = rs.getLong(column + 1);
+				break;
+			case DOUBLE:
+				((double[])columns[column])[row] = rs.getDouble(column + 1);
+				break;
+			default:
+				((Object[])columns[column])[row] = rs.getObject(column + 1);
+				break;
+		}
+		if (rs.wasNull())
+			nulls[column].set(row);
+	}
+	
+	// Gets a column ordinal by name.
+	private int getRequiredOrdinal(String columnName)
+	{
+		int out = columnIndex.getOrdinal(columnName);
+		if (out < 0)
+			throw new IllegalArgumentException("No such column: " + columnName);
+		return out;
+	}
+
+	/**
+	 * Gets the names of the columns.
+	 */
+	public String[] getColumnNames()
+	{
+		return columnIndex.getColumnNames();
+	}
+
+	/**
+	 * Gets the zero-based ordinal of a column by name, case-insensitively.
+	 * @param columnName the column name.
+	 * @return the ordinal, or -1 if there is no such column.
+	 */
+	public int getOrdinal(String columnName)
+	{
+		return columnIndex.getOrdinal(columnName);
+	}
+
+	/**
+	 * Gets the amount of columns.
+	 */
+	public int getColumnCount()
+	{
+		return columnIndex.size();
+	}
+
+	/**
+	 * Gets the amount of returned rows from this query, 
+	 * which is also the length of each column array. 
+	 */
+	public int getRowCount()
+	{
+		return rowCount;
+	}
+
+	/**
+	 * Gets how a column is stored.
+	 * @param ordinal the column ordinal.
+	 * @return the column's storage type.
+	 * @throws ArrayIndexOutOfBoundsException if the ordinal is out of range.
+	 */
+	public ColumnType getColumnType(int ordinal)
+	{
+		return columnTypes[ordinal];
+	}
+
+	/**
+	 * Gets how a column is stored.
+	 * @param columnName the column name.
+	 * @return the column's storage type.
+	 * @throws IllegalArgumentException if there is no such column.
+	 */
+	public ColumnType getColumnType(String columnName)
+	{
+		return columnTypes[getRequiredOrdinal(columnName)];
+	}
+
+	/**
+	 * Gets the set of rows that are null in a column.
+	 * @param ordinal the column ordinal.
+	 * @return the set of row indices with null values.
+	 * @throws ArrayIndexOutOfBoundsException if the ordinal is out of range.
+	 */
+	public BitSet getNulls(int ordinal)
+	{
+		return nulls[ordinal];
+	}
+
+	/**
+	 * Gets the set of rows that are null in a column.
+	 * @param columnName the column name.
+	 * @return the set of row indices with null values.
+	 * @throws IllegalArgumentException if there is no such column.
+	 */
+	public BitSet getNulls(String columnName)
+	{
+		return nulls[getRequiredOrdinal(columnName)];
+	}
+
+	/**
+	 * Returns if a value in a column is null.
+	 * @param ordinal the column ordinal.
+	 * @param row the row index.
+	 * @return true if so, false if not.
+	 */
+	public boolean isNull(int ordinal, int row)
+	{
+		return nulls[ordinal].get(row);
+	}
+
+	/**
+	 * Gets a column as an <code>int[]</code>.
+	 * If the column is not stored as {@link ColumnType#INTEGER}, its values are converted 
+	 * into a new array (narrowed, if need be). Nulls are 0.
+	 * @param ordinal the column ordinal.
+	 * @return the column values.
+	 * @throws ArrayIndexOutOfBoundsException if the ordinal is out of range.
+	 * @throws ClassCastException if the column is stored as objects that are not all Numbers.
+	 */
+	public int[] getIntColumn(int ordinal)
+	{
+		Object array = columns[ordinal];
+		if (array instanceof int[])
+			return (int[])array;
+		
+		int[] out = new int[rowCount];
+		if (array instanceof long[])
+		{
+			long[] values = (long[])array;
+			for (int i = 0; i < rowCount; i++)
+				out[i] = (int)values[i];
+		}
+		else if (array instanceof double[])
+		{
+			double[] values = (double[])array;
+			for (int i = 0; i < rowCount; i++)
+				out[i] = (int)values[i];
+		}
+		else
+		{
+			Object[] values = (Object[])array;
+			for (int i = 0; i < rowCount; i++)
+				out[i] = values[i] != null ? ((Number)values[i]).intValue() : 0;
+		}
+		return out;
+	}
+
+	/**
+	 * Gets a column as an <code>int[]</code>.
+	 * @param columnName the column name.
+	 * @return the column values.
+	 * @throws IllegalArgumentException if there is no such column.
+	 * @throws ClassCastException if the column is stored as objects that are not all Numbers.
+	 * @see #getIntColumn(int)
+	 */
+	public int[] getIntColumn(String columnName)
+	{
+		return getIntColumn(getRequiredOrdinal(columnName));
+	}
+
+	/**
+	 * Gets a column as a <code>long[]</code>.
+	 * If the column is not stored as {@link ColumnType#LONG}, its values are converted 
+	 * into a new array. Nulls are 0.
+	 * @param ordinal the column ordinal.
+	 * @return the column values.
+	 * @throws ArrayIndexOutOfBoundsException if the ordinal is out of range.
+	 * @throws ClassCastException if the column is stored as objects that are not all Numbers.
+	 */
+	public long[] getLongColumn(int ordinal)
+	{
+		Object array = columns[ordinal];
+		if (array instanceof long[])
+			return (long[])array;
+		
+		long[] out = new long[rowCount];
+		if (array instanceof int[])
+		{
+			int[] values = (int[])array;
+			for (int i = 0; i < rowCount; i++)
+				out[i] = values[i];
+		}
+		else if (array instanceof double[])
+		{
+			double[] values = (double[])array;
+			for (int i = 0; i < rowCount; i++)
+				out[i] = (long)values[i];
+		}
+		else
+		{
+			Object[] values = (Object[])array;
+			for (int i = 0; i < rowCount; i++)
+				out[i] = values[i] != null ? ((Number)values[i]).longValue() : 0L;
+		}
+		return out;
+	}
+
+	/**
+	 * Gets a column as a <code>long[]</code>.
+	 * @param columnName the column name.
+	 * @return the column values.
+	 * @throws IllegalArgumentException if there is no such column.
+	 * @throws ClassCastException if the column is stored as objects that are not all Numbers.
+	 * @see #getLongColumn(int)
+	 */
+	public long[] getLongColumn(String columnName)
+	{
+		return getLongColumn(getRequiredOrdinal(columnName));
+	}
+
+	/**
+	 * Gets a column as a <code>double[]</code>.
+	 * If the column is not stored as {@link ColumnType#DOUBLE}, its values are converted 
+	 * into a new array. Nulls are 0.
+	 * @param ordinal the column ordinal.
+	 * @return the column values.
+	 * @throws ArrayIndexOutOfBoundsException if the ordinal is out of range.
+	 * @throws ClassCastException if the column is stored as objects that are not all Numbers.
+	 */
+	public double[] getDoubleColumn(int ordinal)
+	{
+		Object array = columns[ordinal];
+		if (array instanceof double[])
+			return (double[])array;
+		
+		double[] out = new double[rowCount];
+		if (array instanceof int[])
+		{
+			int[] values = (int[])array;
+			for (int i = 0; i < rowCount; i++)
+				out[i] = values[i];
+		}
+		else if (array instanceof long[])
+		{
+			long[] values = (long[])array;
+			for (int i = 0; i < rowCount; i++)
+				out[i] = values[i];
+		}
+		else
+		{
+			Object[] values = (Object[])array;
+			for (int i = 0; i < rowCount; i++)
+				out[i] = values[i] != null ? ((Number)values[i]).doubleValue() : 0.0;
+		}
+		return out;
+	}
+
+	/**
+	 * Gets a column as a <code>double[]</code>.
+	 * @param columnName the column name.
+	 * @return the column values.
+	 * @throws IllegalArgumentException if there is no such column.
+	 * @throws ClassCastException if the column is stored as objects that are not all Numbers.
+	 * @see #getDoubleColumn(int)
+	 */
+	public double[] getDoubleColumn(String columnName)
+	{
+		return getDoubleColumn(getRequiredOrdinal(columnName));
+	}
+
+	/**
+	 * Gets a column as an <code>Object[]</code>.
+	 * If the column is not stored as {@link ColumnType#OBJECT}, its values are boxed 
+	 * into a new array, with nulls where the column's values are null.
+	 * @param ordinal the column ordinal.
+	 * @return the column values.
+	 * @throws ArrayIndexOutOfBoundsException if the ordinal is out of range.
+	 */
+	public Object[] getObjectColumn(int ordinal)
+	{
+		Object array = columns[ordinal];
+		if (array instanceof Object[])
+			return (Object[])array;
+		
+		Object[] out = new Object[rowCount];
+		BitSet nullSet = nulls[ordinal];
+		if (array instanceof int[])
+		{
+			int[] values = (int[])array;
+			for (int i = 0; i < rowCount; i++)
+				out[i] = nullSet.get(i) ? null : Integer.valueOf(values[i]);
+		}
+		else if (array instanceof long[])
+		{
+			long[] values = (long[])array;
+			for (int i = 0; i < rowCount; i++)
+				out[i] = nullSet.get(i) ? null : Long.valueOf(values[i]);
+		}
+		else
+		{
+			double[] values = (double[])array;
+			for (int i = 0; i < rowCount; i++)
+				out[i] = nullSet.get(i) ? null : Double.valueOf(values[i]);
+		}
+		return out;
+	}
+
+	/**
+	 * Gets a column as an <code>Object[]</code>.
+	 * @param columnName the column name.
+	 * @return the column values.
+	 * @throws IllegalArgumentException if there is no such column.
+	 * @see #getObjectColumn(int)
+	 */
+	public Object[] getObjectColumn(String columnName)
+	{
+		return getObjectColumn(getRequiredOrdinal(columnName));
+	}
+
+}
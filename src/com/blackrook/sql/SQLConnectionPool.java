@@ -35,6 +35,8 @@ public class SQLConnectionPool
 	protected final Queue<Connection> availableConnections;
 	/** List of used connections. */
 	protected final Hash<Connection> usedConnections;
+	/** Prepared statement cache size per connection (0 is no cache). */
+	protected int statementCacheSize;
 	
 	/**
 	 * Creates a new connection pool with a set amount of managed connections.
@@ -44,14 +46,31 @@ public class SQLConnectionPool
 	 * @param password	the account password.
 	 */
 	public SQLConnectionPool(SQLConnector connector, int conns, String userName, String password) throws SQLException
+	{
+		this(connector, conns, userName, password, 0);
+	}
+	
+	/**
+	 * Creates a new connection pool with a set amount of managed connections,
+	 * each with a prepared statement cache.
+	 * @param connector	the connector to use.
+	 * @param conns		the number of connections to pool.
+	 * @param userName	the account user name.
+	 * @param password	the account password.
+	 * @param statementCacheSize the maximum amount of prepared statements to cache per connection, or 0 for no cache.
+	 * @see SQLCachingConnection
+	 * @since 2.6.0
+	 */
+	public SQLConnectionPool(SQLConnector connector, int conns, String userName, String password, int statementCacheSize) throws SQLException
 	{
 		this.connector = connector;
 		this.userName = userName;
 		this.password = password;
+		this.statementCacheSize = statementCacheSize;
 		this.availableConnections = new Queue<Connection>();
 		this.usedConnections = new Hash<Connection>();
 		for (int i = 0; i < conns; i++)
-			availableConnections.enqueue(connector.getConnection(userName,password));
+			availableConnections.enqueue(createConnection());
 	}
 	
 	/**
@@ -62,11 +81,32 @@ public class SQLConnectionPool
 	 */
 	public SQLConnectionPool(SQLConnector connector, int conns) throws SQLException
 	{
-		this.connector = connector;
-		this.availableConnections = new Queue<Connection>();
-		this.usedConnections = new Hash<Connection>();
-		for (int i = 0; i < conns; i++)
-			availableConnections.enqueue(connector.getConnection());
+		this(connector, conns, null, null, 0);
+	}
+	
+	/**
+	 * Creates a new connection pool with a set amount of managed connections,
+	 * each with a prepared statement cache, and no credentials (used with databases that require no login).
+	 * @param connector	the connector to use.
+	 * @param conns		the number of connections to pool.
+	 * @param statementCacheSize the maximum amount of prepared statements to cache per connection, or 0 for no cache.
+	 * @see SQLCachingConnection
+	 * @since 2.6.0
+	 */
+	public SQLConnectionPool(SQLConnector connector, int conns, int statementCacheSize) throws SQLException
+	{
+		this(connector, conns, null, null, statementCacheSize);
+	}
+	
+	// Creates a new connection for the pool.
+	private Connection createConnection() throws SQLException
+	{
+		Connection out;
+		if (userName != null)
+			out = connector.getConnection(userName, password);
+		else
+			out = connector.getConnection();
+		return statementCacheSize > 0 ? new SQLCachingConnection(out, statementCacheSize) : out;
 	}
 	
 	/**
@@ -87,12 +127,7 @@ public class SQLConnectionPool
 				try{
 					Connection x = availableConnections.dequeue();
 					if (x.isClosed())
-					{
-						if (userName != null)
-							availableConnections.enqueue(x = connector.getConnection(userName,password));
-						else
-							availableConnections.enqueue(x = connector.getConnection());
-					}
+						availableConnections.enqueue(x = createConnection());
 					
 					out = x;
 					usedConnections.put(out);
@@ -130,6 +165,58 @@ public class SQLConnectionPool
 		return getAvailableConnectionCount() + getUsedConnectionCount();
 	}
 
+	/**
+	 * Gets the amount of prepared statement requests served from the connections' statement caches.
+	 * @return the total hit count, or 0 if this pool does not cache statements.
+	 * @since 2.6.0
+	 */
+	public long getStatementCacheHitCount()
+	{
+		long out = 0L;
+		synchronized (availableConnections)
+		{
+			for (Connection c : availableConnections)
+				if (c instanceof SQLCachingConnection)
+					out += ((SQLCachingConnection)c).getStatementCacheHitCount();
+			for (Connection c : usedConnections)
+				if (c instanceof SQLCachingConnection)
+					out += ((SQLCachingConnection)c).getStatementCacheHitCount();
+		}
+		return out;
+	}
+
+	/**
+	 * Gets the amount of prepared statement requests that had to prepare new statements on the connections.
+	 * @return the total miss count, or 0 if this pool does not cache statements.
+	 * @since 2.6.0
+	 */
+	public long getStatementCacheMissCount()
+	{
+		long out = 0L;
+		synchronized (availableConnections)
+		{
+			for (Connection c : availableConnections)
+				if (c instanceof SQLCachingConnection)
+					out += ((SQLCachingConnection)c).getStatementCacheMissCount();
+			for (Connection c : usedConnections)
+				if (c instanceof SQLCachingConnection)
+					out += ((SQLCachingConnection)c).getStatementCacheMissCount();
+		}
+		return out;
+	}
+
+	/**
+	 * Gets the ratio of prepared statement requests served from the connections' statement caches.
+	 * @return the hit ratio, from 0.0 to 1.0 (0.0 if there were no requests).
+	 * @since 2.6.0
+	 */
+	public double getStatementCacheHitRatio()
+	{
+		long hits = getStatementCacheHitCount();
+		long total = hits + getStatementCacheMissCount();
+		return total > 0L ? (double)hits / total : 0.0;
+	}
+
 	/**
 	 * Generates a transaction for multiple queries in one set.
 	 * This transaction performs all of its queries through one connection.
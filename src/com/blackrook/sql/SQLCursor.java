@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.sql;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.blackrook.commons.util.IOUtils;
+
+/**
+ * A forward-only cursor over an open query result that reads rows lazily, one at a time.
+ * Only the current row is held in memory, so memory use does not depend on the size of the result.
+ * <p>
+ * The cursor closes its statement and result set once the last row is read, when a read fails, 
+ * or when {@link #close()} is called, whichever happens first. It should be used in a try-with-resources block
+ * in case it is not read to the end. The connection that it came from must stay open (and should not be used 
+ * for anything else) until the cursor is closed.
+ * <p>
+ * A cursor can only be iterated once. SQL errors while reading are rethrown as RuntimeExceptions.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ * @param <T> the row type.
+ */
+public class SQLCursor<T> implements Iterator<T>, Iterable<T>, AutoCloseable
+{
+	/** The statement that made the result. */
+	private Statement statement;
+	/** The open result set. */
+	private ResultSet resultSet;
+	/** Column index. */
+	private SQLColumnIndex columnIndex;
+	/** Object mapper, or null for {@link SQLRow}s. */
+	private SQLRowMapper<T> mapper;
+	
+	/** Is a row read and not yet returned? */
+	private boolean ready;
+	/** Rows returned. */
+	private long rowCount;
+	/** Closed? */
+	private boolean closed;
+	
+	/**
+	 * Creates a new cursor.
+	 * @param statement the statement that made the result, closed with it.
+	 * @param resultSet the open result set, before its first row.
+	 * @param type the object type to map each row to, or null for {@link SQLRow}s.
+	 */
+	SQLCursor(Statement statement, ResultSet resultSet, Class<T> type) throws SQLException
+	{
+		this.statement = statement;
+		this.resultSet = resultSet;
+		this.columnIndex = new SQLColumnIndex(resultSet);
+		this.mapper = type != null ? SQLRowMapper.get(type, resultSet, columnIndex.getColumnNames()) : null;
+		this.ready = false;
+		this.rowCount = 0L;
+		this.closed = false;
+	}
+	
+	/**
+	 * Gets the names of the columns.
+	 */
+	public String[] getColumnNames()
+	{
+		return columnIndex.getColumnNames();
+	}
+	
+	/**
+	 * Gets the amount of rows returned so far.
+	 */
+	public long getRowCount()
+	{
+		return rowCount;
+	}
+	
+	/**
+	 * Returns true if this cursor is closed.
+	 */
+	public boolean isClosed()
+	{
+		return closed;
+	}
+	
+	@Override
+	public boolean hasNext()
+	{
+		if (ready)
+			return true;
+		if (closed)
+			return false;
+		
+		try {
+			if (resultSet.next())
+				ready = true;
+			else
+				close();
+		} catch (SQLException e) {
+			close();
+			throw new RuntimeException(e);
+		}
+		return ready;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T next()
+	{
+		if (!hasNext())
+			throw new NoSuchElementException("No more rows.");
+		
+		ready = false;
+		try {
+			T out;
+			if (mapper == null)
+				out = (T)new SQLRow(resultSet, columnIndex);
+			else
+				out = mapper.map(resultSet);
+			rowCount++;
+			return out;
+		} catch (SQLException e) {
+			close();
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Returns this cursor, for use in for-each loops.
+	 * @throws IllegalStateException if rows were already read or the cursor is closed.
+	 */
+	@Override
+	public Iterator<T> iterator()
+	{
+		if (rowCount > 0 || closed)
+			throw new IllegalStateException("A cursor can only be iterated once.");
+		return this;
+	}
+	
+	/**
+	 * Returns a sequential {@link Stream} over the remaining rows.
+	 * Closing the stream closes this cursor.
+	 */
+	public Stream<T> stream()
+	{
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+			.onClose(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					close();
+				}
+			});
+	}
+	
+	/**
+	 * Closes the result set and statement. Does nothing if already closed.
+	 */
+	@Override
+	public void close()
+	{
+		if (closed)
+			return;
+		closed = true;
+		ready = false;
+		IOUtils.close(resultSet);
+		IOUtils.close(statement);
+	}
+
+}
@@ -0,0 +1,371 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.sql;
+
+import java.lang.reflect.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.blackrook.commons.list.List;
+import com.blackrook.commons.util.IOUtils;
+import com.blackrook.db.QueryDialect;
+import com.blackrook.db.RenderedQuery;
+import com.blackrook.db.SQLQueryRenderer;
+import com.blackrook.db.SelectQuery;
+import com.blackrook.db.SelectQuery.OrderClause;
+
+/**
+ * Walks the results of a {@link SelectQuery} page by page using keyset (or "seek") pagination:
+ * each page asks for the rows after the keys of the last row of the previous page,
+ * instead of skipping an offset's worth of rows, so deep pages cost the same as the first one
+ * given an index on the keys.
+ * <p>
+ * While a page is being worked on, the next page is fetched in the background, unless
+ * prefetching is turned off. The connection must not be used for anything else until
+ * the pager is read to the end or closed. The pager should be used in a try-with-resources block
+ * in case it is not read to the end.
+ * <p>
+ * The key columns must be in the query's result under their own names (not aliases), should be
+ * unique together, and should not be null, or rows may be skipped.
+ * SQL errors while reading are rethrown as RuntimeExceptions.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ * @param <T> the row type.
+ * @see SQLQueryRenderer#renderPage(SelectQuery, OrderClause[], Object[], int)
+ */
+public class SQLKeysetPager<T> implements Iterator<T[]>, Iterable<T[]>, AutoCloseable
+{
+	/** The connection to query. */
+	private Connection connection;
+	/** The renderer to use. */
+	private SQLQueryRenderer renderer;
+	/** The query to page through. */
+	private SelectQuery query;
+	/** The keys to seek by. */
+	private OrderClause[] keys;
+	/** The page size. */
+	private int pageSize;
+	/** The object type to map each row to, or null for {@link SQLRow}s. */
+	private Class<T> type;
+	/** The row array type. */
+	private Class<?> arrayType;
+	/** The executor for prefetching, or null for a new thread per page. */
+	private Executor executor;
+	/** Prefetch pages? */
+	private boolean prefetch;
+
+	/** The page being fetched, if any. */
+	private PageTask pending;
+	/** The fetched page, not yet returned. */
+	private Page ready;
+	/** No more pages? */
+	private boolean finished;
+	/** Pages returned. */
+	private int pageCount;
+	/** Rows returned. */
+	private long rowCount;
+
+	/**
+	 * Creates a new pager.
+	 * @param type the object type to map each row to, or null for {@link SQLRow}s.
+	 * @param connection the connection to query.
+	 * @param dialect the SQL dialect to render the queries in.
+	 * @param pageSize the maximum amount of rows per page.
+	 * @param query the query to page through.
+	 * @param keys the key columns to order and seek by. If none, the query's ordering is used.
+	 * @throws IllegalArgumentException if the page size is less than 1, or there are no keys.
+	 */
+	SQLKeysetPager(Class<T> type, Connection connection, QueryDialect dialect, int pageSize, SelectQuery query, OrderClause ... keys)
+	{
+		if (pageSize < 1)
+			throw new IllegalArgumentException("Page size must be 1 or greater.");
+		if (keys.length == 0 && query.getOrderClauses() != null)
+		{
+			keys = new OrderClause[query.getOrderClauses().size()];
+			query.getOrderClauses().toArray(keys);
+		}
+		if (keys.length == 0)
+			throw new IllegalArgumentException("Paging by key needs at least one key or order clause.");
+
+		this.connection = connection;
+		this.renderer = dialect.getRenderer();
+		this.query = query;
+		this.keys = keys;
+		this.pageSize = pageSize;
+		this.type = type;
+		this.arrayType = type != null ? type : SQLRow.class;
+		this.executor = null;
+		this.prefetch = true;
+
+		this.pending = null;
+		this.ready = null;
+		this.finished = false;
+		this.pageCount = 0;
+		this.rowCount = 0L;
+	}
+
+	/**
+	 * Sets the executor that fetches pages in the background.
+	 * By default, each page is fetched on a new daemon thread.
+	 * @param executor the executor to use, or null for the default.
+	 * @return itself, to chain calls.
+	 */
+	public SQLKeysetPager<T> setExecutor(Executor executor)
+	{
+		this.executor = executor;
+		return this;
+	}
+
+	/**
+	 * Sets whether the next page is fetched in the background while the current one is worked on.
+	 * If false, each page is fetched when it is asked for. Default is true.
+	 * @param prefetch true to prefetch, false to not.
+	 * @return itself, to chain calls.
+	 */
+	public SQLKeysetPager<T> setPrefetch(boolean prefetch)
+	{
+		this.prefetch = prefetch;
+		return this;
+	}
+
+	/**
+	 * Gets the amount of pages returned so far.
+	 */
+	public int getPageCount()
+	{
+		return pageCount;
+	}
+
+	/**
+	 * Gets the amount of rows returned so far.
+	 */
+	public long getRowCount()
+	{
+		return rowCount;
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		if (ready != null)
+			return true;
+		if (finished)
+			return false;
+
+		if (pending == null)
+			pending = fetch(null, false);
+
+		try {
+			ready = await();
+		} catch (RuntimeException e) {
+			finished = true;
+			throw e;
+		}
+
+		if (ready.rows.length == 0)
+		{
+			ready = null;
+			finished = true;
+		}
+		return ready != null;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public T[] next()
+	{
+		if (!hasNext())
+			throw new NoSuchElementException("No more pages.");
+
+		Page page = ready;
+		ready = null;
+		pageCount++;
+		rowCount += page.rows.length;
+
+		if (page.rows.length < pageSize)
+			finished = true;
+		else
+			pending = fetch(page.lastKeys, prefetch);
+
+		return (T[])page.rows;
+	}
+
+	/**
+	 * Returns this pager, for use in for-each loops.
+	 * @throws IllegalStateException if pages were already read or the pager is closed.
+	 */
+	@Override
+	public Iterator<T[]> iterator()
+	{
+		if (pageCount > 0 || finished)
+			throw new IllegalStateException("A pager can only be iterated once.");
+		return this;
+	}
+
+	/**
+	 * Stops paging, waiting for a page being fetched in the background, if any, so that the connection is free.
+	 * Does nothing if already closed.
+	 */
+	@Override
+	public void close()
+	{
+		finished = true;
+		ready = null;
+		if (pending != null && !pending.cancelIfNotStarted())
+		{
+			try {
+				pending.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				// Closing anyway.
+			}
+		}
+		pending = null;
+	}
+
+	// Creates a task to fetch a page and starts it in the background, or leaves it for await() to run.
+	private PageTask fetch(final Object[] after, boolean background)
+	{
+		final AtomicBoolean started = new AtomicBoolean(false);
+		PageTask out = new PageTask(started, new Callable<Page>()
+		{
+			@Override
+			public Page call() throws Exception
+			{
+				if (!started.compareAndSet(false, true))
+					return null; // cancelled by close().
+				return readPage(after);
+			}
+		});
+
+		if (background)
+		{
+			if (executor != null)
+				executor.execute(out);
+			else
+			{
+				Thread thread = new Thread(out, "SQLKeysetPager-Prefetch");
+				thread.setDaemon(true);
+				thread.start();
+			}
+		}
+		return out;
+	}
+
+	// Waits for the pending page.
+	private Page await()
+	{
+		PageTask task = pending;
+		pending = null;
+		task.run(); // does nothing if already run or running.
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException)cause;
+			throw new RuntimeException(cause);
+		}
+	}
+
+	// Reads a page.
+	@SuppressWarnings("unchecked")
+	private Page readPage(Object[] after) throws SQLException
+	{
+		RenderedQuery rendered = renderer.renderPage(query, keys, after, pageSize);
+		PreparedStatement statement = connection.prepareStatement(rendered.getQuery());
+		ResultSet resultSet = null;
+		try {
+			Object[] parameters = rendered.getParameters();
+			for (int i = 0; i < parameters.length; i++)
+				statement.setObject(i + 1, parameters[i]);
+			statement.setFetchSize(pageSize);
+
+			resultSet = statement.executeQuery();
+			SQLColumnIndex columnIndex = new SQLColumnIndex(resultSet);
+			SQLRowMapper<T> mapper = type != null ? SQLRowMapper.get(type, resultSet, columnIndex.getColumnNames()) : null;
+			int[] keyColumns = new int[keys.length];
+			for (int i = 0; i < keys.length; i++)
+				keyColumns[i] = resultSet.findColumn(keys[i].getName());
+
+			List<T> rows = new List<T>(pageSize);
+			Object[] lastKeys = new Object[keys.length];
+			while (resultSet.next())
+			{
+				for (int i = 0; i < keyColumns.length; i++)
+					lastKeys[i] = resultSet.getObject(keyColumns[i]);
+				if (mapper == null)
+					rows.add((T)new SQLRow(resultSet, columnIndex));
+				else
+					rows.add(mapper.map(resultSet));
+			}
+
+			T[] out = (T[])Array.newInstance(arrayType, rows.size());
+			rows.toArray(out);
+			return new Page(out, lastKeys);
+		} finally {
+			IOUtils.close(resultSet);
+			statement.close();
+		}
+	}
+
+	/**
+	 * A page fetch that can only be cancelled before it starts reading.
+	 */
+	private static class PageTask extends FutureTask<Page>
+	{
+		/** Set by whichever comes first: the read, or the cancel. */
+		private AtomicBoolean started;
+
+		private PageTask(AtomicBoolean started, Callable<Page> callable)
+		{
+			super(callable);
+			this.started = started;
+		}
+
+		// Cancels the task if it has not started reading. Returns true if cancelled.
+		private boolean cancelIfNotStarted()
+		{
+			if (!started.compareAndSet(false, true))
+				return false;
+			cancel(false);
+			return true;
+		}
+	}
+
+	/**
+	 * A single fetched page.
+	 */
+	private static class Page
+	{
+		/** The rows. */
+		private Object[] rows;
+		/** The key values of the last row. */
+		private Object[] lastKeys;
+
+		private Page(Object[] rows, Object[] lastKeys)
+		{
+			this.rows = rows;
+			this.lastKeys = lastKeys;
+		}
+	}
+
+}
@@ -24,6 +24,8 @@ public class SQLResult implements ResettableIterable<SQLRow>
 	
 	/** Query Columns. */
 	protected String[] columnNames;
+	/** Column index, shared by all rows. */
+	private SQLColumnIndex columnIndex;
 	/** Rows affected or returned in the query. */
 	protected int rowCount;
 	/** Next id, if generated. */
@@ -39,6 +41,7 @@ public class SQLResult implements ResettableIterable<SQLRow>
 	SQLResult(int rowsAffected) throws SQLException
 	{
 		columnNames = EMPTY_ARRAY;
+		columnIndex = null;
 		update = true;
 		rowCount = rowsAffected;
 		rows = null;
@@ -69,12 +72,13 @@ public class SQLResult implements ResettableIterable<SQLRow>
 		update = false;
 		rowCount = 0;
 
-		columnNames = SQLUtil.getAllColumnNamesFromResultSet(rs);
+		columnIndex = new SQLColumnIndex(rs);
+		columnNames = columnIndex.getColumnNames();
 
 		rows = new List<SQLRow>();
 		while (rs.next())
 		{
-			rows.add(new SQLRow(rs, columnNames));
+			rows.add(new SQLRow(rs, columnIndex));
 			rowCount++;
 		}
 	}
@@ -87,6 +91,18 @@ public class SQLResult implements ResettableIterable<SQLRow>
 		return columnNames;
 	}
 
+	/**
+	 * Gets the zero-based ordinal of a column by name, case-insensitively,
+	 * for use with the ordinal-based {@link SQLRow} accessors.
+	 * @param columnName the column name.
+	 * @return the ordinal, or -1 if there is no such column.
+	 * @since 2.6.0
+	 */
+	public int getOrdinal(String columnName)
+	{
+		return columnIndex != null ? columnIndex.getOrdinal(columnName) : -1;
+	}
+
 	/**
 	 * Gets the amount of affected/returned rows from this query. 
 	 */
@@ -20,29 +20,95 @@ import java.sql.Timestamp;
 import java.util.Date;
 
 import com.blackrook.commons.Reflect;
-import com.blackrook.commons.hash.CaseInsensitiveHashMap;
 import com.blackrook.commons.util.IOUtils;
 import com.blackrook.commons.util.ValueUtils;
 
 /**
- * SQLRow object. 
+ * SQLRow object.
  * Represents one row in a query result, mapped using column names.
  * Contains methods for auto-casting or converting the row data.
+ * <p>
+ * Values are stored by column ordinal, and the case-insensitive column name lookup
+ * is shared by all of the rows from the same result. Columns can be read by name
+ * or by zero-based ordinal - the ordinal accessors skip the name lookup, which helps
+ * in tight loops (see {@link #getOrdinal(String)}).
  */
-public class SQLRow extends CaseInsensitiveHashMap<Object>
+public class SQLRow
 {
+	/** The shared column index. */
+	private SQLColumnIndex columnIndex;
+	/** The column values, by ordinal. */
+	private Object[] values;
+	
 	/**
 	 * Hidden constructor for a SQL row.
 	 * @param rs the open {@link ResultSet}, set to the row to create a SQLRow from.
-	 * @param columnNames the names given to the columns in the {@link ResultSet},
+	 * @param columnIndex the index of the columns in the {@link ResultSet},
 	 * gathered ahead of time.
 	 * @throws SQLException if a parse exception occurred.
 	 */
-	SQLRow(ResultSet rs, String[] columnNames) throws SQLException
+	SQLRow(ResultSet rs, SQLColumnIndex columnIndex) throws SQLException
+	{
+		this.columnIndex = columnIndex;
+		this.values = new Object[columnIndex.size()];
+		for (int i = 0; i < values.length; i++)
+			values[i] = rs.getObject(i+1);
+	}
+	
+	/**
+	 * Gets the names of the columns in this row, by ordinal.
+	 * @since 2.6.0
+	 */
+	public String[] getColumnNames()
+	{
+		return columnIndex.getColumnNames();
+	}
+	
+	/**
+	 * Gets the zero-based ordinal of a column by name, case-insensitively.
+	 * @param columnName the column name.
+	 * @return the ordinal, or -1 if there is no such column.
+	 * @since 2.6.0
+	 */
+	public int getOrdinal(String columnName)
+	{
+		return columnIndex.getOrdinal(columnName);
+	}
+	
+	/**
+	 * Gets the amount of columns in this row.
+	 */
+	public int size()
+	{
+		return values.length;
+	}
+	
+	/**
+	 * Returns true if this row has a column by this name, case-insensitively.
+	 */
+	public boolean containsKey(String columnName)
+	{
+		return columnIndex.getOrdinal(columnName) >= 0;
+	}
+	
+	/**
+	 * Returns the raw value of a column by name,
+	 * or null if the value is null or there is no such column.
+	 */
+	public Object get(String columnName)
 	{
-		super(columnNames.length);
-		for (int i = 0; i < columnNames.length; i++)
-			put(columnNames[i], rs.getObject(i+1));
+		int ordinal = columnIndex.getOrdinal(columnName);
+		return ordinal >= 0 ? values[ordinal] : null;
+	}
+	
+	/**
+	 * Returns the raw value of a column by zero-based ordinal.
+	 * @throws ArrayIndexOutOfBoundsException if the ordinal is out of range.
+	 * @since 2.6.0
+	 */
+	public Object get(int ordinal)
+	{
+		return values[ordinal];
 	}
 	
 	/**
@@ -53,6 +119,15 @@ public class SQLRow extends CaseInsensitiveHashMap<Object>
 		return get(columnName) == null;
 	}
 	
+	/**
+	 * Returns if the value of the column at this ordinal is null.
+	 * @since 2.6.0
+	 */
+	public boolean getNull(int ordinal)
+	{
+		return get(ordinal) == null;
+	}
+	
 	/**
 	 * Returns the boolean value of this column.
 	 * Can convert from Booleans, Numbers, and Strings.
@@ -60,7 +135,245 @@ public class SQLRow extends CaseInsensitiveHashMap<Object>
 	 */
 	public boolean getBoolean(String columnName)
 	{
-		Object obj = get(columnName);
+		return toBoolean(get(columnName));
+	}
+	
+	/**
+	 * Returns the boolean value of the column at this ordinal.
+	 * @see #getBoolean(String)
+	 * @since 2.6.0
+	 */
+	public boolean getBoolean(int ordinal)
+	{
+		return toBoolean(get(ordinal));
+	}
+	
+	/**
+	 * Returns the byte value of this column.
+	 * Can convert from Booleans, Numbers, and Strings.
+	 * Booleans convert to 1 if true, 0 if false.
+	 * @see ValueUtils#parseByte(String)
+	 */
+	public byte getByte(String columnName)
+	{
+		return toByte(get(columnName));
+	}
+	
+	/**
+	 * Returns the byte value of the column at this ordinal.
+	 * @see #getByte(String)
+	 * @since 2.6.0
+	 */
+	public byte getByte(int ordinal)
+	{
+		return toByte(get(ordinal));
+	}
+	
+	/**
+	 * Returns the byte array value of this column, if this
+	 * can be represented as such (usually {@link Blob}s).
+	 * Can convert from Blobs.
+	 */
+	public byte[] getByteArray(String columnName)
+	{
+		return toByteArray(get(columnName));
+	}
+	
+	/**
+	 * Returns the byte array value of the column at this ordinal.
+	 * @see #getByteArray(String)
+	 * @since 2.6.0
+	 */
+	public byte[] getByteArray(int ordinal)
+	{
+		return toByteArray(get(ordinal));
+	}
+	
+	/**
+	 * Returns the short value of this column.
+	 * Can convert from Booleans, Numbers, and Strings.
+	 * Booleans convert to 1 if true, 0 if false.
+	 * @see ValueUtils#parseShort(String)
+	 */
+	public short getShort(String columnName)
+	{
+		return toShort(get(columnName));
+	}
+	
+	/**
+	 * Returns the short value of the column at this ordinal.
+	 * @see #getShort(String)
+	 * @since 2.6.0
+	 */
+	public short getShort(int ordinal)
+	{
+		return toShort(get(ordinal));
+	}
+	
+	/**
+	 * Returns the integer value of this column.
+	 * Can convert from Booleans, Numbers, and Strings.
+	 * Booleans convert to 1 if true, 0 if false.
+	 * @see ValueUtils#parseInt(String)
+	 */
+	public int getInt(String columnName)
+	{
+		return toInt(get(columnName));
+	}
+	
+	/**
+	 * Returns the integer value of the column at this ordinal.
+	 * @see #getInt(String)
+	 * @since 2.6.0
+	 */
+	public int getInt(int ordinal)
+	{
+		return toInt(get(ordinal));
+	}
+	
+	/**
+	 * Returns the float value of this column.
+	 * Can convert from Booleans, Numbers, and Strings.
+	 * Booleans convert to 1 if true, 0 if false.
+	 * @see ValueUtils#parseFloat(String)
+	 */
+	public float getFloat(String columnName)
+	{
+		return toFloat(get(columnName));
+	}
+	
+	/**
+	 * Returns the float value of the column at this ordinal.
+	 * @see #getFloat(String)
+	 * @since 2.6.0
+	 */
+	public float getFloat(int ordinal)
+	{
+		return toFloat(get(ordinal));
+	}
+	
+	/**
+	 * Returns the long value of this column.
+	 * Can convert from Booleans, Numbers, Strings, and Dates/Timestamps.
+	 * Booleans convert to 1 if true, 0 if false.
+	 * Dates and Timestamps convert to milliseconds since the Epoch.
+	 * @see ValueUtils#parseLong(String)
+	 */
+	public long getLong(String columnName)
+	{
+		return toLong(get(columnName));
+	}
+	
+	/**
+	 * Returns the long value of the column at this ordinal.
+	 * @see #getLong(String)
+	 * @since 2.6.0
+	 */
+	public long getLong(int ordinal)
+	{
+		return toLong(get(ordinal));
+	}
+	
+	/**
+	 * Returns the double value of this column.
+	 * Can convert from Booleans, Numbers, and Strings.
+	 * Booleans convert to 1 if true, 0 if false.
+	 * @see ValueUtils#parseDouble(String)
+	 */
+	public double getDouble(String columnName)
+	{
+		return toDouble(get(columnName));
+	}
+	
+	/**
+	 * Returns the double value of the column at this ordinal.
+	 * @see #getDouble(String)
+	 * @since 2.6.0
+	 */
+	public double getDouble(int ordinal)
+	{
+		return toDouble(get(ordinal));
+	}
+	
+	/**
+	 * Returns the string value of this column.
+	 * Can convert from Booleans, Numbers, byte and char arrays,
+	 * Blobs, and Clobs.
+	 * Booleans convert to 1 if true, 0 if false.
+	 * Byte arrays and Blobs are converted using the native charset encoding.
+	 * Char arrays and Clobs are read entirely and converted to Strings.
+	 * @see String#valueOf(Object)
+	 */
+	public String getString(String columnName)
+	{
+		return toString(get(columnName));
+	}
+	
+	/**
+	 * Returns the string value of the column at this ordinal.
+	 * @see #getString(String)
+	 * @since 2.6.0
+	 */
+	public String getString(int ordinal)
+	{
+		return toString(get(ordinal));
+	}
+	
+	/**
+	 * Returns the Timestamp value of the object, or
+	 * null if not a Timestamp or Date.
+	 */
+	public Timestamp getTimestamp(String columnName)
+	{
+		return toTimestamp(get(columnName));
+	}
+	
+	/**
+	 * Returns the Timestamp value of the column at this ordinal.
+	 * @see #getTimestamp(String)
+	 * @since 2.6.0
+	 */
+	public Timestamp getTimestamp(int ordinal)
+	{
+		return toTimestamp(get(ordinal));
+	}
+	
+	/**
+	 * Returns the Date value of the object, or null if not a Date.
+	 */
+	public Date getDate(String columnName)
+	{
+		return toDate(get(columnName));
+	}
+	
+	/**
+	 * Returns the Date value of the column at this ordinal.
+	 * @see #getDate(String)
+	 * @since 2.6.0
+	 */
+	public Date getDate(int ordinal)
+	{
+		return toDate(get(ordinal));
+	}
+	
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append('{');
+		String[] columnNames = columnIndex.getColumnNames();
+		for (int i = 0; i < values.length; i++)
+		{
+			sb.append(columnNames[i]).append('=').append(values[i]);
+			if (i < values.length - 1)
+				sb.append(", ");
+		}
+		sb.append('}');
+		return sb.toString();
+	}
+	
+	private static boolean toBoolean(Object obj)
+	{
 		if (obj == null)
 			return false;
 		else if (obj instanceof Boolean)
@@ -72,15 +385,8 @@ public class SQLRow extends CaseInsensitiveHashMap<Object>
 		return false;
 	}
 	
-	/**
-	 * Returns the byte value of this column.
-	 * Can convert from Booleans, Numbers, and Strings.
-	 * Booleans convert to 1 if true, 0 if false.
-	 * @see ValueUtils#parseByte(String)
-	 */
-	public byte getByte(String columnName)
+	private static byte toByte(Object obj)
 	{
-		Object obj = get(columnName);
 		if (obj == null)
 			return (byte)0;
 		else if (obj instanceof Boolean)
@@ -92,14 +398,8 @@ public class SQLRow extends CaseInsensitiveHashMap<Object>
 		return (byte)0;
 	}
 	
-	/**
-	 * Returns the byte array value of this column, if this
-	 * can be represented as such (usually {@link Blob}s).
-	 * Can convert from Blobs.
-	 */
-	public byte[] getByteArray(String columnName)
+	private static byte[] toByteArray(Object obj)
 	{
-		Object obj = get(columnName);
 		if (obj == null)
 			return null;
 		else if (obj instanceof Blob)
@@ -127,15 +427,8 @@ public class SQLRow extends CaseInsensitiveHashMap<Object>
 		return null;
 	}
 	
-	/**
-	 * Returns the short value of this column.
-	 * Can convert from Booleans, Numbers, and Strings.
-	 * Booleans convert to 1 if true, 0 if false.
-	 * @see ValueUtils#parseShort(String)
-	 */
-	public short getShort(String columnName)
+	private static short toShort(Object obj)
 	{
-		Object obj = get(columnName);
 		if (obj == null)
 			return (short)0;
 		else if (obj instanceof Boolean)
@@ -147,15 +440,8 @@ public class SQLRow extends CaseInsensitiveHashMap<Object>
 		return (short)0;
 	}
 	
-	/**
-	 * Returns the integer value of this column.
-	 * Can convert from Booleans, Numbers, and Strings.
-	 * Booleans convert to 1 if true, 0 if false.
-	 * @see ValueUtils#parseInt(String)
-	 */
-	public int getInt(String columnName)
+	private static int toInt(Object obj)
 	{
-		Object obj = get(columnName);
 		if (obj == null)
 			return 0;
 		else if (obj instanceof Boolean)
@@ -167,15 +453,8 @@ public class SQLRow extends CaseInsensitiveHashMap<Object>
 		return 0;
 	}
 	
-	/**
-	 * Returns the float value of this column.
-	 * Can convert from Booleans, Numbers, and Strings.
-	 * Booleans convert to 1 if true, 0 if false.
-	 * @see ValueUtils#parseFloat(String)
-	 */
-	public float getFloat(String columnName)
+	private static float toFloat(Object obj)
 	{
-		Object obj = get(columnName);
 		if (obj == null)
 			return 0f;
 		else if (obj instanceof Boolean)
@@ -187,16 +466,8 @@ public class SQLRow extends CaseInsensitiveHashMap<Object>
 		return 0f;
 	}
 	
-	/**
-	 * Returns the long value of this column.
-	 * Can convert from Booleans, Numbers, Strings, and Dates/Timestamps.
-	 * Booleans convert to 1 if true, 0 if false.
-	 * Dates and Timestamps convert to milliseconds since the Epoch.
-	 * @see ValueUtils#parseLong(String)
-	 */
-	public long getLong(String columnName)
+	private static long toLong(Object obj)
 	{
-		Object obj = get(columnName);
 		if (obj == null)
 			return 0L;
 		else if (obj instanceof Boolean)
@@ -210,15 +481,8 @@ public class SQLRow extends CaseInsensitiveHashMap<Object>
 		return 0L;
 	}
 	
-	/**
-	 * Returns the double value of this column.
-	 * Can convert from Booleans, Numbers, and Strings.
-	 * Booleans convert to 1 if true, 0 if false.
-	 * @see ValueUtils#parseDouble(String)
-	 */
-	public double getDouble(String columnName)
+	private static double toDouble(Object obj)
 	{
-		Object obj = get(columnName);
 		if (obj == null)
 			return 0.0;
 		else if (obj instanceof Boolean)
@@ -230,19 +494,8 @@ public class SQLRow extends CaseInsensitiveHashMap<Object>
 		return 0.0;
 	}
 	
-	/**
-	 * Returns the string value of this column.
-	 * Can convert from Booleans, Numbers, byte and char arrays,
-	 * Blobs, and Clobs.
-	 * Booleans convert to 1 if true, 0 if false.
-	 * Byte arrays and Blobs are converted using the native charset encoding.
-	 * Char arrays and Clobs are read entirely and converted to Strings.
-	 * @see String#valueOf(Object)
-	 */
-	public String getString(String columnName)
+	private static String toString(Object obj)
 	{
-		Object obj = get(columnName);
-		
 		if (Reflect.isArray(obj))
 		{
 			if (Reflect.getArrayType(obj) == Byte.TYPE)
@@ -300,13 +553,8 @@ public class SQLRow extends CaseInsensitiveHashMap<Object>
 			return obj != null ? String.valueOf(obj) : null;
 	}
 	
-	/**
-	 * Returns the Timestamp value of the object, or
-	 * null if not a Timestamp or Date.
-	 */
-	public Timestamp getTimestamp(String columnName)
+	private static Timestamp toTimestamp(Object obj)
 	{
-		Object obj = get(columnName);
 		if (obj instanceof Timestamp)
 			return ((Timestamp)obj);
 		else if (obj instanceof Date)
@@ -314,12 +562,8 @@ public class SQLRow extends CaseInsensitiveHashMap<Object>
 		return null;
 	}
 	
-	/**
-	 * Returns the Date value of the object, or null if not a Date.
-	 */
-	public Date getDate(String columnName)
+	private static Date toDate(Object obj)
 	{
-		Object obj = get(columnName);
 		if (obj instanceof Date)
 			return (Date)obj;
 		return null;
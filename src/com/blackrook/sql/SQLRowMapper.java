@@ -0,0 +1,458 @@
+/*******************************************************************************
+ * Copyright (c) 2013-2019 Black Rook Software
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser Public License v2.1
+ * which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ ******************************************************************************/
+package com.blackrook.sql;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.blackrook.commons.Reflect;
+import com.blackrook.commons.TypeProfile;
+import com.blackrook.commons.TypeProfile.MethodSignature;
+import com.blackrook.commons.list.List;
+import com.blackrook.db.DBReflect;
+
+/**
+ * A row-to-object mapper, compiled once per object type and result column layout.
+ * <p>
+ * Each column is bound to its target field or setter (found the same way as 
+ * {@link SQLUtil#createObjectFromResultRow(Class, ResultSet, String[])}) through a {@link MethodHandle}, 
+ * plus the {@link ResultSet} getter that suits both the column's SQL type and the target's type 
+ * (for example, {@link ResultSet#getLong(int)} for a <code>BIGINT</code> column into a <code>long</code> field).
+ * Columns without a suitable getter are read with {@link ResultSet#getObject(int)} and converted 
+ * by {@link DBReflect#createForType(String, Object, Class)}, as before.
+ * @author Matthew Tropiano
+ * @since 2.6.0
+ */
+final class SQLRowMapper<T>
+{
+	/** Mapper cache. */
+	private static final ConcurrentHashMap<Layout, SQLRowMapper<?>> CACHE = new ConcurrentHashMap<Layout, SQLRowMapper<?>>();
+
+	/** Setter type for object values. */
+	private static final MethodType OBJECT_SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+	/** Constructor type. */
+	private static final MethodType CONSTRUCTOR = MethodType.methodType(Object.class);
+	
+	/** Object type. */
+	private Class<T> type;
+	/** Object constructor, or null to use {@link Reflect#create(Class)}. */
+	private MethodHandle constructor;
+	/** Column bindings. */
+	private Binding[] bindings;
+
+	/**
+	 * Gets the mapper for an object type and a result set's columns, compiling it if need be.
+	 * @param type the object type.
+	 * @param resultSet the result set.
+	 * @param columnNames the names of the result set's columns.
+	 * @return the mapper.
+	 * @throws SQLException if the result set's metadata could not be read.
+	 */
+	@SuppressWarnings("unchecked")
+	static <T> SQLRowMapper<T> get(Class<T> type, ResultSet resultSet, String[] columnNames) throws SQLException
+	{
+		ResultSetMetaData md = resultSet.getMetaData();
+		int[] sqlTypes = new int[columnNames.length];
+		for (int i = 0; i < sqlTypes.length; i++)
+			sqlTypes[i] = md.getColumnType(i + 1);
+		
+		Layout layout = new Layout(type, columnNames, sqlTypes);
+		SQLRowMapper<T> out;
+		if ((out = (SQLRowMapper<T>)CACHE.get(layout)) == null)
+		{
+			SQLRowMapper<T> created = new SQLRowMapper<T>(type, columnNames, sqlTypes);
+			if ((out = (SQLRowMapper<T>)CACHE.putIfAbsent(layout, created)) == null)
+				out = created;
+		}
+		return out;
+	}
+	
+	// Compiles a new mapper.
+	private SQLRowMapper(Class<T> type, String[] columnNames, int[] sqlTypes)
+	{
+		this.type = type;
+		try {
+			this.constructor = MethodHandles.publicLookup().findConstructor(type, MethodType.methodType(void.class)).asType(CONSTRUCTOR);
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			this.constructor = null;
+		}
+
+		TypeProfile<T> profile = TypeProfile.getTypeProfile(type);
+		List<Binding> bindingList = new List<Binding>(columnNames.length);
+		for (int i = 0; i < columnNames.length; i++)
+		{
+			String column = columnNames[i];
+			
+			Field field = null; 
+			MethodSignature setter = null;
+			if ((field = profile.getPublicFields().get(column)) != null)
+				bindingList.add(createBinding(column, i + 1, sqlTypes[i], field.getType(), getSetter(field)));
+			else if ((setter = profile.getSetterMethods().get(column)) != null)
+				bindingList.add(createBinding(column, i + 1, sqlTypes[i], setter.getType(), getSetter(setter.getMethod())));
+		}
+		this.bindings = new Binding[bindingList.size()];
+		bindingList.toArray(bindings);
+	}
+
+	// Gets a setter handle for a field.
+	private static MethodHandle getSetter(Field field)
+	{
+		try {
+			return MethodHandles.publicLookup().unreflectSetter(field);
+		} catch (IllegalAccessException e) {
+			// public member of a non-public class.
+			field.setAccessible(true);
+			try {
+				return MethodHandles.lookup().unreflectSetter(field);
+			} catch (IllegalAccessException e1) {
+				throw new RuntimeException("Could not access field " + field, e1);
+			}
+		}
+	}
+
+	// Gets a setter handle for a method.
+	private static MethodHandle getSetter(Method method)
+	{
+		try {
+			return MethodHandles.publicLookup().unreflect(method);
+		} catch (IllegalAccessException e) {
+			// public member of a non-public class.
+			method.setAccessible(true);
+			try {
+				return MethodHandles.lookup().unreflect(method);
+			} catch (IllegalAccessException e1) {
+				throw new RuntimeException("Could not access method " + method, e1);
+			}
+		}
+	}
+
+	// Creates a column binding.
+	private static Binding createBinding(String column, int columnIndex, int sqlType, Class<?> targetType, MethodHandle setter)
+	{
+		Kind kind = getKind(sqlType, targetType);
+		MethodType setterType = kind.valueType.isPrimitive() 
+			? MethodType.methodType(void.class, Object.class, kind.valueType)
+			: OBJECT_SETTER;
+		return new Binding(column, columnIndex, kind, targetType, setter.asType(setterType));
+	}
+	
+	// Gets the getter kind for a column SQL type and a target type.
+	private static Kind getKind(int sqlType, Class<?> targetType)
+	{
+		switch (sqlType)
+		{
+			case Types.BIT:
+			case Types.BOOLEAN:
+				if (targetType == Boolean.TYPE)
+					return Kind.BOOLEAN;
+				else if (targetType == Boolean.class)
+					return Kind.BOXED_BOOLEAN;
+				return Kind.CONVERT;
+			
+			case Types.TINYINT:
+			case Types.SMALLINT:
+			case Types.INTEGER:
+			case Types.BIGINT:
+			case Types.REAL:
+			case Types.FLOAT:
+			case Types.DOUBLE:
+			case Types.DECIMAL:
+			case Types.NUMERIC:
+				if (targetType == Byte.TYPE)
+					return Kind.BYTE;
+				else if (targetType == Short.TYPE)
+					return Kind.SHORT;
+				else if (targetType == Integer.TYPE)
+					return Kind.INT;
+				else if (targetType == Long.TYPE)
+					return Kind.LONG;
+				else if (targetType == Float.TYPE)
+					return Kind.FLOAT;
+				else if (targetType == Double.TYPE)
+					return Kind.DOUBLE;
+				else if (targetType == Byte.class)
+					return Kind.BOXED_BYTE;
+				else if (targetType == Short.class)
+					return Kind.BOXED_SHORT;
+				else if (targetType == Integer.class)
+					return Kind.BOXED_INT;
+				else if (targetType == Long.class)
+					return Kind.BOXED_LONG;
+				else if (targetType == Float.class)
+					return Kind.BOXED_FLOAT;
+				else if (targetType == Double.class)
+					return Kind.BOXED_DOUBLE;
+				else if (targetType == BigDecimal.class && (sqlType == Types.DECIMAL || sqlType == Types.NUMERIC))
+					return Kind.BIG_DECIMAL;
+				return Kind.CONVERT;
+			
+			case Types.CHAR:
+			case Types.VARCHAR:
+			case Types.LONGVARCHAR:
+			case Types.NCHAR:
+			case Types.NVARCHAR:
+			case Types.LONGNVARCHAR:
+				if (targetType == String.class)
+					return Kind.STRING;
+				return Kind.CONVERT;
+				
+			case Types.TIMESTAMP:
+				if (targetType == Timestamp.class || targetType == java.util.Date.class)
+					return Kind.TIMESTAMP;
+				return Kind.CONVERT;
+
+			case Types.DATE:
+				if (targetType == java.sql.Date.class || targetType == java.util.Date.class)
+					return Kind.DATE;
+				return Kind.CONVERT;
+
+			case Types.BINARY:
+			case Types.VARBINARY:
+			case Types.LONGVARBINARY:
+				if (targetType == byte[].class)
+					return Kind.BYTES;
+				return Kind.CONVERT;
+				
+			default:
+				return Kind.CONVERT;
+		}
+	}
+
+	/**
+	 * Creates an object from the current row of a result set.
+	 * @param resultSet the result set, set to the row to map.
+	 * @return the new object.
+	 * @throws SQLException if a value could not be read.
+	 * @throws ClassCastException if a value cannot be converted to its target type.
+	 */
+	@SuppressWarnings("unchecked")
+	T map(ResultSet resultSet) throws SQLException
+	{
+		Object object;
+		if (constructor != null)
+		{
+			try {
+				object = (Object)constructor.invokeExact();
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable t) {
+				throw new RuntimeException(t);
+			}
+		}
+		else
+			object = Reflect.create(type);
+		
+		for (int i = 0; i < bindings.length; i++)
+			bindings[i].apply(object, resultSet);
+		return (T)object;
+	}
+	
+	/**
+	 * Result set getter kinds.
+	 */
+	private enum Kind
+	{
+		BOOLEAN(Boolean.TYPE),
+		BYTE(Byte.TYPE),
+		SHORT(Short.TYPE),
+		INT(Integer.TYPE),
+		LONG(Long.TYPE),
+		FLOAT(Float.TYPE),
+		DOUBLE(Double.TYPE),
+		BOXED_BOOLEAN(Object.class),
+		BOXED_BYTE(Object.class),
+		BOXED_SHORT(Object.class),
+		BOXED_INT(Object.class),
+		BOXED_LONG(Object.class),
+		BOXED_FLOAT(Object.class),
+		BOXED_DOUBLE(Object.class),
+		BIG_DECIMAL(Object.class),
+		STRING(Object.class),
+		TIMESTAMP(Object.class),
+		DATE(Object.class),
+		BYTES(Object.class),
+		CONVERT(Object.class);
+		
+		/** The type passed to the setter handle. */
+		private final Class<?> valueType;
+		
+		private Kind(Class<?> valueType)
+		{
+			this.valueType = valueType;
+		}
+	}
+	
+	/**
+	 * A column bound to a target setter.
+	 */
+	private static class Binding
+	{
+		/** Column name. */
+		private String column;
+		/** Column index (starts at 1). */
+		private int columnIndex;
+		/** Getter kind. */
+		private Kind kind;
+		/** Target type. */
+		private Class<?> targetType;
+		/** Setter handle: (Object, value type)void. */
+		private MethodHandle setter;
+		
+		private Binding(String column, int columnIndex, Kind kind, Class<?> targetType, MethodHandle setter)
+		{
+			this.column = column;
+			this.columnIndex = columnIndex;
+			this.kind = kind;
+			this.targetType = targetType;
+			this.setter = setter;
+		}
+
+		// Reads the column and applies it to the object.
+		private void apply(Object object, ResultSet rs) throws SQLException
+		{
+			try {
+				switch (kind)
+				{
+					case BOOLEAN:
+						setter.invokeExact(object, rs.getBoolean(columnIndex));
+						break;
+					case BYTE:
+						setter.invokeExact(object, rs.getByte(columnIndex));
+						break;
+					case SHORT:
+						setter.invokeExact(object, rs.getShort(columnIndex));
+						break;
+					case INT:
+						setter.invokeExact(object, rs.getInt(columnIndex));
+						break;
+					case LONG:
+						setter.invokeExact(object, rs.getLong(columnIndex));
+						break;
+					case FLOAT:
+						setter.invokeExact(object, rs.getFloat(columnIndex));
+						break;
+					case DOUBLE:
+						setter.invokeExact(object, rs.getDouble(columnIndex));
+						break;
+					case BOXED_BOOLEAN:
+					{
+						boolean value = rs.getBoolean(columnIndex);
+						setter.invokeExact(object, (Object)(rs.wasNull() ? null : Boolean.valueOf(value)));
+						break;
+					}
+					case BOXED_BYTE:
+					{
+						byte value = rs.getByte(columnIndex);
+						setter.invokeExact(object, (Object)(rs.wasNull() ? null : Byte.valueOf(value)));
+						break;
+					}
+					case BOXED_SHORT:
+					{
+						short value = rs.getShort(columnIndex);
+						setter.invokeExact(object, (Object)(rs.wasNull() ? null : Short.valueOf(value)));
+						break;
+					}
+					case BOXED_INT:
+					{
+						int value = rs.getInt(columnIndex);
+						setter.invokeExact(object, (Object)(rs.wasNull() ? null : Integer.valueOf(value)));
+						break;
+					}
+					case BOXED_LONG:
+					{
+						long value = rs.getLong(columnIndex);
+						setter.invokeExact(object, (Object)(rs.wasNull() ? null : Long.valueOf(value)));
+						break;
+					}
+					case BOXED_FLOAT:
+					{
+						float value = rs.getFloat(columnIndex);
+						setter.invokeExact(object, (Object)(rs.wasNull() ? null : Float.valueOf(value)));
+						break;
+					}
+					case BOXED_DOUBLE:
+					{
+						double value = rs.getDouble(columnIndex);
+						setter.invokeExact(object, (Object)(rs.wasNull() ? null : Double.valueOf(value)));
+						break;
+					}
+					case BIG_DECIMAL:
+						setter.invokeExact(object, (Object)rs.getBigDecimal(columnIndex));
+						break;
+					case STRING:
+						setter.invokeExact(object, (Object)rs.getString(columnIndex));
+						break;
+					case TIMESTAMP:
+						setter.invokeExact(object, (Object)rs.getTimestamp(columnIndex));
+						break;
+					case DATE:
+						setter.invokeExact(object, (Object)rs.getDate(columnIndex));
+						break;
+					case BYTES:
+						setter.invokeExact(object, (Object)rs.getBytes(columnIndex));
+						break;
+					default:
+						setter.invokeExact(object, (Object)DBReflect.createForType(column, rs.getObject(columnIndex), targetType));
+						break;
+				}
+			} catch (SQLException | RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable t) {
+				throw new RuntimeException(t);
+			}
+		}
+	}
+	
+	/**
+	 * Cache key: object type plus column layout.
+	 */
+	private static class Layout
+	{
+		private Class<?> type;
+		private String[] columnNames;
+		private int[] sqlTypes;
+		private int hash;
+		
+		private Layout(Class<?> type, String[] columnNames, int[] sqlTypes)
+		{
+			this.type = type;
+			this.columnNames = columnNames;
+			this.sqlTypes = sqlTypes;
+			this.hash = (type.hashCode() * 31 + Arrays.hashCode(columnNames)) * 31 + Arrays.hashCode(sqlTypes);
+		}
+		
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof Layout))
+				return false;
+			Layout layout = (Layout)obj;
+			return type == layout.type
+				&& Arrays.equals(columnNames, layout.columnNames)
+				&& Arrays.equals(sqlTypes, layout.sqlTypes);
+		}
+	}
+	
+}
@@ -11,6 +11,10 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Savepoint;
 
+import com.blackrook.db.InsertQuery;
+import com.blackrook.db.QueryDialect;
+import com.blackrook.db.SelectQuery;
+import com.blackrook.db.SelectQuery.OrderClause;
 import com.blackrook.sql.SQLUtil;
 import com.blackrook.sql.SQLResult;
 
@@ -368,6 +372,144 @@ public class SQLTransaction implements AutoCloseable
 		return result;
 	}
 
+	/**
+	 * Renders a {@link SelectQuery} with a dialect's shared renderer, performs it on this transaction, 
+	 * and extracts the data into a SQLResult.
+	 * @param dialect the SQL dialect to render the query in.
+	 * @param select the query to render and execute.
+	 * @return the SQLResult returned.
+	 * @throws RuntimeException if the query cannot be resolved or the query causes an error.
+	 * @see SQLUtil#doQuery(Connection, QueryDialect, SelectQuery)
+	 * @since 2.6.0
+	 */
+	public SQLResult doQuery(QueryDialect dialect, SelectQuery select)
+	{
+		try {
+			return SQLUtil.doQuery(connection, dialect, select); 
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Renders a {@link SelectQuery} with a dialect's shared renderer, performs it on this transaction, 
+	 * and creates objects from it, setting relevant fields.
+	 * @param type the class type to instantiate.
+	 * @param dialect the SQL dialect to render the query in.
+	 * @param select the query to render and execute.
+	 * @return an array of instantiated objects with the pertinent fields set for each row.
+	 * @throws RuntimeException if the query cannot be resolved or the query causes an error.
+	 * @throws ClassCastException if one object type cannot be converted to another.
+	 * @see SQLUtil#doQuery(Class, Connection, QueryDialect, SelectQuery)
+	 * @since 2.6.0
+	 */
+	public <T> T[] doQuery(Class<T> type, QueryDialect dialect, SelectQuery select)
+	{
+		try {
+			return SQLUtil.doQuery(type, connection, dialect, select); 
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Creates a pager that walks the results of a {@link SelectQuery} on this transaction page by page, 
+	 * using keyset pagination. The transaction must not be used for anything else until the pager 
+	 * is read to the end or closed.
+	 * @param dialect the SQL dialect to render the queries in.
+	 * @param pageSize the maximum amount of rows per page.
+	 * @param query the query to page through. Its ordering and limit are replaced per page.
+	 * @param keys the key columns to order and seek by. If none, the query's ordering is used.
+	 * @return a pager over pages of {@link SQLRow}s.
+	 * @throws IllegalArgumentException if the page size is less than 1, or there are no keys.
+	 * @see SQLUtil#doQueryPages(Connection, QueryDialect, int, SelectQuery, OrderClause...)
+	 * @since 2.6.0
+	 */
+	public SQLKeysetPager<SQLRow> doQueryPages(QueryDialect dialect, int pageSize, SelectQuery query, OrderClause ... keys)
+	{
+		return SQLUtil.doQueryPages(connection, dialect, pageSize, query, keys);
+	}
+
+	/**
+	 * Creates a pager that walks the results of a {@link SelectQuery} on this transaction page by page, 
+	 * using keyset pagination, and creates objects from the rows. The transaction must not be used 
+	 * for anything else until the pager is read to the end or closed.
+	 * @param type the class type to instantiate.
+	 * @param dialect the SQL dialect to render the queries in.
+	 * @param pageSize the maximum amount of rows per page.
+	 * @param query the query to page through. Its ordering and limit are replaced per page.
+	 * @param keys the key columns to order and seek by. If none, the query's ordering is used.
+	 * @return a pager over pages of instantiated objects.
+	 * @throws IllegalArgumentException if the page size is less than 1, or there are no keys.
+	 * @see SQLUtil#doQueryPages(Class, Connection, QueryDialect, int, SelectQuery, OrderClause...)
+	 * @since 2.6.0
+	 */
+	public <T> SQLKeysetPager<T> doQueryPages(Class<T> type, QueryDialect dialect, int pageSize, SelectQuery query, OrderClause ... keys)
+	{
+		return SQLUtil.doQueryPages(type, connection, dialect, pageSize, query, keys);
+	}
+
+	/**
+	 * Performs a query on this transaction and returns a cursor that reads the resulting rows lazily.
+	 * Since transactions are not auto-commit, drivers that need that to stream rows (like PostgreSQL's) honor the fetch size.
+	 * The cursor must be closed before this transaction is finished.
+	 * @param fetchSize the fetch size hint, or 0 for the driver's default.
+	 * @param query the query to execute.
+	 * @param parameters list of parameters for parameterized queries.
+	 * @return a cursor over {@link SQLRow}s.
+	 * @throws RuntimeException if the query cannot be resolved or the query causes an error.
+	 * @see SQLUtil#doQueryCursor(Connection, int, String, Object...)
+	 * @since 2.6.0
+	 */
+	public SQLCursor<SQLRow> doQueryCursor(int fetchSize, String query, Object ... parameters)
+	{
+		try {
+			return SQLUtil.doQueryCursor(connection, fetchSize, query, parameters); 
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Performs a query on this transaction and returns a cursor that creates objects from the resulting rows lazily.
+	 * The cursor must be closed before this transaction is finished.
+	 * @param type the class type to instantiate.
+	 * @param fetchSize the fetch size hint, or 0 for the driver's default.
+	 * @param query the query to execute.
+	 * @param parameters list of parameters for parameterized queries.
+	 * @return a cursor over instantiated objects.
+	 * @throws RuntimeException if the query cannot be resolved or the query causes an error.
+	 * @throws ClassCastException if one object type cannot be converted to another, while reading.
+	 * @see SQLUtil#doQueryCursor(Class, Connection, int, String, Object...)
+	 * @since 2.6.0
+	 */
+	public <T> SQLCursor<T> doQueryCursor(Class<T> type, int fetchSize, String query, Object ... parameters)
+	{
+		try {
+			return SQLUtil.doQueryCursor(type, connection, fetchSize, query, parameters); 
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Performs a query on this transaction and extracts the data into a SQLColumnarResult.
+	 * @param query the query to execute.
+	 * @param parameters list of parameters for parameterized queries.
+	 * @return the columnar result returned.
+	 * @throws RuntimeException if the query cannot be resolved or the query causes an error.
+	 * @see SQLUtil#doQueryColumnar(Connection, String, Object...)
+	 * @since 2.6.0
+	 */
+	public SQLColumnarResult doQueryColumnar(String query, Object ... parameters)
+	{
+		try {
+			return SQLUtil.doQueryColumnar(connection, query, parameters); 
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	/**
 	 * Performs an update query on this transaction.
 	 * @param query the query to execute.
@@ -386,6 +528,119 @@ public class SQLTransaction implements AutoCloseable
 		return result;
 	}
 
+	/**
+	 * Performs an update query on this transaction many times, once per parameter set, through JDBC batches.
+	 * @param batchSize the maximum amount of parameter sets per batch, or 0 or less to send them all in one batch.
+	 * @param query the query to execute.
+	 * @param parameterList the list of parameter sets, one for each execution of the query.
+	 * @return the batch result, with the update counts.
+	 * @throws RuntimeException if the query cannot be resolved or the query causes an error.
+	 * @see SQLUtil#doUpdateBatch(Connection, int, String, Iterable)
+	 * @since 2.6.0
+	 */
+	public SQLBatchResult doUpdateBatch(int batchSize, String query, Iterable<Object[]> parameterList)
+	{
+		return doUpdateBatch(batchSize, false, false, query, parameterList);
+	}
+
+	/**
+	 * Performs an update query on this transaction many times, once per parameter set, through JDBC batches.
+	 * @param batchSize the maximum amount of parameter sets per batch, or 0 or less to send them all in one batch.
+	 * @param generatedKeys if true, gather the keys generated by the queries into the result.
+	 * @param commitEachBatch if true, commit this transaction after each batch, so that each one is kept if a later one fails.
+	 * @param query the query to execute.
+	 * @param parameterList the list of parameter sets, one for each execution of the query.
+	 * @return the batch result, with the update counts and generated keys.
+	 * @throws RuntimeException if the query cannot be resolved or the query causes an error.
+	 * @see SQLUtil#doUpdateBatch(Connection, int, boolean, boolean, String, Iterable)
+	 * @since 2.6.0
+	 */
+	public SQLBatchResult doUpdateBatch(int batchSize, boolean generatedKeys, boolean commitEachBatch, String query, Iterable<Object[]> parameterList)
+	{
+		try {
+			return SQLUtil.doUpdateBatch(connection, batchSize, generatedKeys, commitEachBatch, query, parameterList); 
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Performs an update query on this transaction many times, once per object, through JDBC batches.
+	 * Each object's parameters are read from its public fields or getters, by member name, in order.
+	 * @param type the class type of the objects.
+	 * @param batchSize the maximum amount of objects per batch, or 0 or less to send them all in one batch.
+	 * @param query the query to execute.
+	 * @param objects the list of objects, one for each execution of the query.
+	 * @param memberNames the names of the public fields or getters to read parameters from, in query parameter order.
+	 * @return the batch result, with the update counts.
+	 * @throws RuntimeException if the query cannot be resolved or the query causes an error.
+	 * @throws IllegalArgumentException if a member name is not a public field or getter on the type.
+	 * @see SQLUtil#doUpdateBatch(Class, Connection, int, String, Iterable, String...)
+	 * @since 2.6.0
+	 */
+	public <T> SQLBatchResult doUpdateBatch(Class<T> type, int batchSize, String query, Iterable<? extends T> objects, String ... memberNames)
+	{
+		return doUpdateBatch(type, batchSize, false, false, query, objects, memberNames);
+	}
+
+	/**
+	 * Performs an update query on this transaction many times, once per object, through JDBC batches.
+	 * Each object's parameters are read from its public fields or getters, by member name, in order.
+	 * @param type the class type of the objects.
+	 * @param batchSize the maximum amount of objects per batch, or 0 or less to send them all in one batch.
+	 * @param generatedKeys if true, gather the keys generated by the queries into the result.
+	 * @param commitEachBatch if true, commit this transaction after each batch, so that each one is kept if a later one fails.
+	 * @param query the query to execute.
+	 * @param objects the list of objects, one for each execution of the query.
+	 * @param memberNames the names of the public fields or getters to read parameters from, in query parameter order.
+	 * @return the batch result, with the update counts and generated keys.
+	 * @throws RuntimeException if the query cannot be resolved or the query causes an error.
+	 * @throws IllegalArgumentException if a member name is not a public field or getter on the type.
+	 * @see SQLUtil#doUpdateBatch(Class, Connection, int, boolean, boolean, String, Iterable, String...)
+	 * @since 2.6.0
+	 */
+	public <T> SQLBatchResult doUpdateBatch(Class<T> type, int batchSize, boolean generatedKeys, boolean commitEachBatch, String query, Iterable<? extends T> objects, String ... memberNames)
+	{
+		try {
+			return SQLUtil.doUpdateBatch(type, connection, batchSize, generatedKeys, commitEachBatch, query, objects, memberNames); 
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Performs a multi-row insert or upsert on this transaction.
+	 * @param dialect the SQL dialect to render the statements in.
+	 * @param insert the insert query.
+	 * @return the batch result, with one update count per statement.
+	 * @throws RuntimeException if the query cannot be resolved or the query causes an error.
+	 * @see SQLUtil#doInsert(Connection, QueryDialect, InsertQuery)
+	 * @since 2.6.0
+	 */
+	public SQLBatchResult doInsert(QueryDialect dialect, InsertQuery insert)
+	{
+		return doInsert(dialect, false, insert);
+	}
+
+	/**
+	 * Performs a multi-row insert or upsert on this transaction.
+	 * @param dialect the SQL dialect to render the statements in.
+	 * @param generatedKeys if true, gather the keys generated by the statements into the result.
+	 * @param insert the insert query.
+	 * @return the batch result, with one update count per statement, and generated keys.
+	 * @throws RuntimeException if the query cannot be resolved or the query causes an error.
+	 * @see SQLUtil#doInsert(Connection, QueryDialect, boolean, InsertQuery)
+	 * @since 2.6.0
+	 */
+	public SQLBatchResult doInsert(QueryDialect dialect, boolean generatedKeys, InsertQuery insert)
+	{
+		try {
+			return SQLUtil.doInsert(connection, dialect, generatedKeys, insert); 
+		} catch (SQLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	@Override
 	public void close()
 	{
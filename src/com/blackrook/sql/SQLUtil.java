@@ -16,6 +16,8 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Iterator;
 
 import com.blackrook.commons.Reflect;
 import com.blackrook.commons.TypeProfile;
@@ -23,6 +25,11 @@ import com.blackrook.commons.TypeProfile.MethodSignature;
 import com.blackrook.commons.list.List;
 import com.blackrook.commons.util.IOUtils;
 import com.blackrook.db.DBReflect;
+import com.blackrook.db.InsertQuery;
+import com.blackrook.db.QueryDialect;
+import com.blackrook.db.RenderedQuery;
+import com.blackrook.db.SelectQuery;
+import com.blackrook.db.SelectQuery.OrderClause;
 
 /**
  * Core database utilities object.
@@ -106,8 +113,11 @@ public abstract class SQLUtil
 		PreparedStatement statement = null;
 		SQLResult out = null;		
 		statement = connection.prepareStatement(query);
-		out = callStatement(statement, false, parameters);
-		statement.close();
+		try {
+			out = callStatement(statement, false, parameters);
+		} finally {
+			statement.close();
+		}
 		return out;
 	}
 	
@@ -189,6 +199,11 @@ public abstract class SQLUtil
 	 * 		</td>
 	 * </tr>
 	 * </table>
+	 * <p>
+	 * The mapping from the result's columns to the type's fields and setters is worked out once 
+	 * per type and column layout, and cached. Columns whose SQL types directly suit their targets 
+	 * (for example, <code>BIGINT</code> into <code>long</code>, or <code>VARCHAR</code> into <code>String</code>)
+	 * are read with the matching {@link ResultSet} getter and no further conversion.
 	 * @param type the class type to instantiate.
 	 * @param connection the connection to create a prepared statement and execute from.
 	 * @param query the query statement to execute.
@@ -205,25 +220,190 @@ public abstract class SQLUtil
 		statement = connection.prepareStatement(query);
 		
 		ResultSet resultSet = null;
-		
-		int i = 1;
-		for (Object obj : parameters)
-			statement.setObject(i++, obj);
-
-		resultSet = statement.executeQuery();
-		String[] columnNames = getAllColumnNamesFromResultSet(resultSet);
-		
 		List<T> rows = new List<T>();
-		while (resultSet.next())
-			rows.add(createObjectFromResultRow(type, resultSet, columnNames));
-
-		statement.close();
-		resultSet.close();
+		try {
+			int i = 1;
+			for (Object obj : parameters)
+				statement.setObject(i++, obj);
+	
+			resultSet = statement.executeQuery();
+			String[] columnNames = getAllColumnNamesFromResultSet(resultSet);
+			SQLRowMapper<T> mapper = SQLRowMapper.get(type, resultSet, columnNames);
+			
+			while (resultSet.next())
+				rows.add(mapper.map(resultSet));
+		} finally {
+			IOUtils.close(resultSet);
+			statement.close();
+		}
 		
 		rows.toArray(out = (T[])Array.newInstance(type, rows.size()));
 		return out;
 	}
 
+	/**
+	 * Renders a {@link SelectQuery} with a dialect's shared renderer, performs it on a connection, 
+	 * and extracts the data into a SQLResult.
+	 * @param connection the connection to create a prepared statement and execute from.
+	 * @param dialect the SQL dialect to render the query in.
+	 * @param select the query to render and execute.
+	 * @return the result returned.
+	 * @see QueryDialect#getRenderer()
+	 * @since 2.6.0
+	 */
+	public static SQLResult doQuery(Connection connection, QueryDialect dialect, SelectQuery select) throws SQLException
+	{
+		RenderedQuery rendered = dialect.getRenderer().render(select);
+		return doQuery(connection, rendered.getQuery(), rendered.getParameters());
+	}
+	
+	/**
+	 * Renders a {@link SelectQuery} with a dialect's shared renderer, performs it on a connection, 
+	 * and creates objects from it, setting relevant fields.
+	 * @param type the class type to instantiate.
+	 * @param connection the connection to create a prepared statement and execute from.
+	 * @param dialect the SQL dialect to render the query in.
+	 * @param select the query to render and execute.
+	 * @return an array of instantiated objects with the pertinent fields set for each row.
+	 * @throws ClassCastException if one object type cannot be converted to another.
+	 * @see QueryDialect#getRenderer()
+	 * @see #doQuery(Class, Connection, String, Object...)
+	 * @since 2.6.0
+	 */
+	public static <T> T[] doQuery(Class<T> type, Connection connection, QueryDialect dialect, SelectQuery select) throws SQLException
+	{
+		RenderedQuery rendered = dialect.getRenderer().render(select);
+		return doQuery(type, connection, rendered.getQuery(), rendered.getParameters());
+	}
+
+	/**
+	 * Creates a pager that walks the results of a {@link SelectQuery} page by page, using keyset pagination:
+	 * each page is sought by the key values of the last row of the previous one, rather than by offset.
+	 * The next page is fetched in the background while the current one is worked on.
+	 * The connection must not be used for anything else until the pager is read to the end or closed.
+	 * @param connection the connection to create prepared statements and execute from.
+	 * @param dialect the SQL dialect to render the queries in.
+	 * @param pageSize the maximum amount of rows per page.
+	 * @param query the query to page through. Its ordering and limit are replaced per page.
+	 * @param keys the key columns to order and seek by. If none, the query's ordering is used.
+	 * @return a pager over pages of {@link SQLRow}s.
+	 * @throws IllegalArgumentException if the page size is less than 1, or there are no keys.
+	 * @see SQLKeysetPager
+	 * @since 2.6.0
+	 */
+	public static SQLKeysetPager<SQLRow> doQueryPages(Connection connection, QueryDialect dialect, int pageSize, SelectQuery query, OrderClause ... keys)
+	{
+		return new SQLKeysetPager<SQLRow>(null, connection, dialect, pageSize, query, keys);
+	}
+
+	/**
+	 * Creates a pager that walks the results of a {@link SelectQuery} page by page, using keyset pagination,
+	 * and creates objects from the rows the same way as {@link #doQuery(Class, Connection, String, Object...)}.
+	 * The next page is fetched in the background while the current one is worked on.
+	 * The connection must not be used for anything else until the pager is read to the end or closed.
+	 * @param type the class type to instantiate.
+	 * @param connection the connection to create prepared statements and execute from.
+	 * @param dialect the SQL dialect to render the queries in.
+	 * @param pageSize the maximum amount of rows per page.
+	 * @param query the query to page through. Its ordering and limit are replaced per page.
+	 * @param keys the key columns to order and seek by. If none, the query's ordering is used.
+	 * @return a pager over pages of instantiated objects.
+	 * @throws IllegalArgumentException if the page size is less than 1, or there are no keys.
+	 * @see SQLKeysetPager
+	 * @since 2.6.0
+	 */
+	public static <T> SQLKeysetPager<T> doQueryPages(Class<T> type, Connection connection, QueryDialect dialect, int pageSize, SelectQuery query, OrderClause ... keys)
+	{
+		return new SQLKeysetPager<T>(type, connection, dialect, pageSize, query, keys);
+	}
+
+	/**
+	 * Performs a query on a connection and returns a cursor that reads the resulting rows lazily.
+	 * The cursor must be closed (or read to the end) to release its statement and result set.
+	 * <p>
+	 * The fetch size is a hint to the driver for how many rows to get from the database per round trip.
+	 * Some drivers only honor it under certain conditions: for example, PostgreSQL only streams 
+	 * rows when auto-commit is off (see {@link SQLTransaction}), and MySQL only streams rows 
+	 * one at a time with a fetch size of {@link Integer#MIN_VALUE}.
+	 * @param connection the connection to create a prepared statement and execute from.
+	 * @param fetchSize the fetch size hint, or 0 for the driver's default.
+	 * @param query the query statement to execute.
+	 * @param parameters list of parameters for parameterized queries.
+	 * @return a cursor over {@link SQLRow}s.
+	 * @since 2.6.0
+	 */
+	public static SQLCursor<SQLRow> doQueryCursor(Connection connection, int fetchSize, String query, Object ... parameters) throws SQLException
+	{
+		return openCursor(null, connection, fetchSize, query, parameters);
+	}
+
+	/**
+	 * Performs a query on a connection and returns a cursor that creates objects from the resulting rows lazily,
+	 * the same way as {@link #doQuery(Class, Connection, String, Object...)}.
+	 * The cursor must be closed (or read to the end) to release its statement and result set.
+	 * @param type the class type to instantiate.
+	 * @param connection the connection to create a prepared statement and execute from.
+	 * @param fetchSize the fetch size hint, or 0 for the driver's default.
+	 * @param query the query statement to execute.
+	 * @param parameters list of parameters for parameterized queries.
+	 * @return a cursor over instantiated objects.
+	 * @throws ClassCastException if one object type cannot be converted to another, while reading.
+	 * @see #doQueryCursor(Connection, int, String, Object...)
+	 * @since 2.6.0
+	 */
+	public static <T> SQLCursor<T> doQueryCursor(Class<T> type, Connection connection, int fetchSize, String query, Object ... parameters) throws SQLException
+	{
+		return openCursor(type, connection, fetchSize, query, parameters);
+	}
+	
+	// Opens a cursor, closing the statement if it can't.
+	private static <T> SQLCursor<T> openCursor(Class<T> type, Connection connection, int fetchSize, String query, Object ... parameters) throws SQLException
+	{
+		PreparedStatement statement = connection.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		ResultSet resultSet = null;
+		try {
+			if (fetchSize != 0)
+				statement.setFetchSize(fetchSize);
+			
+			int i = 1;
+			for (Object obj : parameters)
+				statement.setObject(i++, obj);
+			
+			resultSet = statement.executeQuery();
+			return new SQLCursor<T>(statement, resultSet, type);
+		} catch (SQLException | RuntimeException e) {
+			IOUtils.close(resultSet);
+			IOUtils.close(statement);
+			throw e;
+		}
+	}
+	
+	/**
+	 * Performs a query on a connection and extracts the data into a SQLColumnarResult,
+	 * which stores each column in a single array (primitive arrays for integer and floating-point columns).
+	 * @param connection the connection to create a prepared statement and execute from.
+	 * @param query the query statement to execute.
+	 * @param parameters list of parameters for parameterized queries.
+	 * @return the columnar result returned.
+	 * @since 2.6.0
+	 */
+	public static SQLColumnarResult doQueryColumnar(Connection connection, String query, Object ... parameters) throws SQLException
+	{
+		PreparedStatement statement = connection.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		ResultSet resultSet = null;
+		try {
+			int i = 1;
+			for (Object obj : parameters)
+				statement.setObject(i++, obj);
+			
+			resultSet = statement.executeQuery();
+			return new SQLColumnarResult(resultSet);
+		} finally {
+			IOUtils.close(resultSet);
+			IOUtils.close(statement);
+		}
+	}
+	
 	/**
 	 * Performs a query on a connection and extracts the data into a SQLResult.
 	 * @param connection the connection to create a prepared statement and execute from.
@@ -236,11 +416,275 @@ public abstract class SQLUtil
 		PreparedStatement statement = null;
 		SQLResult out = null;		
 		statement = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS);
-		out = callStatement(statement, true, parameters);
-		statement.close();
+		try {
+			out = callStatement(statement, true, parameters);
+		} finally {
+			statement.close();
+		}
 		return out;
 	}
 	
+	/**
+	 * Performs an update query on a connection many times, once per parameter set, through JDBC batches.
+	 * The parameter sets are sent in chunks of up to <code>batchSize</code> per round trip. 
+	 * @param connection the connection to create a prepared statement and execute from.
+	 * @param batchSize the maximum amount of parameter sets per batch, or 0 or less to send them all in one batch.
+	 * @param query the query statement to execute.
+	 * @param parameterList the list of parameter sets, one for each execution of the query.
+	 * @return the batch result, with the update counts.
+	 * @throws java.sql.BatchUpdateException if a query in a batch fails. Batches sent before it are not undone.
+	 * @since 2.6.0
+	 */
+	public static SQLBatchResult doUpdateBatch(Connection connection, int batchSize, String query, Iterable<Object[]> parameterList) throws SQLException
+	{
+		return doUpdateBatch(connection, batchSize, false, false, query, parameterList);
+	}
+
+	/**
+	 * Performs an update query on a connection many times, once per parameter set, through JDBC batches.
+	 * The parameter sets are sent in chunks of up to <code>batchSize</code> per round trip. 
+	 * @param connection the connection to create a prepared statement and execute from.
+	 * @param batchSize the maximum amount of parameter sets per batch, or 0 or less to send them all in one batch.
+	 * @param generatedKeys if true, gather the keys generated by the queries into the result.
+	 * @param commitEachBatch if true and the connection is not in auto-commit mode, commit after each batch.
+	 * @param query the query statement to execute.
+	 * @param parameterList the list of parameter sets, one for each execution of the query.
+	 * @return the batch result, with the update counts and generated keys.
+	 * @throws java.sql.BatchUpdateException if a query in a batch fails. Batches sent before it are not undone.
+	 * @since 2.6.0
+	 */
+	public static SQLBatchResult doUpdateBatch(Connection connection, int batchSize, boolean generatedKeys, boolean commitEachBatch, String query, Iterable<Object[]> parameterList) throws SQLException
+	{
+		PreparedStatement statement = generatedKeys 
+			? connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)
+			: connection.prepareStatement(query);
+		boolean commit = commitEachBatch && !connection.getAutoCommit();
+		
+		int[] updateCounts = new int[16];
+		int rowCount = 0;
+		long[] ids = new long[generatedKeys ? 16 : 0];
+		int idCount = 0;
+		int batchCount = 0;
+		int pending = 0;
+		try {
+			Iterator<Object[]> it = parameterList.iterator();
+			while (it.hasNext())
+			{
+				Object[] parameters = it.next();
+				for (int i = 0; i < parameters.length; i++)
+					statement.setObject(i + 1, parameters[i]);
+				statement.addBatch();
+				pending++;
+				
+				if (pending == batchSize || !it.hasNext())
+				{
+					int[] counts = statement.executeBatch();
+					pending = 0;
+					batchCount++;
+					
+					if (rowCount + counts.length > updateCounts.length)
+						updateCounts = Arrays.copyOf(updateCounts, Math.max(updateCounts.length * 2, rowCount + counts.length));
+					System.arraycopy(counts, 0, updateCounts, rowCount, counts.length);
+					rowCount += counts.length;
+					
+					if (generatedKeys)
+					{
+						ResultSet keys = statement.getGeneratedKeys();
+						try {
+							while (keys.next())
+							{
+								if (idCount == ids.length)
+									ids = Arrays.copyOf(ids, ids.length * 2);
+								ids[idCount++] = keys.getLong(1);
+							}
+						} finally {
+							IOUtils.close(keys);
+						}
+					}
+					
+					if (commit)
+						connection.commit();
+				}
+			}
+		} finally {
+			if (pending > 0)
+			{
+				try {
+					statement.clearBatch();
+				} catch (SQLException e) {
+					// Closing anyway.
+				}
+			}
+			statement.close();
+		}
+		
+		return new SQLBatchResult(Arrays.copyOf(updateCounts, rowCount), Arrays.copyOf(ids, idCount), batchCount);
+	}
+
+	/**
+	 * Performs an update query on a connection many times, once per object, through JDBC batches.
+	 * Each object's parameters are read from its public fields or getters, by member name, in order.
+	 * The parameter sets are sent in chunks of up to <code>batchSize</code> per round trip. 
+	 * @param type the class type of the objects.
+	 * @param connection the connection to create a prepared statement and execute from.
+	 * @param batchSize the maximum amount of objects per batch, or 0 or less to send them all in one batch.
+	 * @param query the query statement to execute.
+	 * @param objects the list of objects, one for each execution of the query.
+	 * @param memberNames the names of the public fields or getters (without "get" or "is") to read parameters from, in query parameter order.
+	 * @return the batch result, with the update counts.
+	 * @throws IllegalArgumentException if a member name is not a public field or getter on the type.
+	 * @throws java.sql.BatchUpdateException if a query in a batch fails. Batches sent before it are not undone.
+	 * @since 2.6.0
+	 */
+	public static <T> SQLBatchResult doUpdateBatch(Class<T> type, Connection connection, int batchSize, String query, Iterable<? extends T> objects, String ... memberNames) throws SQLException
+	{
+		return doUpdateBatch(type, connection, batchSize, false, false, query, objects, memberNames);
+	}
+	
+	/**
+	 * Performs an update query on a connection many times, once per object, through JDBC batches.
+	 * Each object's parameters are read from its public fields or getters, by member name, in order.
+	 * The parameter sets are sent in chunks of up to <code>batchSize</code> per round trip. 
+	 * @param type the class type of the objects.
+	 * @param connection the connection to create a prepared statement and execute from.
+	 * @param batchSize the maximum amount of objects per batch, or 0 or less to send them all in one batch.
+	 * @param generatedKeys if true, gather the keys generated by the queries into the result.
+	 * @param commitEachBatch if true and the connection is not in auto-commit mode, commit after each batch.
+	 * @param query the query statement to execute.
+	 * @param objects the list of objects, one for each execution of the query.
+	 * @param memberNames the names of the public fields or getters (without "get" or "is") to read parameters from, in query parameter order.
+	 * @return the batch result, with the update counts and generated keys.
+	 * @throws IllegalArgumentException if a member name is not a public field or getter on the type.
+	 * @throws java.sql.BatchUpdateException if a query in a batch fails. Batches sent before it are not undone.
+	 * @since 2.6.0
+	 */
+	public static <T> SQLBatchResult doUpdateBatch(Class<T> type, Connection connection, int batchSize, boolean generatedKeys, boolean commitEachBatch, String query, final Iterable<? extends T> objects, String ... memberNames) throws SQLException
+	{
+		TypeProfile<T> profile = TypeProfile.getTypeProfile(type);
+		final Field[] fields = new Field[memberNames.length];
+		final Method[] getters = new Method[memberNames.length];
+		for (int i = 0; i < memberNames.length; i++)
+		{
+			MethodSignature getter = null;
+			if ((fields[i] = profile.getPublicFields().get(memberNames[i])) == null)
+			{
+				if ((getter = profile.getGetterMethods().get(memberNames[i])) == null)
+					throw new IllegalArgumentException("No public field or getter named \"" + memberNames[i] + "\" on " + type.getName());
+				getters[i] = getter.getMethod();
+			}
+		}
+		
+		return doUpdateBatch(connection, batchSize, generatedKeys, commitEachBatch, query, new Iterable<Object[]>()
+		{
+			@Override
+			public Iterator<Object[]> iterator()
+			{
+				final Iterator<? extends T> it = objects.iterator();
+				return new Iterator<Object[]>()
+				{
+					@Override
+					public boolean hasNext()
+					{
+						return it.hasNext();
+					}
+
+					@Override
+					public Object[] next()
+					{
+						T object = it.next();
+						Object[] out = new Object[fields.length];
+						for (int i = 0; i < out.length; i++)
+							out[i] = fields[i] != null ? Reflect.getFieldValue(fields[i], object) : Reflect.invokeBlind(getters[i], object);
+						return out;
+					}
+				};
+			}
+		});
+	}
+	
+	/**
+	 * Performs a multi-row insert or upsert on a connection.
+	 * The rows are sent as few statements as the dialect's parameter limit allows, 
+	 * each <code>INSERT ... VALUES (...), (...)</code> (or the dialect's equivalent) carrying many rows per round trip.
+	 * @param connection the connection to create prepared statements and execute from.
+	 * @param dialect the SQL dialect to render the statements in.
+	 * @param insert the insert query.
+	 * @return the batch result, with one update count per statement.
+	 * @since 2.6.0
+	 */
+	public static SQLBatchResult doInsert(Connection connection, QueryDialect dialect, InsertQuery insert) throws SQLException
+	{
+		return doInsert(connection, dialect, false, insert);
+	}
+
+	/**
+	 * Performs a multi-row insert or upsert on a connection.
+	 * The rows are sent as few statements as the dialect's parameter limit allows, 
+	 * each <code>INSERT ... VALUES (...), (...)</code> (or the dialect's equivalent) carrying many rows per round trip.
+	 * Every full statement has the same SQL, so it is prepared once and reused.
+	 * <p>Update counts are what the driver reports: for example, MySQL counts an updated row twice on upsert.
+	 * Not all drivers return generated keys for multi-row inserts or <code>MERGE</code>.
+	 * @param connection the connection to create prepared statements and execute from.
+	 * @param dialect the SQL dialect to render the statements in.
+	 * @param generatedKeys if true, gather the keys generated by the statements into the result.
+	 * @param insert the insert query.
+	 * @return the batch result, with one update count per statement, and generated keys.
+	 * @throws IllegalStateException if the insert has rows but no columns.
+	 * @since 2.6.0
+	 */
+	public static SQLBatchResult doInsert(Connection connection, QueryDialect dialect, boolean generatedKeys, InsertQuery insert) throws SQLException
+	{
+		int rowCount = insert.getRowCount();
+		int perStatement = insert.getRowsPerStatement(dialect);
+		int[] updateCounts = new int[insert.getStatementCount(dialect)];
+		long[] ids = new long[generatedKeys ? 16 : 0];
+		int idCount = 0;
+		
+		PreparedStatement statement = null;
+		int statementRows = 0;
+		try {
+			for (int s = 0, row = 0; row < rowCount; s++, row += perStatement)
+			{
+				int rows = Math.min(perStatement, rowCount - row);
+				if (statement == null || rows != statementRows)
+				{
+					if (statement != null)
+						statement.close();
+					String query = insert.render(dialect, rows);
+					statement = generatedKeys 
+						? connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)
+						: connection.prepareStatement(query);
+					statementRows = rows;
+				}
+
+				Object[] parameters = insert.getParameters(row, rows);
+				for (int i = 0; i < parameters.length; i++)
+					statement.setObject(i + 1, parameters[i]);
+				updateCounts[s] = statement.executeUpdate();
+				
+				if (generatedKeys)
+				{
+					ResultSet keys = statement.getGeneratedKeys();
+					try {
+						while (keys.next())
+						{
+							if (idCount == ids.length)
+								ids = Arrays.copyOf(ids, ids.length * 2);
+							ids[idCount++] = keys.getLong(1);
+						}
+					} finally {
+						IOUtils.close(keys);
+					}
+				}
+			}
+		} finally {
+			if (statement != null)
+				statement.close();
+		}
+		
+		return new SQLBatchResult(updateCounts, Arrays.copyOf(ids, idCount), updateCounts.length);
+	}
+
 	/**
 	 * Creates a new object from a result row and sets the fields on it using row information.
 	 * @param objectType the object type to instantiate.